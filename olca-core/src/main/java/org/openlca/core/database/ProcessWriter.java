@@ -0,0 +1,601 @@
+package org.openlca.core.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.AbstractEntity;
+import org.openlca.core.model.AllocationFactor;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessDocumentation;
+import org.openlca.core.model.SocialAspect;
+import org.openlca.core.model.Source;
+import org.openlca.core.model.Uncertainty;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inserts batches of new processes with native SQL batch statements instead of
+ * persisting them one by one with JPA. The IDs of the processes and their
+ * exchanges, allocation factors, parameters, social aspects, and documentation
+ * are allocated in one block from the entity sequence and the rows are written
+ * in a single transaction. All entities that are referenced from a process
+ * (flows, units, locations, actors, etc.) must be already stored in the
+ * database; processes that do not fulfill this (or that already have an ID)
+ * are inserted via the process DAO.
+ */
+public class ProcessWriter {
+
+	private final static int MAX_BATCH_SIZE = 1000;
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final IDatabase database;
+	private MatrixCache matrixCache;
+	private EntityCache entityCache;
+
+	public ProcessWriter(IDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Set a matrix cache that should be notified about the new processes.
+	 */
+	public void setMatrixCache(MatrixCache matrixCache) {
+		this.matrixCache = matrixCache;
+	}
+
+	/**
+	 * Set an entity cache that should be notified about the new processes.
+	 */
+	public void setEntityCache(EntityCache entityCache) {
+		this.entityCache = entityCache;
+	}
+
+	/**
+	 * Inserts the given processes. After this method returns, the processes
+	 * and their components have the IDs of the database. If the batch
+	 * statements fail, the processes of the batch are inserted one by one via
+	 * the process DAO. A process that could not be inserted has the ID 0 when
+	 * this method returns; in this case a {@link DatabaseException} is thrown
+	 * after all other processes were inserted.
+	 */
+	public void insert(List<Process> processes) {
+		if (processes == null || processes.isEmpty())
+			return;
+		List<Process> batch = new ArrayList<>();
+		List<Process> others = new ArrayList<>();
+		for (Process p : processes) {
+			if (canWrite(p))
+				batch.add(p);
+			else
+				others.add(p);
+		}
+		if (!batch.isEmpty() && !writeBatch(batch))
+			others.addAll(batch);
+		ProcessDao dao = new ProcessDao(database);
+		int failed = 0;
+		Exception error = null;
+		for (Process p : others) {
+			if (p == null || p.getId() != 0L)
+				continue;
+			try {
+				dao.insert(p);
+			} catch (Exception e) {
+				p.setId(0L);
+				failed++;
+				error = e;
+			}
+		}
+		notifyCaches(processes);
+		if (failed > 0)
+			throw new DatabaseException(failed + " of " + processes.size()
+					+ " processes could not be inserted", error);
+	}
+
+	/**
+	 * Writes the given processes with batch statements. Returns false if this
+	 * failed; the IDs of the processes are then reset.
+	 */
+	private boolean writeBatch(List<Process> batch) {
+		try {
+			long nextId = allocateIds(idCount(batch));
+			for (Process p : batch)
+				nextId = assignIds(p, nextId);
+			write(batch);
+		} catch (Exception e) {
+			log.warn("Error while inserting a batch of processes; "
+					+ "inserting them one by one", e);
+			for (Process p : batch)
+				resetIds(p);
+			return false;
+		}
+		for (Process p : batch)
+			database.notifyInsert(p);
+		return true;
+	}
+
+	/**
+	 * Returns true if the given process and its components are new and all
+	 * referenced entities are already stored in the database.
+	 */
+	private boolean canWrite(Process p) {
+		if (p == null || p.getId() != 0L)
+			return false;
+		if (!stored(p.getCategory(), p.getLocation(), p.currency,
+				p.dqSystem, p.exchangeDqSystem, p.socialDqSystem))
+			return false;
+		// new exchanges are not equal to each other, so we compare them by
+		// identity
+		Set<Exchange> exchanges = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		for (Exchange e : p.getExchanges()) {
+			if (e.getId() != 0L || !stored(e.getFlow(),
+					e.getFlowPropertyFactor(), e.getUnit(), e.currency))
+				return false;
+			exchanges.add(e);
+		}
+		Exchange qRef = p.getQuantitativeReference();
+		if (qRef != null && !exchanges.contains(qRef))
+			return false;
+		for (AllocationFactor f : p.getAllocationFactors()) {
+			if (f.getId() != 0L)
+				return false;
+			if (f.getExchange() != null && !exchanges.contains(f.getExchange()))
+				return false;
+		}
+		for (Parameter param : p.getParameters()) {
+			if (param.getId() != 0L || !stored(param.getCategory()))
+				return false;
+		}
+		for (SocialAspect a : p.socialAspects) {
+			if (a.getId() != 0L || !stored(a.indicator, a.source))
+				return false;
+		}
+		ProcessDocumentation doc = p.getDocumentation();
+		if (doc == null)
+			return true;
+		if (doc.getId() != 0L)
+			return false;
+		if (!stored(doc.getReviewer(), doc.getDataDocumentor(),
+				doc.getDataGenerator(), doc.getDataSetOwner(),
+				doc.getPublication()))
+			return false;
+		for (Source source : doc.getSources()) {
+			if (!stored(source))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean stored(AbstractEntity... entities) {
+		for (AbstractEntity e : entities) {
+			if (e != null && e.getId() == 0L)
+				return false;
+		}
+		return true;
+	}
+
+	private int idCount(List<Process> batch) {
+		int count = 0;
+		for (Process p : batch) {
+			count += 1 + p.getExchanges().size()
+					+ p.getAllocationFactors().size()
+					+ p.getParameters().size()
+					+ p.socialAspects.size();
+			if (p.getDocumentation() != null)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Allocates the given number of IDs from the entity sequence and returns
+	 * the first one. JPA allocates its IDs in the same way (it increments the
+	 * sequence count by its allocation size and uses the values below the new
+	 * count) so that there are no conflicts with entities that are inserted
+	 * via JPA.
+	 */
+	private long allocateIds(int count) throws SQLException {
+		try (Connection con = database.createConnection();
+				Statement stmt = con.createStatement()) {
+			stmt.executeUpdate("UPDATE SEQUENCE SET SEQ_COUNT = SEQ_COUNT + "
+					+ count + " WHERE SEQ_NAME = 'entity_seq'");
+			long seqCount;
+			try (ResultSet r = stmt.executeQuery("SELECT SEQ_COUNT FROM "
+					+ "SEQUENCE WHERE SEQ_NAME = 'entity_seq'")) {
+				if (!r.next())
+					throw new SQLException("entity sequence not found");
+				seqCount = r.getLong(1);
+			}
+			con.commit();
+			return seqCount - count + 1;
+		}
+	}
+
+	private long assignIds(Process p, long nextId) {
+		p.setId(nextId++);
+		if (p.getDocumentation() != null)
+			p.getDocumentation().setId(nextId++);
+		for (Exchange e : p.getExchanges())
+			e.setId(nextId++);
+		for (AllocationFactor f : p.getAllocationFactors())
+			f.setId(nextId++);
+		for (Parameter param : p.getParameters())
+			param.setId(nextId++);
+		for (SocialAspect a : p.socialAspects)
+			a.setId(nextId++);
+		return nextId;
+	}
+
+	private void resetIds(Process p) {
+		p.setId(0L);
+		if (p.getDocumentation() != null)
+			p.getDocumentation().setId(0L);
+		for (Exchange e : p.getExchanges())
+			e.setId(0L);
+		for (AllocationFactor f : p.getAllocationFactors())
+			f.setId(0L);
+		for (Parameter param : p.getParameters())
+			param.setId(0L);
+		for (SocialAspect a : p.socialAspects)
+			a.setId(0L);
+	}
+
+	private void write(List<Process> batch) throws SQLException {
+		try (Connection con = database.createConnection()) {
+			try {
+				writeProcesses(con, batch);
+				writeDocs(con, batch);
+				writeExchanges(con, batch);
+				writeAllocationFactors(con, batch);
+				writeParameters(con, batch);
+				writeSocialAspects(con, batch);
+				con.commit();
+			} catch (SQLException e) {
+				con.rollback();
+				throw e;
+			}
+		}
+	}
+
+	private void writeProcesses(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_processes (id, ref_id, name, version, "
+				+ "last_change, f_category, description, process_type, "
+				+ "default_allocation_method, infrastructure_process, "
+				+ "f_quantitative_reference, f_location, f_process_doc, "
+				+ "f_currency, f_dq_system, dq_entry, f_exchange_dq_system, "
+				+ "f_social_dq_system) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				PreparedStatement s = b.stmt;
+				s.setLong(1, p.getId());
+				s.setString(2, p.getRefId());
+				s.setString(3, p.getName());
+				s.setLong(4, p.getVersion());
+				s.setLong(5, p.getLastChange());
+				setRef(s, 6, p.getCategory());
+				s.setString(7, p.getDescription());
+				setEnum(s, 8, p.getProcessType());
+				setEnum(s, 9, p.getDefaultAllocationMethod());
+				s.setInt(10, p.isInfrastructureProcess() ? 1 : 0);
+				setRef(s, 11, p.getQuantitativeReference());
+				setRef(s, 12, p.getLocation());
+				setRef(s, 13, p.getDocumentation());
+				setRef(s, 14, p.currency);
+				setRef(s, 15, p.dqSystem);
+				s.setString(16, p.dqEntry);
+				setRef(s, 17, p.exchangeDqSystem);
+				setRef(s, 18, p.socialDqSystem);
+				b.add();
+			}
+		}
+	}
+
+	private void writeDocs(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_process_docs (id, geography, technology, "
+				+ "time, valid_from, valid_until, modeling_constants, "
+				+ "data_treatment, sampling, completeness, review_details, "
+				+ "inventory_method, data_collection_period, data_selection, "
+				+ "f_reviewer, project, creation_date, intended_application, "
+				+ "restrictions, copyright, f_data_generator, f_dataset_owner, "
+				+ "f_data_documentor, f_publication) VALUES (?, ?, ?, ?, ?, ?, "
+				+ "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				ProcessDocumentation d = p.getDocumentation();
+				if (d == null)
+					continue;
+				PreparedStatement s = b.stmt;
+				s.setLong(1, d.getId());
+				s.setString(2, d.getGeography());
+				s.setString(3, d.getTechnology());
+				s.setString(4, d.getTime());
+				setDate(s, 5, d.getValidFrom());
+				setDate(s, 6, d.getValidUntil());
+				s.setString(7, d.getModelingConstants());
+				s.setString(8, d.getDataTreatment());
+				s.setString(9, d.getSampling());
+				s.setString(10, d.getCompleteness());
+				s.setString(11, d.getReviewDetails());
+				s.setString(12, d.getInventoryMethod());
+				s.setString(13, d.getDataCollectionPeriod());
+				s.setString(14, d.getDataSelection());
+				setRef(s, 15, d.getReviewer());
+				s.setString(16, d.getProject());
+				if (d.getCreationDate() == null)
+					s.setNull(17, Types.TIMESTAMP);
+				else
+					s.setTimestamp(17,
+							new Timestamp(d.getCreationDate().getTime()));
+				s.setString(18, d.getIntendedApplication());
+				s.setString(19, d.getRestrictions());
+				s.setInt(20, d.isCopyright() ? 1 : 0);
+				setRef(s, 21, d.getDataGenerator());
+				setRef(s, 22, d.getDataSetOwner());
+				setRef(s, 23, d.getDataDocumentor());
+				setRef(s, 24, d.getPublication());
+				b.add();
+			}
+		}
+		sql = "INSERT INTO tbl_process_sources (f_process_doc, f_source) "
+				+ "VALUES (?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				ProcessDocumentation d = p.getDocumentation();
+				if (d == null)
+					continue;
+				for (Source source : d.getSources()) {
+					b.stmt.setLong(1, d.getId());
+					b.stmt.setLong(2, source.getId());
+					b.add();
+				}
+			}
+		}
+	}
+
+	private void writeExchanges(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_exchanges (id, f_owner, f_flow, f_unit, "
+				+ "is_input, f_flow_property_factor, resulting_amount_value, "
+				+ "resulting_amount_formula, avoided_product, "
+				+ "f_default_provider, description, cost_value, cost_formula, "
+				+ "f_currency, distribution_type, parameter1_value, "
+				+ "parameter1_formula, parameter2_value, parameter2_formula, "
+				+ "parameter3_value, parameter3_formula, dq_entry, "
+				+ "base_uncertainty) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, "
+				+ "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				for (Exchange e : p.getExchanges()) {
+					PreparedStatement s = b.stmt;
+					s.setLong(1, e.getId());
+					s.setLong(2, p.getId());
+					setRef(s, 3, e.getFlow());
+					setRef(s, 4, e.getUnit());
+					s.setInt(5, e.isInput() ? 1 : 0);
+					setRef(s, 6, e.getFlowPropertyFactor());
+					s.setDouble(7, e.getAmountValue());
+					s.setString(8, e.getAmountFormula());
+					s.setInt(9, e.isAvoidedProduct() ? 1 : 0);
+					s.setLong(10, e.getDefaultProviderId());
+					s.setString(11, e.description);
+					setDouble(s, 12, e.costValue);
+					s.setString(13, e.costFormula);
+					setRef(s, 14, e.currency);
+					setUncertainty(s, 15, e.getUncertainty());
+					s.setString(22, e.getDqEntry());
+					setDouble(s, 23, e.getBaseUncertainty());
+					b.add();
+				}
+			}
+		}
+	}
+
+	private void writeAllocationFactors(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_allocation_factors (id, allocation_type, "
+				+ "value, f_process, f_product, f_exchange) "
+				+ "VALUES (?, ?, ?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				for (AllocationFactor f : p.getAllocationFactors()) {
+					PreparedStatement s = b.stmt;
+					s.setLong(1, f.getId());
+					setEnum(s, 2, f.getAllocationType());
+					s.setDouble(3, f.getValue());
+					s.setLong(4, p.getId());
+					s.setLong(5, f.getProductId());
+					setRef(s, 6, f.getExchange());
+					b.add();
+				}
+			}
+		}
+	}
+
+	private void writeParameters(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_parameters (id, ref_id, name, "
+				+ "description, version, last_change, f_category, "
+				+ "is_input_param, f_owner, scope, value, formula, "
+				+ "external_source, source_type, distribution_type, "
+				+ "parameter1_value, parameter1_formula, parameter2_value, "
+				+ "parameter2_formula, parameter3_value, parameter3_formula) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, "
+				+ "?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				for (Parameter param : p.getParameters()) {
+					PreparedStatement s = b.stmt;
+					s.setLong(1, param.getId());
+					s.setString(2, param.getRefId());
+					s.setString(3, param.getName());
+					s.setString(4, param.getDescription());
+					s.setLong(5, param.getVersion());
+					s.setLong(6, param.getLastChange());
+					setRef(s, 7, param.getCategory());
+					s.setInt(8, param.isInputParameter() ? 1 : 0);
+					s.setLong(9, p.getId());
+					setEnum(s, 10, param.getScope());
+					s.setDouble(11, param.getValue());
+					s.setString(12, param.getFormula());
+					s.setString(13, param.getExternalSource());
+					s.setString(14, param.getSourceType());
+					setUncertainty(s, 15, param.getUncertainty());
+					b.add();
+				}
+			}
+		}
+	}
+
+	private void writeSocialAspects(Connection con, List<Process> batch)
+			throws SQLException {
+		String sql = "INSERT INTO tbl_social_aspects (id, f_process, "
+				+ "f_indicator, activity_value, raw_amount, risk_level, "
+				+ "comment, f_source, quality) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+		try (Batch b = new Batch(con, sql)) {
+			for (Process p : batch) {
+				for (SocialAspect a : p.socialAspects) {
+					PreparedStatement s = b.stmt;
+					s.setLong(1, a.getId());
+					s.setLong(2, p.getId());
+					setRef(s, 3, a.indicator);
+					s.setDouble(4, a.activityValue);
+					s.setString(5, a.rawAmount);
+					setEnum(s, 6, a.riskLevel);
+					s.setString(7, a.comment);
+					setRef(s, 8, a.source);
+					s.setString(9, a.quality);
+					b.add();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the 7 uncertainty columns starting at the given index; the
+	 * distribution type is stored with its ordinal.
+	 */
+	private void setUncertainty(PreparedStatement s, int index, Uncertainty u)
+			throws SQLException {
+		if (u == null || u.getDistributionType() == null) {
+			s.setInt(index, 0);
+			for (int i = 1; i < 7; i += 2) {
+				s.setNull(index + i, Types.DOUBLE);
+				s.setNull(index + i + 1, Types.VARCHAR);
+			}
+			return;
+		}
+		s.setInt(index, u.getDistributionType().ordinal());
+		setDouble(s, index + 1, u.getParameter1Value());
+		s.setString(index + 2, u.getParameter1Formula());
+		setDouble(s, index + 3, u.getParameter2Value());
+		s.setString(index + 4, u.getParameter2Formula());
+		setDouble(s, index + 5, u.getParameter3Value());
+		s.setString(index + 6, u.getParameter3Formula());
+	}
+
+	private void setRef(PreparedStatement s, int index, AbstractEntity e)
+			throws SQLException {
+		if (e == null)
+			s.setNull(index, Types.BIGINT);
+		else
+			s.setLong(index, e.getId());
+	}
+
+	private void setEnum(PreparedStatement s, int index, Enum<?> e)
+			throws SQLException {
+		if (e == null)
+			s.setNull(index, Types.VARCHAR);
+		else
+			s.setString(index, e.name());
+	}
+
+	private void setDouble(PreparedStatement s, int index, Double d)
+			throws SQLException {
+		if (d == null)
+			s.setNull(index, Types.DOUBLE);
+		else
+			s.setDouble(index, d);
+	}
+
+	private void setDate(PreparedStatement s, int index, Date date)
+			throws SQLException {
+		if (date == null)
+			s.setNull(index, Types.DATE);
+		else
+			s.setDate(index, new java.sql.Date(date.getTime()));
+	}
+
+	/**
+	 * Notifies the caches about the processes that were written, i.e. that
+	 * have an ID of the database.
+	 */
+	private void notifyCaches(List<Process> processes) {
+		List<Long> ids = new ArrayList<>();
+		for (Process p : processes) {
+			if (p != null && p.getId() != 0L)
+				ids.add(p.getId());
+		}
+		if (ids.isEmpty())
+			return;
+		if (matrixCache != null) {
+			for (long id : ids)
+				matrixCache.registerNew(ModelType.PROCESS, id);
+		}
+		if (entityCache != null) {
+			entityCache.invalidateAll(Process.class, ids);
+			entityCache.invalidateAll(ProcessDescriptor.class, ids);
+		}
+	}
+
+	/**
+	 * A prepared statement that is executed in batches of
+	 * {@link ProcessWriter#MAX_BATCH_SIZE} rows; the last rows are executed
+	 * when it is closed.
+	 */
+	private static class Batch implements AutoCloseable {
+
+		final PreparedStatement stmt;
+		private int size;
+
+		Batch(Connection con, String sql) throws SQLException {
+			stmt = con.prepareStatement(sql);
+		}
+
+		void add() throws SQLException {
+			stmt.addBatch();
+			size++;
+			if (size % MAX_BATCH_SIZE == 0)
+				stmt.executeBatch();
+		}
+
+		@Override
+		public void close() throws SQLException {
+			try {
+				if (size % MAX_BATCH_SIZE != 0)
+					stmt.executeBatch();
+			} finally {
+				stmt.close();
+			}
+		}
+	}
+}
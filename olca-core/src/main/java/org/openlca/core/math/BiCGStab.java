@@ -0,0 +1,118 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+/**
+ * The stabilized bi-conjugate gradient method (BiCGSTAB) with a Jacobi
+ * (diagonal) preconditioner. Technology matrices are typically diagonal
+ * dominant so that this method converges fast and it only needs memory in
+ * the size of a few vectors. We use it when the fill-in of a sparse LU
+ * decomposition would be too large.
+ */
+final class BiCGStab {
+
+	private BiCGStab() {
+	}
+
+	/**
+	 * Solves A * x = b.
+	 *
+	 * @param a
+	 *            the matrix A
+	 * @param b
+	 *            the right hand side
+	 * @param x0
+	 *            an optional start vector (e.g. a previous solution); can be
+	 *            null
+	 * @param tol
+	 *            the relative tolerance of the residual: |b - Ax| <= tol * |b|
+	 * @param maxIterations
+	 *            the maximum number of iterations
+	 * @return the solution or null if the method did not converge
+	 */
+	static double[] solve(CSCMatrix a, double[] b, double[] x0, double tol,
+			int maxIterations) {
+		int n = b.length;
+		double[] x = x0 == null ? new double[n] : x0.clone();
+		double[] diag = new double[n];
+		for (int i = 0; i < n; i++) {
+			double d = a.get(i, i);
+			diag[i] = d == 0 ? 1 : d;
+		}
+		double bnorm = norm(b);
+		if (bnorm == 0)
+			return new double[n];
+		double limit = tol * bnorm;
+
+		double[] r = a.multiply(x);
+		for (int i = 0; i < n; i++)
+			r[i] = b[i] - r[i];
+		if (norm(r) <= limit)
+			return x;
+		double[] r0 = r.clone();
+		double[] p = new double[n];
+		double[] v = new double[n];
+		double[] ph = new double[n];
+		double[] sh = new double[n];
+		double rho = 1;
+		double alpha = 1;
+		double omega = 1;
+
+		for (int iter = 0; iter < maxIterations; iter++) {
+			double rhoNext = dot(r0, r);
+			if (rhoNext == 0) {
+				// r is orthogonal to the shadow residual; this happens
+				// for example when b is a unit vector as in our case: we
+				// restart with the current residual as shadow residual
+				r0 = r.clone();
+				rhoNext = dot(r0, r);
+				Arrays.fill(p, 0);
+				Arrays.fill(v, 0);
+				rho = alpha = omega = 1;
+			}
+			double beta = (rhoNext / rho) * (alpha / omega);
+			for (int i = 0; i < n; i++) {
+				p[i] = r[i] + beta * (p[i] - omega * v[i]);
+				ph[i] = p[i] / diag[i];
+			}
+			v = a.multiply(ph);
+			alpha = rhoNext / dot(r0, v);
+			double[] s = r;
+			for (int i = 0; i < n; i++)
+				s[i] = r[i] - alpha * v[i];
+			if (norm(s) <= limit) {
+				for (int i = 0; i < n; i++)
+					x[i] += alpha * ph[i];
+				return x;
+			}
+			for (int i = 0; i < n; i++)
+				sh[i] = s[i] / diag[i];
+			double[] t = a.multiply(sh);
+			double tt = dot(t, t);
+			if (tt == 0)
+				return null;
+			omega = dot(t, s) / tt;
+			for (int i = 0; i < n; i++) {
+				x[i] += alpha * ph[i] + omega * sh[i];
+				r[i] = s[i] - omega * t[i];
+			}
+			if (norm(r) <= limit)
+				return x;
+			if (omega == 0)
+				return null;
+			rho = rhoNext;
+		}
+		return null;
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+
+	private static double norm(double[] v) {
+		return Math.sqrt(dot(v, v));
+	}
+}
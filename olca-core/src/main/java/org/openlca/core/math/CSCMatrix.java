@@ -0,0 +1,217 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+/**
+ * A sparse matrix in compressed sparse column (CSC) format. The row indices of
+ * each column are stored in ascending order. This is the format that is used
+ * in the sparse factorizations of the {@link SparseSolver}.
+ *
+ * Setting a value that is not yet stored in the matrix requires to shift the
+ * following entries. Thus, you should fill large matrices via a
+ * {@link SparseMatrix} and compress it then.
+ */
+public class CSCMatrix implements IMatrix {
+
+	final int rows;
+	final int columns;
+
+	/**
+	 * Contains for each column j the position of the first entry of that
+	 * column in the row indices and values; columnPointers[columns] is the
+	 * number of stored entries.
+	 */
+	int[] columnPointers;
+	int[] rowIndices;
+	double[] values;
+
+	public CSCMatrix(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		columnPointers = new int[columns + 1];
+		rowIndices = new int[0];
+		values = new double[0];
+	}
+
+	/**
+	 * Creates a new matrix from the given data. The row indices of each column
+	 * must be sorted in ascending order. The arrays are not copied.
+	 */
+	public CSCMatrix(int rows, int columns, int[] columnPointers,
+			int[] rowIndices, double[] values) {
+		this.rows = rows;
+		this.columns = columns;
+		this.columnPointers = columnPointers;
+		this.rowIndices = rowIndices;
+		this.values = values;
+	}
+
+	/**
+	 * Converts the given matrix into the CSC format. If the given matrix is
+	 * already a CSC matrix it is directly returned.
+	 */
+	public static CSCMatrix of(IMatrix m) {
+		if (m instanceof CSCMatrix)
+			return (CSCMatrix) m;
+		if (m instanceof SparseMatrix)
+			return ((SparseMatrix) m).compress();
+		int rows = m.rows();
+		int cols = m.columns();
+		int[] pointers = new int[cols + 1];
+		int[] indices = new int[Math.max(cols, 16)];
+		double[] vals = new double[indices.length];
+		int nnz = 0;
+		for (int col = 0; col < cols; col++) {
+			pointers[col] = nnz;
+			double[] column = m.getColumn(col);
+			for (int row = 0; row < rows; row++) {
+				double val = column[row];
+				if (val == 0)
+					continue;
+				if (nnz == indices.length) {
+					indices = Arrays.copyOf(indices, 2 * nnz);
+					vals = Arrays.copyOf(vals, 2 * nnz);
+				}
+				indices[nnz] = row;
+				vals[nnz] = val;
+				nnz++;
+			}
+		}
+		pointers[cols] = nnz;
+		return new CSCMatrix(rows, cols, pointers,
+				Arrays.copyOf(indices, nnz), Arrays.copyOf(vals, nnz));
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	/** Returns the number of stored entries in this matrix. */
+	public int getNumberOfEntries() {
+		return columnPointers[columns];
+	}
+
+	@Override
+	public void set(int row, int col, double val) {
+		int start = columnPointers[col];
+		int end = columnPointers[col + 1];
+		int pos = Arrays.binarySearch(rowIndices, start, end, row);
+		if (pos >= 0) {
+			values[pos] = val;
+			return;
+		}
+		if (val == 0)
+			return;
+		pos = -(pos + 1);
+		int nnz = columnPointers[columns];
+		int[] newIndices = new int[nnz + 1];
+		double[] newValues = new double[nnz + 1];
+		System.arraycopy(rowIndices, 0, newIndices, 0, pos);
+		System.arraycopy(values, 0, newValues, 0, pos);
+		newIndices[pos] = row;
+		newValues[pos] = val;
+		System.arraycopy(rowIndices, pos, newIndices, pos + 1, nnz - pos);
+		System.arraycopy(values, pos, newValues, pos + 1, nnz - pos);
+		rowIndices = newIndices;
+		values = newValues;
+		for (int j = col + 1; j <= columns; j++)
+			columnPointers[j]++;
+	}
+
+	@Override
+	public double get(int row, int col) {
+		int pos = Arrays.binarySearch(rowIndices, columnPointers[col],
+				columnPointers[col + 1], row);
+		return pos < 0 ? 0 : values[pos];
+	}
+
+	@Override
+	public double[] getColumn(int i) {
+		double[] column = new double[rows];
+		for (int k = columnPointers[i]; k < columnPointers[i + 1]; k++)
+			column[rowIndices[k]] = values[k];
+		return column;
+	}
+
+	@Override
+	public double[] getRow(int i) {
+		double[] row = new double[columns];
+		for (int col = 0; col < columns; col++)
+			row[col] = get(i, col);
+		return row;
+	}
+
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
+	@Override
+	public void iterate(EntryIterator it) {
+		for (int col = 0; col < columns; col++) {
+			for (int k = columnPointers[col]; k < columnPointers[col + 1]; k++) {
+				double val = values[k];
+				if (val != 0)
+					it.next(rowIndices[k], col, val);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the matrix-vector product y = this * x in O(nnz).
+	 */
+	public double[] multiply(double[] x) {
+		double[] y = new double[rows];
+		for (int col = 0; col < columns; col++) {
+			double xj = x[col];
+			if (xj == 0)
+				continue;
+			for (int k = columnPointers[col]; k < columnPointers[col + 1]; k++)
+				y[rowIndices[k]] += values[k] * xj;
+		}
+		return y;
+	}
+
+	/**
+	 * Returns the transpose of this matrix as new CSC matrix.
+	 */
+	public CSCMatrix transpose() {
+		int nnz = columnPointers[columns];
+		int[] pointers = new int[rows + 1];
+		for (int k = 0; k < nnz; k++)
+			pointers[rowIndices[k] + 1]++;
+		for (int row = 0; row < rows; row++)
+			pointers[row + 1] += pointers[row];
+		int[] next = Arrays.copyOf(pointers, rows);
+		int[] indices = new int[nnz];
+		double[] vals = new double[nnz];
+		for (int col = 0; col < columns; col++) {
+			for (int k = columnPointers[col]; k < columnPointers[col + 1]; k++) {
+				int pos = next[rowIndices[k]]++;
+				indices[pos] = col;
+				vals[pos] = values[k];
+			}
+		}
+		return new CSCMatrix(columns, rows, pointers, indices, vals);
+	}
+
+	@Override
+	public CSCMatrix copy() {
+		return new CSCMatrix(rows, columns,
+				Arrays.copyOf(columnPointers, columnPointers.length),
+				Arrays.copyOf(rowIndices, rowIndices.length),
+				Arrays.copyOf(values, values.length));
+	}
+
+	@Override
+	public String toString() {
+		return "CSCMatrix[rows=" + rows + ", columns=" + columns
+				+ ", entries=" + getNumberOfEntries() + "]";
+	}
+}
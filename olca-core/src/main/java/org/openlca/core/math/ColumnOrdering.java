@@ -0,0 +1,261 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Calculates a fill-reducing, symmetric permutation of a square matrix for the
+ * sparse LU decomposition. Technology matrices are mostly block triangular: the
+ * supply chains only contain cycles in some parts of the system. Thus, we first
+ * permute the matrix into block triangular form by calculating the strongly
+ * connected components of the matrix graph (Tarjan's algorithm) which produces
+ * no fill-in at all outside of these blocks. Large blocks with cycles are
+ * typically formed by a few hub processes (like electricity or transport) that
+ * are used almost everywhere. We move the nodes with the highest degrees of
+ * such blocks to the end of the block and order the rest again recursively.
+ * Small blocks are ordered with a minimum degree heuristic on the pattern of
+ * A + A'.
+ */
+final class ColumnOrdering {
+
+	/**
+	 * Blocks up to this size are ordered with the minimum degree heuristic.
+	 */
+	private static final int MD_LIMIT = 1000;
+
+	private ColumnOrdering() {
+	}
+
+	/**
+	 * Returns the permutation q where q[k] is the original index of the
+	 * row/column at position k.
+	 */
+	static int[] of(CSCMatrix a) {
+		int n = a.columns;
+		int[] nodes = new int[n];
+		for (int i = 0; i < n; i++)
+			nodes[i] = i;
+		int[] order = new int[n];
+		int[] local = new int[n];
+		Arrays.fill(local, -1);
+		order(a, nodes, order, 0, local);
+		return order;
+	}
+
+	/**
+	 * Writes an ordering of the given nodes into order[offset..offset +
+	 * nodes.length). The local array maps the nodes of the matrix to their
+	 * positions in the current node set and contains -1 for all nodes that
+	 * are not in that set (it is reset to -1 when this method returns).
+	 */
+	private static void order(CSCMatrix a, int[] nodes, int[] order,
+			int offset, int[] local) {
+		for (int k = 0; k < nodes.length; k++)
+			local[nodes[k]] = k;
+		int[] blocks = components(a, nodes, local, order, offset);
+		for (int node : nodes)
+			local[node] = -1;
+		for (int b = 0; b < blocks.length - 1; b++) {
+			int start = blocks[b];
+			int end = blocks[b + 1];
+			if (end - start <= 2)
+				continue;
+			if (end - start <= MD_LIMIT)
+				minimumDegree(a, order, start, end, local);
+			else
+				split(a, order, start, end, local);
+		}
+	}
+
+	/**
+	 * An iterative version of Tarjan's algorithm on the sub-graph of the given
+	 * nodes. The components are written in reverse topological order to the
+	 * given array so that all entries of the permuted matrix are on or above
+	 * the diagonal blocks. Returns the start positions of the components
+	 * followed by the end position of the last component.
+	 */
+	private static int[] components(CSCMatrix a, int[] nodes, int[] local,
+			int[] order, int offset) {
+		int n = nodes.length;
+		int[] ptr = a.columnPointers;
+		int[] rowIdx = a.rowIndices;
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] calls = new int[n];
+		int[] edges = new int[n];
+		int[] blocks = new int[n + 1];
+		int blockCount = 0;
+		int sp = 0;
+		int counter = 0;
+		int pos = offset;
+		for (int s = 0; s < n; s++) {
+			if (index[s] != -1)
+				continue;
+			int csp = 0;
+			index[s] = low[s] = counter++;
+			stack[sp++] = s;
+			onStack[s] = true;
+			calls[csp] = s;
+			edges[csp++] = ptr[nodes[s]];
+			while (csp > 0) {
+				int v = calls[csp - 1];
+				int p = edges[csp - 1];
+				if (p < ptr[nodes[v] + 1]) {
+					edges[csp - 1]++;
+					int w = local[rowIdx[p]];
+					if (w < 0 || w == v)
+						continue;
+					if (index[w] == -1) {
+						index[w] = low[w] = counter++;
+						stack[sp++] = w;
+						onStack[w] = true;
+						calls[csp] = w;
+						edges[csp++] = ptr[nodes[w]];
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+					continue;
+				}
+				csp--;
+				if (csp > 0) {
+					int u = calls[csp - 1];
+					low[u] = Math.min(low[u], low[v]);
+				}
+				if (low[v] != index[v])
+					continue;
+				blocks[blockCount++] = pos;
+				int w;
+				do {
+					w = stack[--sp];
+					onStack[w] = false;
+					order[pos++] = nodes[w];
+				} while (w != v);
+			}
+		}
+		blocks[blockCount++] = pos;
+		return Arrays.copyOf(blocks, blockCount);
+	}
+
+	/**
+	 * Moves the nodes with the highest degrees of the block order[start..end)
+	 * to the end of the block and orders the remaining nodes recursively.
+	 */
+	private static void split(CSCMatrix a, int[] order, int start, int end,
+			int[] local) {
+		int m = end - start;
+		int[] nodes = Arrays.copyOfRange(order, start, end);
+		for (int k = 0; k < m; k++)
+			local[nodes[k]] = k;
+		int[] degrees = new int[m];
+		for (int k = 0; k < m; k++) {
+			int col = nodes[k];
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col
+					+ 1]; p++) {
+				int i = local[a.rowIndices[p]];
+				if (i < 0 || i == k)
+					continue;
+				degrees[k]++;
+				degrees[i]++;
+			}
+		}
+		for (int node : nodes)
+			local[node] = -1;
+		long[] keys = new long[m];
+		for (int k = 0; k < m; k++)
+			keys[k] = key(degrees[k], k);
+		Arrays.sort(keys);
+		int borderSize = Math.max(1, m / 200);
+		int[] rest = new int[m - borderSize];
+		for (int k = 0; k < rest.length; k++)
+			rest[k] = nodes[(int) keys[k]];
+		order(a, rest, order, start, local);
+		for (int k = rest.length; k < m; k++)
+			order[start + k] = nodes[(int) keys[k]];
+	}
+
+	/**
+	 * Orders the nodes in order[start..end) with a minimum degree heuristic
+	 * on the explicit elimination graph. When the next node has a degree
+	 * above a dense limit or when the elimination graph grows too large, the
+	 * remaining nodes are ordered to the end of the block by their degree.
+	 * This bounds the memory and time of the ordering.
+	 */
+	private static void minimumDegree(CSCMatrix a, int[] order, int start,
+			int end, int[] local) {
+		int m = end - start;
+		int[] nodes = Arrays.copyOfRange(order, start, end);
+		for (int k = 0; k < m; k++)
+			local[nodes[k]] = k;
+		TIntHashSet[] adj = new TIntHashSet[m];
+		for (int k = 0; k < m; k++)
+			adj[k] = new TIntHashSet();
+		for (int k = 0; k < m; k++) {
+			int col = nodes[k];
+			for (int p = a.columnPointers[col]; p < a.columnPointers[col
+					+ 1]; p++) {
+				int i = local[a.rowIndices[p]];
+				if (i < 0 || i == k)
+					continue;
+				adj[k].add(i);
+				adj[i].add(k);
+			}
+		}
+		PriorityQueue<Long> heap = new PriorityQueue<>();
+		long size = 0;
+		for (int k = 0; k < m; k++) {
+			heap.add(key(adj[k].size(), k));
+			size += adj[k].size();
+		}
+		int denseLimit = Math.max(16, (int) (10 * Math.sqrt(m)));
+		long maxSize = 20 * size + 1000;
+		boolean[] eliminated = new boolean[m];
+		int pos = start;
+		while (!heap.isEmpty()) {
+			long next = heap.poll();
+			int k = (int) next;
+			int degree = (int) (next >>> 32);
+			if (eliminated[k] || adj[k].size() != degree)
+				continue;
+			if (degree > denseLimit || size > maxSize)
+				break;
+			eliminated[k] = true;
+			order[pos++] = nodes[k];
+			int[] neighbors = adj[k].toArray();
+			adj[k] = null;
+			size -= 2 * neighbors.length;
+			for (int u : neighbors)
+				adj[u].remove(k);
+			for (int u : neighbors) {
+				for (int w : neighbors) {
+					if (w != u && adj[u].add(w))
+						size++;
+				}
+				heap.add(key(adj[u].size(), u));
+			}
+		}
+		if (pos < end) {
+			// the dense rest, ordered by degree
+			long[] rest = new long[end - pos];
+			int r = 0;
+			for (int k = 0; k < m; k++) {
+				if (!eliminated[k])
+					rest[r++] = key(adj[k].size(), k);
+			}
+			Arrays.sort(rest);
+			for (long next : rest)
+				order[pos++] = nodes[(int) next];
+		}
+		for (int node : nodes)
+			local[node] = -1;
+	}
+
+	private static long key(int degree, int node) {
+		return ((long) degree << 32) | node;
+	}
+
+}
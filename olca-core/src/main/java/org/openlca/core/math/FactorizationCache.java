@@ -0,0 +1,95 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+import org.openlca.core.matrix.ExchangeMatrix;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A cache of factorized technology matrices. The factorizations are stored
+ * under a content hash of the respective exchange matrix so that calculations
+ * with the same technology matrix (e.g. project variants that only differ in
+ * the demand amount or unit, or parameter sweeps that do not change the
+ * technology matrix) can reuse the factorization instead of decomposing the
+ * matrix again. The values are softly referenced so that they can be garbage
+ * collected when the memory gets low. A cache should be only used with a
+ * single solver. The cache can be shared between threads; a matrix is only
+ * factorized once when it is requested concurrently.
+ */
+public class FactorizationCache {
+
+	private final Cache<Key, IFactorization> cache;
+
+	public FactorizationCache() {
+		this(10);
+	}
+
+	/**
+	 * Creates a new cache that holds at most the given number of
+	 * factorizations.
+	 */
+	public FactorizationCache(int maxSize) {
+		cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.softValues()
+				.build();
+	}
+
+	/**
+	 * Returns the factorization of the given matrix from the cache or creates
+	 * it with the given solver if it is not yet cached. Other threads that
+	 * request the same matrix in the meantime wait for this factorization.
+	 *
+	 * @param solver
+	 *            the solver that is used to factorize the matrix
+	 * @param matrix
+	 *            the exchange matrix from which the real matrix was created
+	 * @param realMatrix
+	 *            the real matrix with the (evaluated) values of the exchange
+	 *            matrix
+	 */
+	public IFactorization get(IMatrixSolver solver, ExchangeMatrix matrix,
+			IMatrix realMatrix) {
+		Key key = new Key(matrix.contentHash());
+		try {
+			return cache.get(key, () -> solver.factorize(realMatrix));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new RuntimeException("failed to factorize matrix", cause);
+		}
+	}
+
+	public void clear() {
+		cache.invalidateAll();
+	}
+
+	private static class Key {
+
+		private final long[] hash;
+
+		Key(long[] hash) {
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(hash);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return Arrays.equals(hash, other.hash);
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package org.openlca.core.math;
+
+/**
+ * A factorization of a (technology) matrix A that can be used to solve the
+ * system of linear equations A * x = b for multiple right hand sides without
+ * decomposing A again. Implementations are thread-safe for solving. A
+ * factorization is only valid as long as the matrix from which it was created
+ * is not modified.
+ */
+public interface IFactorization {
+
+	/** Returns the number of rows (= columns) of the factorized matrix. */
+	int size();
+
+	/**
+	 * Solves the system A * s = d where d is a vector with a single non-zero
+	 * entry.
+	 *
+	 * @param idx
+	 *            the index of the entry in the demand vector d
+	 * @param d
+	 *            the demand value
+	 * @return the scaling vector s
+	 */
+	default double[] solve(int idx, double d) {
+		double[] b = new double[size()];
+		b[idx] = d;
+		return solve(b);
+	}
+
+	/**
+	 * Solves the system A * x = b. The vector b is not modified.
+	 */
+	double[] solve(double[] b);
+
+	/**
+	 * Solves the transposed system A' * x = b. The vector b is not modified.
+	 * With this, we can calculate a row i of M * inv(A) for some matrix M via
+	 * x = inv(A') * M[i, :]' without calculating the inverse of A.
+	 */
+	double[] solveTransposed(double[] b);
+
+}
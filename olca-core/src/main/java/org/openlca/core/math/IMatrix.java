@@ -26,6 +26,33 @@ public interface IMatrix {
 	/** Creates a copy of this matrix and returns it */
 	IMatrix copy();
 
+	/**
+	 * Returns true if this matrix stores only its non-zero entries so that
+	 * {@link #iterate(EntryIterator)} runs in O(number of non-zero entries).
+	 */
+	default boolean isSparse() {
+		return false;
+	}
+
+	/**
+	 * Calls the given iterator for each non-zero entry of this matrix. The
+	 * default implementation checks every cell of the matrix; sparse matrices
+	 * override this so that only the stored entries are visited. The matrix
+	 * must not be modified during the iteration.
+	 */
+	default void iterate(EntryIterator it) {
+		int rows = rows();
+		int cols = columns();
+		for (int col = 0; col < cols; col++) {
+			double[] column = getColumn(col);
+			for (int row = 0; row < rows; row++) {
+				double val = column[row];
+				if (val != 0)
+					it.next(row, col, val);
+			}
+		}
+	}
+
 	default void setValues(double[][] values) {
 		if (values == null)
 			return;
@@ -42,4 +69,11 @@ public interface IMatrix {
 			}
 		}
 	}
+
+	@FunctionalInterface
+	interface EntryIterator {
+
+		void next(int row, int col, double val);
+
+	}
 }
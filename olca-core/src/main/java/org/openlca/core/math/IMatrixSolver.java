@@ -31,24 +31,86 @@ public interface IMatrixSolver {
 	IMatrix invert(IMatrix a);
 
 	/**
-	 * Returns the matrix product of the given matrices.
+	 * Creates a factorization of the given matrix that can be used to solve
+	 * systems with this matrix for multiple right hand sides. The default
+	 * implementation delegates to {@link #solve(IMatrix, int, double)} for
+	 * demand vectors with a single entry and calculates the inverse on the
+	 * first call with another right hand side. Solvers should override this
+	 * with a real decomposition. The factorization is only valid as long as
+	 * the given matrix is not modified.
+	 */
+	default IFactorization factorize(IMatrix a) {
+		return new InverseFactorization(this, a);
+	}
+
+	/**
+	 * Returns the matrix product of the given matrices. If one of the
+	 * matrices is sparse, only its non-zero entries are visited.
 	 */
 	default IMatrix multiply(IMatrix a, IMatrix b) {
 		if (a == null || b == null)
 			return null;
 		if (a.columns() != b.rows())
 			throw new IllegalArgumentException("a.columns != b.rows");
-		IMatrix r = getMatrixFactory().create(a.rows(), b.columns());
-		for (int row = 0; row < a.rows(); row++) {
-			for (int col = 0; col < b.columns(); col++) {
-				double val = 0;
-				for (int k = 0; k < a.columns(); k++) {
-					val += a.get(row, k) * b.get(k, col);
+		double[][] r = new double[a.rows()][];
+		if (a.isSparse()) {
+			// r[i, :] += a[i, k] * b[k, :]
+			double[][] bRows = new double[b.rows()][];
+			a.iterate((i, k, val) -> {
+				double[] bRow = bRows[k];
+				if (bRow == null) {
+					bRow = b.getRow(k);
+					bRows[k] = bRow;
+				}
+				double[] rRow = r[i];
+				if (rRow == null) {
+					rRow = new double[b.columns()];
+					r[i] = rRow;
+				}
+				for (int j = 0; j < rRow.length; j++)
+					rRow[j] += val * bRow[j];
+			});
+		} else if (b.isSparse()) {
+			// r[:, j] += a[:, k] * b[k, j]
+			double[][] aColumns = new double[a.columns()][];
+			b.iterate((k, j, val) -> {
+				double[] aColumn = aColumns[k];
+				if (aColumn == null) {
+					aColumn = a.getColumn(k);
+					aColumns[k] = aColumn;
+				}
+				for (int i = 0; i < aColumn.length; i++) {
+					if (aColumn[i] == 0)
+						continue;
+					if (r[i] == null)
+						r[i] = new double[b.columns()];
+					r[i][j] += aColumn[i] * val;
 				}
-				r.set(row, col, val);
+			});
+		} else {
+			for (int row = 0; row < a.rows(); row++) {
+				double[] rRow = new double[b.columns()];
+				for (int col = 0; col < b.columns(); col++) {
+					double val = 0;
+					for (int k = 0; k < a.columns(); k++) {
+						val += a.get(row, k) * b.get(k, col);
+					}
+					rRow[col] = val;
+				}
+				r[row] = rRow;
 			}
 		}
-		return r;
+		IMatrix m = getMatrixFactory().create(a.rows(), b.columns());
+		for (int row = 0; row < r.length; row++) {
+			double[] rRow = r[row];
+			if (rRow == null)
+				continue;
+			for (int col = 0; col < rRow.length; col++) {
+				if (rRow[col] != 0)
+					m.set(row, col, rRow[col]);
+			}
+		}
+		return m;
 	}
 
 	/**
@@ -61,6 +123,13 @@ public interface IMatrixSolver {
 		int cols = Math.min(m.columns(), v.length);
 		int rows = m.rows();
 		double[] r = new double[rows];
+		if (m.isSparse()) {
+			m.iterate((row, col, val) -> {
+				if (col < cols)
+					r[row] += val * v[col];
+			});
+			return r;
+		}
 		for (int row = 0; row < rows; row++) {
 			for (int col = 0; col < cols; col++) {
 				r[row] += (m.get(row, col) * v[col]);
@@ -74,6 +143,12 @@ public interface IMatrixSolver {
 	 * to m * diag(v) but can be implemented in a more efficient way.
 	 */
 	default void scaleColumns(IMatrix m, double[] v) {
+		if (m.isSparse()) {
+			// the entries are iterated on a copy as setting a value to zero
+			// may remove the entry from the matrix
+			m.copy().iterate((row, col, val) -> m.set(row, col, v[col] * val));
+			return;
+		}
 		for (int row = 0; row < m.rows(); row++) {
 			for (int col = 0; col < m.columns(); col++) {
 				m.set(row, col, v[col] * m.get(row, col));
@@ -0,0 +1,195 @@
+package org.openlca.core.math;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.matrix.CostVector;
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.ModelType;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.expressions.FormulaInterpreter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * Calculates a product system and keeps the inventory, matrices, and the
+ * factorization of the technology matrix so that the result can be updated
+ * when single processes of the system are changed (e.g. in an edit and
+ * recalculate loop). For a changed process, only its columns in the
+ * technology and intervention matrices are rebuilt and the factorization is
+ * updated with a low-rank correction (see {@link UpdatedFactorization})
+ * instead of decomposing the technology matrix again. When the indices of
+ * the product system would change (e.g. when a process gets a new elementary
+ * flow) or the rank of the accumulated corrections gets too large, the system
+ * is calculated from scratch.
+ */
+public class IncrementalCalculator {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final MatrixCache cache;
+	private final IMatrixSolver solver;
+
+	private int maxRank = 32;
+
+	private CalculationSetup setup;
+	private Inventory inventory;
+	private InventoryMatrix matrix;
+	private ImpactMatrix impactMatrix;
+
+	/**
+	 * The technology matrix of the base factorization; it is not modified.
+	 * After the first update, the technology matrix of the inventory matrix is
+	 * a copy of it.
+	 */
+	private IMatrix baseMatrix;
+	private IFactorization baseFactorization;
+
+	/** The differences of the changed columns to the base matrix. */
+	private final TIntObjectHashMap<double[]> deltas = new TIntObjectHashMap<>();
+
+	/** The base factorization with the corrections of the changed columns. */
+	private IFactorization factorization;
+
+	public IncrementalCalculator(MatrixCache cache, IMatrixSolver solver) {
+		this.cache = cache;
+		this.solver = solver;
+	}
+
+	/**
+	 * Sets the maximum number of changed columns for which the factorization
+	 * of the technology matrix is updated; when more columns were changed,
+	 * the matrix is factorized again. The default value is 32.
+	 */
+	public void setMaxRank(int maxRank) {
+		this.maxRank = maxRank;
+	}
+
+	/**
+	 * Calculates the given setup from scratch and keeps the data for
+	 * subsequent updates.
+	 */
+	public SimpleResult calculate(CalculationSetup setup) {
+		log.trace("calculate product system - incremental base");
+		this.setup = setup;
+		IDatabase db = cache.getDatabase();
+		inventory = DataStructures.createInventory(setup, cache);
+		FormulaInterpreter interpreter = DataStructures.createParameterTable(
+				db, setup, inventory).createInterpreter();
+		matrix = inventory.createMatrix(solver.getMatrixFactory(),
+				interpreter);
+		impactMatrix = null;
+		if (setup.impactMethod != null) {
+			ImpactTable impactTable = ImpactTable.build(cache,
+					setup.impactMethod.getId(), inventory.flowIndex);
+			impactMatrix = impactTable.createMatrix(
+					solver.getMatrixFactory(), interpreter);
+		}
+		factorize();
+		return result();
+	}
+
+	/**
+	 * Updates the result after the process with the given ID was changed. The
+	 * process is evicted from the matrix cache so that its current exchanges
+	 * are loaded from the database. Changes of other processes since the last
+	 * calculation are not considered (they should be updated one after
+	 * another).
+	 */
+	public SimpleResult update(long processId) {
+		if (inventory == null)
+			throw new IllegalStateException(
+					"no base calculation; call calculate first");
+		cache.evict(ModelType.PROCESS, processId);
+		int[] columns = inventory.update(cache, processId);
+		if (columns == null) {
+			log.trace("indices changed: recalculate product system");
+			return calculate(setup);
+		}
+		if (columns.length == 0)
+			return result();
+
+		// the parameters of the process could have been changed too
+		FormulaInterpreter interpreter = DataStructures.createParameterTable(
+				cache.getDatabase(), setup, inventory).createInterpreter();
+		if (matrix.technologyMatrix == baseMatrix) {
+			// the base factorization can refer to the base matrix; thus, it
+			// is copied once and the copy is then updated in place
+			matrix.technologyMatrix = baseMatrix.copy();
+		}
+		inventory.updateMatrix(matrix, columns, interpreter);
+		if (!updateFactorization(columns)) {
+			log.trace("factorize the updated technology matrix");
+			factorize();
+		}
+		return result();
+	}
+
+	/**
+	 * Updates the differences of the given columns to the base matrix and
+	 * creates a corrected factorization. The corrections are always related
+	 * to the base factorization so that the rank does not grow when the same
+	 * process is changed again. Returns false if the matrix should be
+	 * factorized again.
+	 */
+	private boolean updateFactorization(int[] columns) {
+		for (int col : columns) {
+			double[] delta = matrix.technologyMatrix.getColumn(col);
+			double[] base = baseMatrix.getColumn(col);
+			boolean isChanged = false;
+			for (int i = 0; i < delta.length; i++) {
+				delta[i] -= base[i];
+				if (delta[i] != 0)
+					isChanged = true;
+			}
+			if (isChanged)
+				deltas.put(col, delta);
+			else
+				deltas.remove(col);
+		}
+		if (deltas.isEmpty()) {
+			factorization = baseFactorization;
+			return true;
+		}
+		if (deltas.size() > maxRank)
+			return false;
+		int[] changed = deltas.keys();
+		double[][] values = new double[changed.length][];
+		for (int j = 0; j < changed.length; j++)
+			values[j] = deltas.get(changed[j]);
+		UpdatedFactorization previous = factorization instanceof UpdatedFactorization
+				? (UpdatedFactorization) factorization
+				: null;
+		UpdatedFactorization f = UpdatedFactorization.of(baseFactorization,
+				changed, values, previous);
+		if (f == null)
+			return false;
+		factorization = f;
+		return true;
+	}
+
+	private void factorize() {
+		baseMatrix = matrix.technologyMatrix;
+		baseFactorization = solver.factorize(baseMatrix);
+		factorization = baseFactorization;
+		deltas.clear();
+	}
+
+	private SimpleResult result() {
+		LcaCalculator calculator = new LcaCalculator(solver, matrix);
+		calculator.setFactorization(factorization);
+		if (impactMatrix != null)
+			calculator.setImpactMatrix(impactMatrix);
+		if (setup.withCosts) {
+			CostVector costVector = CostVector.build(inventory,
+					cache.getDatabase());
+			if (!costVector.isEmpty())
+				calculator.setCostVector(costVector);
+		}
+		return calculator.calculateSimple();
+	}
+}
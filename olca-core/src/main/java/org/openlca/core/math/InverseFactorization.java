@@ -0,0 +1,63 @@
+package org.openlca.core.math;
+
+/**
+ * The default factorization of a solver (see
+ * {@link IMatrixSolver#factorize(IMatrix)}). It delegates to the solver for
+ * demand vectors with a single entry and calculates the inverse of the matrix
+ * on the first call with another right hand side. Upstream results are then
+ * calculated with a matrix-matrix multiplication with the inverse (see
+ * {@link LcaCalculator#getUpstreamResults(IMatrix, double[])}) as it was done
+ * before the factorizations were introduced.
+ */
+final class InverseFactorization implements IFactorization {
+
+	private final IMatrixSolver solver;
+	private final IMatrix a;
+	private IMatrix inverse;
+
+	InverseFactorization(IMatrixSolver solver, IMatrix a) {
+		this.solver = solver;
+		this.a = a;
+	}
+
+	@Override
+	public int size() {
+		return a.rows();
+	}
+
+	@Override
+	public double[] solve(int idx, double d) {
+		return solver.solve(a, idx, d);
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		return solver.multiply(getInverse(), b);
+	}
+
+	@Override
+	public double[] solveTransposed(double[] b) {
+		// x = inv(A)' * b; the entries of the inverse are read directly as
+		// copying the columns would be expensive for dense matrices
+		IMatrix inverse = getInverse();
+		int n = inverse.rows();
+		double[] x = new double[inverse.columns()];
+		if (inverse.isSparse()) {
+			inverse.iterate((row, col, val) -> x[col] += val * b[row]);
+			return x;
+		}
+		for (int j = 0; j < x.length; j++) {
+			double sum = 0;
+			for (int i = 0; i < n; i++)
+				sum += inverse.get(i, j) * b[i];
+			x[j] = sum;
+		}
+		return x;
+	}
+
+	synchronized IMatrix getInverse() {
+		if (inverse == null)
+			inverse = solver.invert(a);
+		return inverse;
+	}
+}
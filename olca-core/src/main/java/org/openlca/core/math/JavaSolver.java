@@ -2,9 +2,11 @@ package org.openlca.core.math;
 
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
 import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DecompositionSolver;
 import org.apache.commons.math3.linear.LUDecomposition;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
 
 public class JavaSolver implements IMatrixSolver {
 
@@ -17,8 +19,75 @@ public class JavaSolver implements IMatrixSolver {
 		return x.toArray();
 	}
 
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		RealMatrix A = unwrap(a);
+		LUDecomposition lu = new LUDecomposition(A);
+		DecompositionSolver solver = lu.getSolver();
+		int size = a.rows();
+		return new IFactorization() {
+
+			private double[][] l;
+			private double[][] u;
+			private int[] pivot;
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public double[] solve(double[] b) {
+				return solver.solve(new ArrayRealVector(b)).toArray();
+			}
+
+			/**
+			 * With P * A = L * U, we have A' = U' * L' * P. Thus, we solve
+			 * U' * y = b and L' * z = y and get x = P' * z.
+			 */
+			@Override
+			public double[] solveTransposed(double[] b) {
+				if (!solver.isNonSingular())
+					throw new SingularMatrixException();
+				initTransposed();
+				double[] y = b.clone();
+				for (int k = 0; k < size; k++) {
+					double[] uk = u[k];
+					y[k] /= uk[k];
+					double yk = y[k];
+					if (yk == 0)
+						continue;
+					for (int i = k + 1; i < size; i++)
+						y[i] -= uk[i] * yk;
+				}
+				for (int k = size - 1; k >= 0; k--) {
+					double[] lk = l[k];
+					double yk = y[k];
+					if (yk == 0)
+						continue;
+					for (int i = 0; i < k; i++)
+						y[i] -= lk[i] * yk;
+				}
+				double[] x = new double[size];
+				for (int i = 0; i < size; i++)
+					x[pivot[i]] = y[i];
+				return x;
+			}
+
+			private synchronized void initTransposed() {
+				if (l != null)
+					return;
+				u = lu.getU().getData();
+				pivot = lu.getPivot();
+				l = lu.getL().getData();
+			}
+		};
+	}
+
 	@Override
 	public double[] multiply(IMatrix m, double[] v) {
+		if (!(m instanceof JavaMatrix))
+			return IMatrixSolver.super.multiply(m, v);
 		RealMatrix A = unwrap(m);
 		RealMatrix b = new Array2DRowRealMatrix(v.length, 1);
 		b.setColumn(0, v);
@@ -34,6 +103,8 @@ public class JavaSolver implements IMatrixSolver {
 
 	@Override
 	public IMatrix multiply(IMatrix a, IMatrix b) {
+		if (!(a instanceof JavaMatrix) || !(b instanceof JavaMatrix))
+			return IMatrixSolver.super.multiply(a, b);
 		RealMatrix _a = unwrap(a);
 		RealMatrix _b = unwrap(b);
 		RealMatrix c = _a.multiply(_b);
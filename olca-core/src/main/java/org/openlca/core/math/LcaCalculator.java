@@ -17,6 +17,7 @@ public class LcaCalculator {
 
 	private ImpactMatrix impactMatrix;
 	private CostVector costVector;
+	private IFactorization factorization;
 
 	public LcaCalculator(IMatrixSolver solver, InventoryMatrix inventory) {
 		this.solver = solver;
@@ -31,6 +32,21 @@ public class LcaCalculator {
 		this.costVector = costVector;
 	}
 
+	/**
+	 * Sets the factorization of the technology matrix (e.g. from a
+	 * {@link FactorizationCache}). If no factorization is set, it is created
+	 * with the solver when it is needed.
+	 */
+	public void setFactorization(IFactorization factorization) {
+		this.factorization = factorization;
+	}
+
+	private IFactorization getFactorization() {
+		if (factorization == null)
+			factorization = solver.factorize(inventory.technologyMatrix);
+		return factorization;
+	}
+
 	public SimpleResult calculateSimple() {
 
 		SimpleResult result = new SimpleResult();
@@ -40,7 +56,7 @@ public class LcaCalculator {
 		IMatrix techMatrix = inventory.technologyMatrix;
 		TechIndex productIndex = inventory.productIndex;
 		int idx = productIndex.getIndex(productIndex.getRefFlow());
-		double[] s = solver.solve(techMatrix, idx, productIndex.getDemand());
+		double[] s = getFactorization().solve(idx, productIndex.getDemand());
 		result.scalingFactors = s;
 		result.totalRequirements = getTotalRequirements(techMatrix, s);
 		IMatrix enviMatrix = inventory.interventionMatrix;
@@ -68,7 +84,7 @@ public class LcaCalculator {
 		IMatrix techMatrix = inventory.technologyMatrix;
 		TechIndex productIndex = inventory.productIndex;
 		int idx = productIndex.getIndex(productIndex.getRefFlow());
-		double[] s = solver.solve(techMatrix, idx, productIndex.getDemand());
+		double[] s = getFactorization().solve(idx, productIndex.getDemand());
 		result.scalingFactors = s;
 		result.totalRequirements = getTotalRequirements(techMatrix, s);
 
@@ -94,6 +110,23 @@ public class LcaCalculator {
 	}
 
 	public FullResult calculateFull() {
+		return calculateFull(false);
+	}
+
+	/**
+	 * Calculates a full result where the upstream flow and LCIA category
+	 * results are not materialized but calculated on demand from the
+	 * factorization of the technology matrix (see {@link UpstreamMatrix}).
+	 * This is useful for large systems where the full upstream matrices would
+	 * not fit into memory. The inventory matrix must not be modified while the
+	 * result is used. Setting a value in one of the upstream matrices
+	 * materializes that matrix.
+	 */
+	public FullResult calculateLazyFull() {
+		return calculateFull(true);
+	}
+
+	private FullResult calculateFull(boolean lazy) {
 
 		FullResult result = new FullResult();
 		result.flowIndex = inventory.flowIndex;
@@ -102,8 +135,7 @@ public class LcaCalculator {
 		TechIndex productIdx = inventory.productIndex;
 		IMatrix techMatrix = inventory.technologyMatrix;
 		IMatrix enviMatrix = inventory.interventionMatrix;
-		IMatrix inverse = solver.invert(techMatrix);
-		double[] scalingVector = getScalingVector(inverse, productIdx);
+		double[] scalingVector = getScalingVector();
 		result.scalingFactors = scalingVector;
 
 		// direct results
@@ -114,10 +146,9 @@ public class LcaCalculator {
 
 		// upstream results
 		double[] demands = getRealDemands(result.totalRequirements, productIdx);
-		IMatrix totalResult = solver.multiply(enviMatrix, inverse);
-		if (costVector == null)
-			inverse = null; // allow GC
-		solver.scaleColumns(totalResult, demands);
+		IMatrix totalResult = lazy
+				? getLazyUpstreamResults(enviMatrix, demands)
+				: getUpstreamResults(enviMatrix, demands);
 		result.upstreamFlowResults = totalResult;
 		int refIdx = productIdx.getIndex(productIdx.getRefFlow());
 		result.totalFlowResults = totalResult.getColumn(refIdx);
@@ -126,8 +157,13 @@ public class LcaCalculator {
 
 		if (impactMatrix != null) {
 			addDirectImpacts(result);
+			// we first calculate C * B so that we only need to solve the
+			// transposed systems for the (few) LCIA categories
 			IMatrix factors = impactMatrix.factorMatrix;
-			IMatrix totalImpactResult = solver.multiply(factors, totalResult);
+			IMatrix assessedEnvi = solver.multiply(factors, enviMatrix);
+			IMatrix totalImpactResult = lazy
+					? getLazyUpstreamResults(assessedEnvi, demands)
+					: getUpstreamResults(assessedEnvi, demands);
 			result.upstreamImpactResults = totalImpactResult;
 			// total impacts = upstream result of reference product
 			result.impactIndex = impactMatrix.categoryIndex;
@@ -138,8 +174,7 @@ public class LcaCalculator {
 			result.hasCostResults = true;
 			addDirectCosts(result, scalingVector);
 			IMatrix costValues = costVector.asMatrix(solver.getMatrixFactory());
-			IMatrix upstreamCosts = solver.multiply(costValues, inverse);
-			solver.scaleColumns(upstreamCosts, demands);
+			IMatrix upstreamCosts = getUpstreamResults(costValues, demands);
 			result.totalCostResult = upstreamCosts.get(0, refIdx);
 			result.upstreamCostResults = upstreamCosts;
 		}
@@ -148,6 +183,73 @@ public class LcaCalculator {
 
 	}
 
+	/**
+	 * Calculates the scaling vector for the demand of the reference product
+	 * with the factorization of the technology matrix.
+	 */
+	public double[] getScalingVector() {
+		TechIndex productIdx = inventory.productIndex;
+		int idx = productIdx.getIndex(productIdx.getRefFlow());
+		return getFactorization().solve(idx, productIdx.getDemand());
+	}
+
+	/**
+	 * Calculates the upstream results of the given matrix M (e.g. the
+	 * intervention matrix B or the assessed intervention matrix C * B):
+	 * 
+	 * U = M * inv(A) * diag(d)
+	 * 
+	 * where A is the technology matrix and d the vector with the real
+	 * demands. Instead of calculating the inverse of A, we solve the
+	 * transposed system A' * x = M[i, :]' for each non-zero row i of M with the
+	 * factorization of A. Thus, only the result matrix is held in memory. If
+	 * the solver does not provide a factorization, the result is calculated
+	 * with the inverse of A instead.
+	 */
+	public IMatrix getUpstreamResults(IMatrix m, double[] demands) {
+		IFactorization factorization = getFactorization();
+		if (factorization instanceof InverseFactorization) {
+			IMatrix inverse = ((InverseFactorization) factorization)
+					.getInverse();
+			IMatrix result = solver.multiply(m, inverse);
+			solver.scaleColumns(result, demands);
+			return result;
+		}
+		int rows = m.rows();
+		int cols = m.columns();
+		IMatrix result = solver.getMatrixFactory().create(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			double[] values = m.getRow(row);
+			if (isZero(values))
+				continue;
+			double[] x = factorization.solveTransposed(values);
+			for (int col = 0; col < cols; col++) {
+				double val = x[col] * demands[col];
+				if (val != 0)
+					result.set(row, col, val);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Same as {@link #getUpstreamResults(IMatrix, double[])} but the rows and
+	 * columns of the result are calculated when they are accessed (see
+	 * {@link UpstreamMatrix}). The given matrix must not be modified.
+	 */
+	public UpstreamMatrix getLazyUpstreamResults(IMatrix m, double[] demands) {
+		return new UpstreamMatrix(m, getFactorization(), demands,
+				solver.getMatrixFactory(), UpstreamMatrix.DEFAULT_CACHE_SIZE);
+	}
+
+	private boolean isZero(double[] values) {
+		for (double val : values) {
+			if (val != 0)
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Calculates the scaling vector for the reference product i from the given
 	 * inverse of the technology matrix:
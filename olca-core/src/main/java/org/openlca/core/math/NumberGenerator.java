@@ -1,10 +1,31 @@
 package org.openlca.core.math;
 
-import java.util.Random;
-
+import java.util.SplittableRandom;
+
+/**
+ * Generates random numbers of an uncertainty distribution. The numbers can be
+ * generated from a given random source so that the values of a simulation can
+ * be reproduced with a seed and that independent random streams can be used
+ * in parallel simulations. A generator itself is not thread-safe.
+ */
 public abstract class NumberGenerator {
 
-	public abstract double next();
+	private SplittableRandom random;
+
+	/**
+	 * Generates the next number with the internal (unseeded) random source of
+	 * this generator.
+	 */
+	public double next() {
+		if (random == null)
+			random = new SplittableRandom();
+		return next(random);
+	}
+
+	/**
+	 * Generates the next number with the given random source.
+	 */
+	public abstract double next(SplittableRandom random);
 
 	public static NumberGenerator normal(double mean, double standardDeviation) {
 		return new Normal(mean, standardDeviation);
@@ -33,19 +54,33 @@ public abstract class NumberGenerator {
 
 	private static class Normal extends NumberGenerator {
 
-		private final Random rand;
 		private final double mean;
 		private final double std;
 
 		Normal(double mean, double std) {
 			this.mean = mean;
 			this.std = std;
-			this.rand = new Random();
 		}
 
 		@Override
-		public double next() {
-			return rand.nextGaussian() * std + mean;
+		public double next(SplittableRandom random) {
+			return gaussian(random) * std + mean;
+		}
+
+		/**
+		 * Generates a standard normal distributed value with the polar method
+		 * of Marsaglia (as in java.util.Random#nextGaussian but without
+		 * caching the second value, so that the generated values only depend
+		 * on the state of the random source).
+		 */
+		private static double gaussian(SplittableRandom random) {
+			double v1, v2, s;
+			do {
+				v1 = 2 * random.nextDouble() - 1;
+				v2 = 2 * random.nextDouble() - 1;
+				s = v1 * v1 + v2 * v2;
+			} while (s >= 1 || s == 0);
+			return v1 * Math.sqrt(-2 * Math.log(s) / s);
 		}
 	}
 
@@ -74,26 +109,24 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
-			return Math.exp(normal.next()) * factor;
+		public double next(SplittableRandom random) {
+			return Math.exp(normal.next(random)) * factor;
 		}
 	}
 
 	private static class Uniform extends NumberGenerator {
 
-		private final Random rand;
 		private final double min;
 		private final double range;
 
 		Uniform(double min, double max) {
 			this.min = min;
 			this.range = max - min;
-			this.rand = new Random();
 		}
 
 		@Override
-		public double next() {
-			return min + rand.nextDouble() * range;
+		public double next(SplittableRandom random) {
+			return min + random.nextDouble() * range;
 		}
 	}
 
@@ -113,10 +146,10 @@ public abstract class NumberGenerator {
 		 * see http://en.wikipedia.org/wiki/Triangular_distribution
 		 */
 		@Override
-		public double next() {
+		public double next(SplittableRandom random) {
 			if (max == min)
 				return mode;
-			double u = Math.random();
+			double u = random.nextDouble();
 			double fMode = (mode - min) / (max - min);
 			if (u <= fMode)
 				return min + Math.sqrt(u * (max - min) * (mode - min));
@@ -133,7 +166,7 @@ public abstract class NumberGenerator {
 		}
 
 		@Override
-		public double next() {
+		public double next(SplittableRandom random) {
 			return val;
 		}
 
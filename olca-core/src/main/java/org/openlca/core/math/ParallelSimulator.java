@@ -0,0 +1,234 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.results.BaseResult;
+import org.openlca.core.results.ConvergenceCheck;
+import org.openlca.core.results.SimpleResult;
+import org.openlca.core.results.SimulationAccumulator;
+import org.openlca.core.results.SimulationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a Monte-Carlo-Simulation on one or more threads (see
+ * {@link #setThreads(int)}). Each thread has its own copy of the inventory,
+ * parameter, and impact tables and matrices. Each run gets an independent
+ * random stream that is split from a (seeded) root generator in the order of
+ * the runs. The results are appended to the simulation result in the order
+ * of the runs. Thus, for a given seed the results are the same regardless of
+ * the number of threads and are equal to the results of the sequential
+ * {@link Simulator} with that seed. Instead of storing the results of all
+ * runs, they can be also accumulated into online statistics.
+ */
+public class ParallelSimulator {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final CalculationSetup setup;
+	private final MatrixCache cache;
+	private final IMatrixSolver solver;
+
+	private int threads = 1;
+	private SplittableRandom random;
+
+	public ParallelSimulator(CalculationSetup setup, MatrixCache cache,
+			IMatrixSolver solver) {
+		this.setup = setup;
+		this.cache = cache;
+		this.solver = solver;
+	}
+
+	/**
+	 * Sets the number of worker threads. The default is 1, i.e. the runs are
+	 * calculated one after another. More threads should be only used when
+	 * the matrix solver is thread-safe (like the {@link JavaSolver} and the
+	 * {@link SparseSolver}), e.g. with the number of available processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException(
+					"the number of threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the seed of the random number generation so that the simulation
+	 * results can be reproduced.
+	 */
+	public void setSeed(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Runs the simulation with the given number of iterations. Runs that fail
+	 * (e.g. because the matrix is singular) are not added to the result.
+	 */
+	public SimulationResult run(int runs) {
+		Tables tables = setUp();
+		SimulationResult result = new SimulationResult();
+		tables.initIndices(result);
+		result.ensureCapacity(runs);
+		execute(tables, runs, r -> {
+			result.appendFlowResults(r.totalFlowResults);
+			if (result.hasImpactResults())
+				result.appendImpactResults(r.totalImpactResults);
+			return true;
+		});
+		return result;
+	}
+
+	/**
+	 * Runs the simulation and accumulates the results into online statistics
+	 * without storing the results of the single runs. If a convergence check
+	 * is given, the simulation stops when the check is reached; otherwise the
+	 * given number of runs is calculated. As the check is done in the order of
+	 * the runs, the number of calculated runs is also reproducible for a
+	 * given seed.
+	 * 
+	 * @param maxRuns
+	 *            the maximum number of iterations
+	 * @param check
+	 *            an optional convergence check, can be null
+	 */
+	public SimulationAccumulator accumulate(int maxRuns,
+			ConvergenceCheck check) {
+		Tables tables = setUp();
+		SimulationAccumulator result = new SimulationAccumulator();
+		tables.initIndices(result);
+		execute(tables, maxRuns, r -> {
+			result.appendFlowResults(r.totalFlowResults);
+			if (result.hasImpactResults())
+				result.appendImpactResults(r.totalImpactResults);
+			return check == null || !check.isReached(result);
+		});
+		return result;
+	}
+
+	private Tables setUp() {
+		log.trace("set up inventory");
+		Tables tables = new Tables();
+		tables.inventory = DataStructures.createInventory(setup, cache);
+		tables.parameters = DataStructures.createParameterTable(
+				cache.getDatabase(), setup, tables.inventory);
+		if (setup.impactMethod != null) {
+			ImpactTable impacts = ImpactTable.build(cache,
+					setup.impactMethod.getId(), tables.inventory.flowIndex);
+			if (!impacts.isEmpty())
+				tables.impacts = impacts;
+		}
+		return tables;
+	}
+
+	private void execute(Tables tables, int runs, Sink sink) {
+		if (random == null)
+			random = new SplittableRandom();
+		SplittableRandom[] randoms = new SplittableRandom[runs];
+		for (int i = 0; i < runs; i++)
+			randoms[i] = random.split();
+		Merger merger = new Merger(sink, runs);
+		AtomicInteger nextRun = new AtomicInteger();
+		int workers = Math.max(1, Math.min(threads, runs));
+		log.trace("run {} iterations on {} threads", runs, workers);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < workers; w++) {
+				futures.add(pool.submit(() -> {
+					SimulationState state = new SimulationState(solver,
+							tables.inventory, tables.parameters, tables.impacts);
+					int run;
+					while (!merger.stopped
+							&& (run = nextRun.getAndIncrement()) < runs) {
+						SimpleResult r = null;
+						try {
+							r = state.next(randoms[run]);
+						} catch (Throwable e) {
+							log.trace("simulation run failed", e);
+						}
+						randoms[run] = null;
+						merger.add(run, r);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("parallel simulation failed", e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static class Tables {
+		Inventory inventory;
+		ParameterTable parameters;
+		ImpactTable impacts;
+
+		void initIndices(BaseResult result) {
+			result.productIndex = inventory.productIndex;
+			result.flowIndex = inventory.flowIndex;
+			if (impacts != null)
+				result.impactIndex = impacts.categoryIndex;
+		}
+	}
+
+	/**
+	 * Receives the results of the successful runs in the order of the runs.
+	 * Returns false when the simulation should stop.
+	 */
+	@FunctionalInterface
+	private interface Sink {
+		boolean accept(SimpleResult result);
+	}
+
+	/**
+	 * Passes the results of the runs to the sink in the order of the runs.
+	 * Results that arrive before their predecessors are buffered until the
+	 * predecessors are passed. When the sink returns false, the following
+	 * results are ignored and the workers stop.
+	 */
+	private static class Merger {
+
+		private final Sink sink;
+		private final SimpleResult[] pending;
+		private final boolean[] done;
+		private int next = 0;
+		private volatile boolean stopped;
+
+		Merger(Sink sink, int runs) {
+			this.sink = sink;
+			this.pending = new SimpleResult[runs];
+			this.done = new boolean[runs];
+		}
+
+		synchronized void add(int run, SimpleResult r) {
+			if (stopped)
+				return;
+			pending[run] = r;
+			done[run] = true;
+			while (next < done.length && done[next]) {
+				SimpleResult p = pending[next];
+				pending[next] = null;
+				next++;
+				if (p == null)
+					continue;
+				if (!sink.accept(p)) {
+					stopped = true;
+					return;
+				}
+			}
+		}
+	}
+}
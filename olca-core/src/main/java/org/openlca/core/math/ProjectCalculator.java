@@ -1,32 +1,97 @@
 package org.openlca.core.math;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.openlca.core.database.EntityCache;
 import org.openlca.core.database.ImpactMethodDao;
 import org.openlca.core.database.NwSetDao;
 import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.ProductSystem;
 import org.openlca.core.model.Project;
 import org.openlca.core.model.ProjectVariant;
 import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
 import org.openlca.core.model.descriptors.NwSetDescriptor;
 import org.openlca.core.results.ContributionResult;
 import org.openlca.core.results.ProjectResultProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Calculates the variants of a project. The variants can be calculated in
+ * parallel (see {@link #setThreads(int)}) where the threads share the matrix
+ * cache and a cache of the factorized technology matrices (variants of the
+ * same product system often have the same technology matrix). The results are
+ * added to the project result in the order of the variants.
+ */
 public class ProjectCalculator {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
 	private final IMatrixSolver solver;
 	private final MatrixCache matrixCache;
 
+	private int threads = 1;
+	private ProgressListener listener;
+	private volatile boolean canceled;
+
 	public ProjectCalculator(MatrixCache matrixCache, IMatrixSolver solver) {
 		this.matrixCache = matrixCache;
 		this.solver = solver;
 	}
 
+	/**
+	 * Sets the number of worker threads. The default is 1, i.e. the variants
+	 * are calculated one after another. More threads should be only used
+	 * when the matrix solver is thread-safe (like the {@link JavaSolver} and
+	 * the {@link SparseSolver}), e.g. with the number of available
+	 * processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException(
+					"the number of threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets a listener that is called when the calculation of a variant is
+	 * finished. The listener is called from the worker threads.
+	 */
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Cancels the calculation: the variants that are currently calculated are
+	 * finished but no further variants are started.
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * Calculates the variants of the given project. If the calculation is
+	 * canceled, the returned result only contains the variants that were
+	 * finished before. If the calculation of a variant fails, no further
+	 * variants are started and the exception of that variant is thrown.
+	 */
 	public ProjectResultProvider solve(Project project, EntityCache cache) {
-		ProjectResultProvider result = new ProjectResultProvider(cache);
-		SystemCalculator calculator = new SystemCalculator(matrixCache, solver);
+		canceled = false;
 		ImpactMethodDescriptor method = getImpactMethod(project);
 		NwSetDescriptor nwSet = getNwSet(project);
-		for (ProjectVariant v : project.getVariants()) {
+		List<ProjectVariant> variants = project.getVariants();
+		List<CalculationSetup> setups = new ArrayList<>();
+		for (ProjectVariant v : variants) {
 			CalculationSetup setup = new CalculationSetup(v.getProductSystem());
 			setup.setUnit(v.getUnit());
 			setup.setFlowPropertyFactor(v.getFlowPropertyFactor());
@@ -36,12 +101,79 @@ public class ProjectCalculator {
 			setup.nwSet = nwSet;
 			setup.parameterRedefs.addAll(v.getParameterRedefs());
 			setup.withCosts = true;
-			ContributionResult cr = calculator.calculateContributions(setup);
-			result.addResult(v, cr);
+			load(v.getProductSystem());
+			setups.add(setup);
+		}
+
+		ContributionResult[] results = new ContributionResult[setups.size()];
+		SystemCalculator calculator = new SystemCalculator(matrixCache, solver);
+		calculator.setFactorizationCache(new FactorizationCache());
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger finished = new AtomicInteger();
+		int count = setups.size();
+		int workers = Math.max(1, Math.min(threads, count));
+		log.trace("calculate {} project variants on {} threads", count,
+				workers);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < workers; w++) {
+				futures.add(pool.submit(() -> {
+					int i;
+					try {
+						while (!canceled
+								&& (i = next.getAndIncrement()) < count) {
+							results[i] = calculator.calculateContributions(
+									setups.get(i));
+							if (listener != null)
+								listener.variantFinished(variants.get(i),
+										finished.incrementAndGet(), count);
+						}
+					} catch (Throwable e) {
+						// the other workers should not start further variants
+						canceled = true;
+						throw e;
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			canceled = true;
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("project calculation interrupted", e);
+		} catch (ExecutionException e) {
+			canceled = true;
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException("project calculation failed", cause);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		ProjectResultProvider result = new ProjectResultProvider(cache);
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] != null)
+				result.addResult(variants.get(i), results[i]);
 		}
 		return result;
 	}
 
+	/**
+	 * Loads the lazy fields of the given product system in the calling thread
+	 * so that the worker threads only read them.
+	 */
+	private void load(ProductSystem system) {
+		if (system == null)
+			return;
+		system.getProcesses().size();
+		system.getProcessLinks().size();
+		system.getParameterRedefs().size();
+	}
+
 	private ImpactMethodDescriptor getImpactMethod(Project project) {
 		if (project.getImpactMethodId() == null)
 			return null;
@@ -55,4 +187,24 @@ public class ProjectCalculator {
 		NwSetDao dao = new NwSetDao(matrixCache.getDatabase());
 		return dao.getDescriptor(project.getNwSetId());
 	}
+
+	/**
+	 * A listener for the progress of a project calculation.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+
+		/**
+		 * Called when the calculation of the given variant is finished.
+		 *
+		 * @param variant
+		 *            the variant that was calculated
+		 * @param finished
+		 *            the number of variants that are finished
+		 * @param total
+		 *            the total number of variants
+		 */
+		void variantFinished(ProjectVariant variant, int finished, int total);
+
+	}
 }
@@ -0,0 +1,191 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ParameterGraph;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.results.ScenarioResult;
+import org.openlca.core.results.SimpleResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Calculates the LCIA results of a product system for a set of scenarios
+ * where each scenario is a set of parameter redefinitions. The indices and
+ * tables of the product system are built only once. For each scenario, only
+ * the formulas that depend on the redefined parameters are evaluated again
+ * (see {@link ParameterGraph}) and the factorization of the technology matrix
+ * is reused when the technology matrix is the same as in another scenario.
+ * The scenarios can be calculated in parallel (see {@link #setThreads(int)})
+ * where each thread has its own copies of the tables and matrices.
+ */
+public class ScenarioCalculator {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	private final MatrixCache cache;
+	private final IMatrixSolver solver;
+
+	private int threads = 1;
+	private FactorizationCache factorizations;
+
+	public ScenarioCalculator(MatrixCache cache, IMatrixSolver solver) {
+		this.cache = cache;
+		this.solver = solver;
+	}
+
+	/**
+	 * Sets the number of worker threads. The default is 1, which means that
+	 * the scenarios are calculated sequentially in the calling thread. Note
+	 * that the matrix solver must be thread-safe when more than one thread is
+	 * used.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException(
+					"the number of threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the cache for the factorizations of the technology matrices. If no
+	 * cache is set, a new cache is created for each batch.
+	 */
+	public void setFactorizationCache(FactorizationCache factorizations) {
+		this.factorizations = factorizations;
+	}
+
+	/**
+	 * Calculates the given scenarios. The parameter redefinitions of the setup
+	 * are applied to all scenarios; the redefinitions of a scenario are
+	 * applied on top of these.
+	 *
+	 * @param setup
+	 *            the calculation setup; an LCIA method is required
+	 * @param scenarios
+	 *            the parameter redefinitions of the scenarios
+	 * @return the LCIA results with a row for each scenario in the order of
+	 *         the given scenarios
+	 */
+	public ScenarioResult calculate(CalculationSetup setup,
+			List<? extends List<ParameterRedef>> scenarios) {
+		if (setup.impactMethod == null)
+			throw new IllegalArgumentException(
+					"an LCIA method is required for a scenario calculation");
+		log.trace("set up inventory for {} scenarios", scenarios.size());
+		Inventory inventory = DataStructures.createInventory(setup, cache);
+		ParameterTable parameters = DataStructures.createParameterTable(
+				cache.getDatabase(), setup, inventory);
+		ImpactTable impacts = ImpactTable.build(cache,
+				setup.impactMethod.getId(), inventory.flowIndex);
+		ScenarioResult result = new ScenarioResult(scenarios.size(),
+				impacts.categoryIndex.size());
+		result.productIndex = inventory.productIndex;
+		result.flowIndex = inventory.flowIndex;
+		result.impactIndex = impacts.categoryIndex;
+		if (scenarios.isEmpty())
+			return result;
+
+		FactorizationCache factorizations = this.factorizations != null
+				? this.factorizations
+				: new FactorizationCache();
+		AtomicInteger next = new AtomicInteger();
+		Runnable task = () -> {
+			Worker worker = new Worker(inventory, parameters, impacts,
+					factorizations);
+			int i;
+			while ((i = next.getAndIncrement()) < scenarios.size()) {
+				try {
+					result.setResults(i, worker.calculate(scenarios.get(i)));
+				} catch (Throwable e) {
+					log.error("calculation of scenario " + i + " failed", e);
+					result.setFailed(i);
+				}
+			}
+		};
+		int workers = Math.max(1, Math.min(threads, scenarios.size()));
+		if (workers == 1) {
+			task.run();
+			return result;
+		}
+		log.trace("calculate scenarios on {} threads", workers);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int w = 0; w < workers; w++)
+				futures.add(pool.submit(task));
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException("scenario calculation failed", e);
+		} finally {
+			pool.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Holds the copies of the tables and matrices of a thread.
+	 */
+	private class Worker {
+
+		private final Inventory inventory;
+		private final ImpactTable impacts;
+		private final ParameterGraph graph;
+		private final IMatrixFactory<?> factory;
+		private final ImpactMatrix impactMatrix;
+		private final FactorizationCache factorizations;
+
+		Worker(Inventory inventory, ParameterTable parameters,
+				ImpactTable impacts, FactorizationCache factorizations) {
+			this.inventory = inventory.copy();
+			this.impacts = impacts.copy();
+			this.factorizations = factorizations;
+			graph = ParameterGraph.build(parameters.copy(), this.inventory,
+					this.impacts);
+			graph.update();
+			factory = solver.getMatrixFactory();
+			impactMatrix = this.impacts.createMatrix(factory);
+		}
+
+		double[] calculate(List<ParameterRedef> redefs) {
+			graph.reset();
+			if (redefs != null) {
+				for (ParameterRedef redef : redefs) {
+					Long context = redef.getContextId();
+					long scope = context == null ? 0 : context;
+					if (!graph.setValue(scope, redef.getName(),
+							redef.getValue()))
+						log.warn("unknown parameter {} in scope {}",
+								redef.getName(), scope);
+				}
+			}
+			graph.update();
+			// a new matrix is created for each scenario as the factorization
+			// may be shared with other scenarios and is only valid as long as
+			// its matrix is not modified
+			InventoryMatrix inventoryMatrix = inventory.createMatrix(factory);
+			impacts.apply(impactMatrix);
+			LcaCalculator calculator = new LcaCalculator(solver,
+					inventoryMatrix);
+			calculator.setImpactMatrix(impactMatrix);
+			calculator.setFactorization(factorizations.get(solver,
+					inventory.technologyMatrix,
+					inventoryMatrix.technologyMatrix));
+			SimpleResult r = calculator.calculateSimple();
+			return r.totalImpactResults;
+		}
+	}
+}
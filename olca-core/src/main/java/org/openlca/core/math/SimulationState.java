@@ -0,0 +1,66 @@
+package org.openlca.core.math;
+
+import java.util.SplittableRandom;
+
+import org.openlca.core.matrix.ImpactMatrix;
+import org.openlca.core.matrix.ImpactTable;
+import org.openlca.core.matrix.Inventory;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.ParameterGraph;
+import org.openlca.core.matrix.ParameterTable;
+import org.openlca.core.results.SimpleResult;
+
+/**
+ * The mutable state of a simulation worker. The inventory, parameter and
+ * impact tables are copied from the given base tables so that each worker can
+ * evaluate formulas and generate values without interfering with other
+ * workers. The generated values only depend on the random source that is
+ * passed into a run and not on the runs that were calculated before. The
+ * formulas are evaluated via a parameter graph so that in each run only the
+ * formulas that depend on parameters with uncertainties are evaluated again.
+ */
+class SimulationState {
+
+	private final IMatrixSolver solver;
+	private final Inventory inventory;
+	private final ParameterGraph parameterGraph;
+	private final InventoryMatrix inventoryMatrix;
+	private final ImpactTable impactTable;
+	private final ImpactMatrix impactMatrix;
+
+	/**
+	 * Creates a new state from the given base tables. The impact table is
+	 * optional and can be null.
+	 */
+	SimulationState(IMatrixSolver solver, Inventory inventory,
+			ParameterTable parameterTable, ImpactTable impactTable) {
+		this.solver = solver;
+		IMatrixFactory<?> factory = solver.getMatrixFactory();
+		this.inventory = inventory.copy();
+		this.inventoryMatrix = this.inventory.createMatrix(factory);
+		if (impactTable == null) {
+			this.impactTable = null;
+			this.impactMatrix = null;
+		} else {
+			this.impactTable = impactTable.copy();
+			this.impactMatrix = this.impactTable.createMatrix(factory);
+		}
+		this.parameterGraph = ParameterGraph.build(parameterTable.copy(),
+				this.inventory, this.impactTable);
+	}
+
+	/**
+	 * Generates new values from the given random source and calculates the
+	 * product system with these values.
+	 */
+	SimpleResult next(SplittableRandom random) {
+		parameterGraph.simulate(random);
+		inventory.simulate(inventoryMatrix, null, random);
+		LcaCalculator calculator = new LcaCalculator(solver, inventoryMatrix);
+		if (impactMatrix != null) {
+			impactTable.simulate(impactMatrix, null, random);
+			calculator.setImpactMatrix(impactMatrix);
+		}
+		return calculator.calculateSimple();
+	}
+}
@@ -1,20 +1,22 @@
 package org.openlca.core.math;
 
-import org.openlca.core.matrix.ImpactMatrix;
+import java.util.SplittableRandom;
+
 import org.openlca.core.matrix.ImpactTable;
 import org.openlca.core.matrix.Inventory;
-import org.openlca.core.matrix.InventoryMatrix;
 import org.openlca.core.matrix.ParameterTable;
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.descriptors.ImpactMethodDescriptor;
+import org.openlca.core.results.BaseResult;
 import org.openlca.core.results.SimpleResult;
+import org.openlca.core.results.SimulationAccumulator;
 import org.openlca.core.results.SimulationResult;
-import org.openlca.expressions.FormulaInterpreter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A calculator for Monte-Carlo-Simulations.
+ * A calculator for Monte-Carlo-Simulations. For a given seed, the results are
+ * the same as the results of the {@link ParallelSimulator} with that seed.
  */
 public class Simulator {
 
@@ -22,15 +24,13 @@ public class Simulator {
 
 	private ImpactMethodDescriptor impactMethod;
 	private MatrixCache cache;
-	private final IMatrixFactory<?> factory;
 	private final IMatrixSolver matrixSolver;
 
 	private SimulationResult result;
-	private Inventory inventory;
-	private ParameterTable parameterTable;
-	private InventoryMatrix inventoryMatrix;
-	private ImpactTable impactTable;
-	private ImpactMatrix impactMatrix;
+	private SimulationAccumulator accumulator;
+	private boolean accumulatorMode;
+	private SimulationState state;
+	private SplittableRandom random;
 	private CalculationSetup setup;
 
 	public Simulator(CalculationSetup setup, MatrixCache database,
@@ -38,33 +38,56 @@ public class Simulator {
 		this.impactMethod = setup.impactMethod;
 		this.cache = database;
 		this.setup = setup;
-		this.factory = solver.getMatrixFactory();
 		this.matrixSolver = solver;
 	}
 
+	/**
+	 * Sets the seed of the random number generation so that the simulation
+	 * results can be reproduced. This has to be called before the first run.
+	 */
+	public void setSeed(long seed) {
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * In the accumulator mode, the results of the runs are only accumulated
+	 * into online statistics (see {@link #getAccumulator()}) and the results
+	 * of the single runs are not stored. This has to be set before the first
+	 * run.
+	 */
+	public void setAccumulatorMode(boolean accumulatorMode) {
+		this.accumulatorMode = accumulatorMode;
+	}
+
+	/**
+	 * Returns the results of the single runs; this is null in the accumulator
+	 * mode.
+	 */
 	public SimulationResult getResult() {
 		return result;
 	}
 
+	/**
+	 * Returns the accumulated statistics of the runs in the accumulator mode;
+	 * otherwise null.
+	 */
+	public SimulationAccumulator getAccumulator() {
+		return accumulator;
+	}
+
 	/**
 	 * Generates random numbers and calculates the product system. Returns true
 	 * if the calculation was successfully done, otherwise false (this is the
 	 * case when the resulting matrix is singular).
 	 */
 	public boolean nextRun() {
-		if (inventory == null || inventoryMatrix == null)
+		if (state == null)
 			setUp();
+		// each run gets its own random stream, also when it fails
+		SplittableRandom runRandom = random.split();
 		try {
 			log.trace("next simulation run");
-			FormulaInterpreter interpreter = parameterTable.simulate();
-			inventory.simulate(inventoryMatrix, interpreter);
-			LcaCalculator solver = new LcaCalculator(matrixSolver,
-					inventoryMatrix);
-			if (impactMatrix != null) {
-				impactTable.simulate(impactMatrix, interpreter);
-				solver.setImpactMatrix(impactMatrix);
-			}
-			SimpleResult result = solver.calculateSimple();
+			SimpleResult result = state.next(runRandom);
 			appendResults(result);
 			return true;
 		} catch (Throwable e) {
@@ -73,30 +96,42 @@ public class Simulator {
 		}
 	}
 
-	private void appendResults(SimpleResult result) {
-		this.result.appendFlowResults(result.totalFlowResults);
-		if (this.result.hasImpactResults())
-			this.result.appendImpactResults(result.totalImpactResults);
+	private void appendResults(SimpleResult r) {
+		if (accumulator != null) {
+			accumulator.appendFlowResults(r.totalFlowResults);
+			if (accumulator.hasImpactResults())
+				accumulator.appendImpactResults(r.totalImpactResults);
+		} else {
+			result.appendFlowResults(r.totalFlowResults);
+			if (result.hasImpactResults())
+				result.appendImpactResults(r.totalImpactResults);
+		}
 	}
 
 	private void setUp() {
 		log.trace("set up inventory");
-		inventory = DataStructures.createInventory(setup, cache);
-		parameterTable = DataStructures.createParameterTable(cache.getDatabase(),
-				setup, inventory);
-		inventoryMatrix = inventory.createMatrix(factory);
-		result = new SimulationResult();
-		result.productIndex = inventory.productIndex;
-		result.flowIndex = inventory.flowIndex;
+		if (random == null)
+			random = new SplittableRandom();
+		Inventory inventory = DataStructures.createInventory(setup, cache);
+		ParameterTable parameterTable = DataStructures.createParameterTable(
+				cache.getDatabase(), setup, inventory);
+		BaseResult r;
+		if (accumulatorMode)
+			r = accumulator = new SimulationAccumulator();
+		else
+			r = result = new SimulationResult();
+		r.productIndex = inventory.productIndex;
+		r.flowIndex = inventory.flowIndex;
+		ImpactTable impactTable = null;
 		if (impactMethod != null) {
-			ImpactTable impactTable = ImpactTable.build(cache,
-					impactMethod.getId(), inventory.flowIndex);
-			if (impactTable.isEmpty()) {
-				return;
-			}
-			this.impactTable = impactTable;
-			this.impactMatrix = impactTable.createMatrix(factory);
-			result.impactIndex = impactTable.categoryIndex;
+			impactTable = ImpactTable.build(cache, impactMethod.getId(),
+					inventory.flowIndex);
+			if (impactTable.isEmpty())
+				impactTable = null;
+			else
+				r.impactIndex = impactTable.categoryIndex;
 		}
+		state = new SimulationState(matrixSolver, inventory, parameterTable,
+				impactTable);
 	}
 }
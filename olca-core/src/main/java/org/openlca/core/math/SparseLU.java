@@ -0,0 +1,272 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+/**
+ * A left-looking sparse LU decomposition with threshold partial pivoting
+ * (Gilbert-Peierls algorithm, see T. Davis: Direct Methods for Sparse Linear
+ * Systems, SIAM 2006). Computes L * U = P * A * Q where Q is a given
+ * fill-reducing column permutation and P the row permutation that results
+ * from pivoting. Pivots on the diagonal are preferred if they are not smaller
+ * than the given tolerance times the largest candidate in the column, so that
+ * for technology matrices the row permutation normally follows the column
+ * permutation.
+ */
+final class SparseLU implements IFactorization {
+
+	final int n;
+	final int[] q;
+	final int[] pinv;
+
+	// L is unit lower triangular; the diagonal is stored as first entry of
+	// each column
+	int[] lp;
+	int[] li;
+	double[] lx;
+
+	// U is upper triangular; the diagonal is stored as last entry of each
+	// column
+	int[] up;
+	int[] ui;
+	double[] ux;
+
+	private SparseLU(int n, int[] q) {
+		this.n = n;
+		this.q = q;
+		this.pinv = new int[n];
+	}
+
+	/**
+	 * Factorizes the given matrix. Returns null if the number of entries in
+	 * the factors would exceed the given limit.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the matrix is singular.
+	 */
+	static SparseLU factorize(CSCMatrix a, int[] q, double tol,
+			long maxEntries) {
+		if (a.rows != a.columns)
+			throw new IllegalArgumentException("the matrix is not square");
+		int n = a.columns;
+		SparseLU lu = new SparseLU(n, q);
+		int capacity = 4 * a.getNumberOfEntries() + n;
+		lu.lp = new int[n + 1];
+		lu.li = new int[capacity];
+		lu.lx = new double[capacity];
+		lu.up = new int[n + 1];
+		lu.ui = new int[capacity];
+		lu.ux = new double[capacity];
+		int[] pinv = lu.pinv;
+		Arrays.fill(pinv, -1);
+		double[] x = new double[n];
+		int[] xi = new int[2 * n];
+		int[] marks = new int[n];
+		int lnz = 0;
+		int unz = 0;
+		for (int k = 0; k < n; k++) {
+			lu.lp[k] = lnz;
+			lu.up[k] = unz;
+			if ((long) lnz + unz + 2 * n > maxEntries)
+				return null;
+			if (lnz + n > lu.li.length) {
+				int size = Math.max(2 * lu.li.length, lnz + n);
+				lu.li = Arrays.copyOf(lu.li, size);
+				lu.lx = Arrays.copyOf(lu.lx, size);
+			}
+			if (unz + n > lu.ui.length) {
+				int size = Math.max(2 * lu.ui.length, unz + n);
+				lu.ui = Arrays.copyOf(lu.ui, size);
+				lu.ux = Arrays.copyOf(lu.ux, size);
+			}
+			int col = q[k];
+			int top = lu.spsolve(a, col, xi, x, marks, k + 1);
+
+			// find the pivot
+			int ipiv = -1;
+			double max = -1;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				if (pinv[i] < 0) {
+					double t = Math.abs(x[i]);
+					if (t > max) {
+						max = t;
+						ipiv = i;
+					}
+				} else {
+					lu.ui[unz] = pinv[i];
+					lu.ux[unz++] = x[i];
+				}
+			}
+			if (ipiv == -1 || max <= 0)
+				throw new IllegalArgumentException("the matrix is singular");
+			if (pinv[col] < 0 && Math.abs(x[col]) >= max * tol)
+				ipiv = col;
+
+			// divide by the pivot
+			double pivot = x[ipiv];
+			lu.ui[unz] = k;
+			lu.ux[unz++] = pivot;
+			pinv[ipiv] = k;
+			lu.li[lnz] = ipiv;
+			lu.lx[lnz++] = 1;
+			for (int p = top; p < n; p++) {
+				int i = xi[p];
+				if (pinv[i] < 0) {
+					lu.li[lnz] = i;
+					lu.lx[lnz++] = x[i] / pivot;
+				}
+				x[i] = 0;
+			}
+		}
+		lu.lp[n] = lnz;
+		lu.up[n] = unz;
+		for (int p = 0; p < lnz; p++)
+			lu.li[p] = pinv[lu.li[p]];
+		lu.li = Arrays.copyOf(lu.li, lnz);
+		lu.lx = Arrays.copyOf(lu.lx, lnz);
+		lu.ui = Arrays.copyOf(lu.ui, unz);
+		lu.ux = Arrays.copyOf(lu.ux, unz);
+		return lu;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	/** Returns the number of entries in L and U. */
+	long getNumberOfEntries() {
+		return (long) lp[n] + up[n];
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		double[] y = new double[n];
+		for (int k = 0; k < n; k++)
+			y[pinv[k]] = b[k];
+		lsolve(y);
+		usolve(y);
+		double[] x = new double[n];
+		for (int k = 0; k < n; k++)
+			x[q[k]] = y[k];
+		return x;
+	}
+
+	@Override
+	public double[] solveTransposed(double[] b) {
+		double[] y = new double[n];
+		for (int k = 0; k < n; k++)
+			y[k] = b[q[k]];
+		utsolve(y);
+		ltsolve(y);
+		double[] x = new double[n];
+		for (int k = 0; k < n; k++)
+			x[k] = y[pinv[k]];
+		return x;
+	}
+
+	private void lsolve(double[] x) {
+		for (int j = 0; j < n; j++) {
+			double xj = x[j];
+			if (xj == 0)
+				continue;
+			for (int p = lp[j] + 1; p < lp[j + 1]; p++)
+				x[li[p]] -= lx[p] * xj;
+		}
+	}
+
+	private void usolve(double[] x) {
+		for (int j = n - 1; j >= 0; j--) {
+			x[j] /= ux[up[j + 1] - 1];
+			double xj = x[j];
+			if (xj == 0)
+				continue;
+			for (int p = up[j]; p < up[j + 1] - 1; p++)
+				x[ui[p]] -= ux[p] * xj;
+		}
+	}
+
+	private void utsolve(double[] x) {
+		for (int j = 0; j < n; j++) {
+			for (int p = up[j]; p < up[j + 1] - 1; p++)
+				x[j] -= ux[p] * x[ui[p]];
+			x[j] /= ux[up[j + 1] - 1];
+		}
+	}
+
+	private void ltsolve(double[] x) {
+		for (int j = n - 1; j >= 0; j--) {
+			for (int p = lp[j] + 1; p < lp[j + 1]; p++)
+				x[j] -= lx[p] * x[li[p]];
+		}
+	}
+
+	/**
+	 * Solves L * x = A(:, col) for the sparse right hand side where L is the
+	 * part of the factor that is already computed. The non-zero pattern of x
+	 * is returned in xi[top..n) in topological order.
+	 */
+	private int spsolve(CSCMatrix a, int col, int[] xi, double[] x,
+			int[] marks, int stamp) {
+		int top = reach(a, col, xi, marks, stamp);
+		for (int p = top; p < n; p++)
+			x[xi[p]] = 0;
+		for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++)
+			x[a.rowIndices[p]] = a.values[p];
+		for (int px = top; px < n; px++) {
+			int j = xi[px];
+			int jj = pinv[j];
+			if (jj < 0)
+				continue;
+			double xj = x[j]; // the diagonal of L is 1
+			for (int p = lp[jj] + 1; p < lp[jj + 1]; p++)
+				x[li[p]] -= lx[p] * xj;
+		}
+		return top;
+	}
+
+	/**
+	 * Calculates the non-zero pattern of L \ A(:, col) via a depth-first
+	 * search in the graph of L.
+	 */
+	private int reach(CSCMatrix a, int col, int[] xi, int[] marks, int stamp) {
+		int top = n;
+		for (int p = a.columnPointers[col]; p < a.columnPointers[col + 1]; p++) {
+			int i = a.rowIndices[p];
+			if (marks[i] != stamp)
+				top = dfs(i, top, xi, marks, stamp);
+		}
+		return top;
+	}
+
+	private int dfs(int start, int top, int[] xi, int[] marks, int stamp) {
+		// xi[0..head] is the recursion stack and xi[n..2n) the position
+		// stack; the result is written to xi[top..n)
+		int head = 0;
+		xi[0] = start;
+		while (head >= 0) {
+			int j = xi[head];
+			int jj = pinv[j];
+			if (marks[j] != stamp) {
+				marks[j] = stamp;
+				xi[n + head] = jj < 0 ? 0 : lp[jj] + 1;
+			}
+			boolean done = true;
+			int end = jj < 0 ? 0 : lp[jj + 1];
+			for (int p = xi[n + head]; p < end; p++) {
+				int i = li[p];
+				if (marks[i] == stamp)
+					continue;
+				xi[n + head] = p;
+				xi[++head] = i;
+				done = false;
+				break;
+			}
+			if (done) {
+				head--;
+				xi[--top] = j;
+			}
+		}
+		return top;
+	}
+}
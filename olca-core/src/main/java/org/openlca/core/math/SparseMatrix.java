@@ -0,0 +1,177 @@
+package org.openlca.core.math;
+
+import java.util.Arrays;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+/**
+ * A sparse matrix that stores the non-zero values of each column in a
+ * primitive hash map. Filling this matrix in arbitrary order is fast; for
+ * calculations it is converted into a {@link CSCMatrix} via
+ * {@link #compress()}.
+ */
+public class SparseMatrix implements IMatrix {
+
+	private final int rows;
+	private final int columns;
+	private final TIntDoubleHashMap[] data;
+
+	public SparseMatrix(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.data = new TIntDoubleHashMap[columns];
+	}
+
+	@Override
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public int columns() {
+		return columns;
+	}
+
+	@Override
+	public void set(int row, int col, double val) {
+		TIntDoubleHashMap column = data[col];
+		if (column == null) {
+			if (val == 0)
+				return;
+			column = new TIntDoubleHashMap(Constants.DEFAULT_CAPACITY,
+					Constants.DEFAULT_LOAD_FACTOR, -1, 0);
+			data[col] = column;
+		}
+		if (val == 0)
+			column.remove(row);
+		else
+			column.put(row, val);
+	}
+
+	@Override
+	public double get(int row, int col) {
+		TIntDoubleHashMap column = data[col];
+		if (column == null)
+			return 0;
+		return column.get(row);
+	}
+
+	@Override
+	public double[] getColumn(int i) {
+		double[] values = new double[rows];
+		TIntDoubleHashMap column = data[i];
+		if (column == null)
+			return values;
+		TIntDoubleIterator it = column.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			values[it.key()] = it.value();
+		}
+		return values;
+	}
+
+	@Override
+	public double[] getRow(int i) {
+		double[] values = new double[columns];
+		for (int col = 0; col < columns; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column != null)
+				values[col] = column.get(i);
+		}
+		return values;
+	}
+
+	@Override
+	public SparseMatrix copy() {
+		SparseMatrix copy = new SparseMatrix(rows, columns);
+		for (int col = 0; col < columns; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			TIntDoubleHashMap c = new TIntDoubleHashMap(column.size(),
+					Constants.DEFAULT_LOAD_FACTOR, -1, 0);
+			c.putAll(column);
+			copy.data[col] = c;
+		}
+		return copy;
+	}
+
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
+	@Override
+	public void iterate(EntryIterator it) {
+		for (int col = 0; col < columns; col++) {
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			TIntDoubleIterator values = column.iterator();
+			while (values.hasNext()) {
+				values.advance();
+				it.next(values.key(), col, values.value());
+			}
+		}
+	}
+
+	/** Multiplies the values of the given column with the given factor. */
+	void scaleColumn(int col, double factor) {
+		TIntDoubleHashMap column = data[col];
+		if (column == null)
+			return;
+		if (factor == 0) {
+			data[col] = null;
+			return;
+		}
+		TIntDoubleIterator it = column.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			it.setValue(it.value() * factor);
+		}
+	}
+
+	/** Returns the number of stored non-zero entries. */
+	public int getNumberOfEntries() {
+		int count = 0;
+		for (TIntDoubleHashMap column : data) {
+			if (column != null)
+				count += column.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Converts this matrix into the compressed sparse column format.
+	 */
+	public CSCMatrix compress() {
+		int nnz = getNumberOfEntries();
+		int[] pointers = new int[columns + 1];
+		int[] indices = new int[nnz];
+		double[] values = new double[nnz];
+		int pos = 0;
+		for (int col = 0; col < columns; col++) {
+			pointers[col] = pos;
+			TIntDoubleHashMap column = data[col];
+			if (column == null)
+				continue;
+			int[] keys = column.keys();
+			Arrays.sort(keys);
+			for (int row : keys) {
+				indices[pos] = row;
+				values[pos] = column.get(row);
+				pos++;
+			}
+		}
+		pointers[columns] = pos;
+		return new CSCMatrix(rows, columns, pointers, indices, values);
+	}
+
+	@Override
+	public String toString() {
+		return "SparseMatrix[rows=" + rows + ", columns=" + columns
+				+ ", entries=" + getNumberOfEntries() + "]";
+	}
+}
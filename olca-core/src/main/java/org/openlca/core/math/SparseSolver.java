@@ -0,0 +1,178 @@
+package org.openlca.core.math;
+
+/**
+ * A pure Java solver for large sparse matrices. The technology matrix is
+ * converted into the compressed sparse column format, permuted with a
+ * fill-reducing ordering (see {@link ColumnOrdering}), and factorized with a
+ * sparse LU decomposition. If the fill-in of the factorization would exceed a
+ * given limit, the solver falls back to an iterative method (BiCGSTAB with a
+ * Jacobi preconditioner). Thus, it does not need the native Eigen library and
+ * runs with bounded memory also for large databases.
+ */
+public class SparseSolver implements IMatrixSolver {
+
+	/**
+	 * The relative tolerance for diagonal pivots; a diagonal entry is taken as
+	 * pivot if its absolute value is not smaller than this tolerance times the
+	 * largest absolute value of the pivot candidates in the column.
+	 */
+	private double pivotTolerance = 0.1;
+
+	/**
+	 * The maximum number of entries in the LU factors; 12 bytes per entry.
+	 */
+	private long maxFactorEntries = 50_000_000L;
+
+	private double iterativeTolerance = 1e-12;
+	private int maxIterations = 10_000;
+
+	public void setPivotTolerance(double pivotTolerance) {
+		this.pivotTolerance = pivotTolerance;
+	}
+
+	/**
+	 * Sets the maximum number of entries in the factors of the sparse LU
+	 * decomposition. If this number is exceeded, the solver uses an iterative
+	 * method instead.
+	 */
+	public void setMaxFactorEntries(long maxFactorEntries) {
+		this.maxFactorEntries = maxFactorEntries;
+	}
+
+	/**
+	 * Sets the relative tolerance and the maximum number of iterations of the
+	 * iterative method.
+	 */
+	public void setIterativeSolver(double tolerance, int maxIterations) {
+		this.iterativeTolerance = tolerance;
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public double[] solve(IMatrix a, int idx, double d) {
+		return factorize(a).solve(idx, d);
+	}
+
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		CSCMatrix A = CSCMatrix.of(a);
+		SparseLU lu = decompose(A);
+		if (lu != null)
+			return lu;
+		return new IFactorization() {
+
+			private CSCMatrix transposed;
+
+			@Override
+			public int size() {
+				return A.rows;
+			}
+
+			@Override
+			public double[] solve(double[] b) {
+				return iterate(A, b);
+			}
+
+			@Override
+			public double[] solveTransposed(double[] b) {
+				return iterate(getTransposed(), b);
+			}
+
+			private synchronized CSCMatrix getTransposed() {
+				if (transposed == null)
+					transposed = A.transpose();
+				return transposed;
+			}
+		};
+	}
+
+	@Override
+	public IMatrix invert(IMatrix a) {
+		CSCMatrix A = CSCMatrix.of(a);
+		int n = A.rows;
+		JavaMatrix inverse = new JavaMatrix(n, n);
+		SparseLU lu = decompose(A);
+		double[] e = new double[n];
+		for (int col = 0; col < n; col++) {
+			e[col] = 1;
+			double[] x = lu != null ? lu.solve(e) : iterate(A, e);
+			e[col] = 0;
+			for (int row = 0; row < n; row++) {
+				if (x[row] != 0)
+					inverse.set(row, col, x[row]);
+			}
+		}
+		return inverse;
+	}
+
+	@Override
+	public double[] multiply(IMatrix m, double[] v) {
+		if (!(m instanceof CSCMatrix))
+			return IMatrixSolver.super.multiply(m, v);
+		return ((CSCMatrix) m).multiply(v);
+	}
+
+	@Override
+	public IMatrix multiply(IMatrix a, IMatrix b) {
+		if (!a.isSparse())
+			return IMatrixSolver.super.multiply(a, b);
+		if (a.columns() != b.rows())
+			throw new IllegalArgumentException("a.columns != b.rows");
+		CSCMatrix A = CSCMatrix.of(a);
+		IMatrix r = b.isSparse()
+				? new SparseMatrix(a.rows(), b.columns())
+				: new JavaMatrix(a.rows(), b.columns());
+		for (int col = 0; col < b.columns(); col++) {
+			double[] column = A.multiply(b.getColumn(col));
+			for (int row = 0; row < column.length; row++) {
+				if (column[row] != 0)
+					r.set(row, col, column[row]);
+			}
+		}
+		return r;
+	}
+
+	@Override
+	public void scaleColumns(IMatrix m, double[] v) {
+		if (m instanceof CSCMatrix) {
+			CSCMatrix c = (CSCMatrix) m;
+			for (int col = 0; col < c.columns; col++) {
+				for (int k = c.columnPointers[col]; k < c.columnPointers[col
+						+ 1]; k++) {
+					c.values[k] *= v[col];
+				}
+			}
+			return;
+		}
+		if (m instanceof SparseMatrix) {
+			SparseMatrix s = (SparseMatrix) m;
+			for (int col = 0; col < s.columns(); col++)
+				s.scaleColumn(col, v[col]);
+			return;
+		}
+		IMatrixSolver.super.scaleColumns(m, v);
+	}
+
+	@Override
+	public IMatrixFactory<?> getMatrixFactory() {
+		return new SparseMatrixFactory();
+	}
+
+	/**
+	 * Returns the sparse LU decomposition of the given matrix or null if the
+	 * number of entries in the factors would exceed the limit.
+	 */
+	SparseLU decompose(CSCMatrix a) {
+		int[] q = ColumnOrdering.of(a);
+		return SparseLU.factorize(a, q, pivotTolerance, maxFactorEntries);
+	}
+
+	double[] iterate(CSCMatrix a, double[] b) {
+		double[] x = BiCGStab.solve(a, b, null, iterativeTolerance,
+				maxIterations);
+		if (x == null)
+			throw new IllegalStateException(
+					"the iterative solver did not converge");
+		return x;
+	}
+}
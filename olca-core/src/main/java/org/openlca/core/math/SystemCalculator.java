@@ -20,12 +20,22 @@ public class SystemCalculator {
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private final MatrixCache matrixCache;
 	private final IMatrixSolver solver;
+	private FactorizationCache factorizations;
 
 	public SystemCalculator(MatrixCache cache, IMatrixSolver solver) {
 		this.matrixCache = cache;
 		this.solver = solver;
 	}
 
+	/**
+	 * Sets a cache for the factorizations of the technology matrices. With
+	 * such a cache, repeated calculations with the same technology matrix
+	 * (e.g. with different demand values) reuse the factorization.
+	 */
+	public void setFactorizationCache(FactorizationCache factorizations) {
+		this.factorizations = factorizations;
+	}
+
 	public SimpleResult calculateSimple(CalculationSetup setup) {
 		log.trace("calculate product system - simple result");
 		return calculator(setup).calculateSimple();
@@ -41,6 +51,15 @@ public class SystemCalculator {
 		return calculator(setup).calculateFull();
 	}
 
+	/**
+	 * Calculates a full result where the upstream results are calculated on
+	 * demand (see {@link LcaCalculator#calculateLazyFull()}).
+	 */
+	public FullResult calculateLazyFull(CalculationSetup setup) {
+		log.trace("calculate product system - lazy full result");
+		return calculator(setup).calculateLazyFull();
+	}
+
 	private LcaCalculator calculator(CalculationSetup setup) {
 		IDatabase db = matrixCache.getDatabase();
 		Inventory inventory = DataStructures.createInventory(setup, matrixCache);
@@ -50,6 +69,11 @@ public class SystemCalculator {
 		InventoryMatrix inventoryMatrix = inventory.createMatrix(
 				solver.getMatrixFactory(), interpreter);
 		LcaCalculator calculator = new LcaCalculator(solver, inventoryMatrix);
+		if (factorizations != null) {
+			calculator.setFactorization(factorizations.get(solver,
+					inventory.technologyMatrix,
+					inventoryMatrix.technologyMatrix));
+		}
 		if (setup.impactMethod != null) {
 			ImpactTable impactTable = ImpactTable.build(matrixCache,
 					setup.impactMethod.getId(), inventory.flowIndex);
@@ -0,0 +1,236 @@
+package org.openlca.core.math;
+
+/**
+ * A factorization of a matrix A' = A + D * E' that was created by replacing k
+ * columns of a matrix A with a factorization F. D contains the differences of
+ * the new and old columns (n x k) and E the respective unit vectors. With the
+ * Sherman-Morrison-Woodbury formula, we get:
+ *
+ * <pre>
+ * inv(A') = inv(A) - Z * inv(C) * E' * inv(A)
+ * with Z = inv(A) * D and C = I + E' * Z
+ * </pre>
+ *
+ * Thus, a system with A' can be solved with a solution of F and the small k x
+ * k matrix C. Z is calculated with k solutions of F when the update is
+ * created.
+ */
+final class UpdatedFactorization implements IFactorization {
+
+	private final IFactorization base;
+	private final int[] columns;
+	private final double[][] deltas;
+
+	/** Z = inv(A) * D; z[j] is the j-th column. */
+	private final double[][] z;
+
+	/** The LU decomposition of C (see {@link #decompose(double[][], int[])}). */
+	private final double[][] lu;
+	private final int[] pivots;
+
+	/** W = inv(A)' * E; only calculated for transposed solutions. */
+	private double[][] w;
+
+	private UpdatedFactorization(IFactorization base, int[] columns,
+			double[][] deltas, double[][] z, double[][] lu, int[] pivots) {
+		this.base = base;
+		this.columns = columns;
+		this.deltas = deltas;
+		this.z = z;
+		this.lu = lu;
+		this.pivots = pivots;
+	}
+
+	/**
+	 * Creates a factorization of the matrix that is created by adding the
+	 * given column differences to the given columns of the matrix of the
+	 * given factorization.
+	 *
+	 * @param base
+	 *            the factorization of the original matrix A
+	 * @param columns
+	 *            the indices of the changed columns; distinct values
+	 * @param deltas
+	 *            the differences of the new and old column values: deltas[j]
+	 *            is added to column columns[j]
+	 * @return the updated factorization or null if the updated matrix is
+	 *         (numerically) singular
+	 */
+	static UpdatedFactorization of(IFactorization base, int[] columns,
+			double[][] deltas) {
+		return of(base, columns, deltas, null);
+	}
+
+	/**
+	 * Same as {@link #of(IFactorization, int[], double[][])} but the solutions
+	 * Z of the given previous update of the same base factorization are
+	 * reused for the columns with the same difference vectors (the same
+	 * array instances).
+	 */
+	static UpdatedFactorization of(IFactorization base, int[] columns,
+			double[][] deltas, UpdatedFactorization previous) {
+		int k = columns.length;
+		double[][] z = new double[k][];
+		for (int j = 0; j < k; j++) {
+			if (previous != null && previous.base == base)
+				z[j] = previous.solutionOf(columns[j], deltas[j]);
+			if (z[j] == null)
+				z[j] = base.solve(deltas[j]);
+		}
+		double[][] c = new double[k][k];
+		for (int i = 0; i < k; i++) {
+			c[i][i] = 1;
+			for (int j = 0; j < k; j++)
+				c[i][j] += z[j][columns[i]];
+		}
+		int[] pivots = new int[k];
+		if (!decompose(c, pivots))
+			return null;
+		return new UpdatedFactorization(base, columns, deltas, z, c, pivots);
+	}
+
+	/**
+	 * Returns the solution z = inv(A) * delta for the given column if this
+	 * update contains the given difference vector for that column.
+	 */
+	private double[] solutionOf(int column, double[] delta) {
+		for (int j = 0; j < columns.length; j++) {
+			if (columns[j] == column && deltas[j] == delta)
+				return z[j];
+		}
+		return null;
+	}
+
+	@Override
+	public int size() {
+		return base.size();
+	}
+
+	@Override
+	public double[] solve(double[] b) {
+		double[] x = base.solve(b);
+		double[] y = new double[columns.length];
+		for (int i = 0; i < y.length; i++)
+			y[i] = x[columns[i]];
+		solveSmall(y, false);
+		for (int j = 0; j < y.length; j++) {
+			double yj = y[j];
+			if (yj == 0)
+				continue;
+			double[] zj = z[j];
+			for (int i = 0; i < x.length; i++)
+				x[i] -= zj[i] * yj;
+		}
+		return x;
+	}
+
+	/**
+	 * For the transposed system, we have inv(A')' = inv(A)' - W * inv(C)' *
+	 * D' * inv(A)' with W = inv(A)' * E.
+	 */
+	@Override
+	public double[] solveTransposed(double[] b) {
+		double[][] w = getW();
+		double[] x = base.solveTransposed(b);
+		double[] y = new double[columns.length];
+		for (int j = 0; j < y.length; j++) {
+			double[] dj = deltas[j];
+			double sum = 0;
+			for (int i = 0; i < x.length; i++)
+				sum += dj[i] * x[i];
+			y[j] = sum;
+		}
+		solveSmall(y, true);
+		for (int j = 0; j < y.length; j++) {
+			double yj = y[j];
+			if (yj == 0)
+				continue;
+			double[] wj = w[j];
+			for (int i = 0; i < x.length; i++)
+				x[i] -= wj[i] * yj;
+		}
+		return x;
+	}
+
+	private synchronized double[][] getW() {
+		if (w != null)
+			return w;
+		double[][] w = new double[columns.length][];
+		for (int j = 0; j < columns.length; j++) {
+			double[] e = new double[size()];
+			e[columns[j]] = 1;
+			w[j] = base.solveTransposed(e);
+		}
+		this.w = w;
+		return w;
+	}
+
+	/**
+	 * LU decomposition with partial pivoting of the given k x k matrix in
+	 * place. Returns false if the matrix is singular.
+	 */
+	private static boolean decompose(double[][] a, int[] pivots) {
+		int k = a.length;
+		for (int col = 0; col < k; col++) {
+			int p = col;
+			for (int row = col + 1; row < k; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[p][col]))
+					p = row;
+			}
+			pivots[col] = p;
+			if (Math.abs(a[p][col]) < 1e-12)
+				return false;
+			if (p != col) {
+				double[] t = a[p];
+				a[p] = a[col];
+				a[col] = t;
+			}
+			for (int row = col + 1; row < k; row++) {
+				double f = a[row][col] / a[col][col];
+				a[row][col] = f;
+				for (int j = col + 1; j < k; j++)
+					a[row][j] -= f * a[col][j];
+			}
+		}
+		return true;
+	}
+
+	/** Solves C * y = b or C' * y = b in place. */
+	private void solveSmall(double[] y, boolean transposed) {
+		int k = y.length;
+		if (!transposed) {
+			for (int i = 0; i < k; i++)
+				swap(y, i, pivots[i]);
+			for (int i = 0; i < k; i++) {
+				for (int j = 0; j < i; j++)
+					y[i] -= lu[i][j] * y[j];
+			}
+			for (int i = k - 1; i >= 0; i--) {
+				for (int j = i + 1; j < k; j++)
+					y[i] -= lu[i][j] * y[j];
+				y[i] /= lu[i][i];
+			}
+			return;
+		}
+		// P * C = L * U => C' = U' * L' * P
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j < i; j++)
+				y[i] -= lu[j][i] * y[j];
+			y[i] /= lu[i][i];
+		}
+		for (int i = k - 1; i >= 0; i--) {
+			for (int j = i + 1; j < k; j++)
+				y[i] -= lu[j][i] * y[j];
+		}
+		for (int i = k - 1; i >= 0; i--)
+			swap(y, i, pivots[i]);
+	}
+
+	private static void swap(double[] v, int i, int j) {
+		if (i == j)
+			return;
+		double t = v[i];
+		v[i] = v[j];
+		v[j] = t;
+	}
+}
@@ -0,0 +1,207 @@
+package org.openlca.core.math;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A matrix of upstream results U = M * inv(A) * diag(d) that is calculated on
+ * demand from the factorization of the technology matrix A (see
+ * {@link LcaCalculator#getUpstreamResults(IMatrix, double[])} for the
+ * materialized version). A row i is calculated with a solution of the
+ * transposed system A' * x = M[i, :]' and a column j with a solution of A * x
+ * = e_j. The calculated vectors are kept in separate LRU caches for rows and
+ * columns with a fixed maximum size so that the memory stays bounded also for
+ * large systems. Single values are taken from a cached row or column if
+ * possible; otherwise the row is calculated as the upstream results are
+ * typically read for one flow or LCIA category and many processes (e.g. in
+ * contribution trees).
+ *
+ * When a value is set, the matrix is materialized with the matrix factory of
+ * the solver (see {@link #copy()}) and all further operations are delegated
+ * to the materialized matrix. The factorization and the matrix M must not be
+ * modified while this matrix is used.
+ */
+public final class UpstreamMatrix implements IMatrix {
+
+	/** The default number of rows and columns that are kept in the caches. */
+	public static final int DEFAULT_CACHE_SIZE = 100;
+
+	private final IMatrix m;
+	private final IFactorization factorization;
+	private final double[] demands;
+	private final IMatrixFactory<?> factory;
+
+	private final VectorCache rowCache;
+	private final VectorCache columnCache;
+
+	/** The materialized matrix after the first write, otherwise null. */
+	private volatile IMatrix materialized;
+
+	UpstreamMatrix(IMatrix m, IFactorization factorization, double[] demands,
+			IMatrixFactory<?> factory, int cacheSize) {
+		this.m = m;
+		this.factorization = factorization;
+		this.demands = demands;
+		this.factory = factory;
+		this.rowCache = new VectorCache(cacheSize);
+		this.columnCache = new VectorCache(cacheSize);
+	}
+
+	@Override
+	public int rows() {
+		return m.rows();
+	}
+
+	@Override
+	public int columns() {
+		return m.columns();
+	}
+
+	@Override
+	public void set(int row, int col, double val) {
+		IMatrix dense = materialized;
+		if (dense == null) {
+			synchronized (this) {
+				if (materialized == null)
+					materialized = calculateAll();
+				dense = materialized;
+			}
+		}
+		dense.set(row, col, val);
+	}
+
+	/** Returns true if the matrix was materialized by a write operation. */
+	public boolean isMaterialized() {
+		return materialized != null;
+	}
+
+	@Override
+	public double get(int row, int col) {
+		IMatrix dense = materialized;
+		if (dense != null)
+			return dense.get(row, col);
+		double[] values = rowCache.get(row);
+		if (values != null)
+			return values[col];
+		values = columnCache.get(col);
+		if (values != null)
+			return values[row];
+		return row(row)[col];
+	}
+
+	@Override
+	public double[] getColumn(int i) {
+		IMatrix dense = materialized;
+		if (dense != null)
+			return dense.getColumn(i);
+		return column(i).clone();
+	}
+
+	@Override
+	public double[] getRow(int i) {
+		IMatrix dense = materialized;
+		if (dense != null)
+			return dense.getRow(i);
+		return row(i).clone();
+	}
+
+	/**
+	 * Creates a materialized copy of this matrix with the matrix factory of
+	 * the solver. Note that this calculates all rows of the matrix.
+	 */
+	@Override
+	public IMatrix copy() {
+		IMatrix dense = materialized;
+		if (dense != null)
+			return dense.copy();
+		return calculateAll();
+	}
+
+	private IMatrix calculateAll() {
+		int rows = rows();
+		int cols = columns();
+		IMatrix copy = factory.create(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			double[] values = row(row);
+			for (int col = 0; col < cols; col++) {
+				if (values[col] != 0)
+					copy.set(row, col, values[col]);
+			}
+		}
+		return copy;
+	}
+
+	private double[] row(int i) {
+		double[] row = rowCache.get(i);
+		if (row != null)
+			return row;
+		double[] values = m.getRow(i);
+		if (isZero(values)) {
+			row = values;
+		} else {
+			row = factorization.solveTransposed(values);
+			for (int col = 0; col < row.length; col++)
+				row[col] *= demands[col];
+		}
+		rowCache.put(i, row);
+		return row;
+	}
+
+	private double[] column(int j) {
+		double[] column = columnCache.get(j);
+		if (column != null)
+			return column;
+		column = new double[rows()];
+		if (demands[j] != 0) {
+			double[] x = factorization.solve(j, demands[j]);
+			double[] col = column;
+			if (m.isSparse()) {
+				m.iterate((row, k, val) -> col[row] += val * x[k]);
+			} else {
+				for (int k = 0; k < x.length; k++) {
+					if (x[k] == 0)
+						continue;
+					double[] mk = m.getColumn(k);
+					for (int row = 0; row < col.length; row++)
+						col[row] += mk[row] * x[k];
+				}
+			}
+		}
+		columnCache.put(j, column);
+		return column;
+	}
+
+	private boolean isZero(double[] values) {
+		for (double val : values) {
+			if (val != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/** A synchronized LRU cache of calculated rows or columns. */
+	private static class VectorCache {
+
+		private final Map<Integer, double[]> map;
+
+		VectorCache(int maxSize) {
+			map = new LinkedHashMap<Integer, double[]>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<Integer, double[]> eldest) {
+					return size() > maxSize;
+				}
+			};
+		}
+
+		synchronized double[] get(int i) {
+			return map.get(i);
+		}
+
+		synchronized void put(int i, double[] values) {
+			map.put(i, values);
+		}
+	}
+}
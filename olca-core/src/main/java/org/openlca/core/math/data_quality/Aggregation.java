@@ -1,88 +1,82 @@
 package org.openlca.core.math.data_quality;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Aggregates the values of a single data quality indicator for keys that are
+ * mapped to the positions 0 .. size - 1 (e.g. the flows of a flow index). For
+ * weighted averages, the weighted values and the weights are summed up with
+ * compensated (Kahan) summation so that the result is accurate also for many
+ * values of different magnitudes.
+ */
 class Aggregation {
 
-	public static double[] applyTo(List<AggregationValue> values, AggregationType type) {
-		if (values.isEmpty())
-			return null;
-		switch (type) {
-		case WEIGHTED_AVERAGE:
-			return weightedAverageOf(values, false);
-		case WEIGHTED_SQUARED_AVERAGE:
-			return weightedAverageOf(values, true);
-		case MAXIMUM:
-			return maximumOf(values);
-		default:
-			return null;
-		}
-	}
+	private final boolean maximum;
+	private final boolean squared;
 
-	private static double[] weightedAverageOf(List<AggregationValue> values, boolean squared) {
-		BigDecimal[] aggregated = new BigDecimal[values.get(0).values.length];
-		BigDecimal[] divisors = new BigDecimal[values.get(0).values.length];
-		for (AggregationValue value : values) {
-			for (int i = 0; i < value.values.length; i++) {
-				if (value.values[i] == 0)
-					continue;
-				BigDecimal factor = value.factor;
-				if (squared) {
-					factor = factor.pow(2);
-				}
-				BigDecimal result = new BigDecimal(value.values[i]).multiply(factor);
-				if (aggregated[i] == null) {
-					aggregated[i] = result;
-					divisors[i] = factor;
-				} else {
-					aggregated[i] = aggregated[i].add(result);
-					divisors[i] = divisors[i].add(factor);
-				}
-			}
-		}
-		double[] result = new double[aggregated.length];
-		for (int i = 0; i < aggregated.length; i++) {
-			if (aggregated == null || aggregated[i] == null || aggregated[i].doubleValue() == 0d)
-				continue;
-			if (divisors == null || divisors[i] == null || divisors[i].doubleValue() == 0d)
-				continue;
-			System.out.println(aggregated[i]);
-			System.out.println(divisors[i]);
-			result[i] = aggregated[i].divide(divisors[i], MathContext.DECIMAL128).doubleValue();
+	private final double[] sums;
+	private final double[] sumErrors;
+	private final double[] weights;
+	private final double[] weightErrors;
+
+	Aggregation(AggregationType type, int size) {
+		maximum = type == AggregationType.MAXIMUM;
+		squared = type == AggregationType.WEIGHTED_SQUARED_AVERAGE;
+		sums = new double[size];
+		if (maximum) {
+			sumErrors = null;
+			weights = null;
+			weightErrors = null;
+		} else {
+			sumErrors = new double[size];
+			weights = new double[size];
+			weightErrors = new double[size];
 		}
-		return result;
-	}
-	
-	public static void main(String[] args) {
-		double dd = 0E-77;
-		System.out.println(dd);
-		BigDecimal d = new BigDecimal(dd);
-		System.out.println(d.equals(BigDecimal.ZERO));
-		System.out.println(d);
 	}
 
-	private static double[] maximumOf(List<AggregationValue> values) {
-		double[] result = new double[values.get(0).values.length];
-		for (AggregationValue value : values) {
-			for (int i = 0; i < value.values.length; i++) {
-				result[i] = Math.max(result[i], value.values[i]);
-			}
+	/**
+	 * Adds the given value with the given weight to the aggregation of the
+	 * given key. Values of 0 (n.a.) are ignored in weighted averages.
+	 */
+	void add(int key, double value, double weight) {
+		if (maximum) {
+			sums[key] = Math.max(sums[key], value);
+			return;
 		}
-		return result;
+		if (value == 0)
+			return;
+		double w = squared ? weight * weight : weight;
+		add(sums, sumErrors, key, value * w);
+		add(weights, weightErrors, key, w);
 	}
 
-	static class AggregationValue {
-
-		private final double[] values;
-		private final BigDecimal factor;
+	/** Returns the aggregated value of the given key. */
+	double get(int key) {
+		if (maximum)
+			return sums[key];
+		double sum = sums[key];
+		double weight = weights[key];
+		if (sum == 0 || weight == 0)
+			return 0;
+		return sum / weight;
+	}
 
-		AggregationValue(double[] values, BigDecimal factor) {
-			this.values = values;
-			this.factor = factor;
-		}
+	/** Removes all values of this aggregation. */
+	void clear() {
+		Arrays.fill(sums, 0);
+		if (maximum)
+			return;
+		Arrays.fill(sumErrors, 0);
+		Arrays.fill(weights, 0);
+		Arrays.fill(weightErrors, 0);
+	}
 
+	private static void add(double[] sums, double[] errors, int key,
+			double value) {
+		double y = value - errors[key];
+		double t = sums[key] + y;
+		errors[key] = (t - sums[key]) - y;
+		sums[key] = t;
 	}
 
 }
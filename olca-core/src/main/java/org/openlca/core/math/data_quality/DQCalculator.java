@@ -1,25 +1,56 @@
 package org.openlca.core.math.data_quality;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
-import org.openlca.core.math.data_quality.Aggregation.AggregationValue;
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.matrix.LongIndex;
 import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.TechIndex;
 import org.openlca.core.results.ContributionResult;
 
+/**
+ * Aggregates the data quality values of the exchanges to results of flows,
+ * LCIA categories, flows per LCIA category, and processes per LCIA category.
+ * The values of an exchange are weighted with the absolute direct result of
+ * the flow in the process (multiplied with the characterization factor for
+ * LCIA categories). Only the non-zero entries of the direct flow results are
+ * visited and the indicators are aggregated in parallel.
+ */
 class DQCalculator {
 
-	private final Map<Long, List<AggregationValue>> flowAggregations = new HashMap<>();
-	private final Map<Long, List<AggregationValue>> impactAggregations = new HashMap<>();
-	private final Map<LongPair, List<AggregationValue>> impactAggregationsPerFlow = new HashMap<>();
-	private final Map<LongPair, List<AggregationValue>> impactAggregationsPerProcess = new HashMap<>();
 	private final ContributionResult result;
 	private final DQData data;
 	private final DQCalculationSetup setup;
 
+	private final LongIndex processIndex = new LongIndex();
+	private int flows;
+	private int impacts;
+
+	/*
+	 * The exchanges with data quality values and a non-zero result; the
+	 * entries are ordered by process.
+	 */
+	private int count;
+	private int[] entryProcesses;
+	private int[] entryFlows;
+	private double[] entryResults;
+	private double[][] entryValues;
+
+	/** The characterization factors of the flows: flowFactors[flow][impact] */
+	private double[][] flowFactors;
+
+	/*
+	 * The result arrays of the keys (null if a key has no values); the
+	 * indicators write into different positions of these arrays.
+	 */
+	private double[][] flowResults;
+	private double[][] impactResults;
+	private double[][] flowImpactResults;
+	private double[][] processImpactResults;
+
 	public DQCalculator(ContributionResult result, DQData data, DQCalculationSetup setup) {
 		this.result = result;
 		this.data = data;
@@ -27,94 +58,240 @@ class DQCalculator {
 	}
 
 	void calculate() {
-		for (long processId : result.productIndex.getProcessIds()) {
-			for (long flowId : result.flowIndex.getFlowIds()) {
-				addValues(processId, flowId);
+		flows = result.flowIndex.size();
+		impacts = result.hasImpactResults() ? result.impactIndex.size() : 0;
+		collectEntries();
+		if (count == 0)
+			return;
+		int indicators = entryValues[0].length;
+		initResults(indicators);
+		IntStream.range(0, indicators).parallel().forEach(this::aggregate);
+	}
+
+	/**
+	 * Collects the exchanges with data quality values and a result. The
+	 * non-zero entries of the direct flow results are grouped by process so
+	 * that the results of the products of a process can be summed up.
+	 */
+	private void collectEntries() {
+		TechIndex techIndex = result.productIndex;
+		for (long processId : techIndex.getProcessIds()) {
+			processIndex.put(processId);
+		}
+		int processes = processIndex.size();
+		int[] columnProcesses = new int[techIndex.size()];
+		for (int col = 0; col < columnProcesses.length; col++) {
+			long processId = techIndex.getProviderAt(col).getFirst();
+			columnProcesses[col] = processIndex.getIndex(processId);
+		}
+
+		IMatrix m = result.singleFlowResults;
+		int[] offsets = new int[processes + 1];
+		m.iterate((row, col, val) -> offsets[columnProcesses[col] + 1]++);
+		for (int p = 0; p < processes; p++) {
+			offsets[p + 1] += offsets[p];
+		}
+		int n = offsets[processes];
+		int[] rows = new int[n];
+		double[] values = new double[n];
+		int[] next = Arrays.copyOf(offsets, processes);
+		m.iterate((row, col, val) -> {
+			int pos = next[columnProcesses[col]]++;
+			rows[pos] = row;
+			values[pos] = val;
+		});
+
+		entryProcesses = new int[n];
+		entryFlows = new int[n];
+		entryResults = new double[n];
+		entryValues = new double[n][];
+		double[] sums = new double[flows];
+		int[] marks = new int[flows];
+		Arrays.fill(marks, -1);
+		int[] touched = new int[flows];
+		for (int p = 0; p < processes; p++) {
+			int t = 0;
+			for (int pos = offsets[p]; pos < offsets[p + 1]; pos++) {
+				int row = rows[pos];
+				if (marks[row] != p) {
+					marks[row] = p;
+					sums[row] = 0;
+					touched[t++] = row;
+				}
+				sums[row] += values[pos];
+			}
+			for (int k = 0; k < t; k++) {
+				int row = touched[k];
+				addEntry(p, row, Math.abs(sums[row]));
 			}
 		}
 	}
 
-	private void addValues(long processId, long flowId) {
-		double[] dqValues = getDqValues(processId, flowId);
-		BigDecimal flowResult = new BigDecimal(getFlowResult(processId, flowId));
-		if (dqValues == null || flowResult.equals(BigDecimal.ZERO))
+	private void addEntry(int process, int flow, double flowResult) {
+		if (flowResult == 0)
 			return;
-		addValue(flowAggregations, flowId, flowResult, dqValues);
-		if (!result.hasImpactResults())
+		long processId = processIndex.getKeyAt(process);
+		long flowId = result.flowIndex.getFlowAt(flow);
+		double[] dqValues = data.getExchangeValues(processId, flowId);
+		if (dqValues == null)
 			return;
-		addImpactValues(processId, flowId, flowResult, dqValues);
+		if (setup.processingType != ProcessingType.EXCLUDE) {
+			// n.a. values are treated as the maximum score
+			int max = setup.exchangeDqSystem.getScoreCount();
+			for (int i = 0; i < dqValues.length; i++) {
+				if (dqValues[i] == 0)
+					dqValues[i] = max;
+			}
+		}
+		entryProcesses[count] = process;
+		entryFlows[count] = flow;
+		entryResults[count] = flowResult;
+		entryValues[count] = dqValues;
+		count++;
 	}
 
-	private void addImpactValues(long processId, long flowId, BigDecimal flowResult, double[] dqValues) {
-		for (long impactId : result.impactIndex.getKeys()) {
-			double impactFactor = getImpactFactor(result, impactId, flowId);
-			if (impactFactor == 0d)
+	/** Creates the result arrays of the keys that have values. */
+	private void initResults(int indicators) {
+		flowResults = new double[flows][];
+		if (impacts > 0) {
+			flowFactors = new double[flows][];
+			impactResults = new double[impacts][];
+			flowImpactResults = new double[flows * impacts][];
+			processImpactResults = new double[processIndex.size() * impacts][];
+		}
+		for (int e = 0; e < count; e++) {
+			int flow = entryFlows[e];
+			if (flowResults[flow] == null)
+				flowResults[flow] = new double[indicators];
+			if (impacts == 0)
 				continue;
-			BigDecimal factor = flowResult.multiply(new BigDecimal(impactFactor));
-			addValue(impactAggregations, impactId, factor, dqValues);
-			addValue(impactAggregationsPerFlow, new LongPair(flowId, impactId), factor, dqValues);
-			addValue(impactAggregationsPerProcess, new LongPair(processId, impactId), factor, dqValues);
+			double[] factors = flowFactors[flow];
+			if (factors == null) {
+				factors = result.impactFactors.getColumn(flow);
+				flowFactors[flow] = factors;
+			}
+			for (int impact = 0; impact < impacts; impact++) {
+				if (factors[impact] == 0)
+					continue;
+				if (impactResults[impact] == null)
+					impactResults[impact] = new double[indicators];
+				int fi = flow * impacts + impact;
+				if (flowImpactResults[fi] == null)
+					flowImpactResults[fi] = new double[indicators];
+				int pi = entryProcesses[e] * impacts + impact;
+				if (processImpactResults[pi] == null)
+					processImpactResults[pi] = new double[indicators];
+			}
 		}
 	}
 
-	private <T> void addValue(Map<T, List<AggregationValue>> map, T key, BigDecimal factor, double[] dqValues) {
-		List<AggregationValue> list = safeGetList(key, map);
-		int max = setup.exchangeDqSystem.getScoreCount();
-		for (int i = 0; i < dqValues.length; i++) {
-			double v = dqValues[i];
-			if (v != 0d || setup.processingType == ProcessingType.EXCLUDE)
+	/** Aggregates the values of the given indicator. */
+	private void aggregate(int indicator) {
+		AggregationType type = setup.aggregationType;
+		Aggregation flowAgg = new Aggregation(type, flows);
+		Aggregation impactAgg = new Aggregation(type, impacts);
+		Aggregation flowImpactAgg = new Aggregation(type, flows * impacts);
+		// the entries are ordered by process; thus, we only need the values
+		// of the current process for the process results
+		Aggregation processImpactAgg = new Aggregation(type, impacts);
+		int process = -1;
+		for (int e = 0; e < count; e++) {
+			if (impacts > 0 && entryProcesses[e] != process) {
+				if (process >= 0)
+					put(processImpactAgg, processImpactResults,
+							process * impacts, impacts, indicator);
+				processImpactAgg.clear();
+				process = entryProcesses[e];
+			}
+			int flow = entryFlows[e];
+			double value = entryValues[e][indicator];
+			double flowResult = entryResults[e];
+			flowAgg.add(flow, value, flowResult);
+			if (impacts == 0)
 				continue;
-			dqValues[i] = max;
+			double[] factors = flowFactors[flow];
+			for (int impact = 0; impact < impacts; impact++) {
+				double factor = factors[impact];
+				if (factor == 0)
+					continue;
+				double weight = flowResult * factor;
+				impactAgg.add(impact, value, weight);
+				flowImpactAgg.add(flow * impacts + impact, value, weight);
+				processImpactAgg.add(impact, value, weight);
+			}
 		}
-		list.add(new AggregationValue(dqValues, factor));
-	}
-
-	private double[] getDqValues(long processId, long flowId) {
-		return data.exchangeData.get(new LongPair(processId, flowId));
+		put(flowAgg, flowResults, 0, flows, indicator);
+		if (impacts == 0)
+			return;
+		put(processImpactAgg, processImpactResults, process * impacts,
+				impacts, indicator);
+		put(impactAgg, impactResults, 0, impacts, indicator);
+		put(flowImpactAgg, flowImpactResults, 0, flows * impacts, indicator);
 	}
 
-	private double getFlowResult(long processId, long flowId) {
-		return Math.abs(result.getSingleFlowResult(processId, flowId));
+	/**
+	 * Writes the aggregated values of the keys 0 .. size - 1 into the result
+	 * arrays at the given offset.
+	 */
+	private void put(Aggregation agg, double[][] results, int offset,
+			int size, int indicator) {
+		for (int key = 0; key < size; key++) {
+			double[] values = results[offset + key];
+			if (values != null)
+				values[indicator] = agg.get(key);
+		}
 	}
 
 	Map<Long, double[]> getFlowValues() {
-		return aggregate(flowAggregations);
+		Map<Long, double[]> values = new HashMap<>();
+		if (flowResults == null)
+			return values;
+		for (int flow = 0; flow < flows; flow++) {
+			if (flowResults[flow] != null)
+				values.put(result.flowIndex.getFlowAt(flow), flowResults[flow]);
+		}
+		return values;
 	}
 
 	Map<Long, double[]> getImpactValues() {
-		return aggregate(impactAggregations);
+		Map<Long, double[]> values = new HashMap<>();
+		if (impactResults == null)
+			return values;
+		for (int impact = 0; impact < impacts; impact++) {
+			if (impactResults[impact] != null)
+				values.put(result.impactIndex.getKeyAt(impact),
+						impactResults[impact]);
+		}
+		return values;
 	}
 
 	Map<LongPair, double[]> getImpactPerProcessValues() {
-		return aggregate(impactAggregationsPerProcess);
+		Map<LongPair, double[]> values = new HashMap<>();
+		if (processImpactResults == null)
+			return values;
+		for (int i = 0; i < processImpactResults.length; i++) {
+			if (processImpactResults[i] == null)
+				continue;
+			long processId = processIndex.getKeyAt(i / impacts);
+			long impactId = result.impactIndex.getKeyAt(i % impacts);
+			values.put(new LongPair(processId, impactId),
+					processImpactResults[i]);
+		}
+		return values;
 	}
 
 	Map<LongPair, double[]> getImpactPerFlowValues() {
-		return aggregate(impactAggregationsPerFlow);
-	}
-
-	private <T> Map<T, double[]> aggregate(Map<T, List<AggregationValue>> map) {
-		Map<T, double[]> values = new HashMap<>();
-		for (T key : map.keySet()) {
-			List<AggregationValue> toAggregate = map.get(key);
-			double[] result = Aggregation.applyTo(toAggregate, setup.aggregationType);
-			values.put(key, result);
+		Map<LongPair, double[]> values = new HashMap<>();
+		if (flowImpactResults == null)
+			return values;
+		for (int i = 0; i < flowImpactResults.length; i++) {
+			if (flowImpactResults[i] == null)
+				continue;
+			long flowId = result.flowIndex.getFlowAt(i / impacts);
+			long impactId = result.impactIndex.getKeyAt(i % impacts);
+			values.put(new LongPair(flowId, impactId), flowImpactResults[i]);
 		}
 		return values;
 	}
 
-	private <T> List<AggregationValue> safeGetList(T key, Map<T, List<AggregationValue>> map) {
-		List<AggregationValue> list = map.get(key);
-		if (list != null)
-			return list;
-		map.put(key, list = new ArrayList<>());
-		return list;
-	}
-
-	private double getImpactFactor(ContributionResult result, long impactId, long flowId) {
-		int flowIndex = result.flowIndex.getIndex(flowId);
-		int impactIndex = result.impactIndex.getIndex(impactId);
-		return result.impactFactors.get(impactIndex, flowIndex);
-	}
-
 }
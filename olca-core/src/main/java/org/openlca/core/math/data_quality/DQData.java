@@ -1,113 +1,302 @@
 package org.openlca.core.math.data_quality;
 
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.database.NativeSql;
-import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.ExchangeBlock;
+import org.openlca.core.matrix.LongIndex;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.DQSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+/**
+ * The data quality entries of the processes and exchanges of a product
+ * system. The entries are parsed into scores that are stored in primitive
+ * tables: the scores of an entry are stored in consecutive positions of an int
+ * array. The exchange entries are indexed by (process, flow) pairs of the
+ * ordinal process and flow indices that are packed into a single long key.
+ * Parsed entry strings are shared between calculations with the same data
+ * quality system as the same entries (like "(1;2;3;4;5)") occur very often.
+ */
 class DQData {
 
-	private static Logger log = LoggerFactory.getLogger(DQData.class);
-	Map<Long, double[]> processData = new HashMap<>();
-	Map<LongPair, double[]> exchangeData = new HashMap<>();
-	DQStatistics statistics = new DQStatistics();
-	private Set<Long> relevantFlowIds = new HashSet<>();
+	private static final Logger log = LoggerFactory.getLogger(DQData.class);
+
+	/** DQ system -> (entry -> scores); the score arrays are not modified. */
+	private static final Cache<String, Map<String, int[]>> parsedEntries = CacheBuilder
+			.newBuilder().maximumSize(20).build();
+
+	private final DQCalculationSetup setup;
+	private final LongIndex processIndex = new LongIndex();
+	private final LongIndex flowIndex = new LongIndex();
+
+	private int processWidth;
+	private final TIntArrayList processEntries = new TIntArrayList();
+	private int[] processScores;
 
+	private int exchangeWidth;
+	private final TLongIntHashMap exchangeEntries = new TLongIntHashMap(
+			Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, -1L, -1);
+	private final TIntArrayList exchangeScores = new TIntArrayList();
+
+	DQStatistics statistics;
+
+	/**
+	 * Loads the data quality entries of the product system of the given setup
+	 * from the database.
+	 */
 	public static DQData load(IDatabase db, DQCalculationSetup setup, long[] relevantFlowIds) {
-		DQData data = new DQData();
+		return load(db, null, setup, relevantFlowIds);
+	}
+
+	/**
+	 * Same as {@link #load(IDatabase, DQCalculationSetup, long[])} but the
+	 * entries of the exchanges are taken from the exchange cache of the given
+	 * matrix cache.
+	 */
+	public static DQData load(MatrixCache cache, DQCalculationSetup setup, long[] relevantFlowIds) {
+		return load(cache.getDatabase(), cache, setup, relevantFlowIds);
+	}
+
+	private static DQData load(IDatabase db, MatrixCache cache,
+			DQCalculationSetup setup, long[] relevantFlowIds) {
+		DQData data = new DQData(setup);
 		for (long id : relevantFlowIds) {
-			data.relevantFlowIds.add(id);
-		}
-		if (setup.processDqSystem != null) {
-			data.loadProcessEntries(db, setup);
+			data.flowIndex.put(id);
 		}
-		if (setup.exchangeDqSystem != null) {
-			data.loadExchangeEntries(db, setup);
+		data.loadProcessEntries(db);
+		data.statistics = new DQStatistics(data.processIndex,
+				indicators(setup.processDqSystem),
+				indicators(setup.exchangeDqSystem));
+		data.countProcessEntries();
+		// a system without indicators has no scores for the exchanges
+		if (indicators(setup.exchangeDqSystem) > 0) {
+			if (cache == null || !data.loadExchangeEntries(cache))
+				data.loadExchangeEntries(db);
 		}
 		return data;
 	}
 
-	private DQData() {
-		// hide constructor
+	private DQData(DQCalculationSetup setup) {
+		this.setup = setup;
+	}
+
+	private static int indicators(DQSystem system) {
+		return system == null || system.indicators == null
+				? 0
+				: system.indicators.size();
+	}
+
+	/**
+	 * Returns the scores of the data quality entry of the given process or
+	 * null if there is no entry for the process.
+	 */
+	double[] getProcessValues(long processId) {
+		int process = processIndex.getIndex(processId);
+		if (processScores == null || process < 0)
+			return null;
+		return toDouble(processScores, process * processWidth, processWidth);
 	}
 
-	private void loadProcessEntries(IDatabase db, DQCalculationSetup setup) {
+	/**
+	 * Returns the scores of the data quality entry of the exchange with the
+	 * given flow in the given process or null if there is no such entry.
+	 */
+	double[] getExchangeValues(long processId, long flowId) {
+		int process = processIndex.getIndex(processId);
+		int flow = flowIndex.getIndex(flowId);
+		if (process < 0 || flow < 0)
+			return null;
+		int entry = exchangeEntries.get(key(process, flow));
+		if (entry < 0)
+			return null;
+		double[] values = new double[exchangeWidth];
+		int offset = entry * exchangeWidth;
+		for (int i = 0; i < exchangeWidth; i++) {
+			values[i] = exchangeScores.get(offset + i);
+		}
+		return values;
+	}
+
+	/**
+	 * Loads the processes of the product system and parses their data quality
+	 * entries when a process data quality system is given.
+	 */
+	private void loadProcessEntries(IDatabase db) {
+		DQSystem system = setup.processDqSystem;
+		Map<String, int[]> parsed = system != null ? parsed(system) : null;
+		processWidth = indicators(system);
 		String query = "SELECT id, dq_entry FROM tbl_processes";
 		query += " INNER JOIN tbl_product_system_processes ON tbl_processes.id = tbl_product_system_processes.f_process ";
 		query += " WHERE tbl_product_system_processes.f_product_system = " + setup.productSystemId;
 		try {
-			NativeSql.on(db).query(query.toString(), (res) -> {
+			NativeSql.on(db).query(query, (res) -> {
 				long processId = res.getLong("id");
-				String dqEntry = res.getString("dq_entry");
-				int[] values = setup.processDqSystem.toValues(dqEntry);
-				processData.put(processId, toDouble(values));
-				increaseCounter(statistics.processCounts, 0);
-				for (int i = 0; i < values.length; i++) {
-					if (values[i] == 0)
-						continue;
-					increaseCounter(statistics.processCounts, i + 1);
-				}
+				if (processIndex.contains(processId))
+					return true;
+				processIndex.put(processId);
+				if (system == null)
+					return true;
+				int[] values = parse(system, parsed, res.getString("dq_entry"));
+				processEntries.add(values);
 				return true;
 			});
 		} catch (SQLException e) {
 			log.error("Error loading process data quality entries", e);
 		}
+		if (system != null)
+			processScores = processEntries.toArray();
 	}
 
-	private <T> void increaseCounter(Map<T, Integer> map, T key) {
-		if (!map.containsKey(key)) {
-			map.put(key, 1);
+	private void countProcessEntries() {
+		if (processScores == null)
 			return;
+		int[] counts = statistics.processCounts;
+		for (int p = 0; p < processIndex.size(); p++) {
+			counts[0]++;
+			int offset = p * processWidth;
+			for (int i = 0; i < processWidth; i++) {
+				if (processScores[offset + i] != 0)
+					counts[i + 1]++;
+			}
+		}
+	}
+
+	/**
+	 * Takes the exchange entries from the exchange cache. Returns false if
+	 * this failed and the entries need to be loaded from the database.
+	 */
+	private boolean loadExchangeEntries(MatrixCache cache) {
+		List<Long> processIds = new ArrayList<>(processIndex.size());
+		for (long id : processIndex.getKeys()) {
+			processIds.add(id);
+		}
+		Map<Long, ExchangeBlock> blocks;
+		try {
+			blocks = cache.getExchangeCache().getAll(processIds);
+		} catch (ExecutionException e) {
+			log.error("Error loading exchanges from cache", e);
+			return false;
+		}
+		DQSystem system = setup.exchangeDqSystem;
+		Map<String, int[]> parsed = parsed(system);
+		exchangeWidth = indicators(system);
+		for (int process = 0; process < processIndex.size(); process++) {
+			ExchangeBlock block = blocks.get(processIndex.getKeyAt(process));
+			if (block == null)
+				continue;
+			for (int i = 0; i < block.size(); i++) {
+				int flow = flowIndex.getIndex(block.flowId(i));
+				if (flow < 0)
+					continue;
+				addExchangeEntry(process, flow,
+						parse(system, parsed, block.dqEntry(i)));
+			}
 		}
-		map.put(key, map.get(key) + 1);
+		return true;
 	}
 
-	private void loadExchangeEntries(IDatabase db, DQCalculationSetup setup) {
+	private void loadExchangeEntries(IDatabase db) {
+		DQSystem system = setup.exchangeDqSystem;
+		Map<String, int[]> parsed = parsed(system);
+		exchangeWidth = indicators(system);
 		String query = "SELECT f_owner, f_flow, dq_entry FROM tbl_exchanges";
 		query += " INNER JOIN tbl_product_system_processes ON tbl_exchanges.f_owner = tbl_product_system_processes.f_process ";
 		query += " WHERE tbl_product_system_processes.f_product_system = " + setup.productSystemId;
 		try {
-			NativeSql.on(db).query(query.toString(), (res) -> {
-				long processId = res.getLong("f_owner");
-				long flowId = res.getLong("f_flow");
-				if (!relevantFlowIds.contains(flowId))
+			NativeSql.on(db).query(query, (res) -> {
+				int process = processIndex.getIndex(res.getLong("f_owner"));
+				int flow = flowIndex.getIndex(res.getLong("f_flow"));
+				if (process < 0 || flow < 0)
 					return true;
-				String dqEntry = res.getString("dq_entry");
-				int[] values = setup.exchangeDqSystem.toValues(dqEntry);
-				exchangeData.put(new LongPair(processId, flowId), toDouble(values));
-				increaseCounter(getMap(statistics.exchangeCounts, 0l), 0);
-				increaseCounter(getMap(statistics.exchangeCounts, processId), 0);
-				for (int i = 0; i < values.length; i++) {
-					if (values[i] == 0)
-						continue;
-					increaseCounter(getMap(statistics.exchangeCounts, 0l), i + 1);
-					increaseCounter(getMap(statistics.exchangeCounts, processId), i + 1);
-				}
+				addExchangeEntry(process, flow,
+						parse(system, parsed, res.getString("dq_entry")));
 				return true;
 			});
 		} catch (SQLException e) {
-			log.error("Error loading process data quality entries", e);
+			log.error("Error loading exchange data quality entries", e);
 		}
 	}
 
-	private Map<Integer, Integer> getMap(Map<Long, Map<Integer, Integer>> map, long id) {
-		if (!map.containsKey(id)) {
-			map.put(id, new HashMap<>());
+	private void addExchangeEntry(int process, int flow, int[] values) {
+		long key = key(process, flow);
+		int entry = exchangeEntries.get(key);
+		if (entry < 0) {
+			exchangeEntries.put(key, exchangeScores.size() / exchangeWidth);
+			exchangeScores.add(values);
+		} else {
+			// the last entry of a flow in a process is used
+			int offset = entry * exchangeWidth;
+			for (int i = 0; i < exchangeWidth; i++) {
+				exchangeScores.set(offset + i, values[i]);
+			}
+		}
+		int[] counts = statistics.exchangeCounts;
+		// a row in the statistics has the total count and the indicator counts
+		int row = (process + 1) * (exchangeWidth + 1);
+		counts[0]++;
+		counts[row]++;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == 0)
+				continue;
+			counts[i + 1]++;
+			counts[row + i + 1]++;
 		}
-		return map.get(id);
 	}
 
-	private double[] toDouble(int[] values) {
-		double[] result = new double[values.length];
-		for (int i = 0; i < values.length; i++) {
-			result[i] = values[i];
+	/** Packs the ordinals of a process and flow into a key. */
+	private static long key(int process, int flow) {
+		return ((long) process << 32) | (flow & 0xffffffffL);
+	}
+
+	/**
+	 * Returns the scores of the given entry from the given map of parsed
+	 * entries; the entry is parsed if it is not yet contained in the map.
+	 */
+	private static int[] parse(DQSystem system, Map<String, int[]> parsed,
+			String entry) {
+		String key = entry == null ? "" : entry;
+		int[] values = parsed.get(key);
+		if (values != null)
+			return values;
+		values = system.toValues(entry);
+		parsed.put(key, values);
+		return values;
+	}
+
+	/**
+	 * Returns the shared map of parsed entries of the given data quality
+	 * system. The version and last change of the system are part of the key so
+	 * that changed systems get a new map.
+	 */
+	private static Map<String, int[]> parsed(DQSystem system) {
+		String key = system.getId() + "/" + system.getVersion() + "/"
+				+ system.getLastChange();
+		try {
+			return parsedEntries.get(key, ConcurrentHashMap::new);
+		} catch (ExecutionException e) {
+			return new ConcurrentHashMap<>();
+		}
+	}
+
+	private static double[] toDouble(int[] values, int offset, int length) {
+		double[] result = new double[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = values[offset + i];
 		}
 		return result;
 	}
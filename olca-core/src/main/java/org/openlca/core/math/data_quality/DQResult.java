@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
@@ -14,15 +15,14 @@ public class DQResult {
 
 	public final DQCalculationSetup setup;
 	public final DQStatistics statistics;
-	private Map<Long, double[]> processValues = new HashMap<>();
+	private final DQData data;
 	private Map<Long, double[]> flowValues = new HashMap<>();
 	private Map<Long, double[]> impactValues = new HashMap<>();
-	private Map<LongPair, double[]> flowValuesPerProcess = new HashMap<>();
 	private Map<LongPair, double[]> impactValuesPerFlow = new HashMap<>();
 	private Map<LongPair, double[]> impactValuesPerProcess = new HashMap<>();
 
 	public double[] get(ProcessDescriptor process) {
-		return processValues.get(process.getId());
+		return data.getProcessValues(process.getId());
 	}
 
 	public double[] get(FlowDescriptor flow) {
@@ -34,7 +34,7 @@ public class DQResult {
 	}
 
 	public double[] get(ProcessDescriptor process, FlowDescriptor flow) {
-		return flowValuesPerProcess.get(new LongPair(process.getId(), flow.getId()));
+		return data.getExchangeValues(process.getId(), flow.getId());
 	}
 
 	public double[] get(ProcessDescriptor process, ImpactCategoryDescriptor impact) {
@@ -46,19 +46,37 @@ public class DQResult {
 	}
 
 	public static DQResult calculate(IDatabase db, ContributionResult result, DQCalculationSetup setup) {
-		if (db == null || result == null || setup == null)
+		if (db == null || !canCalculate(result, setup))
 			return null;
+		DQData data = DQData.load(db, setup, result.flowIndex.getFlowIds());
+		return calculate(data, result, setup);
+	}
+
+	/**
+	 * Calculates the data quality result where the data quality entries of the
+	 * exchanges are taken from the exchange cache of the given matrix cache
+	 * (which is typically filled from the calculation of the given result).
+	 */
+	public static DQResult calculate(MatrixCache cache, ContributionResult result, DQCalculationSetup setup) {
+		if (cache == null || !canCalculate(result, setup))
+			return null;
+		DQData data = DQData.load(cache, setup, result.flowIndex.getFlowIds());
+		return calculate(data, result, setup);
+	}
+
+	private static boolean canCalculate(ContributionResult result, DQCalculationSetup setup) {
+		if (result == null || setup == null)
+			return false;
 		if (setup.processDqSystem == null && setup.exchangeDqSystem == null || setup.aggregationType == null
 				|| setup.productSystemId == 0l)
-			return null;
-		DQData data = DQData.load(db, setup, result.flowIndex.getFlowIds());
-		DQResult dqResult = new DQResult(setup, data.statistics);
-		if (setup.processDqSystem != null) {
-			dqResult.processValues = data.processData;
-		}
+			return false;
+		return true;
+	}
+
+	private static DQResult calculate(DQData data, ContributionResult result, DQCalculationSetup setup) {
+		DQResult dqResult = new DQResult(setup, data);
 		if (setup.exchangeDqSystem == null)
 			return dqResult;
-		dqResult.flowValuesPerProcess = data.exchangeData;
 		if (setup.aggregationType == AggregationType.NONE)
 			return dqResult;
 		DQCalculator calculator = new DQCalculator(result, data, setup);
@@ -70,9 +88,10 @@ public class DQResult {
 		return dqResult;
 	}
 
-	private DQResult(DQCalculationSetup setup, DQStatistics statistics) {
+	private DQResult(DQCalculationSetup setup, DQData data) {
 		this.setup = setup;
-		this.statistics = statistics;
+		this.data = data;
+		this.statistics = data.statistics;
 	}
 
 }
@@ -1,54 +1,67 @@
 package org.openlca.core.math.data_quality;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import org.openlca.core.matrix.LongIndex;
 import org.openlca.core.model.DQIndicator;
 import org.openlca.core.model.descriptors.ProcessDescriptor;
 
 public class DQStatistics {
 
-	Map<Integer, Integer> processCounts = new HashMap<>();
-	Map<Long, Map<Integer, Integer>> exchangeCounts = new HashMap<>();
+	/**
+	 * The number of processes: at position 0 the number of all processes and
+	 * at position i the number of processes with a value for indicator i.
+	 */
+	final int[] processCounts;
+
+	/**
+	 * The number of exchanges in rows with the same layout as the process
+	 * counts: row 0 contains the counts of all processes and row p + 1 the
+	 * counts of the process p of the process index.
+	 */
+	final int[] exchangeCounts;
 
-	DQStatistics() {
+	private final LongIndex processIndex;
+	private final int exchangeWidth;
 
+	DQStatistics(LongIndex processIndex, int processIndicators,
+			int exchangeIndicators) {
+		this.processIndex = processIndex;
+		processCounts = new int[processIndicators + 1];
+		exchangeWidth = exchangeIndicators + 1;
+		exchangeCounts = new int[(processIndex.size() + 1) * exchangeWidth];
 	}
 
 	public int getNoOfProcesses() {
-		return get(processCounts, 0);
+		return processCounts.length == 0 ? 0 : processCounts[0];
 	}
 
 	public int getNoOfProcesses(DQIndicator indicator) {
-		return get(processCounts, indicator.position);
+		int pos = indicator.position;
+		if (pos < 0 || pos >= processCounts.length)
+			return 0;
+		return processCounts[pos];
 	}
 
 	public int getNoOfExchanges() {
-		return get(exchangeCounts, 0l, 0);
+		return getExchangeCount(0, 0);
 	}
 
 	public int getNoOfExchanges(ProcessDescriptor process) {
-		return get(exchangeCounts, process.getId(), 0);
+		int idx = processIndex.getIndex(process.getId());
+		return idx < 0 ? 0 : getExchangeCount(idx + 1, 0);
 	}
 
 	public int getNoOfExchanges(DQIndicator indicator) {
-		return get(exchangeCounts, 0l, indicator.position);
+		return getExchangeCount(0, indicator.position);
 	}
 
 	public int getNoOfExchanges(ProcessDescriptor process, DQIndicator indicator) {
-		return get(exchangeCounts, process.getId(), indicator.position);
-	}
-
-	private <T> int get(Map<T, Integer> map, T key) {
-		if (map == null || !map.containsKey(key))
-			return 0;
-		return map.get(key);
+		int idx = processIndex.getIndex(process.getId());
+		return idx < 0 ? 0 : getExchangeCount(idx + 1, indicator.position);
 	}
 
-	private <T1, T2> int get(Map<T1, Map<T2, Integer>> map, T1 key1, T2 key2) {
-		if (!map.containsKey(key1))
+	private int getExchangeCount(int row, int pos) {
+		if (pos < 0 || pos >= exchangeWidth)
 			return 0;
-		Map<T2, Integer> innerMap = map.get(key1);
-		return get(innerMap, key2);
+		return exchangeCounts[row * exchangeWidth + pos];
 	}
 }
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.AllocationMethod;
@@ -35,24 +36,34 @@ class AllocationIndex {
 
 	public static AllocationIndex create(TechIndex productIndex,
 			AllocationMethod method, MatrixCache cache) {
-		return new AllocationIndex(productIndex, method, cache);
+		return new AllocationIndex(productIndex, method, cache,
+				productIndex.getProcessIds());
+	}
+
+	/**
+	 * Creates an allocation index that only contains the factors of the given
+	 * processes.
+	 */
+	static AllocationIndex create(TechIndex productIndex,
+			AllocationMethod method, MatrixCache cache, Set<Long> processIds) {
+		return new AllocationIndex(productIndex, method, cache, processIds);
 	}
 
 	private AllocationIndex(TechIndex productIndex, AllocationMethod method,
-			MatrixCache cache) {
+			MatrixCache cache, Set<Long> processIds) {
 		this.method = method;
 		this.productIndex = productIndex;
 		this.cache = cache;
-		List<CalcAllocationFactor> factors = loadFactors();
+		List<CalcAllocationFactor> factors = loadFactors(processIds);
 		for (CalcAllocationFactor factor : factors)
 			index(factor);
 	}
 
-	private List<CalcAllocationFactor> loadFactors() {
+	private List<CalcAllocationFactor> loadFactors(Set<Long> processIds) {
 		try {
 			List<CalcAllocationFactor> factors = new ArrayList<>();
 			Map<Long, List<CalcAllocationFactor>> factorMap = cache
-					.getAllocationCache().getAll(productIndex.getProcessIds());
+					.getAllocationCache().getAll(processIds);
 			for (List<CalcAllocationFactor> list : factorMap.values())
 				factors.addAll(list);
 			return factors;
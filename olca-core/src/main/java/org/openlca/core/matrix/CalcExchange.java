@@ -28,4 +28,33 @@ public class CalcExchange {
 	public double costValue;
 	public String costFormula;
 	public long currency;
+
+	/** The data quality entry of the exchange, e.g. "(1;2;3;4;5)". */
+	public String dqEntry;
+
+	public CalcExchange copy() {
+		CalcExchange c = new CalcExchange();
+		c.processId = processId;
+		c.flowId = flowId;
+		c.exchangeId = exchangeId;
+		c.input = input;
+		c.conversionFactor = conversionFactor;
+		c.amount = amount;
+		c.amountFormula = amountFormula;
+		c.uncertaintyType = uncertaintyType;
+		c.parameter1 = parameter1;
+		c.parameter2 = parameter2;
+		c.parameter3 = parameter3;
+		c.parameter1Formula = parameter1Formula;
+		c.parameter2Formula = parameter2Formula;
+		c.parameter3Formula = parameter3Formula;
+		c.flowType = flowType;
+		c.defaultProviderId = defaultProviderId;
+		c.avoidedProduct = avoidedProduct;
+		c.costValue = costValue;
+		c.costFormula = costFormula;
+		c.currency = currency;
+		c.dqEntry = dqEntry;
+		return c;
+	}
 }
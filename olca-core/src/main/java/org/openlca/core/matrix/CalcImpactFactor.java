@@ -112,4 +112,21 @@ public class CalcImpactFactor {
 	public void setParameter3Formula(String parameter3Formula) {
 		this.parameter3Formula = parameter3Formula;
 	}
+
+	public CalcImpactFactor copy() {
+		CalcImpactFactor c = new CalcImpactFactor();
+		c.imactCategoryId = imactCategoryId;
+		c.flowId = flowId;
+		c.conversionFactor = conversionFactor;
+		c.amount = amount;
+		c.amountFormula = amountFormula;
+		c.uncertaintyType = uncertaintyType;
+		c.parameter1 = parameter1;
+		c.parameter2 = parameter2;
+		c.parameter3 = parameter3;
+		c.parameter1Formula = parameter1Formula;
+		c.parameter2Formula = parameter2Formula;
+		c.parameter3Formula = parameter3Formula;
+		return c;
+	}
 }
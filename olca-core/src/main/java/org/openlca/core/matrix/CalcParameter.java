@@ -124,4 +124,22 @@ class CalcParameter {
 		this.parameter3Formula = parameter3Formula;
 	}
 
+	public CalcParameter copy() {
+		CalcParameter c = new CalcParameter();
+		c.name = name;
+		c.inputParameter = inputParameter;
+		c.owner = owner;
+		c.scope = scope;
+		c.value = value;
+		c.formula = formula;
+		c.uncertaintyType = uncertaintyType;
+		c.parameter1 = parameter1;
+		c.parameter2 = parameter2;
+		c.parameter3 = parameter3;
+		c.parameter1Formula = parameter1Formula;
+		c.parameter2Formula = parameter2Formula;
+		c.parameter3Formula = parameter3Formula;
+		return c;
+	}
+
 }
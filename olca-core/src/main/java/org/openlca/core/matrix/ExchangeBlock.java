@@ -0,0 +1,260 @@
+package org.openlca.core.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.UncertaintyType;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * The exchanges of a process stored in primitive arrays with one entry per
+ * exchange. The values that every exchange has (IDs, flow, amount, conversion
+ * factor, and flags) are always stored. Formulas, uncertainty distributions,
+ * costs, and data quality entries are only stored when at least one exchange
+ * of the process has them; formulas and data quality entries are interned.
+ * The indices and matrices of a calculation can be built directly from these
+ * arrays; {@link #get(int)} creates an exchange object when it is needed (e.g.
+ * for a matrix cell).
+ */
+public final class ExchangeBlock {
+
+	private static final Interner<String> interner = Interners
+			.newWeakInterner();
+
+	private static final byte INPUT = 1;
+	private static final byte AVOIDED_PRODUCT = 2;
+
+	// indices of the formula columns
+	private static final int AMOUNT = 0;
+	private static final int PARAM1 = 1;
+	private static final int PARAM2 = 2;
+	private static final int PARAM3 = 3;
+	private static final int COST = 4;
+
+	public final long processId;
+
+	private final int size;
+	private final long[] exchangeIds;
+	private final long[] flowIds;
+	private final long[] providerIds;
+	private final double[] amounts;
+	private final double[] factors;
+	private final byte[] flags;
+	private final byte[] flowTypes;
+
+	/** Ordinals of the uncertainty types; -1 = null. */
+	private final byte[] uncertaintyTypes;
+	private final double[][] parameters;
+	private final String[][] formulas;
+	private final double[] costValues;
+	private final long[] currencies;
+	private final String[] dqEntries;
+
+	private ExchangeBlock(long processId, List<CalcExchange> exchanges) {
+		this.processId = processId;
+		size = exchanges.size();
+		exchangeIds = new long[size];
+		flowIds = new long[size];
+		providerIds = new long[size];
+		amounts = new double[size];
+		factors = new double[size];
+		flags = new byte[size];
+		flowTypes = new byte[size];
+		boolean withUncertainty = false;
+		boolean withCosts = false;
+		boolean withDqEntries = false;
+		boolean[] withFormulas = new boolean[5];
+		for (int i = 0; i < size; i++) {
+			CalcExchange e = exchanges.get(i);
+			exchangeIds[i] = e.exchangeId;
+			flowIds[i] = e.flowId;
+			providerIds[i] = e.defaultProviderId;
+			amounts[i] = e.amount;
+			factors[i] = e.conversionFactor;
+			flags[i] = (byte) ((e.input ? INPUT : 0)
+					| (e.avoidedProduct ? AVOIDED_PRODUCT : 0));
+			flowTypes[i] = ordinal(e.flowType);
+			withUncertainty |= e.uncertaintyType != null
+					|| e.parameter1 != 0 || e.parameter2 != 0
+					|| e.parameter3 != 0;
+			withCosts |= e.costValue != 0 || e.currency != 0;
+			withDqEntries |= e.dqEntry != null;
+			withFormulas[AMOUNT] |= e.amountFormula != null;
+			withFormulas[PARAM1] |= e.parameter1Formula != null;
+			withFormulas[PARAM2] |= e.parameter2Formula != null;
+			withFormulas[PARAM3] |= e.parameter3Formula != null;
+			withFormulas[COST] |= e.costFormula != null;
+		}
+		if (withUncertainty) {
+			uncertaintyTypes = new byte[size];
+			parameters = new double[3][size];
+			for (int i = 0; i < size; i++) {
+				CalcExchange e = exchanges.get(i);
+				uncertaintyTypes[i] = ordinal(e.uncertaintyType);
+				parameters[0][i] = e.parameter1;
+				parameters[1][i] = e.parameter2;
+				parameters[2][i] = e.parameter3;
+			}
+		} else {
+			uncertaintyTypes = null;
+			parameters = null;
+		}
+		if (withCosts) {
+			costValues = new double[size];
+			currencies = new long[size];
+			for (int i = 0; i < size; i++) {
+				costValues[i] = exchanges.get(i).costValue;
+				currencies[i] = exchanges.get(i).currency;
+			}
+		} else {
+			costValues = null;
+			currencies = null;
+		}
+		if (withDqEntries) {
+			dqEntries = new String[size];
+			for (int i = 0; i < size; i++)
+				dqEntries[i] = intern(exchanges.get(i).dqEntry);
+		} else {
+			dqEntries = null;
+		}
+		formulas = new String[5][];
+		for (int k = 0; k < 5; k++) {
+			if (!withFormulas[k])
+				continue;
+			formulas[k] = new String[size];
+			for (int i = 0; i < size; i++)
+				formulas[k][i] = intern(formula(exchanges.get(i), k));
+		}
+	}
+
+	/** Creates a block with the given exchanges of the given process. */
+	public static ExchangeBlock of(long processId,
+			List<CalcExchange> exchanges) {
+		return new ExchangeBlock(processId, exchanges);
+	}
+
+	/** Creates a block without exchanges for the given process. */
+	public static ExchangeBlock empty(long processId) {
+		return new ExchangeBlock(processId, new ArrayList<>(0));
+	}
+
+	private static byte ordinal(Enum<?> value) {
+		return value == null ? -1 : (byte) value.ordinal();
+	}
+
+	private static String formula(CalcExchange e, int column) {
+		switch (column) {
+		case AMOUNT:
+			return e.amountFormula;
+		case PARAM1:
+			return e.parameter1Formula;
+		case PARAM2:
+			return e.parameter2Formula;
+		case PARAM3:
+			return e.parameter3Formula;
+		default:
+			return e.costFormula;
+		}
+	}
+
+	private static String intern(String s) {
+		return s == null ? null : interner.intern(s);
+	}
+
+	/** The number of exchanges in this block. */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long exchangeId(int i) {
+		return exchangeIds[i];
+	}
+
+	public long flowId(int i) {
+		return flowIds[i];
+	}
+
+	public FlowType flowType(int i) {
+		byte type = flowTypes[i];
+		return type < 0 ? null : FlowType.values()[type];
+	}
+
+	public boolean isInput(int i) {
+		return (flags[i] & INPUT) != 0;
+	}
+
+	public boolean isAvoidedProduct(int i) {
+		return (flags[i] & AVOIDED_PRODUCT) != 0;
+	}
+
+	/** 0 if the exchange has no default provider. */
+	public long defaultProviderId(int i) {
+		return providerIds[i];
+	}
+
+	public double amount(int i) {
+		return amounts[i];
+	}
+
+	public double conversionFactor(int i) {
+		return factors[i];
+	}
+
+	/** The data quality entry of the given exchange; null if not present. */
+	public String dqEntry(int i) {
+		return dqEntries == null ? null : dqEntries[i];
+	}
+
+	/** Creates a new exchange object with the values of the given exchange. */
+	public CalcExchange get(int i) {
+		CalcExchange e = new CalcExchange();
+		e.processId = processId;
+		e.exchangeId = exchangeIds[i];
+		e.flowId = flowIds[i];
+		e.flowType = flowType(i);
+		e.input = isInput(i);
+		e.avoidedProduct = isAvoidedProduct(i);
+		e.defaultProviderId = providerIds[i];
+		e.amount = amounts[i];
+		e.conversionFactor = factors[i];
+		if (uncertaintyTypes != null) {
+			byte type = uncertaintyTypes[i];
+			e.uncertaintyType = type < 0 ? null
+					: UncertaintyType.values()[type];
+			e.parameter1 = parameters[0][i];
+			e.parameter2 = parameters[1][i];
+			e.parameter3 = parameters[2][i];
+		}
+		if (costValues != null) {
+			e.costValue = costValues[i];
+			e.currency = currencies[i];
+		}
+		e.amountFormula = formula(AMOUNT, i);
+		e.parameter1Formula = formula(PARAM1, i);
+		e.parameter2Formula = formula(PARAM2, i);
+		e.parameter3Formula = formula(PARAM3, i);
+		e.costFormula = formula(COST, i);
+		e.dqEntry = dqEntry(i);
+		return e;
+	}
+
+	private String formula(int column, int i) {
+		String[] values = formulas[column];
+		return values == null ? null : values[i];
+	}
+
+	/** Creates a list with new exchange objects of this block. */
+	public List<CalcExchange> toList() {
+		List<CalcExchange> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			list.add(get(i));
+		return list;
+	}
+}
@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.SplittableRandom;
+
 import org.openlca.core.math.NumberGenerator;
 import org.openlca.core.model.FlowType;
 import org.openlca.core.model.UncertaintyType;
@@ -13,12 +15,21 @@ class ExchangeCell {
 
 	final CalcExchange exchange;
 	public double allocationFactor = 1d;
-	private NumberGenerator generator;
 
 	ExchangeCell(CalcExchange exchange) {
 		this.exchange = exchange;
 	}
 
+	/**
+	 * Creates a copy of this cell with a copy of the exchange so that formulas
+	 * can be evaluated on the copy independently from this cell.
+	 */
+	ExchangeCell copy() {
+		ExchangeCell copy = new ExchangeCell(exchange.copy());
+		copy.allocationFactor = allocationFactor;
+		return copy;
+	}
+
 	void eval(FormulaInterpreter interpreter) {
 		if (interpreter == null)
 			return;
@@ -57,6 +68,25 @@ class ExchangeCell {
 		}
 	}
 
+	/**
+	 * Returns true if only the matrix value of this cell is needed in
+	 * calculations: the exchange has no formulas, no uncertainty distribution,
+	 * and no costs.
+	 */
+	boolean isPlainValue() {
+		if (exchange == null)
+			return true;
+		CalcExchange e = exchange;
+		return e.amountFormula == null
+				&& e.parameter1Formula == null
+				&& e.parameter2Formula == null
+				&& e.parameter3Formula == null
+				&& e.costFormula == null
+				&& e.costValue == 0
+				&& (e.uncertaintyType == null
+						|| e.uncertaintyType == UncertaintyType.NONE);
+	}
+
 	double getMatrixValue() {
 		if (exchange == null)
 			return 0;
@@ -78,13 +108,17 @@ class ExchangeCell {
 			return val;
 	}
 
-	double getNextSimulationValue() {
+	/**
+	 * Generates a new value for the cell from the given random source. The
+	 * generator is created with the current distribution parameters, which
+	 * may have been changed by a formula evaluation.
+	 */
+	double getNextSimulationValue(SplittableRandom random) {
 		UncertaintyType type = exchange.uncertaintyType;
 		if (type == null || type == UncertaintyType.NONE)
 			return getMatrixValue();
-		if (generator == null)
-			generator = createGenerator(type);
-		double amount = generator.next() * allocationFactor
+		NumberGenerator generator = createGenerator(type);
+		double amount = generator.next(random) * allocationFactor
 				* exchange.conversionFactor;
 		if (exchange.input && !exchange.avoidedProduct)
 			return -amount;
@@ -1,28 +1,57 @@
 package org.openlca.core.matrix;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.openlca.core.math.CSCMatrix;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.expressions.FormulaInterpreter;
 
-import gnu.trove.impl.Constants;
-import gnu.trove.iterator.TIntObjectIterator;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+/**
+ * The technology or intervention matrix of an inventory. The entries are
+ * stored in compressed sparse column (CSC) format (see {@link CSCMatrix}). Only
+ * the entries which values can change in a calculation or which have costs
+ * are stored as exchange cells (see {@link ExchangeCell#isPlainValue()}); for
+ * all other entries just the matrix value is stored. The CSC arrays are not
+ * modified after the creation of a matrix (adding an entry creates new arrays)
+ * so that they can be shared between copies. Large matrices should be created
+ * with a {@link Builder}.
+ */
 public class ExchangeMatrix {
 
-	private int columns;
-	private int rows;
-	private final TIntObjectHashMap<TIntObjectHashMap<ExchangeCell>> cells;
+	private final int columns;
+	private final int rows;
+
+	private int[] columnPointers;
+	private int[] rowIndices;
+	private double[] values;
+
+	/** The sorted positions of the exchange cells in the CSC arrays. */
+	private int[] cellPositions;
+	private ExchangeCell[] cells;
 
 	ExchangeMatrix(int rows, int columns) {
-		this.columns = columns;
+		this(rows, columns, new int[columns + 1], new int[0], new double[0],
+				new int[0], new ExchangeCell[0]);
+	}
+
+	private ExchangeMatrix(int rows, int columns, int[] columnPointers,
+			int[] rowIndices, double[] values, int[] cellPositions,
+			ExchangeCell[] cells) {
 		this.rows = rows;
-		cells = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-				Constants.DEFAULT_LOAD_FACTOR, -1);
+		this.columns = columns;
+		this.columnPointers = columnPointers;
+		this.rowIndices = rowIndices;
+		this.values = values;
+		this.cellPositions = cellPositions;
+		this.cells = cells;
 	}
 
 	public boolean isEmpty() {
-		return cells.isEmpty();
+		return columnPointers[columns] == 0;
 	}
 
 	/**
@@ -30,89 +59,290 @@ public class ExchangeMatrix {
 	 * occupation of the matrix.
 	 */
 	public double getLoadFactor() {
-		TIntObjectIterator<TIntObjectHashMap<ExchangeCell>> it = cells
-				.iterator();
-		double size = 0;
-		while (it.hasNext()) {
-			it.advance();
-			TIntObjectHashMap<?> map = it.value();
-			if (map == null)
-				continue;
-			size += map.size();
-		}
-		return size / (rows * columns);
+		return columnPointers[columns] / ((double) rows * columns);
 	}
 
+	/**
+	 * Sets the given cell in the given row and column. If there is no entry
+	 * for the row and column yet, the CSC arrays are copied; thus, this method
+	 * should be only used for small matrices.
+	 */
 	void setEntry(int row, int col, ExchangeCell cell) {
-		TIntObjectHashMap<ExchangeCell> rowMap = cells.get(row);
-		if (rowMap == null) {
-			rowMap = new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
-					Constants.DEFAULT_LOAD_FACTOR, -1);
-			cells.put(row, rowMap);
+		int pos = find(row, col);
+		if (pos < 0)
+			pos = insert(row, col, -(pos + 1));
+		int idx = Arrays.binarySearch(cellPositions, pos);
+		if (idx >= 0) {
+			cells[idx] = cell;
+			return;
 		}
-		rowMap.put(col, cell);
+		idx = -(idx + 1);
+		int n = cells.length;
+		int[] newPositions = new int[n + 1];
+		ExchangeCell[] newCells = new ExchangeCell[n + 1];
+		System.arraycopy(cellPositions, 0, newPositions, 0, idx);
+		System.arraycopy(cells, 0, newCells, 0, idx);
+		newPositions[idx] = pos;
+		newCells[idx] = cell;
+		System.arraycopy(cellPositions, idx, newPositions, idx + 1, n - idx);
+		System.arraycopy(cells, idx, newCells, idx + 1, n - idx);
+		cellPositions = newPositions;
+		cells = newCells;
 	}
 
-	ExchangeCell getEntry(int row, int col) {
-		TIntObjectHashMap<ExchangeCell> rowMap = cells.get(row);
-		if (rowMap == null)
-			return null;
-		return rowMap.get(col);
+	/** Inserts a new entry at the given position and returns the position. */
+	private int insert(int row, int col, int pos) {
+		int nnz = columnPointers[columns];
+		int[] newPointers = Arrays.copyOf(columnPointers, columns + 1);
+		for (int j = col + 1; j <= columns; j++)
+			newPointers[j]++;
+		int[] newIndices = new int[nnz + 1];
+		double[] newValues = new double[nnz + 1];
+		System.arraycopy(rowIndices, 0, newIndices, 0, pos);
+		System.arraycopy(values, 0, newValues, 0, pos);
+		newIndices[pos] = row;
+		System.arraycopy(rowIndices, pos, newIndices, pos + 1, nnz - pos);
+		System.arraycopy(values, pos, newValues, pos + 1, nnz - pos);
+		int[] newPositions = Arrays.copyOf(cellPositions, cells.length);
+		for (int i = 0; i < newPositions.length; i++) {
+			if (newPositions[i] >= pos)
+				newPositions[i]++;
+		}
+		columnPointers = newPointers;
+		rowIndices = newIndices;
+		values = newValues;
+		cellPositions = newPositions;
+		return pos;
+	}
+
+	/**
+	 * Replaces the entries of the given column with the given cells (row ->
+	 * cell). The CSC arrays are copied so that copies of this matrix are not
+	 * changed.
+	 */
+	void setColumn(int col, TIntObjectHashMap<ExchangeCell> column) {
+		int start = columnPointers[col];
+		int end = columnPointers[col + 1];
+		int nnz = columnPointers[columns];
+		int[] newRows = column.keys();
+		Arrays.sort(newRows);
+		int diff = newRows.length - (end - start);
+
+		int[] newPointers = Arrays.copyOf(columnPointers, columns + 1);
+		for (int j = col + 1; j <= columns; j++)
+			newPointers[j] += diff;
+		int[] newIndices = new int[nnz + diff];
+		double[] newValues = new double[nnz + diff];
+		System.arraycopy(rowIndices, 0, newIndices, 0, start);
+		System.arraycopy(values, 0, newValues, 0, start);
+		System.arraycopy(rowIndices, end, newIndices, end + diff, nnz - end);
+		System.arraycopy(values, end, newValues, end + diff, nnz - end);
+
+		// the cells before and after the column and the new plain values
+		// and cells of the column
+		int first = firstCellAt(start);
+		int last = firstCellAt(end);
+		int newCellCount = 0;
+		for (int k = 0; k < newRows.length; k++) {
+			ExchangeCell cell = column.get(newRows[k]);
+			newIndices[start + k] = newRows[k];
+			newValues[start + k] = cell.getMatrixValue();
+			if (!cell.isPlainValue())
+				newCellCount++;
+		}
+		int n = first + newCellCount + (cells.length - last);
+		int[] newPositions = new int[n];
+		ExchangeCell[] newCells = new ExchangeCell[n];
+		System.arraycopy(cellPositions, 0, newPositions, 0, first);
+		System.arraycopy(cells, 0, newCells, 0, first);
+		int idx = first;
+		for (int k = 0; k < newRows.length; k++) {
+			ExchangeCell cell = column.get(newRows[k]);
+			if (cell.isPlainValue())
+				continue;
+			newPositions[idx] = start + k;
+			newCells[idx] = cell;
+			idx++;
+		}
+		for (int i = last; i < cells.length; i++) {
+			newPositions[idx] = cellPositions[i] + diff;
+			newCells[idx] = cells[i];
+			idx++;
+		}
+
+		columnPointers = newPointers;
+		rowIndices = newIndices;
+		values = newValues;
+		cellPositions = newPositions;
+		cells = newCells;
+	}
+
+	/**
+	 * Returns the index of the first cell with a position that is equal to or
+	 * larger than the given position in the CSC arrays.
+	 */
+	private int firstCellAt(int pos) {
+		int idx = Arrays.binarySearch(cellPositions, pos);
+		return idx < 0 ? -(idx + 1) : idx;
+	}
+
+	/**
+	 * Returns the position of the given entry in the CSC arrays or a negative
+	 * value (-(insertion point) - 1) if there is no such entry.
+	 */
+	private int find(int row, int col) {
+		return Arrays.binarySearch(rowIndices, columnPointers[col],
+				columnPointers[col + 1], row);
 	}
 
 	public double getValue(int row, int col) {
-		ExchangeCell cell = getEntry(row, col);
-		if (cell == null)
+		int pos = find(row, col);
+		if (pos < 0)
 			return 0;
-		else
-			return cell.getMatrixValue();
+		int idx = Arrays.binarySearch(cellPositions, pos);
+		return idx < 0 ? values[pos] : cells[idx].getMatrixValue();
+	}
+
+	/**
+	 * Calculates a 128 bit hash of the current values of this matrix (given
+	 * as two long values). The hash does not depend on the order in which the
+	 * cells were added so that two matrices with the same values have the same
+	 * hash. Note that formulas are not evaluated here; if the values depend on
+	 * formulas, the hash should be calculated after their evaluation.
+	 */
+	public long[] contentHash() {
+		long[] hash = { rows * 31L + columns, rows * 17L + columns };
+		iterateValues((row, col, value) -> {
+			long bits = Double.doubleToLongBits(value);
+			long pos = ((long) row << 32) | (col & 0xffffffffL);
+			hash[0] += mix(pos * 0x9e3779b97f4a7c15L ^ bits);
+			hash[1] ^= mix(bits * 0xc2b2ae3d27d4eb4fL + pos);
+		});
+		return hash;
+	}
+
+	/** The finalizer of the SplitMix64 generator. */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
 	}
 
 	public <M extends IMatrix> M createRealMatrix(IMatrixFactory<M> factory) {
-		if(rows == 0 || columns == 0)
+		if (rows == 0 || columns == 0)
 			return null;
 		M matrix = factory.create(rows, columns);
-		iterate((row, col, cell) -> {
-			matrix.set(row, col, cell.getMatrixValue());
-		});
+		apply(matrix);
 		return matrix;
 	}
 
+	/**
+	 * Creates a CSC matrix with the current values of this matrix directly
+	 * from the CSC arrays (without setting the values entry by entry).
+	 */
+	public CSCMatrix createCSCMatrix() {
+		if (rows == 0 || columns == 0)
+			return null;
+		double[] vals = Arrays.copyOf(values, columnPointers[columns]);
+		for (int i = 0; i < cells.length; i++)
+			vals[cellPositions[i]] = cells[i].getMatrixValue();
+		return new CSCMatrix(rows, columns,
+				Arrays.copyOf(columnPointers, columns + 1),
+				Arrays.copyOf(rowIndices, rowIndices.length), vals);
+	}
+
 	void eval(FormulaInterpreter interpreter) {
-		iterate((row, col, cell) -> {
+		for (ExchangeCell cell : cells)
 			cell.eval(interpreter);
-		});
+	}
+
+	/** Evaluates the formulas of the cells in the given column. */
+	void eval(FormulaInterpreter interpreter, int col) {
+		int end = firstCellAt(columnPointers[col + 1]);
+		for (int i = firstCellAt(columnPointers[col]); i < end; i++)
+			cells[i].eval(interpreter);
 	}
 
 	void apply(IMatrix matrix) {
-		iterate((row, col, cell) -> {
-			matrix.set(row, col, cell.getMatrixValue());
-		});
+		iterateValues((row, col, value) -> matrix.set(row, col, value));
 	}
 
-	void simulate(IMatrix matrix) {
+	/**
+	 * Sets the current values of the given column of this matrix in the given
+	 * matrix. Only the entries with a changed value are set.
+	 */
+	void applyColumn(IMatrix matrix, int col) {
+		double[] column = new double[rows];
+		int next = firstCellAt(columnPointers[col]);
+		for (int pos = columnPointers[col]; pos < columnPointers[col
+				+ 1]; pos++) {
+			if (next < cells.length && cellPositions[next] == pos) {
+				column[rowIndices[pos]] = cells[next].getMatrixValue();
+				next++;
+			} else {
+				column[rowIndices[pos]] = values[pos];
+			}
+		}
+		double[] old = matrix.getColumn(col);
+		for (int row = 0; row < rows; row++) {
+			if (old[row] != column[row])
+				matrix.set(row, col, column[row]);
+		}
+	}
+
+	/**
+	 * Sets new values for the exchange cells of this matrix in the given
+	 * matrix. The other entries have no uncertainty distributions and are
+	 * not changed; thus, the given matrix has to be created from this matrix.
+	 */
+	void simulate(IMatrix matrix, SplittableRandom random) {
 		iterate((row, col, cell) -> {
-			matrix.set(row, col, cell.getNextSimulationValue());
+			matrix.set(row, col, cell.getNextSimulationValue(random));
 		});
 	}
 
+	/**
+	 * Creates a deep copy of this matrix where each cell has its own copy of
+	 * the exchange. Thus, formulas can be evaluated on the copy without
+	 * changing the values of this matrix (e.g. in parallel simulations). The
+	 * CSC arrays are shared.
+	 */
+	ExchangeMatrix copy() {
+		ExchangeCell[] copies = new ExchangeCell[cells.length];
+		for (int i = 0; i < cells.length; i++)
+			copies[i] = cells[i].copy();
+		return new ExchangeMatrix(rows, columns, columnPointers, rowIndices,
+				values, cellPositions, copies);
+	}
+
+	/**
+	 * Iterates over the exchange cells of this matrix in column order. The
+	 * entries that are stored as plain values are not visited.
+	 */
 	void iterate(CellFunction fn) {
-		TIntObjectIterator<TIntObjectHashMap<ExchangeCell>> rowIterator = cells
-				.iterator();
-		while (rowIterator.hasNext()) {
-			rowIterator.advance();
-			int row = rowIterator.key();
-			TIntObjectHashMap<ExchangeCell> rowMap = rowIterator.value();
-			if (rowMap == null)
-				continue;
-			TIntObjectIterator<ExchangeCell> colIterator = rowMap.iterator();
-			while (colIterator.hasNext()) {
-				colIterator.advance();
-				int col = colIterator.key();
-				ExchangeCell cell = colIterator.value();
-				if (cell == null)
-					continue;
-				fn.apply(row, col, cell);
+		int col = 0;
+		for (int i = 0; i < cells.length; i++) {
+			int pos = cellPositions[i];
+			while (columnPointers[col + 1] <= pos)
+				col++;
+			fn.apply(rowIndices[pos], col, cells[i]);
+		}
+	}
+
+	/** Iterates over the current values of all entries in column order. */
+	private void iterateValues(ValueFunction fn) {
+		int next = 0;
+		for (int col = 0; col < columns; col++) {
+			for (int pos = columnPointers[col]; pos < columnPointers[col
+					+ 1]; pos++) {
+				double value;
+				if (next < cells.length && cellPositions[next] == pos) {
+					value = cells[next].getMatrixValue();
+					next++;
+				} else {
+					value = values[pos];
+				}
+				fn.apply(rowIndices[pos], col, value);
 			}
 		}
 	}
@@ -124,4 +354,96 @@ public class ExchangeMatrix {
 
 	}
 
+	@FunctionalInterface
+	private interface ValueFunction {
+
+		void apply(int row, int col, double value);
+
+	}
+
+	/**
+	 * Assembles an exchange matrix in a single pass: the entries are collected
+	 * in primitive arrays and then sorted into the CSC arrays by column and
+	 * row. If an entry is added more than once, the last one is taken.
+	 */
+	static class Builder {
+
+		private final int rows;
+		private final int columns;
+
+		private int size;
+		private int[] entryRows = new int[1024];
+		private int[] entryColumns = new int[1024];
+		private double[] entryValues = new double[1024];
+		private final TIntObjectHashMap<ExchangeCell> entryCells = new TIntObjectHashMap<>();
+
+		Builder(int rows, int columns) {
+			this.rows = rows;
+			this.columns = columns;
+		}
+
+		void add(int row, int col, ExchangeCell cell) {
+			if (size == entryRows.length) {
+				int capacity = 2 * size;
+				entryRows = Arrays.copyOf(entryRows, capacity);
+				entryColumns = Arrays.copyOf(entryColumns, capacity);
+				entryValues = Arrays.copyOf(entryValues, capacity);
+			}
+			entryRows[size] = row;
+			entryColumns[size] = col;
+			entryValues[size] = cell.getMatrixValue();
+			if (!cell.isPlainValue())
+				entryCells.put(size, cell);
+			size++;
+		}
+
+		ExchangeMatrix build() {
+			// count the entries of each column
+			int[] starts = new int[columns + 1];
+			for (int i = 0; i < size; i++)
+				starts[entryColumns[i] + 1]++;
+			for (int col = 0; col < columns; col++)
+				starts[col + 1] += starts[col];
+
+			// sort the entries by column and then by row and the order in
+			// which they were added: key = row << 32 | entry
+			long[] keys = new long[size];
+			int[] next = Arrays.copyOf(starts, columns);
+			for (int i = 0; i < size; i++)
+				keys[next[entryColumns[i]]++] = ((long) entryRows[i] << 32) | i;
+			for (int col = 0; col < columns; col++)
+				Arrays.sort(keys, starts[col], starts[col + 1]);
+
+			int[] pointers = new int[columns + 1];
+			int[] indices = new int[size];
+			double[] vals = new double[size];
+			int[] positions = new int[entryCells.size()];
+			ExchangeCell[] cells = new ExchangeCell[entryCells.size()];
+			int nnz = 0;
+			int n = 0;
+			for (int col = 0; col < columns; col++) {
+				pointers[col] = nnz;
+				int end = starts[col + 1];
+				for (int k = starts[col]; k < end; k++) {
+					int row = (int) (keys[k] >>> 32);
+					if (k + 1 < end && (int) (keys[k + 1] >>> 32) == row)
+						continue; // replaced by a later entry
+					int entry = (int) keys[k];
+					indices[nnz] = row;
+					vals[nnz] = entryValues[entry];
+					ExchangeCell cell = entryCells.get(entry);
+					if (cell != null) {
+						positions[n] = nnz;
+						cells[n] = cell;
+						n++;
+					}
+					nnz++;
+				}
+			}
+			pointers[columns] = nnz;
+			return new ExchangeMatrix(rows, columns, pointers,
+					Arrays.copyOf(indices, nnz), Arrays.copyOf(vals, nnz),
+					Arrays.copyOf(positions, n), Arrays.copyOf(cells, n));
+		}
+	}
 }
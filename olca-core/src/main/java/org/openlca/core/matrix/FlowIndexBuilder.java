@@ -1,7 +1,6 @@
 package org.openlca.core.matrix;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -32,30 +31,42 @@ class FlowIndexBuilder {
 
 	FlowIndex build() {
 		FlowIndex index = new FlowIndex();
-		Map<Long, List<CalcExchange>> map = loadExchanges();
+		Map<Long, ExchangeBlock> map = loadExchanges();
 		for (Long processId : techIndex.getProcessIds()) {
-			List<CalcExchange> exchanges = map.get(processId);
-			for (CalcExchange e : exchanges) {
-				if (index.contains(e.flowId))
+			ExchangeBlock exchanges = map.get(processId);
+			for (int i = 0; i < exchanges.size(); i++) {
+				long flowId = exchanges.flowId(i);
+				if (index.contains(flowId))
 					continue; // already indexed as flow
-				if (techIndex.contains(LongPair.of(e.processId, e.flowId)))
-					continue; // the exchange is an output product
-				if (techIndex.isLinked(LongPair.of(e.processId, e.exchangeId)))
-					continue; // the exchange is a linked exchange
-				if (e.input || e.flowType == FlowType.ELEMENTARY_FLOW)
-					indexFlow(e, index);
-				else if (allocationMethod == null
-						|| allocationMethod == AllocationMethod.NONE)
-					indexFlow(e, index); // non-allocated co-product -> handle
-											// like elementary flow
+				if (isFlow(exchanges, i))
+					indexFlow(flowId, exchanges.isInput(i), index);
 			}
 		}
 		return index;
 	}
 
-	private Map<Long, List<CalcExchange>> loadExchanges() {
+	/**
+	 * Returns true if the exchange i of the given block is mapped to a row of
+	 * the intervention matrix and, thus, its flow needs to be in the flow
+	 * index.
+	 */
+	boolean isFlow(ExchangeBlock exchanges, int i) {
+		long processId = exchanges.processId;
+		if (techIndex.contains(processId, exchanges.flowId(i)))
+			return false; // the exchange is an output product
+		if (techIndex.isLinked(processId, exchanges.exchangeId(i)))
+			return false; // the exchange is a linked exchange
+		if (exchanges.isInput(i)
+				|| exchanges.flowType(i) == FlowType.ELEMENTARY_FLOW)
+			return true;
+		// non-allocated co-product -> handle like elementary flow
+		return allocationMethod == null
+				|| allocationMethod == AllocationMethod.NONE;
+	}
+
+	private Map<Long, ExchangeBlock> loadExchanges() {
 		try {
-			Map<Long, List<CalcExchange>> map = cache.getExchangeCache()
+			Map<Long, ExchangeBlock> map = cache.getExchangeCache()
 					.getAll(techIndex.getProcessIds());
 			return map;
 		} catch (Exception e) {
@@ -64,11 +75,11 @@ class FlowIndexBuilder {
 		}
 	}
 
-	private void indexFlow(CalcExchange e, FlowIndex index) {
-		if (e.input)
-			index.putInputFlow(e.flowId);
+	private void indexFlow(long flowId, boolean input, FlowIndex index) {
+		if (input)
+			index.putInputFlow(flowId);
 		else
-			index.putOutputFlow(e.flowId);
+			index.putOutputFlow(flowId);
 	}
 
 }
@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.SplittableRandom;
+
 import org.openlca.core.math.NumberGenerator;
 import org.openlca.core.model.UncertaintyType;
 import org.openlca.expressions.FormulaInterpreter;
@@ -12,10 +14,9 @@ import org.slf4j.LoggerFactory;
  */
 class ImpactFactorCell {
 
-	private final long methodId;
+	final long methodId;
 	private final boolean inputFlow;
-	private final CalcImpactFactor factor;
-	private NumberGenerator generator;
+	final CalcImpactFactor factor;
 
 	ImpactFactorCell(CalcImpactFactor factor, long methodId, boolean inputFlow) {
 		this.factor = factor;
@@ -23,6 +24,14 @@ class ImpactFactorCell {
 		this.inputFlow = inputFlow;
 	}
 
+	/**
+	 * Creates a copy of this cell with a copy of the factor so that formulas
+	 * can be evaluated on the copy independently from this cell.
+	 */
+	ImpactFactorCell copy() {
+		return new ImpactFactorCell(factor.copy(), methodId, inputFlow);
+	}
+
 	void eval(FormulaInterpreter interpreter) {
 		if (interpreter == null)
 			return;
@@ -63,13 +72,12 @@ class ImpactFactorCell {
 		return inputFlow ? -amount : amount;
 	}
 
-	double getNextSimulationValue() {
+	double getNextSimulationValue(SplittableRandom random) {
 		UncertaintyType type = factor.getUncertaintyType();
 		if (type == null || type == UncertaintyType.NONE)
 			return getMatrixValue();
-		if (generator == null)
-			generator = createGenerator(type);
-		double amount = generator.next() * factor.getConversionFactor();
+		NumberGenerator generator = createGenerator(type);
+		double amount = generator.next(random) * factor.getConversionFactor();
 		return inputFlow ? -amount : amount;
 	}
 
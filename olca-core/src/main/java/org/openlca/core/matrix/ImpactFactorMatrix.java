@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.SplittableRandom;
+
 import gnu.trove.impl.Constants;
 import gnu.trove.map.hash.TIntObjectHashMap;
 
@@ -76,15 +78,34 @@ public class ImpactFactorMatrix {
 	}
 
 	public void simulate(final IMatrix matrix) {
+		simulate(matrix, new SplittableRandom());
+	}
+
+	public void simulate(final IMatrix matrix, final SplittableRandom random) {
+		iterate(new Fn() {
+			@Override
+			public void apply(int row, int col, ImpactFactorCell cell) {
+				matrix.set(row, col, cell.getNextSimulationValue(random));
+			}
+		});
+	}
+
+	/**
+	 * Creates a deep copy of this matrix where each cell has its own copy of
+	 * the impact factor.
+	 */
+	public ImpactFactorMatrix copy() {
+		final ImpactFactorMatrix copy = new ImpactFactorMatrix(rows, columns);
 		iterate(new Fn() {
 			@Override
 			public void apply(int row, int col, ImpactFactorCell cell) {
-				matrix.set(row, col, cell.getNextSimulationValue());
+				copy.setEntry(row, col, cell.copy());
 			}
 		});
+		return copy;
 	}
 
-	private void iterate(Fn fn) {
+	void iterate(Fn fn) {
 		for (int row : cells.keys()) {
 			if (row == -1)
 				continue;
@@ -102,7 +123,7 @@ public class ImpactFactorMatrix {
 		}
 	}
 
-	private interface Fn {
+	interface Fn {
 		void apply(int row, int col, ImpactFactorCell cell);
 	}
 
@@ -1,5 +1,7 @@
 package org.openlca.core.matrix;
 
+import java.util.SplittableRandom;
+
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -50,9 +52,40 @@ public class ImpactTable {
 	 * simulate).
 	 */
 	public void simulate(ImpactMatrix matrix, FormulaInterpreter interpreter) {
+		simulate(matrix, interpreter, new SplittableRandom());
+	}
+
+	/**
+	 * Same as {@link #simulate(ImpactMatrix, FormulaInterpreter)} but the
+	 * values are generated from the given random source.
+	 */
+	public void simulate(ImpactMatrix matrix, FormulaInterpreter interpreter,
+			SplittableRandom random) {
 		evalFormulas(interpreter);
 		if (factorMatrix != null)
-			factorMatrix.simulate(matrix.factorMatrix);
+			factorMatrix.simulate(matrix.factorMatrix, random);
+	}
+
+	/**
+	 * Sets the current values of the impact factors (e.g. after their formulas
+	 * were evaluated with a {@link ParameterGraph}) to the given matrix.
+	 */
+	public void apply(ImpactMatrix matrix) {
+		if (factorMatrix != null)
+			factorMatrix.apply(matrix.factorMatrix);
+	}
+
+	/**
+	 * Creates a copy of this table with a copy of the factor matrix. The
+	 * indices are shared.
+	 */
+	public ImpactTable copy() {
+		ImpactTable copy = new ImpactTable();
+		copy.categoryIndex = categoryIndex;
+		copy.flowIndex = flowIndex;
+		if (factorMatrix != null)
+			copy.factorMatrix = factorMatrix.copy();
+		return copy;
 	}
 
 	private void evalFormulas(FormulaInterpreter interpreter) {
@@ -1,7 +1,10 @@
 package org.openlca.core.matrix;
 
+import java.util.SplittableRandom;
+
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
+import org.openlca.core.math.SparseMatrixFactory;
 import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.AllocationMethod;
 import org.openlca.expressions.FormulaInterpreter;
@@ -40,13 +43,54 @@ public class Inventory {
 		InventoryMatrix matrix = new InventoryMatrix();
 		matrix.flowIndex = flowIndex;
 		matrix.productIndex = productIndex;
-		IMatrix enviMatrix = interventionMatrix.createRealMatrix(factory);
+		IMatrix enviMatrix = createRealMatrix(interventionMatrix, factory);
 		matrix.interventionMatrix = enviMatrix;
-		IMatrix techMatrix = technologyMatrix.createRealMatrix(factory);
+		IMatrix techMatrix = createRealMatrix(technologyMatrix, factory);
 		matrix.technologyMatrix = techMatrix;
 		return matrix;
 	}
 
+	/**
+	 * Rebuilds the columns of the given process with its current exchanges in
+	 * the cache (thus, a changed process has to be evicted from the cache
+	 * before). Returns the indices of the changed columns or null if the
+	 * process cannot be updated in this inventory because its indices would
+	 * change (e.g. when the process has a new elementary flow or does not
+	 * provide a linked product anymore); a new inventory has to be built in
+	 * this case. Processes that are not part of the inventory have no columns.
+	 */
+	public int[] update(MatrixCache matrixCache, long processId) {
+		return new InventoryBuilder(matrixCache, productIndex, allocationMethod)
+				.update(this, processId);
+	}
+
+	/**
+	 * Evaluates the formulas of the given columns and sets their values in the
+	 * technology and intervention matrices of the given matrix (see
+	 * {@link #update(MatrixCache, long)}). The matrices are modified in place;
+	 * callers that still need the old values (e.g. a factorization of the
+	 * technology matrix) have to copy them before.
+	 */
+	public void updateMatrix(InventoryMatrix matrix, int[] columns,
+			FormulaInterpreter interpreter) {
+		for (int col : columns) {
+			if (interpreter != null) {
+				technologyMatrix.eval(interpreter, col);
+				interventionMatrix.eval(interpreter, col);
+			}
+			technologyMatrix.applyColumn(matrix.technologyMatrix, col);
+			interventionMatrix.applyColumn(matrix.interventionMatrix, col);
+		}
+	}
+
+	private IMatrix createRealMatrix(ExchangeMatrix m,
+			IMatrixFactory<?> factory) {
+		// the sparse solver works on the CSC format of the exchange matrix
+		if (factory instanceof SparseMatrixFactory)
+			return m.createCSCMatrix();
+		return m.createRealMatrix(factory);
+	}
+
 	/**
 	 * Re-evaluates the parameters and formulas in the inventory (because they
 	 * may changed), generates new values for the entries that have an
@@ -55,11 +99,38 @@ public class Inventory {
 	 * (so normally you first call createMatrix and than simulate).
 	 */
 	public void simulate(InventoryMatrix matrix, FormulaInterpreter interpreter) {
+		simulate(matrix, interpreter, new SplittableRandom());
+	}
+
+	/**
+	 * Same as {@link #simulate(InventoryMatrix, FormulaInterpreter)} but the
+	 * values are generated from the given random source.
+	 */
+	public void simulate(InventoryMatrix matrix, FormulaInterpreter interpreter,
+			SplittableRandom random) {
 		evalFormulas(interpreter);
 		if (technologyMatrix != null)
-			technologyMatrix.simulate(matrix.technologyMatrix);
+			technologyMatrix.simulate(matrix.technologyMatrix, random);
+		if (interventionMatrix != null)
+			interventionMatrix.simulate(matrix.interventionMatrix, random);
+	}
+
+	/**
+	 * Creates a copy of this inventory with copies of the exchange matrices.
+	 * The indices are shared as they are not modified in calculations. Formulas
+	 * can be evaluated on the copy without changing this inventory, so that
+	 * copies can be used in parallel simulations.
+	 */
+	public Inventory copy() {
+		Inventory copy = new Inventory();
+		copy.productIndex = productIndex;
+		copy.flowIndex = flowIndex;
+		copy.allocationMethod = allocationMethod;
+		if (technologyMatrix != null)
+			copy.technologyMatrix = technologyMatrix.copy();
 		if (interventionMatrix != null)
-			interventionMatrix.simulate(matrix.interventionMatrix);
+			copy.interventionMatrix = interventionMatrix.copy();
+		return copy;
 	}
 
 	private void evalFormulas(FormulaInterpreter interpreter) {
@@ -1,5 +1,6 @@
 package org.openlca.core.matrix;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -9,6 +10,16 @@ import org.openlca.core.model.FlowType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * Builds the inventory of a product system. The technology and intervention
+ * matrices are assembled column by column in a single pass over the exchanges
+ * of the processes (see {@link ExchangeMatrix.Builder}).
+ */
 class InventoryBuilder {
 
 	private final MatrixCache cache;
@@ -17,8 +28,12 @@ class InventoryBuilder {
 
 	private FlowIndex flowIndex;
 	private AllocationIndex allocationTable;
-	private ExchangeMatrix technologyMatrix;
-	private ExchangeMatrix interventionMatrix;
+	private ExchangeMatrix.Builder technologyMatrix;
+	private ExchangeMatrix.Builder interventionMatrix;
+
+	/** The entries of the current column: row -> cell. */
+	private final TIntObjectHashMap<ExchangeCell> techColumn = newColumn();
+	private final TIntObjectHashMap<ExchangeCell> enviColumn = newColumn();
 
 	InventoryBuilder(MatrixCache matrixCache, TechIndex productIndex,
 			AllocationMethod allocationMethod) {
@@ -33,36 +48,115 @@ class InventoryBuilder {
 			allocationTable = AllocationIndex.create(techIndex,
 					allocationMethod, cache);
 		flowIndex = FlowIndex.build(cache, techIndex, allocationMethod);
-		technologyMatrix = new ExchangeMatrix(techIndex.size(),
+		technologyMatrix = new ExchangeMatrix.Builder(techIndex.size(),
 				techIndex.size());
-		interventionMatrix = new ExchangeMatrix(flowIndex.size(),
+		interventionMatrix = new ExchangeMatrix.Builder(flowIndex.size(),
 				techIndex.size());
 		return createInventory();
 	}
 
+	/**
+	 * Rebuilds the columns of the given process in the exchange matrices of
+	 * the given inventory with the current exchanges of the process in the
+	 * cache. Returns the indices of the updated columns or null if this is
+	 * not possible because the indices of the inventory would change (e.g.
+	 * when the process has a new elementary flow).
+	 */
+	int[] update(Inventory inventory, long processId) {
+		List<LongPair> processProducts = techIndex.getProviders(processId);
+		if (processProducts.isEmpty())
+			return new int[0];
+		ExchangeBlock block;
+		try {
+			block = cache.getExchangeCache().get(processId);
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to load exchanges from cache", e);
+			return null;
+		}
+		flowIndex = inventory.flowIndex;
+		if (!matchesIndices(block))
+			return null;
+		if (allocationMethod != null
+				&& allocationMethod != AllocationMethod.NONE)
+			allocationTable = AllocationIndex.create(techIndex,
+					allocationMethod, cache, Collections.singleton(processId));
+		int[] columns = new int[processProducts.size()];
+		CalcExchange[] exchanges = new CalcExchange[block.size()];
+		for (int k = 0; k < columns.length; k++) {
+			LongPair processProduct = processProducts.get(k);
+			int col = techIndex.getIndex(processProduct);
+			columns[k] = col;
+			for (int i = 0; i < block.size(); i++) {
+				putExchangeValue(processProduct, block, i, exchanges);
+			}
+			inventory.technologyMatrix.setColumn(col, techColumn);
+			inventory.interventionMatrix.setColumn(col, enviColumn);
+			techColumn.clear();
+			enviColumn.clear();
+		}
+		return columns;
+	}
+
+	/**
+	 * Returns true if the given exchanges still provide the products of the
+	 * process in the tech-index and if all their flows are contained in the
+	 * flow index.
+	 */
+	private boolean matchesIndices(ExchangeBlock block) {
+		TLongHashSet flows = new TLongHashSet();
+		FlowIndexBuilder flowCheck = new FlowIndexBuilder(cache, techIndex,
+				allocationMethod);
+		for (int i = 0; i < block.size(); i++) {
+			long flowId = block.flowId(i);
+			flows.add(flowId);
+			if (!flowCheck.isFlow(block, i))
+				continue;
+			if (!flowIndex.contains(flowId))
+				return false;
+		}
+		for (LongPair product : techIndex.getProviders(block.processId)) {
+			if (!flows.contains(product.getSecond()))
+				return false;
+		}
+		return true;
+	}
+
 	private Inventory createInventory() {
 		Inventory inventory = new Inventory();
 		inventory.allocationMethod = allocationMethod;
 		inventory.flowIndex = flowIndex;
-		inventory.interventionMatrix = interventionMatrix;
 		inventory.productIndex = techIndex;
-		inventory.technologyMatrix = technologyMatrix;
 		fillMatrices();
+		inventory.interventionMatrix = interventionMatrix.build();
+		inventory.technologyMatrix = technologyMatrix.build();
 		return inventory;
 	}
 
+	private static TIntObjectHashMap<ExchangeCell> newColumn() {
+		return new TIntObjectHashMap<>(Constants.DEFAULT_CAPACITY,
+				Constants.DEFAULT_LOAD_FACTOR, -1);
+	}
+
 	private void fillMatrices() {
 		try {
-			Map<Long, List<CalcExchange>> map = cache.getExchangeCache()
+			Map<Long, ExchangeBlock> map = cache.getExchangeCache()
 					.getAll(techIndex.getProcessIds());
 			for (Long processId : techIndex.getProcessIds()) {
-				List<CalcExchange> exchanges = map.get(processId);
+				ExchangeBlock block = map.get(processId);
+				// the exchange objects are only created for matrix cells
+				CalcExchange[] exchanges = new CalcExchange[block.size()];
 				List<LongPair> processProducts = techIndex
 						.getProviders(processId);
 				for (LongPair processProduct : processProducts) {
-					for (CalcExchange exchange : exchanges) {
-						putExchangeValue(processProduct, exchange);
+					int col = techIndex.getIndex(processProduct);
+					if (col < 0)
+						continue;
+					for (int i = 0; i < block.size(); i++) {
+						putExchangeValue(processProduct, block, i, exchanges);
 					}
+					flush(col, techColumn, technologyMatrix);
+					flush(col, enviColumn, interventionMatrix);
 				}
 			}
 		} catch (Exception e) {
@@ -71,51 +165,71 @@ class InventoryBuilder {
 		}
 	}
 
-	private void putExchangeValue(LongPair processProduct, CalcExchange e) {
-		if (!e.input && processProduct.equals(e.processId, e.flowId)) {
+	private void flush(int col, TIntObjectHashMap<ExchangeCell> column,
+			ExchangeMatrix.Builder matrix) {
+		TIntObjectIterator<ExchangeCell> it = column.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			matrix.add(it.key(), col, it.value());
+		}
+		column.clear();
+	}
+
+	/**
+	 * Adds the exchange i of the given block to the technology or intervention
+	 * column of the given process product. The exchange object is created
+	 * when it is first added to a column and is then shared by the columns of
+	 * the process products (e.g. in case of allocation).
+	 */
+	private void putExchangeValue(LongPair processProduct, ExchangeBlock block,
+			int i, CalcExchange[] exchanges) {
+		long flowId = block.flowId(i);
+		boolean input = block.isInput(i);
+		int row;
+		TIntObjectHashMap<ExchangeCell> column;
+		if (!input && processProduct.equals(block.processId, flowId)) {
 			// the reference product
-			int idx = techIndex.getIndex(processProduct);
-			add(idx, processProduct, technologyMatrix, e);
+			row = techIndex.getIndex(processProduct);
+			column = techColumn;
 
-		} else if (e.flowType == FlowType.ELEMENTARY_FLOW) {
+		} else if (block.flowType(i) == FlowType.ELEMENTARY_FLOW) {
 			// elementary exchanges
-			addIntervention(processProduct, e);
+			row = flowIndex.getIndex(flowId);
+			column = enviColumn;
 
-		} else if (e.input) {
+		} else if (input) {
 
-			if (techIndex.isLinked(LongPair.of(e.processId, e.exchangeId))) {
+			int provider = techIndex.getLinkedIndex(block.processId,
+					block.exchangeId(i));
+			if (provider >= 0) {
 				// linked product inputs
-				addProcessLink(processProduct, e);
+				row = provider;
+				column = techColumn;
 			} else {
 				// an unlinked product input
-				addIntervention(processProduct, e);
+				row = flowIndex.getIndex(flowId);
+				column = enviColumn;
 			}
 
 		} else if (allocationMethod == null
 				|| allocationMethod == AllocationMethod.NONE) {
 			// non allocated output products
-			addIntervention(processProduct, e);
-		}
-	}
-
-	private void addProcessLink(LongPair processProduct, CalcExchange e) {
-		LongPair exchange = LongPair.of(e.processId, e.exchangeId);
-		LongPair provider = techIndex.getLinkedProvider(exchange);
-		int row = techIndex.getIndex(provider);
-		add(row, processProduct, technologyMatrix, e);
-	}
+			row = flowIndex.getIndex(flowId);
+			column = enviColumn;
 
-	private void addIntervention(LongPair processProduct, CalcExchange e) {
-		int row = flowIndex.getIndex(e.flowId);
-		add(row, processProduct, interventionMatrix, e);
+		} else {
+			return;
+		}
+		if (row < 0)
+			return;
+		if (exchanges[i] == null)
+			exchanges[i] = block.get(i);
+		add(row, processProduct, column, exchanges[i]);
 	}
 
-	private void add(int row, LongPair processProduct, ExchangeMatrix matrix,
-			CalcExchange exchange) {
-		int col = techIndex.getIndex(processProduct);
-		if (row < 0 || col < 0)
-			return;
-		ExchangeCell existingCell = matrix.getEntry(row, col);
+	private void add(int row, LongPair processProduct,
+			TIntObjectHashMap<ExchangeCell> column, CalcExchange exchange) {
+		ExchangeCell existingCell = column.get(row);
 		if (existingCell != null) {
 			// self loops or double entries
 			exchange = mergeExchanges(existingCell, exchange);
@@ -127,7 +241,7 @@ class InventoryBuilder {
 			double factor = allocationTable.getFactor(processProduct, exchange);
 			cell.allocationFactor = factor;
 		}
-		matrix.setEntry(row, col, cell);
+		column.put(row, cell);
 	}
 
 	private CalcExchange mergeExchanges(ExchangeCell existingCell,
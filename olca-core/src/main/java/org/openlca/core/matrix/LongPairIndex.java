@@ -0,0 +1,116 @@
+package org.openlca.core.matrix;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from pairs of long values to int values. The
+ * pairs are stored as two consecutive entries in a flat array so that neither
+ * puts nor lookups create any objects. The values must be non-negative; -1 is
+ * returned for a pair that is not contained in this map.
+ */
+class LongPairIndex {
+
+	private static final int FREE = -1;
+
+	/** The key pairs: keys[2 * slot] and keys[2 * slot + 1]. */
+	private long[] keys;
+
+	/** The values of the slots; FREE for empty slots. */
+	private int[] values;
+
+	private int size;
+
+	/** mask = slot count - 1; the slot count is a power of 2. */
+	private int mask;
+
+	LongPairIndex() {
+		this(16);
+	}
+
+	LongPairIndex(int expectedSize) {
+		int slots = 16;
+		while (slots < 2 * expectedSize)
+			slots <<= 1;
+		allocate(slots);
+	}
+
+	private void allocate(int slots) {
+		keys = new long[2 * slots];
+		values = new int[slots];
+		Arrays.fill(values, FREE);
+		mask = slots - 1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the value of the given pair or -1 if it is not contained in this
+	 * map.
+	 */
+	int get(long first, long second) {
+		int slot = hash(first, second) & mask;
+		while (values[slot] != FREE) {
+			if (keys[2 * slot] == first && keys[2 * slot + 1] == second)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		return FREE;
+	}
+
+	boolean contains(long first, long second) {
+		return get(first, second) != FREE;
+	}
+
+	/**
+	 * Adds the given pair with the given (non-negative) value if it is not yet
+	 * contained in this map. Returns the old value of the pair or -1 if it was
+	 * added.
+	 */
+	int putIfAbsent(long first, long second, int value) {
+		int slot = hash(first, second) & mask;
+		while (values[slot] != FREE) {
+			if (keys[2 * slot] == first && keys[2 * slot + 1] == second)
+				return values[slot];
+			slot = (slot + 1) & mask;
+		}
+		keys[2 * slot] = first;
+		keys[2 * slot + 1] = second;
+		values[slot] = value;
+		size++;
+		if (2 * size > values.length)
+			rehash();
+		return FREE;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(2 * oldValues.length);
+		for (int old = 0; old < oldValues.length; old++) {
+			if (oldValues[old] == FREE)
+				continue;
+			long first = oldKeys[2 * old];
+			long second = oldKeys[2 * old + 1];
+			int slot = hash(first, second) & mask;
+			while (values[slot] != FREE)
+				slot = (slot + 1) & mask;
+			keys[2 * slot] = first;
+			keys[2 * slot + 1] = second;
+			values[slot] = oldValues[old];
+		}
+	}
+
+	private static int hash(long first, long second) {
+		// mixes the pair with the finalizer of the 64-bit MurmurHash3; the
+		// database IDs are often sequential so that we need to spread them
+		long h = first * 0x9E3779B97F4A7C15L + second;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+}
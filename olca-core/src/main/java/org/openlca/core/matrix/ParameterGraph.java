@@ -0,0 +1,565 @@
+package org.openlca.core.matrix;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.DoubleConsumer;
+
+import org.openlca.core.model.UncertaintyType;
+import org.openlca.expressions.CompiledExpression;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.FormulaParser;
+import org.openlca.expressions.InterpreterException;
+import org.openlca.expressions.Scope;
+import org.openlca.expressions.TokenMgrError;
+import org.openlca.expressions.VariableFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A dependency graph of the parameters of a parameter table and of the
+ * formulas of the exchanges and impact factors that reference them: global
+ * parameters -> process / LCIA method parameters -> exchange and impact factor
+ * formulas. The formulas are compiled once and the parameters are evaluated in
+ * the order of their dependencies. When parameter values change (in a
+ * simulation run or via {@link #setValue}), only the parameters and formulas
+ * that depend on changed values are evaluated again on the next update.
+ * Formulas that cannot be compiled or that need the lazy evaluation of the
+ * interpreter (e.g. an if-function with an unknown or invalid variable in the
+ * branch that is not taken) are evaluated with a {@link FormulaInterpreter}
+ * that is bound to the current parameter values.
+ *
+ * The calculated values are written into the exchanges and impact factors of
+ * the given tables and the simulated parameter values into the parameters of
+ * the parameter table. The graph is not thread-safe; in parallel simulations
+ * each worker needs its own graph on its own copies of the tables.
+ */
+public class ParameterGraph {
+
+	private static final Map<String, Double> constants = new HashMap<>();
+
+	static {
+		constants.put("pi", Math.PI);
+		constants.put("e", Math.E);
+		constants.put("true", 1.0);
+		constants.put("false", 0.0);
+	}
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
+	/** parameter scope -> parameter name (in lower case) -> node */
+	private final TLongObjectHashMap<Map<String, Node>> scopes = new TLongObjectHashMap<>();
+
+	/** The parameter nodes in the order of their dependencies. */
+	private final List<Node> nodes = new ArrayList<>();
+
+	private final List<Target> targets = new ArrayList<>();
+
+	/** The nodes that are currently visited when the nodes are sorted. */
+	private final List<Node> path = new ArrayList<>();
+
+	/** The nodes with values that were set via {@link #setValue}. */
+	private final List<Node> redefined = new ArrayList<>();
+
+	private boolean initialized;
+
+	/** The interpreter for formulas that cannot be evaluated compiled. */
+	private FormulaInterpreter interpreter;
+
+	private ParameterGraph() {
+	}
+
+	/**
+	 * Builds the dependency graph for the given tables. The inventory and
+	 * impact table are optional and can be null.
+	 */
+	public static ParameterGraph build(ParameterTable parameters,
+			Inventory inventory, ImpactTable impacts) {
+		ParameterGraph g = new ParameterGraph();
+		List<Node> all = new ArrayList<>();
+		for (CalcParameter param : parameters.getParameters()) {
+			Node node = new Node(param);
+			Map<String, Node> scope = g.scopes.get(param.getOwner());
+			if (scope == null) {
+				scope = new HashMap<>();
+				g.scopes.put(param.getOwner(), scope);
+			}
+			scope.put(key(param.getName()), node);
+			all.add(node);
+		}
+		for (Node node : all)
+			g.compile(node);
+		for (Node node : all)
+			g.sort(node);
+		if (inventory != null) {
+			g.addTargets(inventory.technologyMatrix);
+			g.addTargets(inventory.interventionMatrix);
+		}
+		if (impacts != null && impacts.factorMatrix != null)
+			impacts.factorMatrix.iterate((row, col, cell) -> g.addTargets(cell));
+		return g;
+	}
+
+	private static String key(String name) {
+		return name == null ? "" : name.toLowerCase().trim();
+	}
+
+	private void compile(Node node) {
+		CalcParameter p = node.param;
+		long scope = p.getOwner();
+		String f = p.getFormula();
+		if (!p.isInputParameter() && f != null && !f.isEmpty())
+			node.formula = compile(f, scope);
+		node.initialFormula = node.formula;
+		node.uncertainty[0] = compile(p.getParameter1Formula(), scope);
+		node.uncertainty[1] = compile(p.getParameter2Formula(), scope);
+		node.uncertainty[2] = compile(p.getParameter3Formula(), scope);
+	}
+
+	/**
+	 * Compiles the given formula and links its variables to the parameters of
+	 * the given scope, the global scope, or the constants. Returns null if the
+	 * formula is null.
+	 */
+	private Formula compile(String formula, long scope) {
+		if (formula == null)
+			return null;
+		Formula f = new Formula(formula, scope);
+		try {
+			f.expression = CompiledExpression.of(formula);
+		} catch (InterpreterException e) {
+			return interpreted(f, e);
+		}
+		f.deterministic = f.expression.isDeterministic();
+		List<String> variables = f.expression.getVariables();
+		f.nodes = new Node[variables.size()];
+		f.slots = new double[variables.size()];
+		for (int i = 0; i < f.nodes.length; i++) {
+			String name = variables.get(i);
+			Node node = find(scope, name);
+			if (node != null) {
+				f.nodes[i] = node;
+				continue;
+			}
+			Double constant = constants.get(name);
+			if (constant == null) {
+				// the variable may be in a branch that is never evaluated
+				return interpreted(f, null);
+			}
+			f.slots[i] = constant;
+		}
+		return f;
+	}
+
+	/**
+	 * Prepares the given formula for the evaluation with the interpreter. The
+	 * variables are still linked to the parameters so that the formula is
+	 * evaluated after them. If the formula cannot be parsed at all, it gets
+	 * the given error.
+	 */
+	private Formula interpreted(Formula f, InterpreterException error) {
+		f.expression = null;
+		f.slots = null;
+		try {
+			FormulaParser parser = new FormulaParser(
+					new StringReader(f.text.toLowerCase()));
+			parser.parse();
+			List<Node> nodes = new ArrayList<>();
+			for (VariableFunction var : parser.getVariables()) {
+				Node node = find(f.scope, var.getVariableName());
+				if (node != null && !nodes.contains(node))
+					nodes.add(node);
+			}
+			f.nodes = nodes.toArray(new Node[nodes.size()]);
+			f.interpreted = true;
+			// rand and random are the only non-deterministic functions
+			f.deterministic = !f.text.toLowerCase().contains("rand");
+		} catch (Exception | TokenMgrError e) {
+			f.nodes = null;
+			f.error = error != null ? error.getMessage()
+					: "Invalid formula " + f.text + ": " + e.getMessage();
+		}
+		return f;
+	}
+
+	/**
+	 * Returns the parameter with the given name from the given scope or from
+	 * the global scope if it is not defined in the given scope.
+	 */
+	private Node find(long scope, String name) {
+		Node node = findIn(scope, name);
+		if (node == null && scope != 0)
+			node = findIn(0, name);
+		return node;
+	}
+
+	private Node findIn(long scope, String name) {
+		Map<String, Node> map = scopes.get(scope);
+		return map == null ? null : map.get(name);
+	}
+
+	/**
+	 * Adds the given node after its dependencies to the sorted nodes (via a
+	 * depth-first search). All nodes of a cyclic dependency are marked as
+	 * failed.
+	 */
+	private void sort(Node node) {
+		if (node.visited)
+			return;
+		if (node.visiting) {
+			for (int i = path.size() - 1; i >= 0; i--) {
+				Node n = path.get(i);
+				n.cyclic = true;
+				if (n == node)
+					break;
+			}
+			return;
+		}
+		node.visiting = true;
+		path.add(node);
+		sort(node.formula);
+		for (Formula f : node.uncertainty)
+			sort(f);
+		path.remove(path.size() - 1);
+		node.visiting = false;
+		node.visited = true;
+		if (node.cyclic) {
+			node.failed = true;
+			log.error("Cyclic dependency of parameter {}",
+					node.param.getName());
+		}
+		nodes.add(node);
+	}
+
+	private void sort(Formula f) {
+		if (f == null || f.nodes == null)
+			return;
+		for (Node dep : f.nodes) {
+			if (dep != null)
+				sort(dep);
+		}
+	}
+
+	private void addTargets(ExchangeMatrix matrix) {
+		if (matrix == null)
+			return;
+		matrix.iterate((row, col, cell) -> {
+			CalcExchange e = cell.exchange;
+			long scope = scopes.containsKey(e.processId) ? e.processId : 0;
+			addTarget(e.amountFormula, scope, v -> e.amount = v, e);
+			addTarget(e.parameter1Formula, scope, v -> e.parameter1 = v, e);
+			addTarget(e.parameter2Formula, scope, v -> e.parameter2 = v, e);
+			addTarget(e.parameter3Formula, scope, v -> e.parameter3 = v, e);
+			addTarget(e.costFormula, scope, v -> e.costValue = v, e);
+		});
+	}
+
+	private void addTargets(ImpactFactorCell cell) {
+		CalcImpactFactor f = cell.factor;
+		long scope = scopes.containsKey(cell.methodId) ? cell.methodId : 0;
+		addTarget(f.getAmountFormula(), scope, f::setAmount, f);
+		addTarget(f.getParameter1Formula(), scope, f::setParameter1, f);
+		addTarget(f.getParameter2Formula(), scope, f::setParameter2, f);
+		addTarget(f.getParameter3Formula(), scope, f::setParameter3, f);
+	}
+
+	private void addTarget(String formula, long scope, DoubleConsumer setter,
+			Object owner) {
+		Formula f = compile(formula, scope);
+		if (f != null)
+			targets.add(new Target(f, setter, owner));
+	}
+
+	/**
+	 * Sets the value of the given parameter, like a parameter redefinition:
+	 * a formula of the parameter is not evaluated anymore. The dependent
+	 * parameters and formulas are evaluated on the next update.
+	 *
+	 * @param scope
+	 *            the ID of the process or LCIA method of a local parameter or
+	 *            0 for a global parameter
+	 * @return false if there is no such parameter in the graph
+	 */
+	public boolean setValue(long scope, String name, double value) {
+		Node node = findIn(scope, key(name));
+		if (node == null)
+			return false;
+		if (!node.redefined) {
+			node.redefined = true;
+			redefined.add(node);
+		}
+		node.formula = null;
+		node.param.setValue(value);
+		if (node.value != value || node.failed) {
+			node.value = value;
+			node.failed = node.cyclic;
+			node.changed = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Resets the parameters that were changed via {@link #setValue} to their
+	 * initial values and formulas. The dependent parameters and formulas are
+	 * evaluated on the next update.
+	 */
+	public void reset() {
+		for (Node node : redefined) {
+			node.redefined = false;
+			node.formula = node.initialFormula;
+			node.param.setValue(node.initialValue);
+			node.value = node.initialValue;
+			node.failed = node.cyclic;
+			node.dirty = true;
+			// the value may not change when the formula is evaluated again
+			// but the dependent formulas still have the redefined value
+			node.changed = true;
+		}
+		redefined.clear();
+	}
+
+	/**
+	 * Returns the current value of the given parameter or null if there is no
+	 * such parameter or if its evaluation failed.
+	 */
+	public Double getValue(long scope, String name) {
+		Node node = findIn(scope, key(name));
+		if (node == null || node.failed)
+			return null;
+		return node.value;
+	}
+
+	/**
+	 * Evaluates the parameters and formulas that depend on changed parameter
+	 * values (or all of them when this is called the first time) and writes
+	 * the results into the exchanges and impact factors. Returns the number
+	 * of formulas of exchanges and impact factors that were evaluated.
+	 */
+	public int update() {
+		return update(null);
+	}
+
+	/**
+	 * Generates new values for the parameters with an uncertainty
+	 * distribution from the given random source and updates the dependent
+	 * parameters and formulas.
+	 */
+	public int simulate(SplittableRandom random) {
+		return update(random);
+	}
+
+	private int update(SplittableRandom random) {
+		boolean all = !initialized;
+		for (Node node : nodes) {
+			eval(node, all, random);
+			if (interpreter != null && node.changed)
+				bind(node);
+		}
+		int count = 0;
+		for (Target target : targets) {
+			if (!all && !target.formula.hasChanges())
+				continue;
+			count++;
+			try {
+				target.setter.accept(eval(target.formula));
+			} catch (Exception e) {
+				log.error("Formula evaluation failed: " + target.owner, e);
+			}
+		}
+		for (Node node : nodes)
+			node.changed = false;
+		initialized = true;
+		return count;
+	}
+
+	private void eval(Node node, boolean all, SplittableRandom random) {
+		if (node.cyclic)
+			return;
+		CalcParameter p = node.param;
+		for (int i = 0; i < 3; i++) {
+			Formula f = node.uncertainty[i];
+			if (f == null || (!all && !f.hasChanges()))
+				continue;
+			try {
+				double v = eval(f);
+				if (i == 0)
+					p.setParameter1(v);
+				else if (i == 1)
+					p.setParameter2(v);
+				else
+					p.setParameter3(v);
+			} catch (Exception e) {
+				log.error("Formula evaluation failed; parameter: "
+						+ p.getName(), e);
+			}
+		}
+		boolean dirty = node.dirty;
+		node.dirty = false;
+		if (node.formula != null) {
+			if (!all && !dirty && !node.formula.hasChanges())
+				return;
+			try {
+				double v = eval(node.formula);
+				if (all || node.failed || v != node.value)
+					node.changed = true;
+				node.value = v;
+				node.failed = false;
+			} catch (Exception e) {
+				log.error("Formula evaluation failed; parameter: "
+						+ p.getName(), e);
+				node.failed = true;
+				node.changed = true;
+			}
+			return;
+		}
+		UncertaintyType type = p.getUncertaintyType();
+		if (random != null && type != null && type != UncertaintyType.NONE) {
+			p.setValue(ParameterTable.createGenerator(p, type).next(random));
+			node.changed = true;
+		} else if (all || dirty) {
+			node.changed = true;
+		}
+		node.value = p.getValue();
+	}
+
+	/**
+	 * Evaluates the given formula. Formulas that cannot be compiled or that
+	 * depend on parameters without a valid value are evaluated with the
+	 * interpreter; it only evaluates the variables that are really needed.
+	 */
+	private double eval(Formula f) throws InterpreterException {
+		if (f.error != null)
+			throw new InterpreterException(f.error);
+		if (f.interpreted)
+			return interpret(f);
+		for (int i = 0; i < f.nodes.length; i++) {
+			Node node = f.nodes[i];
+			if (node == null)
+				continue;
+			if (node.failed)
+				return interpret(f);
+			f.slots[i] = node.value;
+		}
+		return f.expression.evaluate(f.slots);
+	}
+
+	private double interpret(Formula f) throws InterpreterException {
+		if (interpreter == null) {
+			interpreter = new FormulaInterpreter();
+			for (Node node : nodes)
+				bind(node);
+		}
+		return scope(f.scope).eval(f.text);
+	}
+
+	private Scope scope(long id) {
+		if (id == 0)
+			return interpreter.getGlobalScope();
+		Scope scope = interpreter.getScope(id);
+		if (scope == null)
+			scope = interpreter.createScope(id);
+		return scope;
+	}
+
+	/**
+	 * Binds the current value of the given parameter in the interpreter. A
+	 * parameter without a valid value is bound to its formula so that the
+	 * interpreter fails with the same error when the value is needed.
+	 */
+	private void bind(Node node) {
+		CalcParameter p = node.param;
+		String expression = node.failed && node.formula != null
+				? node.formula.text
+				: Double.toString(node.value);
+		scope(p.getOwner()).bind(p.getName(), expression);
+	}
+
+	private static class Node {
+
+		final CalcParameter param;
+
+		/** The formula of a calculated parameter, otherwise null. */
+		Formula formula;
+		Formula initialFormula;
+		final double initialValue;
+
+		/** The formulas of the uncertainty distribution parameters. */
+		final Formula[] uncertainty = new Formula[3];
+
+		double value;
+		boolean changed;
+		boolean failed;
+
+		/** True if the node needs to be evaluated in the next update. */
+		boolean dirty;
+		boolean redefined;
+
+		boolean cyclic;
+		boolean visiting;
+		boolean visited;
+
+		Node(CalcParameter param) {
+			this.param = param;
+			this.initialValue = param.getValue();
+		}
+	}
+
+	private static class Formula {
+
+		final String text;
+		final long scope;
+		CompiledExpression expression;
+
+		/**
+		 * The parameter nodes of the variable slots; null for constants. For
+		 * interpreted formulas these are just the parameters the formula
+		 * depends on.
+		 */
+		Node[] nodes;
+		double[] slots;
+		String error;
+
+		/** True if the formula is evaluated with the interpreter. */
+		boolean interpreted;
+		boolean deterministic = true;
+
+		Formula(String text, long scope) {
+			this.text = text;
+			this.scope = scope;
+		}
+
+		/**
+		 * Returns true if the formula needs to be evaluated again because a
+		 * parameter value changed.
+		 */
+		boolean hasChanges() {
+			if (error != null)
+				return false;
+			if (!deterministic)
+				return true;
+			for (Node node : nodes) {
+				if (node != null && node.changed)
+					return true;
+			}
+			return false;
+		}
+	}
+
+	private static class Target {
+
+		final Formula formula;
+		final DoubleConsumer setter;
+		final Object owner;
+
+		Target(Formula formula, DoubleConsumer setter, Object owner) {
+			this.formula = formula;
+			this.setter = setter;
+			this.owner = owner;
+		}
+	}
+}
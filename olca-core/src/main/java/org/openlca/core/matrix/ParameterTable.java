@@ -3,10 +3,13 @@ package org.openlca.core.matrix;
 import gnu.trove.iterator.TLongObjectIterator;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.math.NumberGenerator;
@@ -69,6 +72,14 @@ public class ParameterTable {
 	 * can be used in calculations.
 	 */
 	public FormulaInterpreter simulate() {
+		return simulate(new SplittableRandom());
+	}
+
+	/**
+	 * Same as {@link #simulate()} but the values are generated from the given
+	 * random source.
+	 */
+	public FormulaInterpreter simulate(SplittableRandom random) {
 		FormulaInterpreter interpreter = createInterpreter();
 		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
 		while (it.hasNext()) {
@@ -76,13 +87,28 @@ public class ParameterTable {
 			Map<String, ParameterCell> map = it.value();
 			for (ParameterCell cell : map.values()) {
 				cell.eval(interpreter);
-				cell.simulate();
+				cell.simulate(random);
 				cell.bindTo(interpreter);
 			}
 		}
 		return interpreter;
 	}
 
+	/**
+	 * Creates a copy of this table with copies of the parameters. The copy can
+	 * be used independently from this table, e.g. in parallel simulations.
+	 */
+	public ParameterTable copy() {
+		ParameterTable copy = new ParameterTable();
+		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			for (ParameterCell cell : it.value().values())
+				copy.put(cell.param.copy());
+		}
+		return copy;
+	}
+
 	/**
 	 * Applies the given parameter redefinitions to this table. The respective
 	 * parameter values in this table are overwritten by these redefinitions.
@@ -102,7 +128,6 @@ public class ParameterTable {
 	}
 
 	private void redefine(ParameterCell cell, ParameterRedef redef) {
-		cell.generator = null;
 		CalcParameter param = cell.param;
 		param.setValue(redef.getValue());
 		param.setFormula(null); // it is important to delete the formula!
@@ -130,6 +155,38 @@ public class ParameterTable {
 		return d == null ? 0 : d;
 	}
 
+	static NumberGenerator createGenerator(CalcParameter p,
+			UncertaintyType type) {
+		switch (type) {
+		case LOG_NORMAL:
+			return NumberGenerator.logNormal(p.getParameter1(),
+					p.getParameter2());
+		case NORMAL:
+			return NumberGenerator.normal(p.getParameter1(),
+					p.getParameter2());
+		case TRIANGLE:
+			return NumberGenerator.triangular(p.getParameter1(),
+					p.getParameter2(), p.getParameter3());
+		case UNIFORM:
+			return NumberGenerator.uniform(p.getParameter1(),
+					p.getParameter2());
+		default:
+			return NumberGenerator.discrete(p.getValue());
+		}
+	}
+
+	/** Returns the parameters of this table. */
+	List<CalcParameter> getParameters() {
+		List<CalcParameter> params = new ArrayList<>();
+		TLongObjectIterator<Map<String, ParameterCell>> it = entries.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			for (ParameterCell cell : it.value().values())
+				params.add(cell.param);
+		}
+		return params;
+	}
+
 	void put(CalcParameter param) {
 		Map<String, ParameterCell> map = entries.get(param.getOwner());
 		if (map == null) {
@@ -143,7 +200,6 @@ public class ParameterTable {
 	private class ParameterCell {
 
 		private CalcParameter param;
-		private NumberGenerator generator;
 
 		ParameterCell(CalcParameter param) {
 			this.param = param;
@@ -158,33 +214,12 @@ public class ParameterTable {
 				return Double.toString(param.getValue());
 		}
 
-		private void simulate() {
+		private void simulate(SplittableRandom random) {
 			UncertaintyType type = param.getUncertaintyType();
 			if (type == null || type == UncertaintyType.NONE)
 				return;
-			if (generator == null)
-				generator = createGenerator(type);
-			param.setValue(generator.next());
-		}
-
-		private NumberGenerator createGenerator(UncertaintyType type) {
-			final CalcParameter p = param;
-			switch (type) {
-			case LOG_NORMAL:
-				return NumberGenerator.logNormal(p.getParameter1(),
-						p.getParameter2());
-			case NORMAL:
-				return NumberGenerator.normal(p.getParameter1(),
-						p.getParameter2());
-			case TRIANGLE:
-				return NumberGenerator.triangular(p.getParameter1(),
-						p.getParameter2(), p.getParameter3());
-			case UNIFORM:
-				return NumberGenerator.uniform(p.getParameter1(),
-						p.getParameter2());
-			default:
-				return NumberGenerator.discrete(p.getValue());
-			}
+			NumberGenerator generator = createGenerator(param, type);
+			param.setValue(generator.next(random));
 		}
 
 		private void bindTo(FormulaInterpreter interpreter) {
@@ -104,7 +104,8 @@ public class ProductSystemBuilder {
 
 		// links and processes from tech-index
 		for (LongPair exchange : index.getLinkedExchanges()) {
-			LongPair provider = index.getLinkedProvider(exchange);
+			LongPair provider = index.getLinkedProvider(exchange.getFirst(),
+					exchange.getSecond());
 			if (provider == null)
 				continue;
 			processes.add(provider.getFirst());
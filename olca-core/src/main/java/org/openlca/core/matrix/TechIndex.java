@@ -1,12 +1,15 @@
 package org.openlca.core.matrix;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 /**
  * The TechIndex maps the linked product-outputs and waste-inputs (provider-flow
  * pairs) of a product system to a matrix index that is used in the calculation
@@ -18,7 +21,7 @@ public class TechIndex {
 	 * Maps the product-outputs and waste-inputs as (processId, flowId) pairs to
 	 * an ordinal index.
 	 */
-	private final HashMap<LongPair, Integer> index = new HashMap<>();
+	private final LongPairIndex index = new LongPairIndex();
 
 	/**
 	 * Contains the product-outputs and waste-inputs in an ordinal list.
@@ -26,16 +29,43 @@ public class TechIndex {
 	private final ArrayList<LongPair> providers = new ArrayList<>();
 
 	/**
-	 * Maps linked exchanges (keys) as (processId, exchangeId) pairs to the
-	 * respective provider.
+	 * Maps linked exchanges as (processId, exchangeId) pairs to the ordinal
+	 * index of the respective provider.
 	 */
-	private final HashMap<LongPair, LongPair> links = new HashMap<>();
+	private final LongPairIndex links = new LongPairIndex();
+
+	/**
+	 * Contains the linked exchanges in the order in which they were added.
+	 */
+	private final ArrayList<LongPair> linkedExchanges = new ArrayList<>();
+
+	/**
+	 * A read-only set view of the linked exchanges; membership is checked
+	 * against the link index.
+	 */
+	private final Set<LongPair> linkedExchangeView = new AbstractSet<LongPair>() {
+
+		@Override
+		public Iterator<LongPair> iterator() {
+			return Collections.unmodifiableList(linkedExchanges).iterator();
+		}
+
+		@Override
+		public int size() {
+			return linkedExchanges.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof LongPair && isLinked((LongPair) o);
+		}
+	};
 
 	/**
 	 * Maps the process IDs to the list of product-outputs and waste-inputs
 	 * provided by the respective process.
 	 */
-	private final HashMap<Long, List<LongPair>> processProviders = new HashMap<>();
+	private final TLongObjectHashMap<List<LongPair>> processProviders = new TLongObjectHashMap<>();
 
 	/**
 	 * The demand value of the reference flow of the product system described by
@@ -92,10 +122,16 @@ public class TechIndex {
 	 * input).
 	 */
 	public int getIndex(LongPair provider) {
-		Integer idx = index.get(provider);
-		if (idx == null)
-			return -1;
-		return idx;
+		return index.get(provider.getFirst(), provider.getSecond());
+	}
+
+	/**
+	 * Returns the ordinal index of the provider (product-output or waste-input)
+	 * with the given process and flow ID or -1 if it is not contained in this
+	 * index.
+	 */
+	public int getIndex(long processId, long flowId) {
+		return index.get(processId, flowId);
 	}
 
 	/**
@@ -103,7 +139,15 @@ public class TechIndex {
 	 * contained in this index.
 	 */
 	public boolean contains(LongPair provider) {
-		return index.containsKey(provider);
+		return contains(provider.getFirst(), provider.getSecond());
+	}
+
+	/**
+	 * Returns true if the provider (product-output or waste-input) with the
+	 * given process and flow ID is contained in this index.
+	 */
+	public boolean contains(long processId, long flowId) {
+		return index.contains(processId, flowId);
 	}
 
 	/**
@@ -111,11 +155,10 @@ public class TechIndex {
 	 * Does nothing if it is already contained in this index.
 	 */
 	public void put(LongPair provider) {
-		if (contains(provider))
-			return;
-		int idx = index.size();
-		index.put(provider, idx);
 		long processId = provider.getFirst();
+		int idx = providers.size();
+		if (index.putIfAbsent(processId, provider.getSecond(), idx) >= 0)
+			return;
 		List<LongPair> list = processProviders.get(processId);
 		if (list == null) {
 			list = new ArrayList<>();
@@ -154,10 +197,13 @@ public class TechIndex {
 	 *            flowId) pair.
 	 */
 	public void putLink(LongPair exchange, LongPair provider) {
-		if (links.containsKey(exchange))
+		long processId = exchange.getFirst();
+		long exchangeId = exchange.getSecond();
+		if (links.contains(processId, exchangeId))
 			return;
 		put(provider);
-		links.put(exchange, provider);
+		links.putIfAbsent(processId, exchangeId, getIndex(provider));
+		linkedExchanges.add(exchange);
 	}
 
 	/**
@@ -166,7 +212,15 @@ public class TechIndex {
 	 * provider of this index.
 	 */
 	public boolean isLinked(LongPair exchange) {
-		return links.containsKey(exchange);
+		return isLinked(exchange.getFirst(), exchange.getSecond());
+	}
+
+	/**
+	 * Returns true if the product-input or waste-output with the given process
+	 * and exchange ID is linked to a provider of this index.
+	 */
+	public boolean isLinked(long processId, long exchangeId) {
+		return links.contains(processId, exchangeId);
 	}
 
 	/**
@@ -174,15 +228,35 @@ public class TechIndex {
 	 * exchange (product-input or waste-output)
 	 */
 	public LongPair getLinkedProvider(LongPair exchange) {
-		return links.get(exchange);
+		return getLinkedProvider(exchange.getFirst(), exchange.getSecond());
+	}
+
+	/**
+	 * Returns the linked provider (product-output or waste-input) for the
+	 * product-input or waste-output with the given process and exchange ID or
+	 * null if the exchange is not linked.
+	 */
+	public LongPair getLinkedProvider(long processId, long exchangeId) {
+		int idx = links.get(processId, exchangeId);
+		return idx < 0 ? null : providers.get(idx);
+	}
+
+	/**
+	 * Returns the ordinal index of the linked provider (product-output or
+	 * waste-input) for the product-input or waste-output with the given process
+	 * and exchange ID or -1 if the exchange is not linked.
+	 */
+	public int getLinkedIndex(long processId, long exchangeId) {
+		return links.get(processId, exchangeId);
 	}
 
 	/**
 	 * Returns all exchanges (product-inputs and waste-outputs) that are linked
-	 * to provider of this index.
+	 * to provider of this index. The returned set is an unmodifiable view in
+	 * the order in which the links were added.
 	 */
 	public Set<LongPair> getLinkedExchanges() {
-		return links.keySet();
+		return linkedExchangeView;
 	}
 
 	/**
@@ -15,7 +15,6 @@ import org.openlca.core.model.AllocationMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
@@ -26,8 +25,8 @@ import com.google.common.cache.LoadingCache;
 class AllocationCache {
 
 	public static LoadingCache<Long, List<CalcAllocationFactor>> create(
-			IDatabase database) {
-		return CacheBuilder.newBuilder().build(new FactorLoader(database));
+			IDatabase database, CacheConfig config) {
+		return config.build(new FactorLoader(database), List::size);
 	}
 
 	/**
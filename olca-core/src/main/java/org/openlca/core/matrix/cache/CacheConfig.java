@@ -0,0 +1,69 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * The configuration of the loading caches (exchanges, allocation factors, and
+ * impact factors) of a {@link MatrixCache}. The default configuration creates
+ * unbounded caches without statistics. A bounded cache is weighted by the
+ * number of elements in the cached values; e.g. a process with 100 exchanges
+ * has a weight of 100 in the exchange cache.
+ */
+public class CacheConfig {
+
+	/**
+	 * The maximum weight of each cache; 0 means that the caches are not
+	 * bounded.
+	 */
+	public long maxWeight = 0;
+
+	/**
+	 * If true, the cached lists are only softly referenced and can be
+	 * collected by the garbage collector when the memory gets low.
+	 */
+	public boolean softValues = false;
+
+	/**
+	 * Entries that were not accessed for this number of seconds are removed
+	 * from the caches; 0 means that entries are not expired.
+	 */
+	public long expireAfterAccess = 0;
+
+	/**
+	 * If true, hit, miss, and load time statistics are recorded by the caches
+	 * (see {@link MatrixCache#getStats()}).
+	 */
+	public boolean recordStats = false;
+
+	/**
+	 * If true, an eager cache that could not be initialized from a valid
+	 * snapshot of the database writes a new snapshot (see
+	 * {@link MatrixCache#writeSnapshot()}) and is then initialized from it.
+	 */
+	public boolean writeSnapshot = false;
+
+	/**
+	 * Builds a cache with this configuration. The given function returns the
+	 * number of elements of a cached value which is used as its weight.
+	 */
+	<V> LoadingCache<Long, V> build(CacheLoader<Long, V> loader,
+			ToIntFunction<V> size) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (maxWeight > 0) {
+			builder.maximumWeight(maxWeight).weigher(
+					(Long key, V value) -> Math.max(1, size.applyAsInt(value)));
+		}
+		if (softValues)
+			builder.softValues();
+		if (expireAfterAccess > 0)
+			builder.expireAfterAccess(expireAfterAccess, TimeUnit.SECONDS);
+		if (recordStats)
+			builder.recordStats();
+		return builder.build(loader);
+	}
+}
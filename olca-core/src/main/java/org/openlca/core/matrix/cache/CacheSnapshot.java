@@ -0,0 +1,608 @@
+package org.openlca.core.matrix.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.ExchangeBlock;
+import org.openlca.core.matrix.LongPair;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.ProcessType;
+import org.openlca.core.model.UncertaintyType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+/**
+ * A binary snapshot of the flow type, conversion, and process tables and of
+ * the exchanges of a database. With a snapshot, an eager matrix cache can be
+ * created without scanning the database tables.
+ *
+ * The exchanges are stored in columns of primitive values, ordered by the IDs
+ * of their processes. The snapshot file is memory-mapped and the exchanges of
+ * a process are only decoded when they are requested. The file starts with a
+ * header that contains the format version of the snapshot, the schema version
+ * of the database, and a stamp of the database content: the number of
+ * exchanges, the value of the ID sequence, and the latest change date of the
+ * cached root entities. A snapshot that does not match the current database in
+ * one of these values is ignored; this also covers changes that were made
+ * without a matrix cache, e.g. in another session:
+ *
+ * <pre>
+ * int magic, int format version, int database version, int exchange count,
+ * long position of the tables, long sequence count, long last change
+ * exchange columns: 8 byte values, 4 byte string indices, 1 byte flags
+ * tables: flow types, unit and property factors, processes, providers,
+ *         process offsets of the exchanges, strings (formulas, DQ entries)
+ * </pre>
+ */
+final class CacheSnapshot {
+
+	static final String FILE_NAME = "matrix_cache.bin";
+
+	private static final int MAGIC = 0x4f4c4341; // "OLCA"
+	private static final int FORMAT_VERSION = 3;
+	private static final int PREAMBLE = 40;
+
+	/** The tables of the root entities that are cached in a snapshot. */
+	private static final String[] STAMP_TABLES = { "tbl_processes",
+			"tbl_flows", "tbl_flow_properties", "tbl_unit_groups",
+			"tbl_units" };
+
+	// columns with 8 byte values
+	private static final int ID = 0;
+	private static final int FLOW = 1;
+	private static final int PROVIDER = 2;
+	private static final int CURRENCY = 3;
+	private static final int AMOUNT = 4;
+	private static final int FACTOR = 5;
+	private static final int COST = 6;
+	private static final int PARAM1 = 7;
+	private static final int PARAM2 = 8;
+	private static final int PARAM3 = 9;
+
+	// columns with indices of strings (-1 = null)
+	private static final int AMOUNT_FORMULA = 10;
+	private static final int PARAM1_FORMULA = 11;
+	private static final int PARAM2_FORMULA = 12;
+	private static final int PARAM3_FORMULA = 13;
+	private static final int COST_FORMULA = 14;
+	private static final int DQ_ENTRY = 15;
+
+	// columns with single bytes
+	private static final int FLAGS = 16;
+	private static final int UNCERTAINTY = 17;
+
+	private static final int COLUMNS = 18;
+
+	final FlowTypeTable flowTypes;
+	final ConversionTable conversions;
+	final ProcessTable processes;
+
+	private final ByteBuffer buffer;
+	private final int count;
+	private final int[] columnStarts;
+
+	/** The sorted IDs of the processes that have exchanges. */
+	private final long[] processIds;
+
+	/** The start of the exchanges of each process; with an additional end. */
+	private final int[] offsets;
+	private final String[] strings;
+
+	private final TLongHashSet evicted = new TLongHashSet();
+	private volatile boolean disposed;
+
+	private CacheSnapshot(IDatabase db, ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.count = buffer.getInt(12);
+		columnStarts = new int[COLUMNS];
+		for (int column = 0; column < COLUMNS; column++)
+			columnStarts[column] = (int) columnStart(column, count);
+		buffer.position((int) buffer.getLong(16));
+
+		int n = buffer.getInt();
+		long[] flowIds = longs(n);
+		FlowType[] types = values(FlowType.values(), n);
+		flowTypes = FlowTypeTable.of(db, flowIds, types);
+
+		n = buffer.getInt();
+		long[] unitIds = longs(n);
+		double[] unitFactors = doubles(n);
+		n = buffer.getInt();
+		long[] propertyIds = longs(n);
+		double[] propertyFactors = doubles(n);
+		conversions = ConversionTable.of(db, unitIds, unitFactors,
+				propertyIds, propertyFactors);
+
+		n = buffer.getInt();
+		long[] ids = longs(n);
+		ProcessType[] processTypes = values(ProcessType.values(), n);
+		AllocationMethod[] methods = values(AllocationMethod.values(), n);
+		n = buffer.getInt();
+		long[] productIds = longs(n);
+		long[] providerIds = longs(n);
+		processes = ProcessTable.of(ids, processTypes, methods, productIds,
+				providerIds);
+
+		n = buffer.getInt();
+		processIds = longs(n);
+		offsets = new int[n + 1];
+		for (int i = 0; i <= n; i++)
+			offsets[i] = buffer.getInt();
+
+		n = buffer.getInt();
+		strings = new String[n];
+		for (int i = 0; i < n; i++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	private long[] longs(int n) {
+		long[] values = new long[n];
+		for (int i = 0; i < n; i++)
+			values[i] = buffer.getLong();
+		return values;
+	}
+
+	private double[] doubles(int n) {
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++)
+			values[i] = buffer.getDouble();
+		return values;
+	}
+
+	/** Reads n enumeration values that are stored as ordinals; -1 = null. */
+	private <T> T[] values(T[] all, int n) {
+		T[] values = Arrays.copyOf(all, n);
+		for (int i = 0; i < n; i++) {
+			byte ordinal = buffer.get();
+			values[i] = ordinal < 0 ? null : all[ordinal];
+		}
+		return values;
+	}
+
+	/** The default location of the snapshot file of the given database. */
+	static File getFile(IDatabase db) {
+		if (db == null)
+			return null;
+		File dir = db.getFileStorageLocation();
+		return dir == null ? null : new File(dir, FILE_NAME);
+	}
+
+	/**
+	 * Reads the snapshot from the given file. Returns null if the file does not
+	 * exist or if it is not a valid snapshot for the current version and
+	 * content of the database.
+	 */
+	static CacheSnapshot read(IDatabase db, File file) {
+		if (db == null || file == null || !file.exists())
+			return null;
+		Logger log = LoggerFactory.getLogger(CacheSnapshot.class);
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < PREAMBLE || size > Integer.MAX_VALUE)
+				return null;
+			ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt(0) != MAGIC
+					|| buffer.getInt(4) != FORMAT_VERSION
+					|| buffer.getInt(8) != db.getVersion()) {
+				log.info("ignore outdated matrix cache snapshot {}", file);
+				return null;
+			}
+			long[] stamp = stamp(db);
+			if (buffer.getInt(12) != countExchanges(db)
+					|| buffer.getLong(24) != stamp[0]
+					|| buffer.getLong(32) != stamp[1]) {
+				log.info("ignore matrix cache snapshot {}: the database "
+						+ "was changed", file);
+				return null;
+			}
+			CacheSnapshot snapshot = new CacheSnapshot(db, buffer);
+			log.trace("read matrix cache snapshot with {} exchanges",
+					snapshot.count);
+			return snapshot;
+		} catch (Exception e) {
+			log.error("failed to read matrix cache snapshot " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the exchanges of the given process. Returns null if the process
+	 * is not contained in this snapshot or if it was evicted; the exchanges
+	 * then need to be loaded from the database.
+	 */
+	ExchangeBlock getExchanges(long processId) {
+		if (disposed)
+			return null;
+		synchronized (evicted) {
+			if (evicted.contains(processId))
+				return null;
+		}
+		int idx = Arrays.binarySearch(processIds, processId);
+		if (idx < 0) {
+			// a process without exchanges
+			return processes.getType(processId) == null
+					? null
+					: ExchangeBlock.empty(processId);
+		}
+		int start = offsets[idx];
+		int end = offsets[idx + 1];
+		List<CalcExchange> list = new ArrayList<>(end - start);
+		for (int i = start; i < end; i++)
+			list.add(exchange(processId, i));
+		return ExchangeBlock.of(processId, list);
+	}
+
+	private CalcExchange exchange(long processId, int i) {
+		CalcExchange e = new CalcExchange();
+		e.processId = processId;
+		e.exchangeId = buffer.getLong(position(ID, i));
+		e.flowId = buffer.getLong(position(FLOW, i));
+		e.flowType = flowTypes.get(e.flowId);
+		e.defaultProviderId = buffer.getLong(position(PROVIDER, i));
+		e.currency = buffer.getLong(position(CURRENCY, i));
+		e.amount = buffer.getDouble(position(AMOUNT, i));
+		e.conversionFactor = buffer.getDouble(position(FACTOR, i));
+		e.costValue = buffer.getDouble(position(COST, i));
+		e.parameter1 = buffer.getDouble(position(PARAM1, i));
+		e.parameter2 = buffer.getDouble(position(PARAM2, i));
+		e.parameter3 = buffer.getDouble(position(PARAM3, i));
+		e.amountFormula = string(AMOUNT_FORMULA, i);
+		e.parameter1Formula = string(PARAM1_FORMULA, i);
+		e.parameter2Formula = string(PARAM2_FORMULA, i);
+		e.parameter3Formula = string(PARAM3_FORMULA, i);
+		e.costFormula = string(COST_FORMULA, i);
+		e.dqEntry = string(DQ_ENTRY, i);
+		byte flags = buffer.get(position(FLAGS, i));
+		e.input = (flags & 1) != 0;
+		e.avoidedProduct = (flags & 2) != 0;
+		byte uncertainty = buffer.get(position(UNCERTAINTY, i));
+		if (uncertainty >= 0)
+			e.uncertaintyType = UncertaintyType.values()[uncertainty];
+		return e;
+	}
+
+	private String string(int column, int i) {
+		int idx = buffer.getInt(position(column, i));
+		return idx < 0 ? null : strings[idx];
+	}
+
+	private int position(int column, int i) {
+		return columnStarts[column] + width(column) * i;
+	}
+
+	/** The exchanges of the given process are not served anymore. */
+	void evict(long processId) {
+		synchronized (evicted) {
+			evicted.add(processId);
+		}
+	}
+
+	/** No exchanges are served anymore from this snapshot. */
+	void dispose() {
+		disposed = true;
+	}
+
+	/**
+	 * Deletes the snapshot of the given database. If the file cannot be deleted
+	 * (e.g. because it is still mapped on some platforms) its header is
+	 * invalidated so that it is ignored when it is read.
+	 */
+	static void delete(IDatabase db) {
+		File file = getFile(db);
+		if (file == null || !file.exists() || file.delete())
+			return;
+		try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+			f.writeInt(0);
+		} catch (IOException e) {
+			Logger log = LoggerFactory.getLogger(CacheSnapshot.class);
+			log.error("failed to invalidate matrix cache snapshot " + file, e);
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the tables and exchanges of the given database and
+	 * writes it to the given file. The snapshot is first written to a temporary
+	 * file that then replaces the given file.
+	 */
+	static void write(IDatabase db, File file) throws IOException {
+		// the stamp is taken first so that changes during the scan make the
+		// snapshot outdated
+		long[] stamp = stamp(db);
+		FlowTypeTable flowTypes = FlowTypeTable.create(db);
+		ConversionTable conversions = ConversionTable.create(db);
+		ProcessTable processes = ProcessTable.create(db, flowTypes);
+		int count = countExchanges(db);
+		if (columnStart(COLUMNS, count) > Integer.MAX_VALUE / 2)
+			throw new IOException("too many exchanges for a snapshot: "
+					+ count);
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ColumnWriter columns = new ColumnWriter(channel, count);
+			try {
+				ExchangeCache.scanAll(db, conversions, flowTypes, e -> {
+					try {
+						columns.add(e);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("failed to read exchanges", e);
+			}
+			columns.flush();
+			if (columns.size != count)
+				throw new IOException("the exchanges changed while writing");
+
+			long tablePosition = columnStart(COLUMNS, count);
+			channel.position(tablePosition);
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Channels.newOutputStream(channel)));
+			writeFlowTypes(out, flowTypes);
+			writeFactors(out, conversions);
+			writeProcesses(out, processes);
+			columns.writeIndex(out);
+			out.flush();
+
+			ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE);
+			preamble.putInt(MAGIC).putInt(FORMAT_VERSION)
+					.putInt(db.getVersion()).putInt(count)
+					.putLong(tablePosition).putLong(stamp[0])
+					.putLong(stamp[1]);
+			preamble.flip();
+			while (preamble.hasRemaining())
+				channel.write(preamble, preamble.position());
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp.toPath());
+			throw e;
+		}
+		Files.move(tmp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static int countExchanges(IDatabase db) throws IOException {
+		int[] count = new int[1];
+		try {
+			NativeSql.on(db).query("select count(*) from tbl_exchanges", r -> {
+				count[0] = r.getInt(1);
+				return false;
+			});
+		} catch (Exception e) {
+			throw new IOException("failed to count exchanges", e);
+		}
+		return count[0];
+	}
+
+	/**
+	 * Returns the current value of the ID sequence and the latest change date
+	 * of the cached root entities of the given database.
+	 */
+	private static long[] stamp(IDatabase db) throws IOException {
+		long[] stamp = new long[2];
+		try {
+			NativeSql.on(db).query("select SEQ_COUNT from SEQUENCE where "
+					+ "SEQ_NAME = 'entity_seq'", r -> {
+						stamp[0] = r.getLong(1);
+						return false;
+					});
+			for (String table : STAMP_TABLES) {
+				NativeSql.on(db).query("select max(last_change) from "
+						+ table, r -> {
+							stamp[1] = Math.max(stamp[1], r.getLong(1));
+							return false;
+						});
+			}
+		} catch (Exception e) {
+			throw new IOException("failed to read the database stamp", e);
+		}
+		return stamp;
+	}
+
+	private static void writeFlowTypes(DataOutputStream out,
+			FlowTypeTable flowTypes) throws IOException {
+		long[] flowIds = flowTypes.getFlowIds();
+		out.writeInt(flowIds.length);
+		for (long id : flowIds)
+			out.writeLong(id);
+		for (long id : flowIds)
+			writeOrdinal(out, flowTypes.get(id));
+	}
+
+	private static void writeFactors(DataOutputStream out,
+			ConversionTable conversions) throws IOException {
+		long[] unitIds = conversions.getUnitFactors().keys();
+		out.writeInt(unitIds.length);
+		for (long id : unitIds)
+			out.writeLong(id);
+		for (long id : unitIds)
+			out.writeDouble(conversions.getUnitFactor(id));
+		long[] propertyIds = conversions.getPropertyFactors().keys();
+		out.writeInt(propertyIds.length);
+		for (long id : propertyIds)
+			out.writeLong(id);
+		for (long id : propertyIds)
+			out.writeDouble(conversions.getPropertyFactor(id));
+	}
+
+	private static void writeProcesses(DataOutputStream out,
+			ProcessTable processes) throws IOException {
+		long[] ids = processes.getProcessIds();
+		out.writeInt(ids.length);
+		for (long id : ids)
+			out.writeLong(id);
+		for (long id : ids)
+			writeOrdinal(out, processes.getType(id));
+		for (long id : ids)
+			writeOrdinal(out, processes.getDefaultAllocationMethod(id));
+		List<LongPair> products = processes.getProcessProducts();
+		out.writeInt(products.size());
+		for (LongPair product : products)
+			out.writeLong(product.getSecond());
+		for (LongPair product : products)
+			out.writeLong(product.getFirst());
+	}
+
+	private static void writeOrdinal(DataOutputStream out, Enum<?> value)
+			throws IOException {
+		out.writeByte(value == null ? -1 : value.ordinal());
+	}
+
+	private static int width(int column) {
+		if (column < AMOUNT_FORMULA)
+			return 8;
+		if (column < FLAGS)
+			return 4;
+		return 1;
+	}
+
+	/** The position of the given column in the file. */
+	private static long columnStart(int column, int count) {
+		long pos = PREAMBLE;
+		for (int c = 0; c < column; c++)
+			pos += (long) width(c) * count;
+		return pos;
+	}
+
+	/**
+	 * Writes the exchanges into the columns of the snapshot file. Each column
+	 * has its own buffer that is written to the position of the column when
+	 * it is full. The exchanges must be added in the order of their process
+	 * IDs.
+	 */
+	private static class ColumnWriter {
+
+		private final FileChannel channel;
+		private final int count;
+		private final ByteBuffer[] buffers = new ByteBuffer[COLUMNS];
+		private final long[] positions = new long[COLUMNS];
+
+		private final TLongArrayList processIds = new TLongArrayList();
+		private final TIntArrayList offsets = new TIntArrayList();
+		private final HashMap<String, Integer> stringIndex = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private int size;
+
+		ColumnWriter(FileChannel channel, int count) {
+			this.channel = channel;
+			this.count = count;
+			for (int column = 0; column < COLUMNS; column++) {
+				buffers[column] = ByteBuffer.allocate(8192);
+				positions[column] = columnStart(column, count);
+			}
+		}
+
+		void add(CalcExchange e) throws IOException {
+			if (size == count)
+				throw new IOException("the exchanges changed while writing");
+			int last = processIds.size() - 1;
+			if (last < 0 || processIds.get(last) != e.processId) {
+				if (last >= 0 && processIds.get(last) > e.processId)
+					throw new IOException("exchanges not ordered by process");
+				processIds.add(e.processId);
+				offsets.add(size);
+			}
+			buffer(ID).putLong(e.exchangeId);
+			buffer(FLOW).putLong(e.flowId);
+			buffer(PROVIDER).putLong(e.defaultProviderId);
+			buffer(CURRENCY).putLong(e.currency);
+			buffer(AMOUNT).putDouble(e.amount);
+			buffer(FACTOR).putDouble(e.conversionFactor);
+			buffer(COST).putDouble(e.costValue);
+			buffer(PARAM1).putDouble(e.parameter1);
+			buffer(PARAM2).putDouble(e.parameter2);
+			buffer(PARAM3).putDouble(e.parameter3);
+			buffer(AMOUNT_FORMULA).putInt(index(e.amountFormula));
+			buffer(PARAM1_FORMULA).putInt(index(e.parameter1Formula));
+			buffer(PARAM2_FORMULA).putInt(index(e.parameter2Formula));
+			buffer(PARAM3_FORMULA).putInt(index(e.parameter3Formula));
+			buffer(COST_FORMULA).putInt(index(e.costFormula));
+			buffer(DQ_ENTRY).putInt(index(e.dqEntry));
+			int flags = (e.input ? 1 : 0) | (e.avoidedProduct ? 2 : 0);
+			buffer(FLAGS).put((byte) flags);
+			buffer(UNCERTAINTY).put(e.uncertaintyType == null
+					? -1
+					: (byte) e.uncertaintyType.ordinal());
+			size++;
+		}
+
+		private ByteBuffer buffer(int column) throws IOException {
+			ByteBuffer buffer = buffers[column];
+			if (buffer.remaining() < 8)
+				flush(column);
+			return buffer;
+		}
+
+		private int index(String s) {
+			if (s == null)
+				return -1;
+			Integer idx = stringIndex.get(s);
+			if (idx != null)
+				return idx;
+			stringIndex.put(s, strings.size());
+			strings.add(s);
+			return strings.size() - 1;
+		}
+
+		void flush() throws IOException {
+			for (int column = 0; column < COLUMNS; column++)
+				flush(column);
+		}
+
+		private void flush(int column) throws IOException {
+			ByteBuffer buffer = buffers[column];
+			buffer.flip();
+			while (buffer.hasRemaining())
+				positions[column] += channel.write(buffer, positions[column]);
+			buffer.clear();
+		}
+
+		/** Writes the process offsets and the strings. */
+		void writeIndex(DataOutputStream out) throws IOException {
+			out.writeInt(processIds.size());
+			for (int i = 0; i < processIds.size(); i++)
+				out.writeLong(processIds.get(i));
+			for (int i = 0; i < offsets.size(); i++)
+				out.writeInt(offsets.get(i));
+			out.writeInt(size);
+			out.writeInt(strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+	}
+}
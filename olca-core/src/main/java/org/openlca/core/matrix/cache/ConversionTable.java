@@ -33,6 +33,22 @@ public class ConversionTable {
 		return table;
 	}
 
+	/**
+	 * Creates the table from the given factors (e.g. from a cache snapshot)
+	 * without querying the database. The database is only used when the table
+	 * is reloaded.
+	 */
+	static ConversionTable of(IDatabase database, long[] unitIds,
+			double[] unitFactors, long[] propertyFactorIds,
+			double[] propertyFactors) {
+		ConversionTable table = new ConversionTable(database);
+		for (int i = 0; i < unitIds.length; i++)
+			table.unitFactors.put(unitIds[i], unitFactors[i]);
+		for (int i = 0; i < propertyFactorIds.length; i++)
+			table.propertyFactors.put(propertyFactorIds[i], propertyFactors[i]);
+		return table;
+	}
+
 	private ConversionTable(IDatabase database) {
 		this.database = database;
 	}
@@ -82,4 +98,14 @@ public class ConversionTable {
 	public double getPropertyFactor(long flowPropertyFactorId) {
 		return propertyFactors.get(flowPropertyFactorId);
 	}
+
+	/** The unit factors of this table: unit-id -> factor. */
+	TLongDoubleHashMap getUnitFactors() {
+		return unitFactors;
+	}
+
+	/** The flow property factors of this table: factor-id -> factor. */
+	TLongDoubleHashMap getPropertyFactors() {
+		return propertyFactors;
+	}
 }
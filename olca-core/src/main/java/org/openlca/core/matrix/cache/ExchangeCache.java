@@ -4,49 +4,90 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.ExchangeBlock;
 import org.openlca.core.model.UncertaintyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
 class ExchangeCache {
 
-	public static LoadingCache<Long, List<CalcExchange>> create(
+	public static LoadingCache<Long, ExchangeBlock> create(
 			IDatabase database, ConversionTable conversionTable,
 			FlowTypeTable flowTypes) {
-		return CacheBuilder.newBuilder().build(
-				new ExchangeLoader(database, conversionTable, flowTypes));
+		return create(database, conversionTable, flowTypes, null,
+				new CacheConfig());
+	}
+
+	/**
+	 * Creates a cache that first looks up the exchanges of a process in the
+	 * given snapshot before it queries the database. The snapshot can be
+	 * <code>null</code>.
+	 */
+	static LoadingCache<Long, ExchangeBlock> create(IDatabase database,
+			ConversionTable conversionTable, FlowTypeTable flowTypes,
+			CacheSnapshot snapshot, CacheConfig config) {
+		return config.build(new ExchangeLoader(database, conversionTable,
+				flowTypes, snapshot), ExchangeBlock::size);
+	}
+
+	/**
+	 * Reads all exchanges of the database ordered by the IDs of their owner
+	 * processes and passes them to the given function.
+	 */
+	static void scanAll(IDatabase database, ConversionTable conversionTable,
+			FlowTypeTable flowTypes, Consumer<CalcExchange> fn)
+			throws Exception {
+		ExchangeLoader loader = new ExchangeLoader(database, conversionTable,
+				flowTypes, null);
+		String query = "select * from tbl_exchanges order by f_owner";
+		try (Connection con = database.createConnection()) {
+			Statement statement = con.createStatement();
+			ResultSet result = statement.executeQuery(query);
+			while (result.next()) {
+				fn.accept(loader.nextExchange(result));
+			}
+			result.close();
+			statement.close();
+		}
 	}
 
 	private static class ExchangeLoader extends
-			CacheLoader<Long, List<CalcExchange>> {
+			CacheLoader<Long, ExchangeBlock> {
 
 		private Logger log = LoggerFactory.getLogger(getClass());
 		private IDatabase database;
 		private ConversionTable conversionTable;
 		private FlowTypeTable flowTypes;
+		private CacheSnapshot snapshot;
 
 		public ExchangeLoader(IDatabase database,
-				ConversionTable conversionTable, FlowTypeTable flowTypes) {
+				ConversionTable conversionTable, FlowTypeTable flowTypes,
+				CacheSnapshot snapshot) {
 			this.database = database;
 			this.conversionTable = conversionTable;
 			this.flowTypes = flowTypes;
+			this.snapshot = snapshot;
 		}
 
 		@Override
-		public List<CalcExchange> load(Long key) throws Exception {
+		public ExchangeBlock load(Long key) throws Exception {
 			if (key == null)
-				return Collections.emptyList();
+				return ExchangeBlock.empty(0);
+			if (snapshot != null) {
+				ExchangeBlock block = snapshot.getExchanges(key);
+				if (block != null)
+					return block;
+			}
 			log.trace("fetch exchanges for key {}", key);
 			String query = "select * from tbl_exchanges where f_owner = " + key;
 			try (Connection con = database.createConnection()) {
@@ -60,34 +101,52 @@ class ExchangeCache {
 				result.close();
 				statement.close();
 				log.trace("fetched {} exchanges", exchanges.size());
-				return exchanges;
+				return ExchangeBlock.of(key, exchanges);
 			} catch (Exception e) {
 				log.error("failed to fetch exchange vector", e);
-				return Collections.emptyList();
+				return ExchangeBlock.empty(key);
 			}
 		}
 
 		@Override
-		public Map<Long, List<CalcExchange>> loadAll(
+		public Map<Long, ExchangeBlock> loadAll(
 				Iterable<? extends Long> keys) throws Exception {
 			log.trace("fetch exchanges for multiple keys");
+			HashMap<Long, ExchangeBlock> map = new HashMap<>();
+			List<Long> missing = new ArrayList<>();
+			for (Long key : keys) {
+				ExchangeBlock block = snapshot == null ? null
+						: snapshot.getExchanges(key);
+				if (block != null)
+					map.put(key, block);
+				else
+					missing.add(key);
+			}
+			if (missing.isEmpty())
+				return map;
 			try (Connection con = database.createConnection()) {
 				String query = "select * from tbl_exchanges where f_owner in "
-						+ CacheUtil.asSql(keys);
+						+ CacheUtil.asSql(missing);
 				Statement statement = con.createStatement();
-				HashMap<Long, List<CalcExchange>> map = new HashMap<>();
+				HashMap<Long, List<CalcExchange>> lists = new HashMap<>();
 				ResultSet result = statement.executeQuery(query);
 				while (result.next()) {
 					CalcExchange e = nextExchange(result);
-					CacheUtil.addListEntry(map, e, e.processId);
+					CacheUtil.addListEntry(lists, e, e.processId);
 				}
 				result.close();
 				statement.close();
-				log.trace("{} lists loaded", map.size());
+				for (Long key : missing) {
+					List<CalcExchange> exchanges = lists.get(key);
+					map.put(key, exchanges == null
+							? ExchangeBlock.empty(key)
+							: ExchangeBlock.of(key, exchanges));
+				}
+				log.trace("{} lists loaded", lists.size());
 				return map;
 			} catch (Exception e) {
 				log.error("failed to fetch exchange vectors", e);
-				return Collections.emptyMap();
+				return map;
 			}
 		}
 
@@ -107,6 +166,7 @@ class ExchangeCache {
 			e.costValue = r.getDouble("cost_value");
 			e.costFormula = r.getString("cost_formula");
 			e.currency = r.getLong("f_currency");
+			e.dqEntry = r.getString("dq_entry");
 			int uncertaintyType = r.getInt("distribution_type");
 			if (!r.wasNull()) {
 				e.uncertaintyType = UncertaintyType.values()[uncertaintyType];
@@ -21,12 +21,28 @@ public class FlowTypeTable {
 	private final TLongObjectHashMap<FlowType> map = new TLongObjectHashMap<FlowType>();
 
 	public static FlowTypeTable create(IDatabase database) {
-		return new FlowTypeTable(database);
+		FlowTypeTable table = new FlowTypeTable(database);
+		table.init();
+		return table;
+	}
+
+	/**
+	 * Creates the table from the given flow IDs and types (e.g. from a cache
+	 * snapshot) without querying the database. The database is only used when
+	 * the table is reloaded.
+	 */
+	static FlowTypeTable of(IDatabase database, long[] flowIds,
+			FlowType[] types) {
+		FlowTypeTable table = new FlowTypeTable(database);
+		for (int i = 0; i < flowIds.length; i++) {
+			if (types[i] != null)
+				table.map.put(flowIds[i], types[i]);
+		}
+		return table;
 	}
 
 	private FlowTypeTable(IDatabase database) {
 		this.database = database;
-		init();
 	}
 
 	public void reload() {
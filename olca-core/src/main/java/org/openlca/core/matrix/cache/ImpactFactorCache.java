@@ -15,16 +15,16 @@ import org.openlca.core.model.UncertaintyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 
 public class ImpactFactorCache {
 
 	static LoadingCache<Long, List<CalcImpactFactor>> create(
-			IDatabase database, ConversionTable conversionTable) {
-		return CacheBuilder.newBuilder().build(
-				new FactorLoader(database, conversionTable));
+			IDatabase database, ConversionTable conversionTable,
+			CacheConfig config) {
+		return config.build(new FactorLoader(database, conversionTable),
+				List::size);
 	}
 
 	private static class FactorLoader extends
@@ -1,47 +1,100 @@
 package org.openlca.core.matrix.cache;
 
+import java.io.File;
 import java.util.List;
 
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.matrix.CalcAllocationFactor;
-import org.openlca.core.matrix.CalcExchange;
 import org.openlca.core.matrix.CalcImpactFactor;
+import org.openlca.core.matrix.ExchangeBlock;
 import org.openlca.core.model.ModelType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 
+/**
+ * Caches the data of a database that are needed to build the matrices of a
+ * calculation. A matrix cache can be shared by calculations that run in
+ * parallel: the tables and loading caches are initialized under the lock of
+ * the cache and the loading caches are thread-safe.
+ */
 public final class MatrixCache {
 
 	private final boolean lazy;
 	private final IDatabase database;
+	private final CacheConfig config;
 
 	private FlowTypeTable flowTypeTable;
 	private ConversionTable conversionTable;
 	private ProcessTable processTable;
+	private CacheSnapshot snapshot;
 
 	private LoadingCache<Long, List<CalcAllocationFactor>> allocationCache;
 	private LoadingCache<Long, List<CalcImpactFactor>> impactCache;
-	private LoadingCache<Long, List<CalcExchange>> exchangeCache;
+	private LoadingCache<Long, ExchangeBlock> exchangeCache;
 
+	/** The statistics of caches that were dropped in a base eviction. */
+	private CacheStats droppedStats = new CacheStats(0, 0, 0, 0, 0, 0);
+
+	/**
+	 * Creates a cache where all tables and caches are initialized directly. If
+	 * there is a valid snapshot of the database (see {@link #writeSnapshot()}),
+	 * the tables and exchanges are taken from this snapshot. If there is no
+	 * valid snapshot and {@link CacheConfig#writeSnapshot} is set, a new
+	 * snapshot is written first.
+	 */
 	public static MatrixCache createEager(IDatabase database) {
-		return new MatrixCache(database, false);
+		return createEager(database, new CacheConfig());
+	}
+
+	/**
+	 * Creates an eager cache (see {@link #createEager(IDatabase)}) with the
+	 * given configuration of the loading caches.
+	 */
+	public static MatrixCache createEager(IDatabase database,
+			CacheConfig config) {
+		return new MatrixCache(database, false, config);
 	}
 
 	public static MatrixCache createLazy(IDatabase database) {
-		return new MatrixCache(database, true);
+		return createLazy(database, new CacheConfig());
+	}
+
+	/**
+	 * Creates a lazy cache with the given configuration of the loading
+	 * caches.
+	 */
+	public static MatrixCache createLazy(IDatabase database,
+			CacheConfig config) {
+		return new MatrixCache(database, true, config);
 	}
 
-	private MatrixCache(IDatabase database, boolean lazy) {
+	private MatrixCache(IDatabase database, boolean lazy, CacheConfig config) {
 		this.database = database;
 		this.lazy = lazy;
+		this.config = config != null ? config : new CacheConfig();
 		if (!lazy) {
-			flowTypeTable = FlowTypeTable.create(database);
-			conversionTable = ConversionTable.create(database);
-			processTable = ProcessTable.create(database, flowTypeTable);
+			File file = CacheSnapshot.getFile(database);
+			snapshot = CacheSnapshot.read(database, file);
+			if (snapshot == null && this.config.writeSnapshot
+					&& writeSnapshot())
+				snapshot = CacheSnapshot.read(database, file);
+			if (snapshot != null) {
+				flowTypeTable = snapshot.flowTypes;
+				conversionTable = snapshot.conversions;
+				processTable = snapshot.processes;
+			} else {
+				flowTypeTable = FlowTypeTable.create(database);
+				conversionTable = ConversionTable.create(database);
+				processTable = ProcessTable.create(database, flowTypeTable);
+			}
 			exchangeCache = ExchangeCache.create(database, conversionTable,
-					flowTypeTable);
-			allocationCache = AllocationCache.create(database);
-			impactCache = ImpactFactorCache.create(database, conversionTable);
+					flowTypeTable, snapshot, this.config);
+			allocationCache = AllocationCache.create(database, this.config);
+			impactCache = ImpactFactorCache.create(database, conversionTable,
+					this.config);
 		}
 	}
 
@@ -49,45 +102,90 @@ public final class MatrixCache {
 		return database;
 	}
 
-	private FlowTypeTable getFlowTypeTable() {
+	private synchronized FlowTypeTable getFlowTypeTable() {
 		if (flowTypeTable == null)
 			flowTypeTable = FlowTypeTable.create(database);
 		return flowTypeTable;
 	}
 
-	private ConversionTable getConversionTable() {
+	private synchronized ConversionTable getConversionTable() {
 		if (conversionTable == null)
 			conversionTable = ConversionTable.create(database);
 		return conversionTable;
 	}
 
-	public ProcessTable getProcessTable() {
+	public synchronized ProcessTable getProcessTable() {
 		if (processTable == null)
 			processTable = ProcessTable.create(database, getFlowTypeTable());
 		return processTable;
 	}
 
-	public LoadingCache<Long, List<CalcAllocationFactor>> getAllocationCache() {
+	public synchronized LoadingCache<Long, List<CalcAllocationFactor>> getAllocationCache() {
 		if (allocationCache == null)
-			allocationCache = AllocationCache.create(database);
+			allocationCache = AllocationCache.create(database, config);
 		return allocationCache;
 	}
 
-	public LoadingCache<Long, List<CalcImpactFactor>> getImpactCache() {
+	public synchronized LoadingCache<Long, List<CalcImpactFactor>> getImpactCache() {
 		if (impactCache == null)
 			impactCache = ImpactFactorCache.create(database,
-					getConversionTable());
+					getConversionTable(), config);
 		return impactCache;
 	}
 
-	public LoadingCache<Long, List<CalcExchange>> getExchangeCache() {
+	public synchronized LoadingCache<Long, ExchangeBlock> getExchangeCache() {
 		if (exchangeCache == null)
 			exchangeCache = ExchangeCache.create(database,
-					getConversionTable(), getFlowTypeTable());
+					getConversionTable(), getFlowTypeTable(), null, config);
 		return exchangeCache;
 	}
 
+	/**
+	 * Returns the summed statistics of the exchange, allocation, and impact
+	 * factor caches. The statistics are only recorded when this is enabled in
+	 * the configuration of this cache; otherwise, all values are zero. The
+	 * statistics of the single caches are available via their
+	 * <code>stats()</code> method.
+	 */
+	public synchronized CacheStats getStats() {
+		CacheStats stats = droppedStats;
+		if (exchangeCache != null)
+			stats = stats.plus(exchangeCache.stats());
+		if (allocationCache != null)
+			stats = stats.plus(allocationCache.stats());
+		if (impactCache != null)
+			stats = stats.plus(impactCache.stats());
+		return stats;
+	}
+
+	/**
+	 * Writes a binary snapshot of the tables and exchanges of the database to
+	 * its file storage location. Eager caches that are created later for this
+	 * database are then initialized from this snapshot instead of scanning the
+	 * database tables. The snapshot is deleted when a flow, unit, or process
+	 * of the database is changed (see the evict and register methods) and it
+	 * is ignored when the database was changed without this cache. This
+	 * method is called by eager caches that are created with
+	 * {@link CacheConfig#writeSnapshot}; applications can also call it
+	 * directly, e.g. after a large import. Returns false if the snapshot could
+	 * not be written.
+	 */
+	public synchronized boolean writeSnapshot() {
+		File file = CacheSnapshot.getFile(database);
+		if (file == null)
+			return false;
+		try {
+			CacheSnapshot.write(database, file);
+			return true;
+		} catch (Exception e) {
+			Logger log = LoggerFactory.getLogger(getClass());
+			log.error("failed to write matrix cache snapshot " + file, e);
+			return false;
+		}
+	}
+
 	public synchronized void evictAll() {
+		dropSnapshot();
 		if (flowTypeTable != null)
 			flowTypeTable.reload();
 		if (conversionTable != null)
@@ -134,9 +232,14 @@ public final class MatrixCache {
 	}
 
 	private void baseEviction() {
+		dropSnapshot();
 		if (conversionTable == null && flowTypeTable == null)
 			return; // there cannot be an exchange or impact cache
 		if (lazy) {
+			if (exchangeCache != null)
+				droppedStats = droppedStats.plus(exchangeCache.stats());
+			if (impactCache != null)
+				droppedStats = droppedStats.plus(impactCache.stats());
 			conversionTable = null;
 			flowTypeTable = null;
 			exchangeCache = null;
@@ -151,6 +254,9 @@ public final class MatrixCache {
 	}
 
 	private void evictProcess(long id) {
+		if (snapshot != null)
+			snapshot.evict(id);
+		CacheSnapshot.delete(database);
 		processTable = null;
 		if (exchangeCache != null)
 			exchangeCache.invalidate(id);
@@ -169,6 +275,7 @@ public final class MatrixCache {
 			baseEviction();
 			break;
 		case PROCESS:
+			CacheSnapshot.delete(database);
 			processTable = null;
 			break;
 		case UNIT:
@@ -182,4 +289,13 @@ public final class MatrixCache {
 		}
 	}
 
+	/** The snapshot is deleted and its exchanges are not used anymore. */
+	private void dropSnapshot() {
+		if (snapshot != null) {
+			snapshot.dispose();
+			snapshot = null;
+		}
+		CacheSnapshot.delete(database);
+	}
+
 }
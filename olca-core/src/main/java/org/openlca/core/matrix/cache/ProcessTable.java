@@ -34,14 +34,33 @@ public class ProcessTable {
 	private final TLongObjectHashMap<TLongArrayList> productMap = new TLongObjectHashMap<>();
 
 	public static ProcessTable create(IDatabase db, FlowTypeTable flowTypes) {
-		ProcessTable table = new ProcessTable(db, flowTypes);
+		ProcessTable table = new ProcessTable();
+		table.log.trace("build process index table");
+		table.initTypeAndAllocation(db);
+		table.initProductMap(db, flowTypes);
 		return table;
 	}
 
-	private ProcessTable(IDatabase db, FlowTypeTable flowTypes) {
-		log.trace("build process index table");
-		initTypeAndAllocation(db);
-		initProductMap(db, flowTypes);
+	/**
+	 * Creates the table from the given values (e.g. from a cache snapshot)
+	 * without querying the database. The allocation methods may contain
+	 * <code>null</code> values. The product providers are given as pairs of
+	 * product and process IDs.
+	 */
+	static ProcessTable of(long[] processIds, ProcessType[] types,
+			AllocationMethod[] methods, long[] productIds, long[] providerIds) {
+		ProcessTable table = new ProcessTable();
+		for (int i = 0; i < processIds.length; i++) {
+			table.typeMap.put(processIds[i], types[i]);
+			if (methods[i] != null)
+				table.allocMap.put(processIds[i], methods[i]);
+		}
+		for (int i = 0; i < productIds.length; i++)
+			table.indexProvider(productIds[i], providerIds[i]);
+		return table;
+	}
+
+	private ProcessTable() {
 	}
 
 	private void initProductMap(IDatabase db, FlowTypeTable flowTypes) {
@@ -120,6 +139,11 @@ public class ProcessTable {
 		return list.toArray();
 	}
 
+	/** Get the IDs of all processes in this table. */
+	long[] getProcessIds() {
+		return typeMap.keys();
+	}
+
 	/** Gets all process products of the database. */
 	public List<LongPair> getProcessProducts() {
 		List<LongPair> list = new ArrayList<>();
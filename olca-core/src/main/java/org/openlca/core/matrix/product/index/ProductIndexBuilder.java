@@ -6,8 +6,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
-import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.ExchangeBlock;
 import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.TechIndex;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -19,8 +23,20 @@ import org.openlca.core.model.ProductSystem;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Builds the product index of a product system by expanding the supply chain
+ * of the reference product layer by layer. The exchanges of a layer are
+ * fetched in chunks in the background while the previous chunks are
+ * processed, and the providers of the product inputs of a chunk are searched
+ * in parallel. The links are added to the index in the same order as in a
+ * sequential expansion so that the index does not depend on the number of
+ * threads.
+ */
 public class ProductIndexBuilder implements IProductIndexBuilder {
 
+	/** The maximum number of processes which exchanges are fetched at once. */
+	private static final int CHUNK_SIZE = 500;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private ProcessType preferredType = ProcessType.LCI_RESULT;
 	private MatrixCache cache;
@@ -49,35 +65,100 @@ public class ProductIndexBuilder implements IProductIndexBuilder {
 		TechIndex index = new TechIndex(refFlow);
 		index.setDemand(demand);
 		addSystemLinks(index);
-		List<LongPair> block = new ArrayList<>();
-		block.add(refFlow);
-		HashSet<LongPair> handled = new HashSet<>();
-		while (!block.isEmpty()) {
-			List<LongPair> nextBlock = new ArrayList<>();
-			log.trace("fetch next block with {} entries", block.size());
-			Map<Long, List<CalcExchange>> exchanges = fetchExchanges(block);
-			for (LongPair recipient : block) {
-				handled.add(recipient);
-				List<CalcExchange> allExchanges = exchanges.get(recipient
-						.getFirst());
-				List<CalcExchange> productInputs = getProductInputs(
-						allExchanges);
-				for (CalcExchange productInput : productInputs) {
-					LongPair provider = findProvider(productInput);
-					if (provider == null)
-						continue;
-					LongPair exchange = new LongPair(recipient.getFirst(),
-							productInput.exchangeId);
-					index.putLink(exchange, provider);
-					if (!handled.contains(provider) && !nextBlock.contains(provider))
-						nextBlock.add(provider);
+		ExecutorService fetcher = Executors.newFixedThreadPool(2);
+		try {
+			List<Chunk> block = new ArrayList<>();
+			block.add(new Chunk(Collections.singletonList(refFlow), fetcher));
+			Set<LongPair> handled = new HashSet<>();
+			handled.add(refFlow);
+			while (!block.isEmpty()) {
+				log.trace("expand next block with {} chunks", block.size());
+				List<Chunk> nextBlock = new ArrayList<>();
+				// the next layer is split into chunks which exchanges are
+				// fetched while the current layer is processed
+				List<LongPair> next = new ArrayList<>();
+				for (Chunk chunk : block) {
+					for (List<ProviderLink> links : chunk.resolve()) {
+						for (ProviderLink link : links) {
+							index.putLink(link.exchange, link.provider);
+							if (!handled.add(link.provider))
+								continue;
+							next.add(link.provider);
+							if (next.size() == CHUNK_SIZE) {
+								nextBlock.add(new Chunk(next, fetcher));
+								next = new ArrayList<>();
+							}
+						}
+					}
 				}
+				if (!next.isEmpty())
+					nextBlock.add(new Chunk(next, fetcher));
+				block = nextBlock;
 			}
-			block = nextBlock;
+		} finally {
+			fetcher.shutdownNow();
 		}
 		return index;
 	}
 
+	/**
+	 * A chunk of recipients of a layer. The exchanges of the recipients are
+	 * fetched in the background when the chunk is created.
+	 */
+	private class Chunk {
+
+		final List<LongPair> recipients;
+		final CompletableFuture<Map<Long, ExchangeBlock>> exchanges;
+
+		Chunk(List<LongPair> recipients, ExecutorService fetcher) {
+			this.recipients = recipients;
+			this.exchanges = CompletableFuture.supplyAsync(
+					() -> fetchExchanges(recipients), fetcher);
+		}
+
+		/**
+		 * Returns the links of the product inputs for each recipient in the
+		 * order of the recipients.
+		 */
+		List<List<ProviderLink>> resolve() {
+			Map<Long, ExchangeBlock> map = exchanges.join();
+			return recipients.parallelStream()
+					.map(recipient -> resolve(recipient,
+							map.get(recipient.getFirst())))
+					.collect(Collectors.toList());
+		}
+
+		private List<ProviderLink> resolve(LongPair recipient,
+				ExchangeBlock exchanges) {
+			List<ProviderLink> links = new ArrayList<>();
+			if (exchanges == null)
+				return links;
+			for (int i = 0; i < exchanges.size(); i++) {
+				if (!isProductInput(exchanges, i))
+					continue;
+				LongPair provider = findProvider(exchanges.flowId(i),
+						exchanges.defaultProviderId(i));
+				if (provider == null)
+					continue;
+				LongPair exchange = new LongPair(recipient.getFirst(),
+						exchanges.exchangeId(i));
+				links.add(new ProviderLink(exchange, provider));
+			}
+			return links;
+		}
+	}
+
+	private static class ProviderLink {
+
+		final LongPair exchange;
+		final LongPair provider;
+
+		ProviderLink(LongPair exchange, LongPair provider) {
+			this.exchange = exchange;
+			this.provider = provider;
+		}
+	}
+
 	private void addSystemLinks(TechIndex index) {
 		if (system == null)
 			return;
@@ -88,22 +169,12 @@ public class ProductIndexBuilder implements IProductIndexBuilder {
 		}
 	}
 
-	private List<CalcExchange> getProductInputs(
-			List<CalcExchange> processExchanges) {
-		if (processExchanges == null || processExchanges.isEmpty())
-			return Collections.emptyList();
-		List<CalcExchange> productInputs = new ArrayList<>();
-		for (CalcExchange exchange : processExchanges) {
-			if (!exchange.input)
-				continue;
-			if (exchange.flowType == FlowType.ELEMENTARY_FLOW)
-				continue;
-			productInputs.add(exchange);
-		}
-		return productInputs;
+	private boolean isProductInput(ExchangeBlock exchanges, int i) {
+		return exchanges.isInput(i)
+				&& exchanges.flowType(i) != FlowType.ELEMENTARY_FLOW;
 	}
 
-	private Map<Long, List<CalcExchange>> fetchExchanges(List<LongPair> block) {
+	private Map<Long, ExchangeBlock> fetchExchanges(List<LongPair> block) {
 		if (block.isEmpty())
 			return Collections.emptyMap();
 		Set<Long> processIds = new HashSet<>();
@@ -118,31 +189,28 @@ public class ProductIndexBuilder implements IProductIndexBuilder {
 		}
 	}
 
-	private LongPair findProvider(CalcExchange productInput) {
-		if (productInput == null)
-			return null;
-		long productId = productInput.flowId;
+	private LongPair findProvider(long productId, long defaultProviderId) {
 		long[] processIds = processTable.getProductProviders(productId);
 		if (processIds == null)
 			return null;
 		LongPair candidate = null;
 		for (long processId : processIds) {
 			LongPair newOption = LongPair.of(processId, productId);
-			if (isBetter(productInput, candidate, newOption))
+			if (isBetter(defaultProviderId, candidate, newOption))
 				candidate = newOption;
 		}
 		return candidate;
 	}
 
-	private boolean isBetter(CalcExchange inputLink, LongPair candidate,
+	private boolean isBetter(long defaultProviderId, LongPair candidate,
 			LongPair newOption) {
 		if (candidate == null)
 			return true;
 		if (newOption == null)
 			return false;
-		if (candidate.getFirst() == inputLink.defaultProviderId)
+		if (candidate.getFirst() == defaultProviderId)
 			return false;
-		if (newOption.getFirst() == inputLink.defaultProviderId)
+		if (newOption.getFirst() == defaultProviderId)
 			return true;
 		ProcessType candidateType = processTable.getType(candidate.getFirst());
 		ProcessType newOptionType = processTable.getType(newOption.getFirst());
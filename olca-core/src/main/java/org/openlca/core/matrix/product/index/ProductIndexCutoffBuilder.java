@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.matrix.ExchangeBlock;
 import org.openlca.core.matrix.LongPair;
 import org.openlca.core.matrix.TechIndex;
 import org.openlca.core.matrix.cache.MatrixCache;
@@ -109,16 +110,16 @@ public class ProductIndexCutoffBuilder implements IProductIndexBuilder {
 			// demands (see the compareTo method in Node)
 			Collections.sort(next);
 
-			Map<Long, List<CalcExchange>> nextExchanges = fetchNextExchanges();
+			Map<Long, ExchangeBlock> nextExchanges = fetchNextExchanges();
 			List<Node> nextLayer = new ArrayList<>();
 			for (Node node : next) {
 				node.state = NodeState.PROGRESS;
-				List<CalcExchange> exchanges = nextExchanges.get(
+				ExchangeBlock exchanges = nextExchanges.get(
 						node.product.getFirst());
-				CalcExchange output = getOutput(node, exchanges);
-				if (output == null)
+				int output = getOutput(node, exchanges);
+				if (output < 0)
 					continue;
-				node.outputAmount = amount(output);
+				node.outputAmount = amount(exchanges, output);
 				node.scalingFactor = node.demand / node.outputAmount;
 				followInputs(node, exchanges, nextLayer);
 				node.state = NodeState.FOLLOWED;
@@ -127,13 +128,17 @@ public class ProductIndexCutoffBuilder implements IProductIndexBuilder {
 			next.addAll(nextLayer);
 		}
 
-		private void followInputs(Node node, List<CalcExchange> exchanges,
+		private void followInputs(Node node, ExchangeBlock exchanges,
 				List<Node> nextLayer) {
-			for (CalcExchange input : getInputs(node, exchanges)) {
+			for (int i = 0; i < exchanges.size(); i++) {
+				if (!exchanges.isInput(i)
+						|| exchanges.flowType(i) != FlowType.PRODUCT_FLOW)
+					continue;
+				CalcExchange input = exchanges.get(i);
 				LongPair inputProduct = providerSearch.find(input);
 				if (inputProduct == null)
 					continue;
-				double inputAmount = amount(input);
+				double inputAmount = amount(exchanges, i);
 				double inputDemand = node.scalingFactor * inputAmount;
 				Node provider = nodes.get(inputProduct);
 				if (provider != null)
@@ -198,34 +203,25 @@ public class ProductIndexCutoffBuilder implements IProductIndexBuilder {
 			}
 		}
 
-		private CalcExchange getOutput(Node node, List<CalcExchange> all) {
-			for (CalcExchange e : all) {
-				if (e.input
-						|| e.flowType != FlowType.PRODUCT_FLOW
-						|| e.flowId != node.product.getSecond())
+		/** Returns the position of the output of the node or -1. */
+		private int getOutput(Node node, ExchangeBlock all) {
+			if (all == null)
+				return -1;
+			for (int i = 0; i < all.size(); i++) {
+				if (all.isInput(i)
+						|| all.flowType(i) != FlowType.PRODUCT_FLOW
+						|| all.flowId(i) != node.product.getSecond())
 					continue;
-				return e;
-			}
-			return null;
-		}
-
-		private List<CalcExchange> getInputs(Node node,
-				List<CalcExchange> all) {
-			List<CalcExchange> inputs = new ArrayList<>();
-			for (CalcExchange e : all) {
-				if (e.input && e.flowType == FlowType.PRODUCT_FLOW)
-					inputs.add(e);
+				return i;
 			}
-			return inputs;
+			return -1;
 		}
 
-		private double amount(CalcExchange e) {
-			if (e == null)
-				return 0;
-			return e.amount * e.conversionFactor;
+		private double amount(ExchangeBlock exchanges, int i) {
+			return exchanges.amount(i) * exchanges.conversionFactor(i);
 		}
 
-		private Map<Long, List<CalcExchange>> fetchNextExchanges() {
+		private Map<Long, ExchangeBlock> fetchNextExchanges() {
 			if (next.isEmpty())
 				return Collections.emptyMap();
 			Set<Long> processIds = new HashSet<>();
@@ -0,0 +1,100 @@
+package org.openlca.core.results;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Checks if the results of a Monte-Carlo-Simulation are converged. The check
+ * is done every n runs (the interval) after a minimum number of runs. The
+ * results of an indicator are converged when the half width of the 95%
+ * confidence interval of the mean is smaller than the given tolerance
+ * relative to the mean. If no flows or LCIA categories are selected, all LCIA
+ * categories are checked or all flows if there are no LCIA results.
+ */
+public class ConvergenceCheck {
+
+	private final Set<Long> flows = new HashSet<>();
+	private final Set<Long> impacts = new HashSet<>();
+	private double tolerance = 0.01;
+	private int minRuns = 100;
+	private int interval = 100;
+
+	public void addFlow(long flowId) {
+		flows.add(flowId);
+	}
+
+	public void addImpact(long impactCategoryId) {
+		impacts.add(impactCategoryId);
+	}
+
+	/**
+	 * Sets the relative tolerance of the confidence interval; the default is
+	 * 0.01.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/** Sets the minimum number of runs; the default is 100. */
+	public void setMinRuns(int minRuns) {
+		this.minRuns = minRuns;
+	}
+
+	/**
+	 * Sets the number of runs after which the convergence is checked; the
+	 * default is 100.
+	 */
+	public void setInterval(int interval) {
+		if (interval < 1)
+			throw new IllegalArgumentException("the interval must be >= 1");
+		this.interval = interval;
+	}
+
+	/**
+	 * Returns true if the selected indicators of the given accumulator are
+	 * converged. Returns always false if the number of runs is smaller than
+	 * the minimum number of runs or if it is not a multiple of the check
+	 * interval.
+	 */
+	public boolean isReached(SimulationAccumulator result) {
+		int runs = result.getNumberOfRuns();
+		if (runs < minRuns || runs % interval != 0)
+			return false;
+		if (flows.isEmpty() && impacts.isEmpty())
+			return checkAll(result);
+		for (long flowId : flows) {
+			if (!isConverged(result.getFlowStatistics(flowId)))
+				return false;
+		}
+		for (long impactId : impacts) {
+			if (!isConverged(result.getImpactStatistics(impactId)))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean checkAll(SimulationAccumulator result) {
+		if (result.hasImpactResults()) {
+			for (long impactId : result.impactIndex.getKeys()) {
+				if (!isConverged(result.getImpactStatistics(impactId)))
+					return false;
+			}
+			return true;
+		}
+		if (result.flowIndex == null)
+			return true;
+		for (long flowId : result.flowIndex.getFlowIds()) {
+			if (!isConverged(result.getFlowStatistics(flowId)))
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isConverged(OnlineStatistics stats) {
+		double halfWidth = 1.96 * stats.getStandardError();
+		double mean = Math.abs(stats.getMean());
+		if (mean == 0)
+			return halfWidth == 0;
+		return halfWidth / mean <= tolerance;
+	}
+}
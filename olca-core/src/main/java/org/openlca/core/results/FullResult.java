@@ -13,7 +13,9 @@ public class FullResult extends ContributionResult {
 	/**
 	 * The upstream flow results in a matrix where the flows are mapped to the
 	 * rows and the process-products to the columns. Inputs have negative values
-	 * here.
+	 * here. In a lazy full result (see LcaCalculator#calculateLazyFull), this
+	 * and the upstream LCIA category results are calculated on demand; writing
+	 * a value into such a matrix first calculates all of its values.
 	 */
 	public IMatrix upstreamFlowResults;
 
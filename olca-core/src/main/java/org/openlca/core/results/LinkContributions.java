@@ -62,22 +62,21 @@ public class LinkContributions {
 
 	private void calculateShares(IMatrix matrix, TechIndex index,
 			double[] scalingFactors) {
-		for (int i = 0; i < index.size(); i++) {
-			LongPair outProduct = index.getProviderAt(i);
-			double outVal = scalingFactors[i] * matrix.get(i, i);
+		double[] outVals = new double[index.size()];
+		for (int i = 0; i < outVals.length; i++)
+			outVals[i] = scalingFactors[i] * matrix.get(i, i);
+		// only the non-zero entries of the matrix are visited
+		matrix.iterate((row, col, rawInVal) -> {
+			if (row == col)
+				return;
+			double outVal = outVals[row];
 			if (outVal == 0)
-				continue;
-			for (int k = 0; k < index.size(); k++) {
-				if (k == i)
-					continue;
-				double rawInVal = matrix.get(i, k);
-				if (rawInVal == 0)
-					continue;
-				double contr = -(scalingFactors[k] * rawInVal) / outVal;
-				LongPair inProduct = index.getProviderAt(k);
-				putShare(outProduct, inProduct, contr);
-			}
-		}
+				return;
+			double contr = -(scalingFactors[col] * rawInVal) / outVal;
+			LongPair outProduct = index.getProviderAt(row);
+			LongPair inProduct = index.getProviderAt(col);
+			putShare(outProduct, inProduct, contr);
+		});
 	}
 
 	private void putShare(LongPair output, LongPair input, double share) {
@@ -0,0 +1,116 @@
+package org.openlca.core.results;
+
+/**
+ * Calculates statistic parameters of a stream of values without storing the
+ * values. The mean and variance are updated with the algorithm of Welford and
+ * the percentiles are estimated with a {@link QuantileSketch}. Statistics of
+ * different streams can be merged, e.g. when the values are calculated in
+ * parallel.
+ */
+public class OnlineStatistics {
+
+	private long count;
+	private double mean;
+	private double m2;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private final QuantileSketch sketch;
+
+	public OnlineStatistics() {
+		sketch = new QuantileSketch();
+	}
+
+	public OnlineStatistics(int sketchSize) {
+		sketch = new QuantileSketch(sketchSize);
+	}
+
+	public void add(double value) {
+		count++;
+		double delta = value - mean;
+		mean += delta / count;
+		m2 += delta * (value - mean);
+		if (value < min)
+			min = value;
+		if (value > max)
+			max = value;
+		sketch.add(value);
+	}
+
+	/**
+	 * Adds the values of the given statistics to this statistics (see Chan et
+	 * al.: Updating Formulae and a Pairwise Algorithm for Computing Sample
+	 * Variances, 1979).
+	 */
+	public void merge(OnlineStatistics other) {
+		if (other == null || other.count == 0)
+			return;
+		if (count == 0) {
+			mean = other.mean;
+			m2 = other.m2;
+		} else {
+			long n = count + other.count;
+			double delta = other.mean - mean;
+			mean += delta * other.count / n;
+			m2 += other.m2 + delta * delta * count * other.count / n;
+		}
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		sketch.merge(other.sketch);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getMinimum() {
+		return count == 0 ? 0 : min;
+	}
+
+	public double getMaximum() {
+		return count == 0 ? 0 : max;
+	}
+
+	public double getRange() {
+		return getMaximum() - getMinimum();
+	}
+
+	/** Returns the sample variance. */
+	public double getVariance() {
+		if (count < 2)
+			return 0;
+		return m2 / (count - 1);
+	}
+
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * Returns the standard error of the mean: s / sqrt(n).
+	 */
+	public double getStandardError() {
+		if (count < 2)
+			return 0;
+		return getStandardDeviation() / Math.sqrt(count);
+	}
+
+	/**
+	 * Returns the estimated value at the given percentile.
+	 * 
+	 * @param percentile
+	 *            the percentage value (0..100)
+	 */
+	public double getPercentileValue(int percentile) {
+		return sketch.getQuantile(percentile / 100.0);
+	}
+
+	public double getMedian() {
+		return sketch.getQuantile(0.5);
+	}
+
+}
@@ -1,8 +1,8 @@
 package org.openlca.core.results;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -18,7 +18,8 @@ import org.openlca.core.model.descriptors.ProcessDescriptor;
  */
 public class ProjectResultProvider implements IResultProvider {
 
-	private HashMap<ProjectVariant, ContributionResultProvider<?>> results = new HashMap<>();
+	/** The results in the order in which they were added. */
+	private LinkedHashMap<ProjectVariant, ContributionResultProvider<?>> results = new LinkedHashMap<>();
 	public final EntityCache cache;
 
 	public ProjectResultProvider(EntityCache cache) {
@@ -0,0 +1,170 @@
+package org.openlca.core.results;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch for estimating quantiles of a stream of values without
+ * storing all values (KLL sketch, see Karnin, Lang, Liberty: Optimal
+ * Quantile Approximation in Streams, 2016). The values are stored in a
+ * hierarchy of compactors where an item on level h represents 2^h values of
+ * the stream. When the sketch gets full, a level is sorted and every second
+ * item is promoted to the next level. The space is O(k) and the rank error is
+ * in the order of 1 / k (about 0.5 - 1.5% for the default k = 200). Instead
+ * of random offsets, the compactors alternate the offset so that the sketch
+ * is deterministic for a given sequence of values.
+ */
+public class QuantileSketch {
+
+	private final int k;
+	private double[][] levels;
+	private int[] sizes;
+	private boolean[] offsets;
+	private int levelCount;
+	private int[] capacities;
+	private int totalCapacity;
+	private int size;
+	private long count;
+
+	public QuantileSketch() {
+		this(200);
+	}
+
+	/**
+	 * Creates a new sketch with the given accuracy parameter; larger values
+	 * give more accurate quantiles but need more memory.
+	 */
+	public QuantileSketch(int k) {
+		if (k < 8)
+			throw new IllegalArgumentException("k must be at least 8");
+		this.k = k;
+		levels = new double[4][];
+		sizes = new int[4];
+		offsets = new boolean[4];
+		addLevel();
+	}
+
+	/** Returns the number of values that were added to the sketch. */
+	public long getCount() {
+		return count;
+	}
+
+	public void add(double value) {
+		if (sizes[0] == levels[0].length)
+			levels[0] = Arrays.copyOf(levels[0], 2 * levels[0].length);
+		levels[0][sizes[0]++] = value;
+		size++;
+		count++;
+		if (size > totalCapacity)
+			compress();
+	}
+
+	/**
+	 * Adds the values of the given sketch to this sketch. The other sketch is
+	 * not modified.
+	 */
+	public void merge(QuantileSketch other) {
+		if (other == null || other.count == 0)
+			return;
+		while (levelCount < other.levelCount)
+			addLevel();
+		for (int h = 0; h < other.levelCount; h++) {
+			int n = other.sizes[h];
+			if (n == 0)
+				continue;
+			if (sizes[h] + n > levels[h].length)
+				levels[h] = Arrays.copyOf(levels[h],
+						Math.max(2 * levels[h].length, sizes[h] + n));
+			System.arraycopy(other.levels[h], 0, levels[h], sizes[h], n);
+			sizes[h] += n;
+			size += n;
+		}
+		count += other.count;
+		while (size > totalCapacity)
+			compress();
+	}
+
+	/**
+	 * Returns the estimated value at the given quantile (0..1) or 0 if the
+	 * sketch is empty.
+	 */
+	public double getQuantile(double q) {
+		if (count == 0)
+			return 0;
+		double[][] sorted = new double[levelCount][];
+		long totalWeight = 0;
+		for (int h = 0; h < levelCount; h++) {
+			sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+			Arrays.sort(sorted[h]);
+			totalWeight += (long) sizes[h] << h;
+		}
+		double rank = Math.max(0, Math.min(1, q)) * totalWeight;
+		int[] pos = new int[levelCount];
+		long cumulative = 0;
+		double last = 0;
+		while (true) {
+			// take the smallest remaining item over all levels
+			int min = -1;
+			for (int h = 0; h < levelCount; h++) {
+				if (pos[h] >= sorted[h].length)
+					continue;
+				if (min < 0 || sorted[h][pos[h]] < sorted[min][pos[min]])
+					min = h;
+			}
+			if (min < 0)
+				return last;
+			last = sorted[min][pos[min]++];
+			cumulative += 1L << min;
+			if (cumulative >= rank)
+				return last;
+		}
+	}
+
+	private void compress() {
+		for (int h = 0; h < levelCount; h++) {
+			if (sizes[h] < capacities[h])
+				continue;
+			if (h + 1 == levelCount)
+				addLevel();
+			double[] level = levels[h];
+			int n = sizes[h];
+			Arrays.sort(level, 0, n);
+			// with an odd number of items, the largest item stays
+			int pairs = n / 2;
+			int offset = offsets[h] ? 1 : 0;
+			offsets[h] = !offsets[h];
+			int next = h + 1;
+			if (sizes[next] + pairs > levels[next].length)
+				levels[next] = Arrays.copyOf(levels[next],
+						Math.max(2 * levels[next].length, sizes[next] + pairs));
+			for (int i = 0; i < pairs; i++)
+				levels[next][sizes[next]++] = level[2 * i + offset];
+			if (n % 2 == 1) {
+				level[0] = level[n - 1];
+				sizes[h] = 1;
+			} else {
+				sizes[h] = 0;
+			}
+			size -= pairs;
+			return;
+		}
+	}
+
+	private void addLevel() {
+		if (levelCount == levels.length) {
+			levels = Arrays.copyOf(levels, 2 * levelCount);
+			sizes = Arrays.copyOf(sizes, 2 * levelCount);
+			offsets = Arrays.copyOf(offsets, 2 * levelCount);
+		}
+		levels[levelCount] = new double[levelCount == 0 ? k : 8];
+		levelCount++;
+		// the capacities decrease by 2/3 from the top level to the bottom
+		capacities = new int[levelCount];
+		totalCapacity = 0;
+		for (int h = 0; h < levelCount; h++) {
+			int depth = levelCount - h - 1;
+			capacities[h] = Math.max(2,
+					(int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+			totalCapacity += capacities[h];
+		}
+	}
+}
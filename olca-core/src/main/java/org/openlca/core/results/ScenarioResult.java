@@ -0,0 +1,81 @@
+package org.openlca.core.results;
+
+import java.util.Arrays;
+
+/**
+ * The LCIA results of a set of scenarios (parameter variations) of a product
+ * system. The results are stored in a compact matrix with a row for each
+ * scenario and a column for each LCIA category of the impact index.
+ */
+public class ScenarioResult extends BaseResult {
+
+	private final double[][] results;
+	private final boolean[] failed;
+
+	public ScenarioResult(int scenarios, int impacts) {
+		results = new double[scenarios][impacts];
+		failed = new boolean[scenarios];
+	}
+
+	public int getNumberOfScenarios() {
+		return results.length;
+	}
+
+	/**
+	 * Sets the LCIA results of the given scenario in the order of the impact
+	 * index.
+	 */
+	public void setResults(int scenario, double[] impacts) {
+		System.arraycopy(impacts, 0, results[scenario], 0,
+				results[scenario].length);
+		failed[scenario] = false;
+	}
+
+	/**
+	 * Marks the calculation of the given scenario as failed (e.g. because the
+	 * technology matrix was singular). The results of a failed scenario are
+	 * NaN.
+	 */
+	public void setFailed(int scenario) {
+		Arrays.fill(results[scenario], Double.NaN);
+		failed[scenario] = true;
+	}
+
+	public boolean isFailed(int scenario) {
+		return failed[scenario];
+	}
+
+	/**
+	 * Returns the result of the given LCIA category in the given scenario.
+	 */
+	public double getResult(int scenario, long impactCategoryId) {
+		int idx = impactIndex == null ? -1
+				: impactIndex.getIndex(impactCategoryId);
+		if (idx < 0)
+			return 0;
+		return results[scenario][idx];
+	}
+
+	/**
+	 * Returns the LCIA results of the given scenario in the order of the
+	 * impact index. The returned array is a copy of the stored values.
+	 */
+	public double[] getResults(int scenario) {
+		return Arrays.copyOf(results[scenario], results[scenario].length);
+	}
+
+	/**
+	 * Returns the results of the given LCIA category in the order of the
+	 * scenarios.
+	 */
+	public double[] getImpactResults(long impactCategoryId) {
+		int idx = impactIndex == null ? -1
+				: impactIndex.getIndex(impactCategoryId);
+		double[] values = new double[results.length];
+		if (idx < 0)
+			return values;
+		for (int i = 0; i < results.length; i++)
+			values[i] = results[i][idx];
+		return values;
+	}
+}
@@ -0,0 +1,69 @@
+package org.openlca.core.results;
+
+/**
+ * Accumulates the results of a Monte-Carlo-Simulation into online statistics
+ * for each flow and LCIA category. In contrast to the
+ * {@link SimulationResult}, the result vectors of the single runs are not
+ * stored. Thus, the memory that is needed does not depend on the number of
+ * runs.
+ */
+public class SimulationAccumulator extends BaseResult {
+
+	private OnlineStatistics[] flowStatistics;
+	private OnlineStatistics[] impactStatistics;
+	private int runs;
+
+	public void appendFlowResults(double[] vector) {
+		if (flowStatistics == null)
+			flowStatistics = create(flowIndex.size());
+		append(vector, flowStatistics);
+		runs++;
+	}
+
+	public void appendImpactResults(double[] vector) {
+		if (impactStatistics == null)
+			impactStatistics = create(impactIndex.size());
+		append(vector, impactStatistics);
+	}
+
+	private OnlineStatistics[] create(int size) {
+		OnlineStatistics[] stats = new OnlineStatistics[size];
+		for (int i = 0; i < size; i++)
+			stats[i] = new OnlineStatistics();
+		return stats;
+	}
+
+	private void append(double[] vector, OnlineStatistics[] stats) {
+		for (int i = 0; i < vector.length; i++)
+			stats[i].add(vector[i]);
+	}
+
+	/**
+	 * Returns the statistics of the given flow. If there are no results for
+	 * the flow, empty statistics are returned.
+	 */
+	public OnlineStatistics getFlowStatistics(long flowId) {
+		int idx = flowIndex.getIndex(flowId);
+		if (idx < 0 || flowStatistics == null)
+			return new OnlineStatistics();
+		return flowStatistics[idx];
+	}
+
+	/**
+	 * Returns the statistics of the given LCIA category. If there are no
+	 * results for the category, empty statistics are returned.
+	 */
+	public OnlineStatistics getImpactStatistics(long impactCategoryId) {
+		if (impactIndex == null || impactStatistics == null)
+			return new OnlineStatistics();
+		int idx = impactIndex.getIndex(impactCategoryId);
+		if (idx < 0)
+			return new OnlineStatistics();
+		return impactStatistics[idx];
+	}
+
+	public int getNumberOfRuns() {
+		return runs;
+	}
+
+}
@@ -1,85 +1,268 @@
 package org.openlca.core.results;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 
 /**
- * The results of a Monte-Carlo-Simulation. The single result values of the
- * simulation runs are stored in an array of lists where the flow- and LCIA
- * category indices are mapped to the respective array rows and the result
- * values to the respective list entries.
+ * The results of a Monte-Carlo-Simulation. The result values of the simulation
+ * runs are stored column wise in primitive arrays: for each flow and LCIA
+ * category there is an array that contains the results of the runs in the
+ * order in which they were appended. The flow- and LCIA category indices are
+ * mapped to the respective array rows. The arrays grow when results are
+ * appended; if the number of runs is known in advance, the storage should be
+ * allocated with {@link #ensureCapacity(int)}.
  */
 public class SimulationResult extends BaseResult {
 
-	private List<Double>[] flowResults;
-	private List<Double>[] impactResults;
+	private double[][] flowResults;
+	private double[][] impactResults;
+	private int flowRuns;
+	private int impactRuns;
 
-	public List<Double>[] getFlowResults() {
-		return flowResults;
+	/**
+	 * Allocates the storage for the given number of runs so that the result
+	 * arrays do not need to grow when the results are appended. This must be
+	 * called after the flow and impact indices are set.
+	 */
+	public void ensureCapacity(int runs) {
+		if (flowIndex != null) {
+			if (flowResults == null)
+				flowResults = new double[flowIndex.size()][runs];
+			else
+				flowResults = grow(flowResults, runs);
+		}
+		if (hasImpactResults()) {
+			if (impactResults == null)
+				impactResults = new double[impactIndex.size()][runs];
+			else
+				impactResults = grow(impactResults, runs);
+		}
 	}
 
-	public void setFlowResults(List<Double>[] flowResults) {
-		this.flowResults = flowResults;
+	public void appendFlowResults(double[] vector) {
+		if (flowResults == null)
+			flowResults = new double[flowIndex.size()][10];
+		flowResults = append(vector, flowResults, flowRuns);
+		flowRuns++;
 	}
 
-	public List<Double>[] getImpactResults() {
-		return impactResults;
+	public void appendImpactResults(double[] vector) {
+		if (impactResults == null)
+			impactResults = new double[impactIndex.size()][10];
+		impactResults = append(vector, impactResults, impactRuns);
+		impactRuns++;
 	}
 
-	public void setImpactResults(List<Double>[] impactResults) {
-		this.impactResults = impactResults;
+	private double[][] append(double[] vector, double[][] results, int run) {
+		if (results.length > 0 && results[0].length <= run)
+			results = grow(results, run + run / 2 + 10);
+		for (int i = 0; i < vector.length; i++)
+			results[i][run] = vector[i];
+		return results;
 	}
 
-	@SuppressWarnings("unchecked")
-	public void appendFlowResults(double[] vector) {
-		if (flowResults == null)
-			flowResults = new List[flowIndex.size()];
-		appendResults(vector, flowResults);
+	private double[][] grow(double[][] results, int capacity) {
+		for (int i = 0; i < results.length; i++) {
+			if (results[i].length < capacity)
+				results[i] = Arrays.copyOf(results[i], capacity);
+		}
+		return results;
 	}
 
-	@SuppressWarnings("unchecked")
-	public void appendImpactResults(double[] vector) {
-		if (impactResults == null)
-			impactResults = new List[impactIndex.size()];
-		appendResults(vector, impactResults);
+	/**
+	 * Returns the results of the given flow in the order of the simulation
+	 * runs. The returned array is a copy of the stored values.
+	 */
+	public double[] getFlowValues(long flowId) {
+		int idx = flowIndex.getIndex(flowId);
+		if (idx < 0 || flowResults == null)
+			return new double[0];
+		return Arrays.copyOf(flowResults[idx], flowRuns);
 	}
 
-	private void appendResults(double[] vector, List<Double>[] results) {
-		for (int i = 0; i < vector.length; i++) {
-			List<Double> list = results[i];
-			if (list == null) {
-				list = new ArrayList<>();
-				results[i] = list;
-			}
-			list.add(vector[i]);
-		}
+	/**
+	 * Returns the result of the given flow in the given simulation run.
+	 */
+	public double getFlowResult(long flowId, int run) {
+		int idx = flowIndex.getIndex(flowId);
+		if (idx < 0 || flowResults == null || run >= flowRuns)
+			return 0;
+		return flowResults[idx][run];
 	}
 
-	public List<Double> getFlowResults(long flowId) {
+	/**
+	 * Passes the results of the given flow in the order of the simulation
+	 * runs to the given consumer without copying them.
+	 */
+	public void forEachFlowResult(long flowId, DoubleConsumer fn) {
 		int idx = flowIndex.getIndex(flowId);
+		if (idx < 0 || flowResults == null)
+			return;
+		double[] values = flowResults[idx];
+		for (int run = 0; run < flowRuns; run++)
+			fn.accept(values[run]);
+	}
+
+	/**
+	 * Returns the results of the given LCIA category in the order of the
+	 * simulation runs. The returned array is a copy of the stored values.
+	 */
+	public double[] getImpactValues(long impactCategoryId) {
+		int idx = getImpactIndex(impactCategoryId);
 		if (idx < 0)
-			return Collections.emptyList();
-		return flowResults[idx];
+			return new double[0];
+		return Arrays.copyOf(impactResults[idx], impactRuns);
 	}
 
-	public List<Double> getImpactResults(long impactCategoryId) {
-		if (impactIndex == null)
-			return Collections.emptyList();
-		int idx = impactIndex.getIndex(impactCategoryId);
+	/**
+	 * Returns the result of the given LCIA category in the given simulation
+	 * run.
+	 */
+	public double getImpactResult(long impactCategoryId, int run) {
+		int idx = getImpactIndex(impactCategoryId);
+		if (idx < 0 || run >= impactRuns)
+			return 0;
+		return impactResults[idx][run];
+	}
+
+	/**
+	 * Passes the results of the given LCIA category in the order of the
+	 * simulation runs to the given consumer without copying them.
+	 */
+	public void forEachImpactResult(long impactCategoryId, DoubleConsumer fn) {
+		int idx = getImpactIndex(impactCategoryId);
 		if (idx < 0)
-			return Collections.emptyList();
-		return impactResults[idx];
+			return;
+		double[] values = impactResults[idx];
+		for (int run = 0; run < impactRuns; run++)
+			fn.accept(values[run]);
+	}
+
+	private int getImpactIndex(long impactCategoryId) {
+		if (impactIndex == null || impactResults == null)
+			return -1;
+		return impactIndex.getIndex(impactCategoryId);
 	}
 
 	public int getNumberOfRuns() {
 		if (flowResults == null || flowResults.length == 0)
 			return 0;
-		List<Double> first = flowResults[0];
-		if (first == null)
-			return 0;
-		else
-			return first.size();
+		return flowRuns;
+	}
+
+	/**
+	 * Returns a copy of the results of the given flow.
+	 *
+	 * @deprecated use {@link #getFlowValues(long)} or
+	 *             {@link #forEachFlowResult(long, DoubleConsumer)}
+	 */
+	@Deprecated
+	public List<Double> getFlowResults(long flowId) {
+		return toList(getFlowValues(flowId));
+	}
+
+	/**
+	 * Returns a copy of the results of the given LCIA category.
+	 *
+	 * @deprecated use {@link #getImpactValues(long)} or
+	 *             {@link #forEachImpactResult(long, DoubleConsumer)}
+	 */
+	@Deprecated
+	public List<Double> getImpactResults(long impactCategoryId) {
+		if (impactIndex == null)
+			return Collections.emptyList();
+		return toList(getImpactValues(impactCategoryId));
+	}
+
+	/**
+	 * Returns a copy of the flow results with a list for each flow index.
+	 *
+	 * @deprecated use {@link #getFlowValues(long)}
+	 */
+	@Deprecated
+	public List<Double>[] getFlowResults() {
+		return toLists(flowResults, flowRuns);
+	}
+
+	/**
+	 * Replaces the flow results with the given values.
+	 *
+	 * @deprecated use {@link #appendFlowResults(double[])}
+	 */
+	@Deprecated
+	public void setFlowResults(List<Double>[] flowResults) {
+		this.flowResults = fromLists(flowResults);
+		this.flowRuns = runs(flowResults);
+	}
+
+	/**
+	 * Returns a copy of the LCIA results with a list for each LCIA category
+	 * index.
+	 *
+	 * @deprecated use {@link #getImpactValues(long)}
+	 */
+	@Deprecated
+	public List<Double>[] getImpactResults() {
+		return toLists(impactResults, impactRuns);
+	}
+
+	/**
+	 * Replaces the LCIA results with the given values.
+	 *
+	 * @deprecated use {@link #appendImpactResults(double[])}
+	 */
+	@Deprecated
+	public void setImpactResults(List<Double>[] impactResults) {
+		this.impactResults = fromLists(impactResults);
+		this.impactRuns = runs(impactResults);
+	}
+
+	private static List<Double> toList(double[] values) {
+		List<Double> list = new ArrayList<>(values.length);
+		for (double value : values)
+			list.add(value);
+		return list;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Double>[] toLists(double[][] results, int runs) {
+		if (results == null)
+			return null;
+		List<Double>[] lists = new List[results.length];
+		for (int i = 0; i < results.length; i++)
+			lists[i] = toList(Arrays.copyOf(results[i], runs));
+		return lists;
+	}
+
+	private static double[][] fromLists(List<Double>[] lists) {
+		if (lists == null)
+			return null;
+		int runs = runs(lists);
+		double[][] results = new double[lists.length][runs];
+		for (int i = 0; i < lists.length; i++) {
+			List<Double> list = lists[i];
+			if (list == null)
+				continue;
+			for (int run = 0; run < list.size(); run++) {
+				Double value = list.get(run);
+				results[i][run] = value == null ? 0 : value;
+			}
+		}
+		return results;
+	}
+
+	private static int runs(List<Double>[] lists) {
+		int runs = 0;
+		if (lists == null)
+			return runs;
+		for (List<Double> list : lists) {
+			if (list != null)
+				runs = Math.max(runs, list.size());
+		}
+		return runs;
 	}
 
 }
@@ -1,12 +1,12 @@
 package org.openlca.core.results;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openlca.core.database.EntityCache;
 import org.openlca.core.model.descriptors.FlowDescriptor;
 import org.openlca.core.model.descriptors.ImpactCategoryDescriptor;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class SimulationResultProvider<T extends SimulationResult> extends
 		BaseResultProvider<T> {
 
@@ -14,11 +14,10 @@ public class SimulationResultProvider<T extends SimulationResult> extends
 		super(result, cache);
 	}
 
-	public List<Double> getFlowResults(FlowDescriptor flow) {
-		List<Double> rawResults = result.getFlowResults(flow.getId());
-		List<Double> results = new ArrayList<>(rawResults.size());
-		for (Double rawResult : rawResults)
-			results.add(adoptFlowResult(rawResult, flow.getId()));
+	public double[] getFlowValues(FlowDescriptor flow) {
+		double[] results = result.getFlowValues(flow.getId());
+		for (int i = 0; i < results.length; i++)
+			results[i] = adoptFlowResult(results[i], flow.getId());
 		return results;
 	}
 
@@ -32,8 +31,31 @@ public class SimulationResultProvider<T extends SimulationResult> extends
 		return inputFlow ? -value : value;
 	}
 
+	public double[] getImpactValues(ImpactCategoryDescriptor impact) {
+		return result.getImpactValues(impact.getId());
+	}
+
+	/**
+	 * @deprecated use {@link #getFlowValues(FlowDescriptor)}
+	 */
+	@Deprecated
+	public List<Double> getFlowResults(FlowDescriptor flow) {
+		return toList(getFlowValues(flow));
+	}
+
+	/**
+	 * @deprecated use {@link #getImpactValues(ImpactCategoryDescriptor)}
+	 */
+	@Deprecated
 	public List<Double> getImpactResults(ImpactCategoryDescriptor impact) {
-		return result.getImpactResults(impact.getId());
+		return toList(getImpactValues(impact));
+	}
+
+	private List<Double> toList(double[] values) {
+		List<Double> list = new ArrayList<>(values.length);
+		for (double value : values)
+			list.add(value);
+		return list;
 	}
 
 	public int getNumberOfRuns() {
@@ -1,7 +1,6 @@
 package org.openlca.core.results;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -9,24 +8,40 @@ import java.util.List;
  */
 public class SimulationStatistics {
 
-	private List<Double> values;
+	/** The sorted values. */
+	private double[] values;
 	private int intervalCount;
 	private int[] frequencies;
 
 	public SimulationStatistics(List<Double> values, int intervalCount) {
-		if (values == null || values.isEmpty()) {
-			this.values = new ArrayList<>();
-			this.values.add(0d);
-		} else {
-			this.values = new ArrayList<>(values);
-		}
-		Collections.sort(this.values);
+		this(toArray(values), intervalCount);
+	}
+
+	/**
+	 * Creates the statistics for the given values. The given array is not
+	 * modified.
+	 */
+	public SimulationStatistics(double[] values, int intervalCount) {
+		if (values == null || values.length == 0)
+			this.values = new double[] { 0d };
+		else
+			this.values = Arrays.copyOf(values, values.length);
+		Arrays.sort(this.values);
 		this.intervalCount = intervalCount < 1 ? 1 : intervalCount;
 		calculateFrequencyTable();
 	}
 
 	public static SimulationStatistics empty() {
-		return new SimulationStatistics(null, 1);
+		return new SimulationStatistics((double[]) null, 1);
+	}
+
+	private static double[] toArray(List<Double> list) {
+		if (list == null)
+			return null;
+		double[] values = new double[list.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = list.get(i);
+		return values;
 	}
 
 	private void calculateFrequencyTable() {
@@ -51,15 +66,15 @@ public class SimulationStatistics {
 	}
 
 	public double getMaximum() {
-		return values.get(values.size() - 1);
+		return values[values.length - 1];
 	}
 
 	public double getMinimum() {
-		return values.get(0);
+		return values[0];
 	}
 
 	public int getCount() {
-		return values.size();
+		return values.length;
 	}
 
 	public double getMean() {
@@ -67,7 +82,7 @@ public class SimulationStatistics {
 		for (double v : values) {
 			sum += v;
 		}
-		return sum / values.size();
+		return sum / values.length;
 	}
 
 	/**
@@ -77,10 +92,10 @@ public class SimulationStatistics {
 	 *            the percentage value (0..100)
 	 */
 	public double getPercentileValue(int percentile) {
-		int index = percentile * values.size() / 100;
+		int index = percentile * values.length / 100;
 		if (index == 0 || 1 == (index % 2))
-			return values.get(index);
-		return (values.get(index) + values.get(index - 1)) / 2;
+			return values[index];
+		return (values[index] + values[index - 1]) / 2;
 	}
 
 	public double getMedian() {
@@ -88,20 +103,20 @@ public class SimulationStatistics {
 		if (size == 0)
 			return 0;
 		if (1 == (size % 2))
-			return values.get(size / 2);
+			return values[size / 2];
 		int upper = size / 2;
 		int lower = upper - 1;
-		return (values.get(upper) + values.get(lower)) / 2d;
+		return (values[upper] + values[lower]) / 2d;
 	}
 
 	public double getStandardDeviation() {
-		if (values.size() < 2)
+		if (values.length < 2)
 			return 0d;
 		double mean = getMean();
 		double sd = 0d;
 		for (double val : values)
 			sd += Math.pow(val - mean, 2);
-		sd /= values.size() - 1;
+		sd /= values.length - 1;
 		return Math.sqrt(sd);
 	}
 
@@ -1,5 +1,7 @@
 package org.openlca.core.results;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -33,10 +35,17 @@ class UpstreamTreeCalculator {
 
 	private Multimap<LongPair, LongPair> makeLinks(TechIndex index) {
 		Multimap<LongPair, LongPair> links = ArrayListMultimap.create();
+		TLongObjectHashMap<List<LongPair>> recipients = new TLongObjectHashMap<>();
 		for (LongPair exchange : index.getLinkedExchanges()) {
 			long processId = exchange.getFirst();
-			LongPair provider = index.getLinkedProvider(exchange);
-			for (LongPair recipient : index.getProviders(processId)) {
+			LongPair provider = index.getLinkedProvider(processId,
+					exchange.getSecond());
+			List<LongPair> products = recipients.get(processId);
+			if (products == null) {
+				products = index.getProviders(processId);
+				recipients.put(processId, products);
+			}
+			for (LongPair recipient : products) {
 				links.put(recipient, provider);
 			}
 		}
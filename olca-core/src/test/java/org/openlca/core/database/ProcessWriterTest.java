@@ -0,0 +1,181 @@
+package org.openlca.core.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.Tests;
+import org.openlca.core.model.AllocationFactor;
+import org.openlca.core.model.AllocationMethod;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Flow;
+import org.openlca.core.model.FlowProperty;
+import org.openlca.core.model.FlowPropertyFactor;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProcessDocumentation;
+import org.openlca.core.model.Uncertainty;
+import org.openlca.core.model.Unit;
+import org.openlca.core.model.UnitGroup;
+
+public class ProcessWriterTest {
+
+	private IDatabase db = Tests.getDb();
+	private UnitGroup units;
+	private FlowProperty mass;
+	private Flow flow;
+	private List<Process> processes = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		units = new UnitGroup();
+		Unit kg = new Unit();
+		kg.setName("kg");
+		units.getUnits().add(kg);
+		units.setReferenceUnit(kg);
+		units = Tests.insert(units);
+		mass = new FlowProperty();
+		mass.setUnitGroup(units);
+		mass = Tests.insert(mass);
+		flow = new Flow();
+		flow.setFlowType(FlowType.PRODUCT_FLOW);
+		FlowPropertyFactor factor = new FlowPropertyFactor();
+		factor.setFlowProperty(mass);
+		factor.setConversionFactor(1);
+		flow.getFlowPropertyFactors().add(factor);
+		flow.setReferenceFlowProperty(mass);
+		flow = Tests.insert(flow);
+	}
+
+	@After
+	public void tearDown() {
+		ProcessDao dao = new ProcessDao(db);
+		for (Process p : processes)
+			dao.delete(dao.getForId(p.getId()));
+		new FlowDao(db).delete(flow);
+		new FlowPropertyDao(db).delete(mass);
+		new UnitGroupDao(db).delete(units);
+	}
+
+	@Test
+	public void testInsert() {
+		Process p1 = process("p1");
+		Process p2 = process("p2");
+		p2.getExchanges().get(0).setDefaultProviderId(42L);
+		new ProcessWriter(db).insert(Arrays.asList(p1, p2));
+		processes.addAll(Arrays.asList(p1, p2));
+		Assert.assertTrue(p1.getId() > 0);
+		Assert.assertTrue(p2.getId() > 0);
+		Assert.assertNotEquals(p1.getId(), p2.getId());
+		check(p1);
+		check(p2);
+		Process clone = new ProcessDao(db).getForId(p2.getId());
+		Assert.assertEquals(42L,
+				clone.getQuantitativeReference().getDefaultProviderId());
+	}
+
+	@Test
+	public void testNoIdConflicts() {
+		Process p1 = process("p1");
+		new ProcessWriter(db).insert(Arrays.asList(p1));
+		processes.add(p1);
+		// a process inserted via JPA must get new IDs
+		Process p2 = new ProcessDao(db).insert(process("p2"));
+		processes.add(p2);
+		List<Long> ids = new ArrayList<>();
+		for (Process p : processes) {
+			ids.add(p.getId());
+			ids.add(p.getDocumentation().getId());
+			for (Exchange e : p.getExchanges())
+				ids.add(e.getId());
+		}
+		Assert.assertEquals(ids.size(), ids.stream().distinct().count());
+	}
+
+	@Test
+	public void testFailuresPerProcess() {
+		Process p1 = process("p1");
+		Process p2 = process("p2");
+		// the reference ID is too long for the column
+		p2.setRefId(p2.getRefId() + "-invalid");
+		try {
+			new ProcessWriter(db).insert(Arrays.asList(p1, p2));
+			Assert.fail("expected a database exception");
+		} catch (DatabaseException e) {
+			// expected
+		}
+		processes.add(p1);
+		Assert.assertTrue(p1.getId() > 0);
+		Assert.assertEquals(0L, p2.getId());
+		check(p1);
+	}
+
+	private Process process(String name) {
+		Process p = new Process();
+		p.setName(name);
+		p.setRefId(UUID.randomUUID().toString());
+		Exchange output = exchange(1);
+		p.getExchanges().add(output);
+		p.setQuantitativeReference(output);
+		Exchange input = exchange(0.5);
+		input.setInput(true);
+		input.setUncertainty(Uncertainty.normal(0.5, 0.1));
+		input.setDqEntry("(1;2;3;4;5)");
+		p.getExchanges().add(input);
+		AllocationFactor factor = new AllocationFactor();
+		factor.setAllocationType(AllocationMethod.PHYSICAL);
+		factor.setProductId(flow.getId());
+		factor.setValue(1);
+		p.getAllocationFactors().add(factor);
+		Parameter param = new Parameter();
+		param.setName("param");
+		param.setScope(ParameterScope.PROCESS);
+		param.setInputParameter(true);
+		param.setValue(42);
+		p.getParameters().add(param);
+		ProcessDocumentation doc = new ProcessDocumentation();
+		doc.setGeography("geography");
+		p.setDocumentation(doc);
+		return p;
+	}
+
+	private Exchange exchange(double amount) {
+		Exchange e = new Exchange();
+		e.setFlow(flow);
+		e.setFlowPropertyFactor(flow.getReferenceFactor());
+		e.setUnit(units.getReferenceUnit());
+		e.setAmountValue(amount);
+		return e;
+	}
+
+	private void check(Process p) {
+		Process clone = new ProcessDao(db).getForId(p.getId());
+		Assert.assertEquals(p.getRefId(), clone.getRefId());
+		Assert.assertEquals(p.getName(), clone.getName());
+		Assert.assertEquals(2, clone.getExchanges().size());
+		Assert.assertEquals(p.getQuantitativeReference().getId(),
+				clone.getQuantitativeReference().getId());
+		for (Exchange e : clone.getExchanges()) {
+			Assert.assertEquals(flow.getId(), e.getFlow().getId());
+			if (!e.isInput())
+				continue;
+			Assert.assertEquals(0.5, e.getAmountValue(), 1e-16);
+			Assert.assertEquals("(1;2;3;4;5)", e.getDqEntry());
+			Assert.assertEquals(0.1,
+					e.getUncertainty().getParameter2Value(), 1e-16);
+		}
+		Assert.assertEquals(1, clone.getAllocationFactors().size());
+		Assert.assertEquals(42, clone.getParameters().get(0).getValue(),
+				1e-16);
+		Assert.assertEquals("geography",
+				clone.getDocumentation().getGeography());
+	}
+
+}
@@ -0,0 +1,153 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.openlca.core.matrix.FlowIndex;
+import org.openlca.core.matrix.InventoryMatrix;
+import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.TechIndex;
+import org.openlca.core.results.FullResult;
+
+/**
+ * Checks that the upstream results of the full result, which are calculated
+ * from the factorization of the technology matrix, are equal to the results
+ * calculated with the inverse: U = B * inv(A) * diag(d).
+ */
+public class FullResultTest {
+
+	@Test
+	public void testJavaSolver() {
+		check(new JavaSolver());
+	}
+
+	@Test
+	public void testSparseSolver() {
+		check(new SparseSolver());
+	}
+
+	@Test
+	public void testLazyJavaSolver() {
+		checkLazy(new JavaSolver());
+	}
+
+	@Test
+	public void testLazySparseSolver() {
+		checkLazy(new SparseSolver());
+	}
+
+	private void check(IMatrixSolver solver) {
+		InventoryMatrix m = createMatrix(solver.getMatrixFactory());
+		FullResult r = new LcaCalculator(solver, m).calculateFull();
+		IMatrix expected = expected();
+		double[] s = expectedScaling();
+		for (int i = 0; i < s.length; i++)
+			assertEquals(s[i], r.scalingFactors[i], 1e-12);
+		for (int row = 0; row < expected.rows(); row++) {
+			for (int col = 0; col < expected.columns(); col++) {
+				assertEquals(expected.get(row, col),
+						r.upstreamFlowResults.get(row, col), 1e-12);
+			}
+		}
+	}
+
+	/**
+	 * In the lazy result, the values are calculated via rows (single values)
+	 * and columns; both have to match the expected result.
+	 */
+	private void checkLazy(IMatrixSolver solver) {
+		InventoryMatrix m = createMatrix(solver.getMatrixFactory());
+		FullResult r = new LcaCalculator(solver, m).calculateLazyFull();
+		assertTrue(r.upstreamFlowResults instanceof UpstreamMatrix);
+		IMatrix expected = expected();
+		for (int row = 0; row < expected.rows(); row++) {
+			for (int col = 0; col < expected.columns(); col++) {
+				assertEquals(expected.get(row, col),
+						r.upstreamFlowResults.get(row, col), 1e-12);
+			}
+		}
+		for (int col = 0; col < expected.columns(); col++) {
+			double[] column = r.upstreamFlowResults.getColumn(col);
+			for (int row = 0; row < expected.rows(); row++)
+				assertEquals(expected.get(row, col), column[row], 1e-12);
+		}
+		assertArrayEquals(expected.getColumn(0), r.totalFlowResults, 1e-12);
+		IMatrix copy = r.upstreamFlowResults.copy();
+		for (int row = 0; row < expected.rows(); row++)
+			assertArrayEquals(expected.getRow(row), copy.getRow(row), 1e-12);
+	}
+
+	@Test
+	public void testLazyWrite() {
+		SparseSolver solver = new SparseSolver();
+		InventoryMatrix m = createMatrix(solver.getMatrixFactory());
+		FullResult r = new LcaCalculator(solver, m).calculateLazyFull();
+		IMatrix expected = expected();
+		UpstreamMatrix upstream = (UpstreamMatrix) r.upstreamFlowResults;
+		assertEquals(expected.get(0, 0), upstream.get(0, 0), 1e-12);
+		assertFalse(upstream.isMaterialized());
+
+		// writing a value materializes the matrix
+		upstream.set(1, 2, 42);
+		assertTrue(upstream.isMaterialized());
+		assertEquals(42, upstream.get(1, 2), 1e-16);
+		assertEquals(42, upstream.getRow(1)[2], 1e-16);
+		for (int row = 0; row < expected.rows(); row++) {
+			for (int col = 0; col < expected.columns(); col++) {
+				if (row == 1 && col == 2)
+					continue;
+				assertEquals(expected.get(row, col), upstream.get(row, col),
+						1e-12);
+			}
+		}
+	}
+
+	private double[] expectedScaling() {
+		JavaSolver dense = new JavaSolver();
+		InventoryMatrix dm = createMatrix(dense.getMatrixFactory());
+		IMatrix inverse = dense.invert(dm.technologyMatrix);
+		LcaCalculator calc = new LcaCalculator(dense, dm);
+		return calc.getScalingVector(inverse, dm.productIndex);
+	}
+
+	private IMatrix expected() {
+		// the same result via the inverse with a dense solver
+		JavaSolver dense = new JavaSolver();
+		InventoryMatrix dm = createMatrix(dense.getMatrixFactory());
+		IMatrix inverse = dense.invert(dm.technologyMatrix);
+		IMatrix expected = dense.multiply(dm.interventionMatrix, inverse);
+		LcaCalculator calc = new LcaCalculator(dense, dm);
+		double[] s = calc.getScalingVector(inverse, dm.productIndex);
+		double[] tr = calc.getTotalRequirements(dm.technologyMatrix, s);
+		dense.scaleColumns(expected, calc.getRealDemands(tr, dm.productIndex));
+		return expected;
+	}
+
+	/**
+	 * A = [1, -0.5, 0; -0.2, 1, -1; 0, 0, 2]
+	 *
+	 * B = [1, 2, 0; 0, 0.5, 3]
+	 */
+	private InventoryMatrix createMatrix(IMatrixFactory<?> factory) {
+		InventoryMatrix m = new InventoryMatrix();
+		TechIndex techIndex = new TechIndex(LongPair.of(1, 1));
+		techIndex.put(LongPair.of(2, 2));
+		techIndex.put(LongPair.of(3, 3));
+		techIndex.setDemand(2);
+		m.productIndex = techIndex;
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putOutputFlow(4);
+		flowIndex.putInputFlow(5);
+		m.flowIndex = flowIndex;
+		m.technologyMatrix = factory.create(3, 3);
+		m.technologyMatrix.setValues(new double[][] {
+				{ 1, -0.5, 0 }, { -0.2, 1, -1 }, { 0, 0, 2 } });
+		m.interventionMatrix = factory.create(2, 3);
+		m.interventionMatrix.setValues(new double[][] {
+				{ 1, 2, 0 }, { 0, 0.5, 3 } });
+		return m;
+	}
+}
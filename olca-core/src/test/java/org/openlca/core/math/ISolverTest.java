@@ -53,6 +53,21 @@ public class ISolverTest {
 		}
 	}
 
+	@Test
+	public void testDefaultFactorization() {
+		Solver solver = new Solver();
+		IMatrix a = solver.getMatrixFactory().create(2, 2);
+		a.setValues(new double[][] { { 1, 2 }, { 0, 4 } });
+		IFactorization f = solver.factorize(a);
+		double[] x = f.solve(new double[] { 5, 8 });
+		assertEquals(1, x[0], 1e-15);
+		assertEquals(2, x[1], 1e-15);
+		// A' * x = b
+		x = f.solveTransposed(new double[] { 1, 10 });
+		assertEquals(1, x[0], 1e-15);
+		assertEquals(2, x[1], 1e-15);
+	}
+
 	private class Solver implements IMatrixSolver {
 
 		@Override
@@ -62,7 +77,7 @@ public class ISolverTest {
 
 		@Override
 		public IMatrix invert(IMatrix a) {
-			return null;
+			return new JavaSolver().invert(a);
 		}
 
 		@Override
@@ -0,0 +1,112 @@
+package org.openlca.core.math;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.TestSystem;
+import org.openlca.core.Tests;
+import org.openlca.core.database.ProcessDao;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.results.SimpleResult;
+
+/**
+ * Changes single processes of a product system and checks that the updated
+ * results of the incremental calculator are equal to the results of a full
+ * calculation.
+ */
+public class IncrementalCalculatorTest {
+
+	private Process p1;
+	private Process p2;
+	private CalculationSetup setup;
+	private IncrementalCalculator calculator;
+
+	@Before
+	public void setUp() {
+		p1 = TestProcess
+				.forOutput("p1", 1, "kg")
+				.elemIn("water", 1, "m3")
+				.get();
+		p2 = TestProcess
+				.forOutput("p2", 1, "kg")
+				.prodIn("p1", 2, "kg")
+				.elemIn("water", 3, "m3")
+				.get();
+		ProductSystem system = TestSystem.of(p2).link(p1).get();
+		setup = new CalculationSetup(system);
+		calculator = new IncrementalCalculator(
+				MatrixCache.createLazy(Tests.getDb()),
+				Tests.getDefaultSolver());
+	}
+
+	@Test
+	public void testUpdateInterventions() {
+		check(calculator.calculate(setup));
+		setAmount(p1, "water", 4);
+		SimpleResult r = calculator.update(p1.getId());
+		Assert.assertEquals(11, water(r), 1e-10);
+		check(r);
+	}
+
+	@Test
+	public void testUpdateTechnologyMatrix() {
+		check(calculator.calculate(setup));
+		setAmount(p2, "p1", 3);
+		SimpleResult r = calculator.update(p2.getId());
+		Assert.assertEquals(6, water(r), 1e-10);
+		check(r);
+
+		// the same process again and then another process
+		setAmount(p2, "p1", 0.5);
+		check(calculator.update(p2.getId()));
+		setAmount(p1, "p1", 2);
+		r = calculator.update(p1.getId());
+		Assert.assertEquals(3.25, water(r), 1e-10);
+		check(r);
+	}
+
+	private void setAmount(Process process, String flow, double amount) {
+		ProcessDao dao = new ProcessDao(Tests.getDb());
+		Process p = dao.getForId(process.getId());
+		for (Exchange e : p.getExchanges()) {
+			if (flow.equals(e.getFlow().getName()))
+				e.setAmountValue(amount);
+		}
+		dao.update(p);
+	}
+
+	private double water(SimpleResult r) {
+		long flowId = -1;
+		for (Exchange e : p1.getExchanges()) {
+			if ("water".equals(e.getFlow().getName()))
+				flowId = e.getFlow().getId();
+		}
+		// the results of input flows are negative in the result arrays
+		return Math.abs(r.totalFlowResults[r.flowIndex.getIndex(flowId)]);
+	}
+
+	/** Compares the given result with the result of a full calculation. */
+	private void check(SimpleResult r) {
+		SystemCalculator full = new SystemCalculator(
+				MatrixCache.createEager(Tests.getDb()),
+				Tests.getDefaultSolver());
+		SimpleResult expected = full.calculateSimple(setup);
+		for (long flowId : expected.flowIndex.getFlowIds()) {
+			int i = expected.flowIndex.getIndex(flowId);
+			int j = r.flowIndex.getIndex(flowId);
+			Assert.assertEquals(expected.totalFlowResults[i],
+					r.totalFlowResults[j], 1e-10);
+		}
+		for (int i = 0; i < expected.scalingFactors.length; i++) {
+			long provider = expected.productIndex.getProviderAt(i).getFirst();
+			int j = r.productIndex.getIndex(r.productIndex.getProviders(
+					provider).get(0));
+			Assert.assertEquals(expected.scalingFactors[i],
+					r.scalingFactors[j], 1e-10);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JavaSolverTest {
+
+	@Test
+	public void testSolveTransposed() {
+		int n = 30;
+		Random random = new Random(42);
+		JavaSolver solver = new JavaSolver();
+		IMatrix a = solver.getMatrixFactory().create(n, n);
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < n; col++) {
+				double val = random.nextDouble() - 0.5;
+				a.set(row, col, row == col ? val + n : val);
+			}
+		}
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++)
+			b[i] = (i % 5) - 2;
+		IFactorization f = solver.factorize(a);
+		double[] x = f.solveTransposed(b);
+		for (int col = 0; col < n; col++) {
+			double sum = 0;
+			for (int row = 0; row < n; row++)
+				sum += a.get(row, col) * x[row];
+			assertEquals(b[col], sum, 1e-12);
+		}
+		// the solution of A * x = b is not changed
+		x = f.solve(b);
+		double[] r = solver.multiply(a, x);
+		for (int i = 0; i < n; i++)
+			assertEquals(b[i], r[i], 1e-12);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSingular() {
+		JavaSolver solver = new JavaSolver();
+		IMatrix a = solver.getMatrixFactory().create(2, 2);
+		a.setValues(new double[][] { { 1, 2 }, { 2, 4 } });
+		solver.factorize(a).solveTransposed(new double[] { 1, 1 });
+	}
+}
@@ -0,0 +1,132 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.TestSystem;
+import org.openlca.core.Tests;
+import org.openlca.core.database.EntityCache;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.Project;
+import org.openlca.core.model.ProjectVariant;
+import org.openlca.core.results.ProjectResultProvider;
+
+public class ProjectCalculatorTest {
+
+	private Project project;
+	private long waterId;
+
+	@Before
+	public void setUp() {
+		Process p1 = TestProcess
+				.forOutput("p1", 1, "kg")
+				.elemIn("water", 1, "m3")
+				.get();
+		Process p2 = TestProcess
+				.forOutput("p2", 1, "kg")
+				.prodIn("p1", 2, "kg")
+				.elemIn("water", 3, "m3")
+				.get();
+		for (Exchange e : p1.getExchanges()) {
+			if ("water".equals(e.getFlow().getName()))
+				waterId = e.getFlow().getId();
+		}
+		ProductSystem system = TestSystem.of(p2).link(p1).get();
+		project = new Project();
+		for (int i = 1; i <= 10; i++) {
+			ProjectVariant v = new ProjectVariant();
+			v.setName("variant " + i);
+			v.setProductSystem(system);
+			v.setUnit(system.getTargetUnit());
+			v.setFlowPropertyFactor(system.getTargetFlowPropertyFactor());
+			v.setAmount(i);
+			project.getVariants().add(v);
+		}
+	}
+
+	@Test
+	public void testParallelEqualsSequential() {
+		ProjectResultProvider sequential = calculator(1).solve(project,
+				EntityCache.create(Tests.getDb()));
+		ProjectResultProvider parallel = calculator(4).solve(project,
+				EntityCache.create(Tests.getDb()));
+		List<ProjectVariant> expected = project.getVariants();
+		Assert.assertEquals(expected, new ArrayList<>(sequential.getVariants()));
+		Assert.assertEquals(expected, new ArrayList<>(parallel.getVariants()));
+		for (ProjectVariant v : expected) {
+			double s = water(sequential, v);
+			Assert.assertEquals(5 * v.getAmount(), s, 1e-10);
+			Assert.assertEquals(s, water(parallel, v), 1e-10);
+		}
+	}
+
+	@Test
+	public void testProgress() {
+		ProjectCalculator calculator = calculator(4);
+		AtomicInteger calls = new AtomicInteger();
+		AtomicInteger max = new AtomicInteger();
+		calculator.setProgressListener((variant, finished, total) -> {
+			calls.incrementAndGet();
+			max.accumulateAndGet(finished, Math::max);
+			Assert.assertEquals(10, total);
+		});
+		calculator.solve(project, EntityCache.create(Tests.getDb()));
+		Assert.assertEquals(10, calls.get());
+		Assert.assertEquals(10, max.get());
+	}
+
+	@Test
+	public void testCancel() {
+		ProjectCalculator calculator = calculator(1);
+		calculator.setProgressListener((variant, finished, total) -> {
+			if (finished == 3)
+				calculator.cancel();
+		});
+		ProjectResultProvider result = calculator.solve(project,
+				EntityCache.create(Tests.getDb()));
+		Assert.assertTrue(calculator.isCanceled());
+		Assert.assertEquals(project.getVariants().subList(0, 3),
+				new ArrayList<>(result.getVariants()));
+	}
+
+	@Test
+	public void testFailure() {
+		ProjectCalculator calculator = calculator(4);
+		AtomicInteger calls = new AtomicInteger();
+		calculator.setProgressListener((variant, finished, total) -> {
+			calls.incrementAndGet();
+			if (finished == 2)
+				throw new IllegalStateException("variant failed");
+		});
+		try {
+			calculator.solve(project, EntityCache.create(Tests.getDb()));
+			Assert.fail("the exception of the variant was not thrown");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("variant failed", e.getMessage());
+		}
+		// the other workers stop after their current variant
+		Assert.assertTrue(calculator.isCanceled());
+		Assert.assertTrue(calls.get() < 10);
+	}
+
+	private ProjectCalculator calculator(int threads) {
+		ProjectCalculator calculator = new ProjectCalculator(
+				MatrixCache.createLazy(Tests.getDb()),
+				Tests.getDefaultSolver());
+		calculator.setThreads(threads);
+		return calculator;
+	}
+
+	private double water(ProjectResultProvider result, ProjectVariant v) {
+		// the results of input flows are negative in the result arrays
+		return Math.abs(result.getResult(v).result.getTotalFlowResult(waterId));
+	}
+}
@@ -0,0 +1,148 @@
+package org.openlca.core.math;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.TestSystem;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ProcessDao;
+import org.openlca.core.matrix.cache.MatrixCache;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.ImpactCategory;
+import org.openlca.core.model.ImpactFactor;
+import org.openlca.core.model.ImpactMethod;
+import org.openlca.core.model.Parameter;
+import org.openlca.core.model.ParameterRedef;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.results.ScenarioResult;
+import org.openlca.core.results.SimpleResult;
+
+public class ScenarioCalculatorTest {
+
+	private IDatabase db = Tests.getDb();
+	private List<Parameter> parameters = new ArrayList<>();
+	private ImpactMethod method;
+	private ImpactCategory category;
+	private ProductSystem system;
+
+	/**
+	 * Creates a system p2 -> p1 where the input of p1 in p2 is given by the
+	 * global parameter sc_tests_input (technology matrix) and the emission of
+	 * p1 by sc_tests_emission (intervention matrix).
+	 */
+	@Before
+	public void setUp() {
+		parameters.add(parameter("sc_tests_input", 2));
+		parameters.add(parameter("sc_tests_emission", 3));
+		ProcessDao dao = new ProcessDao(db);
+		Process p1 = TestProcess
+				.forOutput("sc-p1", 1, "kg")
+				.elemOut("sc-emission", 1, "kg")
+				.get();
+		Exchange emission = p1.getExchanges().get(1);
+		emission.setAmountFormula("sc_tests_emission");
+		p1 = dao.update(p1);
+		Process p2 = TestProcess
+				.forOutput("sc-p2", 1, "kg")
+				.prodIn("sc-p1", 1, "kg")
+				.get();
+		p2.getExchanges().get(1).setAmountFormula("sc_tests_input");
+		p2 = dao.update(p2);
+		system = TestSystem.of(p2).link(p1).get();
+
+		method = new ImpactMethod();
+		method.setName("sc-method");
+		category = new ImpactCategory();
+		category.setName("sc-category");
+		ImpactFactor factor = new ImpactFactor();
+		factor.setFlow(emission.getFlow());
+		factor.setFlowPropertyFactor(emission.getFlowPropertyFactor());
+		factor.setUnit(emission.getUnit());
+		factor.setValue(2);
+		category.getImpactFactors().add(factor);
+		method.getImpactCategories().add(category);
+		method = db.createDao(ImpactMethod.class).insert(method);
+		category = method.getImpactCategories().get(0);
+	}
+
+	private Parameter parameter(String name, double value) {
+		Parameter p = new Parameter();
+		p.setName(name);
+		p.setInputParameter(true);
+		p.setScope(ParameterScope.GLOBAL);
+		p.setValue(value);
+		return db.createDao(Parameter.class).insert(p);
+	}
+
+	@After
+	public void tearDown() {
+		db.createDao(ImpactMethod.class).delete(method);
+		for (Parameter p : parameters)
+			db.createDao(Parameter.class).delete(p);
+	}
+
+	@Test
+	public void testSequential() {
+		checkScenarios(1);
+	}
+
+	@Test
+	public void testParallel() {
+		checkScenarios(4);
+	}
+
+	/**
+	 * Compares the scenario results with the results of separate calculations
+	 * of the scenarios.
+	 */
+	private void checkScenarios(int threads) {
+		List<List<ParameterRedef>> scenarios = new ArrayList<>();
+		scenarios.add(Collections.emptyList());
+		for (int i = 1; i <= 8; i++) {
+			List<ParameterRedef> scenario = new ArrayList<>();
+			scenario.add(redef("sc_tests_emission", i));
+			// scenarios with the same technology matrix share a factorization
+			scenario.add(redef("sc_tests_input", i % 2 + 1));
+			scenarios.add(scenario);
+		}
+		CalculationSetup setup = new CalculationSetup(system);
+		setup.impactMethod = Descriptors.toDescriptor(method);
+		ScenarioCalculator calculator = new ScenarioCalculator(
+				MatrixCache.createLazy(db), Tests.getDefaultSolver());
+		calculator.setThreads(threads);
+		ScenarioResult result = calculator.calculate(setup, scenarios);
+		Assert.assertEquals(scenarios.size(), result.getNumberOfScenarios());
+
+		for (int i = 0; i < scenarios.size(); i++) {
+			CalculationSetup single = new CalculationSetup(system);
+			single.impactMethod = setup.impactMethod;
+			single.parameterRedefs.addAll(scenarios.get(i));
+			SimpleResult expected = new SystemCalculator(
+					MatrixCache.createLazy(db), Tests.getDefaultSolver())
+							.calculateSimple(single);
+			Assert.assertFalse(result.isFailed(i));
+			Assert.assertEquals(
+					expected.getTotalImpactResult(category.getId()),
+					result.getResult(i, category.getId()), 1e-10);
+		}
+		// no redefinitions: 2 kg p1 * 3 kg emission * 2 = 12
+		Assert.assertEquals(12, result.getResult(0, category.getId()), 1e-10);
+	}
+
+	private ParameterRedef redef(String name, double value) {
+		ParameterRedef redef = new ParameterRedef();
+		redef.setName(name);
+		redef.setValue(value);
+		return redef;
+	}
+}
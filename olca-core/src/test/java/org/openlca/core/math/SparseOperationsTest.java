@@ -0,0 +1,98 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the default matrix operations of the solvers give the same
+ * results for sparse and dense matrices.
+ */
+public class SparseOperationsTest {
+
+	private final IMatrixSolver solver = new JavaSolver();
+
+	@Test
+	public void testIterate() {
+		IMatrix sparse = randomSparse(30, 20, 1);
+		IMatrix dense = dense(sparse);
+		int[] count = new int[2];
+		sparse.iterate((row, col, val) -> {
+			assertEquals(dense.get(row, col), val, 1e-16);
+			count[0]++;
+		});
+		dense.iterate((row, col, val) -> count[1]++);
+		assertEquals(count[1], count[0]);
+		assertEquals(((SparseMatrix) sparse).getNumberOfEntries(), count[0]);
+	}
+
+	@Test
+	public void testMultiplyVector() {
+		IMatrix sparse = randomSparse(30, 20, 2);
+		double[] v = new double[20];
+		for (int i = 0; i < v.length; i++)
+			v[i] = i - 7.5;
+		double[] expected = solver.multiply(dense(sparse), v);
+		double[] r = solver.multiply(sparse, v);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], r[i], 1e-12);
+		r = solver.multiply(CSCMatrix.of(sparse), v);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], r[i], 1e-12);
+	}
+
+	@Test
+	public void testMultiplyMatrices() {
+		IMatrix a = randomSparse(15, 20, 3);
+		IMatrix b = randomSparse(20, 10, 4);
+		IMatrix expected = solver.multiply(dense(a), dense(b));
+		check(expected, solver.multiply(a, dense(b)));
+		check(expected, solver.multiply(dense(a), b));
+		check(expected, solver.multiply(CSCMatrix.of(a), b));
+	}
+
+	@Test
+	public void testScaleColumns() {
+		IMatrix sparse = randomSparse(30, 20, 5);
+		IMatrix dense = dense(sparse);
+		double[] v = new double[20];
+		for (int i = 0; i < v.length; i++)
+			v[i] = i % 3 == 0 ? 0 : i * 0.5;
+		solver.scaleColumns(dense, v);
+		solver.scaleColumns(sparse, v);
+		check(dense, sparse);
+	}
+
+	private void check(IMatrix expected, IMatrix m) {
+		assertEquals(expected.rows(), m.rows());
+		assertEquals(expected.columns(), m.columns());
+		for (int row = 0; row < m.rows(); row++) {
+			for (int col = 0; col < m.columns(); col++)
+				assertEquals(expected.get(row, col), m.get(row, col), 1e-12);
+		}
+	}
+
+	private IMatrix dense(IMatrix m) {
+		IMatrix dense = solver.getMatrixFactory().create(m.rows(),
+				m.columns());
+		for (int row = 0; row < m.rows(); row++) {
+			for (int col = 0; col < m.columns(); col++)
+				dense.set(row, col, m.get(row, col));
+		}
+		return dense;
+	}
+
+	private IMatrix randomSparse(int rows, int cols, long seed) {
+		Random random = new Random(seed);
+		SparseMatrix m = new SparseMatrix(rows, cols);
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				if (random.nextDouble() < 0.15)
+					m.set(row, col, random.nextDouble() * 10 - 5);
+			}
+		}
+		return m;
+	}
+}
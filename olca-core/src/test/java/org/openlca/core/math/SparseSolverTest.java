@@ -0,0 +1,115 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SparseSolverTest {
+
+	@Test
+	public void testSimpleSolve() {
+		SparseSolver solver = new SparseSolver();
+		IMatrix a = solver.getMatrixFactory().create(2, 2);
+		a.setValues(new double[][] { { 1, -0.5 }, { -1, 1 } });
+		double[] s = solver.solve(a, 0, 1);
+		assertEquals(2, s[0], 1e-12);
+		assertEquals(2, s[1], 1e-12);
+	}
+
+	@Test
+	public void testCompareWithDense() {
+		int n = 200;
+		IMatrix a = randomSystem(n, 42);
+		JavaSolver dense = new JavaSolver();
+		IMatrix denseA = dense.getMatrixFactory().create(n, n);
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < n; col++)
+				denseA.set(row, col, a.get(row, col));
+		}
+		double[] expected = dense.solve(denseA, 7, 2.5);
+		double[] s = new SparseSolver().solve(a, 7, 2.5);
+		for (int i = 0; i < n; i++)
+			assertEquals(expected[i], s[i], 1e-10);
+	}
+
+	@Test
+	public void testFactorization() {
+		int n = 100;
+		IMatrix a = randomSystem(n, 11);
+		JavaSolver dense = new JavaSolver();
+		IMatrix denseA = dense.getMatrixFactory().create(n, n);
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < n; col++)
+				denseA.set(row, col, a.get(row, col));
+		}
+		IFactorization sparseLU = new SparseSolver().factorize(a);
+		IFactorization denseLU = dense.factorize(denseA);
+		for (int idx = 0; idx < n; idx += 10) {
+			double[] expected = denseLU.solve(idx, 2);
+			double[] s = sparseLU.solve(idx, 2);
+			for (int i = 0; i < n; i++)
+				assertEquals(expected[i], s[i], 1e-10);
+		}
+	}
+
+	@Test
+	public void testIterativeFallback() {
+		int n = 200;
+		IMatrix a = randomSystem(n, 21);
+		double[] expected = new SparseSolver().solve(a, 3, 1);
+		SparseSolver solver = new SparseSolver();
+		solver.setMaxFactorEntries(10);
+		double[] s = solver.solve(a, 3, 1);
+		for (int i = 0; i < n; i++)
+			assertEquals(expected[i], s[i], 1e-8);
+	}
+
+	@Test
+	public void testTransposedSolve() {
+		int n = 100;
+		CSCMatrix a = CSCMatrix.of(randomSystem(n, 7));
+		SparseLU lu = new SparseSolver().decompose(a);
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++)
+			b[i] = i % 3;
+		double[] x = lu.solveTransposed(b);
+		double[] r = a.transpose().multiply(x);
+		for (int i = 0; i < n; i++)
+			assertEquals(b[i], r[i], 1e-10);
+	}
+
+	@Test
+	public void testInvert() {
+		int n = 50;
+		SparseSolver solver = new SparseSolver();
+		IMatrix a = randomSystem(n, 3);
+		IMatrix inverse = solver.invert(a);
+		IMatrix identity = solver.multiply(a, inverse);
+		for (int row = 0; row < n; row++) {
+			for (int col = 0; col < n; col++) {
+				double expected = row == col ? 1 : 0;
+				assertEquals(expected, identity.get(row, col), 1e-10);
+			}
+		}
+	}
+
+	/**
+	 * Creates a technology matrix with ones on the diagonal and some random
+	 * inputs, including cycles, that are small enough to be solvable.
+	 */
+	private IMatrix randomSystem(int n, long seed) {
+		Random random = new Random(seed);
+		SparseMatrix a = new SparseMatrix(n, n);
+		for (int col = 0; col < n; col++) {
+			a.set(col, col, 1);
+			for (int k = 0; k < 3; k++) {
+				int row = random.nextInt(n);
+				if (row != col)
+					a.set(row, col, -0.3 * random.nextDouble());
+			}
+		}
+		return a;
+	}
+}
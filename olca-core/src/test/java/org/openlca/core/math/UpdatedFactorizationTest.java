@@ -0,0 +1,108 @@
+package org.openlca.core.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class UpdatedFactorizationTest {
+
+	private final SparseSolver solver = new SparseSolver();
+
+	@Test
+	public void testSolve() {
+		int n = 100;
+		CSCMatrix a = CSCMatrix.of(randomSystem(n, 5));
+		CSCMatrix changed = a.copy();
+		int[] columns = { 3, 42 };
+		double[][] deltas = change(changed, columns, 17);
+		IFactorization f = UpdatedFactorization.of(solver.factorize(a),
+				columns, deltas);
+		IFactorization expected = solver.factorize(changed);
+		double[] b = new double[n];
+		for (int i = 0; i < n; i++)
+			b[i] = (i % 7) - 3;
+		check(expected.solve(b), f.solve(b));
+		check(expected.solve(3, 2.5), f.solve(3, 2.5));
+		check(expected.solveTransposed(b), f.solveTransposed(b));
+	}
+
+	@Test
+	public void testReuse() {
+		int n = 80;
+		CSCMatrix a = CSCMatrix.of(randomSystem(n, 9));
+		IFactorization base = solver.factorize(a);
+		CSCMatrix changed = a.copy();
+		double[][] first = change(changed, new int[] { 10 }, 1);
+		UpdatedFactorization f1 = UpdatedFactorization.of(base,
+				new int[] { 10 }, first);
+
+		// a second change related to the same base matrix
+		double[][] second = change(changed, new int[] { 20 }, 2);
+		UpdatedFactorization f2 = UpdatedFactorization.of(base,
+				new int[] { 10, 20 }, new double[][] { first[0], second[0] },
+				f1);
+		IFactorization expected = solver.factorize(changed);
+		for (int idx = 0; idx < n; idx += 9)
+			check(expected.solve(idx, 1), f2.solve(idx, 1));
+	}
+
+	@Test
+	public void testSingular() {
+		int n = 20;
+		CSCMatrix a = CSCMatrix.of(randomSystem(n, 3));
+		// replacing column 0 with zeros makes the matrix singular
+		double[] delta = a.getColumn(0);
+		for (int i = 0; i < n; i++)
+			delta[i] = -delta[i];
+		assertNull(UpdatedFactorization.of(solver.factorize(a),
+				new int[] { 0 }, new double[][] { delta }));
+	}
+
+	/**
+	 * Changes the given columns of the given matrix randomly and returns the
+	 * differences.
+	 */
+	private double[][] change(CSCMatrix m, int[] columns, long seed) {
+		Random random = new Random(seed);
+		int n = m.rows();
+		double[][] deltas = new double[columns.length][n];
+		for (int j = 0; j < columns.length; j++) {
+			int col = columns[j];
+			for (int k = 0; k < 4; k++) {
+				int row = random.nextInt(n);
+				if (row == col)
+					continue;
+				double old = m.get(row, col);
+				double val = -0.3 * random.nextDouble();
+				m.set(row, col, val);
+				deltas[j][row] += val - old;
+			}
+			double old = m.get(col, col);
+			m.set(col, col, 1.5);
+			deltas[j][col] = 1.5 - old;
+		}
+		return deltas;
+	}
+
+	private void check(double[] expected, double[] x) {
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], x[i], 1e-10);
+	}
+
+	private IMatrix randomSystem(int n, long seed) {
+		Random random = new Random(seed);
+		SparseMatrix a = new SparseMatrix(n, n);
+		for (int col = 0; col < n; col++) {
+			a.set(col, col, 1);
+			for (int k = 0; k < 3; k++) {
+				int row = random.nextInt(n);
+				if (row != col)
+					a.set(row, col, -0.3 * random.nextDouble());
+			}
+		}
+		return a;
+	}
+}
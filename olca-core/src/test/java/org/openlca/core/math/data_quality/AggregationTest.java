@@ -0,0 +1,49 @@
+package org.openlca.core.math.data_quality;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AggregationTest {
+
+	@Test
+	public void testWeightedAverage() {
+		Aggregation agg = new Aggregation(AggregationType.WEIGHTED_AVERAGE, 2);
+		agg.add(0, 1, 1);
+		agg.add(0, 4, 3);
+		agg.add(0, 0, 100); // n.a. values are ignored
+		Assert.assertEquals(3.25, agg.get(0), 1e-16);
+		Assert.assertEquals(0, agg.get(1), 1e-16);
+	}
+
+	@Test
+	public void testSquaredAverage() {
+		Aggregation agg = new Aggregation(
+				AggregationType.WEIGHTED_SQUARED_AVERAGE, 1);
+		agg.add(0, 1, 1);
+		agg.add(0, 4, 3);
+		Assert.assertEquals(3.7, agg.get(0), 1e-16);
+	}
+
+	@Test
+	public void testMaximum() {
+		Aggregation agg = new Aggregation(AggregationType.MAXIMUM, 1);
+		agg.add(0, 2, 1);
+		agg.add(0, 5, 1e-10);
+		agg.add(0, 3, 1e10);
+		Assert.assertEquals(5, agg.get(0), 1e-16);
+		agg.clear();
+		Assert.assertEquals(0, agg.get(0), 1e-16);
+	}
+
+	@Test
+	public void testCompensatedSum() {
+		// without compensation, the small weights would be lost completely
+		Aggregation agg = new Aggregation(AggregationType.WEIGHTED_AVERAGE, 1);
+		agg.add(0, 1, 1e16);
+		for (int i = 0; i < 10_000; i++)
+			agg.add(0, 5, 1);
+		double expected = (1e16 + 5 * 1e4) / (1e16 + 1e4);
+		Assert.assertEquals(expected, agg.get(0), 1e-15);
+	}
+
+}
@@ -11,7 +11,7 @@ import org.openlca.core.database.DQSystemDao;
 import org.openlca.core.database.FlowDao;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.database.ProductSystemDao;
-import org.openlca.core.matrix.LongPair;
+import org.openlca.core.matrix.cache.MatrixCache;
 import org.openlca.core.model.DQIndicator;
 import org.openlca.core.model.DQScore;
 import org.openlca.core.model.DQSystem;
@@ -19,6 +19,8 @@ import org.openlca.core.model.Exchange;
 import org.openlca.core.model.Flow;
 import org.openlca.core.model.Process;
 import org.openlca.core.model.ProductSystem;
+import org.openlca.core.model.descriptors.Descriptors;
+import org.openlca.core.model.descriptors.ProcessDescriptor;
 
 public class DQDataTest {
 
@@ -78,6 +80,46 @@ public class DQDataTest {
 
 	@Test
 	public void test() {
+		DQCalculationSetup setup = calcSetup();
+		check(setup, DQData.load(Tests.getDb(), setup, new long[] { flow.getId() }));
+	}
+
+	@Test
+	public void testFromCache() {
+		DQCalculationSetup setup = calcSetup();
+		MatrixCache cache = MatrixCache.createLazy(Tests.getDb());
+		DQData data = DQData.load(cache, setup, new long[] { flow.getId() });
+		check(setup, data);
+		Assert.assertEquals(2, data.statistics.getNoOfExchanges());
+	}
+
+	@Test
+	public void testStatistics() {
+		DQCalculationSetup setup = calcSetup();
+		DQStatistics stats = DQData.load(Tests.getDb(), setup,
+				new long[] { flow.getId() }).statistics;
+		DQIndicator indicator = dqSystem.indicators.get(0);
+		for (Process p : new Process[] { process1, process2 }) {
+			ProcessDescriptor d = Descriptors.toDescriptor(p);
+			Assert.assertEquals(1, stats.getNoOfExchanges(d));
+			Assert.assertEquals(1, stats.getNoOfExchanges(d, indicator));
+		}
+		Assert.assertEquals(2, stats.getNoOfExchanges(indicator));
+	}
+
+	@Test
+	public void testExchangeSystemWithoutIndicators() {
+		DQSystem empty = new DQSystemDao(Tests.getDb()).insert(new DQSystem());
+		DQCalculationSetup setup = calcSetup();
+		setup.exchangeDqSystem = empty;
+		DQData data = DQData.load(Tests.getDb(), setup, new long[] { flow.getId() });
+		Assert.assertArrayEquals(new double[] { 1, 2, 3, 4, 5 }, data.getProcessValues(process1.getId()), 0);
+		Assert.assertNull(data.getExchangeValues(process1.getId(), flow.getId()));
+		Assert.assertEquals(0, data.statistics.getNoOfExchanges());
+		new DQSystemDao(Tests.getDb()).delete(empty);
+	}
+
+	private DQCalculationSetup calcSetup() {
 		DQCalculationSetup setup = new DQCalculationSetup();
 		setup.productSystemId = pSystem.getId();
 		setup.aggregationType = AggregationType.WEIGHTED_AVERAGE;
@@ -85,15 +127,18 @@ public class DQDataTest {
 		setup.processingType = ProcessingType.EXCLUDE;
 		setup.exchangeDqSystem = dqSystem;
 		setup.processDqSystem = dqSystem;
-		DQData data = DQData.load(Tests.getDb(), setup, new long[] { flow.getId() });
+		return setup;
+	}
+
+	private void check(DQCalculationSetup setup, DQData data) {
 		Assert.assertEquals(dqSystem.getId(), setup.processDqSystem.getId());
 		Assert.assertEquals(dqSystem.getId(), setup.exchangeDqSystem.getId());
-		Assert.assertArrayEquals(new double[] { 1, 2, 3, 4, 5 }, data.processData.get(process1.getId()), 0);
-		Assert.assertArrayEquals(new double[] { 5, 4, 3, 2, 1 }, data.processData.get(process2.getId()), 0);
+		Assert.assertArrayEquals(new double[] { 1, 2, 3, 4, 5 }, data.getProcessValues(process1.getId()), 0);
+		Assert.assertArrayEquals(new double[] { 5, 4, 3, 2, 1 }, data.getProcessValues(process2.getId()), 0);
 		Assert.assertArrayEquals(new double[] { 2, 1, 4, 3, 5 },
-				data.exchangeData.get(new LongPair(process1.getId(), flow.getId())), 0);
+				data.getExchangeValues(process1.getId(), flow.getId()), 0);
 		Assert.assertArrayEquals(new double[] { 4, 5, 2, 3, 1 },
-				data.exchangeData.get(new LongPair(process2.getId(), flow.getId())), 0);
+				data.getExchangeValues(process2.getId(), flow.getId()), 0);
 	}
 
 	@After
@@ -0,0 +1,106 @@
+package org.openlca.core.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.model.FlowType;
+import org.openlca.core.model.UncertaintyType;
+
+public class ExchangeBlockTest {
+
+	@Test
+	public void testPlainValues() {
+		List<CalcExchange> list = new ArrayList<>();
+		list.add(exchange(1, 10, 2.5, false, FlowType.PRODUCT_FLOW));
+		list.add(exchange(2, 20, 0.5, true, FlowType.ELEMENTARY_FLOW));
+		list.get(1).defaultProviderId = 42;
+		list.get(1).avoidedProduct = true;
+		ExchangeBlock block = ExchangeBlock.of(7, list);
+		Assert.assertEquals(2, block.size());
+		Assert.assertEquals(20, block.flowId(1));
+		Assert.assertEquals(FlowType.ELEMENTARY_FLOW, block.flowType(1));
+		Assert.assertTrue(block.isInput(1));
+		Assert.assertTrue(block.isAvoidedProduct(1));
+		Assert.assertFalse(block.isInput(0));
+		Assert.assertEquals(42, block.defaultProviderId(1));
+		Assert.assertEquals(2.5, block.amount(0), 1e-16);
+		for (int i = 0; i < 2; i++)
+			check(list.get(i), block.get(i));
+	}
+
+	@Test
+	public void testOptionalValues() {
+		List<CalcExchange> list = new ArrayList<>();
+		list.add(exchange(1, 10, 1, false, FlowType.PRODUCT_FLOW));
+		CalcExchange e = exchange(2, 20, 2, true, FlowType.PRODUCT_FLOW);
+		e.amountFormula = new String("2 * a");
+		e.uncertaintyType = UncertaintyType.TRIANGLE;
+		e.parameter1 = 1;
+		e.parameter2 = 2;
+		e.parameter3 = 3;
+		e.parameter3Formula = "3 * a";
+		e.costValue = 42;
+		e.costFormula = "b";
+		e.currency = 99;
+		e.dqEntry = "(1;2;3;4;5)";
+		list.add(e);
+		ExchangeBlock block = ExchangeBlock.of(7, list);
+		for (int i = 0; i < 2; i++)
+			check(list.get(i), block.get(i));
+
+		// formulas are interned
+		List<CalcExchange> other = new ArrayList<>();
+		CalcExchange o = exchange(3, 20, 2, true, FlowType.PRODUCT_FLOW);
+		o.amountFormula = new String("2 * a");
+		other.add(o);
+		Assert.assertSame(block.get(1).amountFormula,
+				ExchangeBlock.of(8, other).get(0).amountFormula);
+	}
+
+	@Test
+	public void testEmpty() {
+		ExchangeBlock block = ExchangeBlock.empty(7);
+		Assert.assertTrue(block.isEmpty());
+		Assert.assertEquals(7, block.processId);
+		Assert.assertTrue(block.toList().isEmpty());
+	}
+
+	private CalcExchange exchange(long id, long flowId, double amount,
+			boolean input, FlowType type) {
+		CalcExchange e = new CalcExchange();
+		e.processId = 7;
+		e.exchangeId = id;
+		e.flowId = flowId;
+		e.amount = amount;
+		e.conversionFactor = 1;
+		e.input = input;
+		e.flowType = type;
+		return e;
+	}
+
+	private void check(CalcExchange expected, CalcExchange e) {
+		Assert.assertEquals(expected.processId, e.processId);
+		Assert.assertEquals(expected.exchangeId, e.exchangeId);
+		Assert.assertEquals(expected.flowId, e.flowId);
+		Assert.assertEquals(expected.flowType, e.flowType);
+		Assert.assertEquals(expected.input, e.input);
+		Assert.assertEquals(expected.avoidedProduct, e.avoidedProduct);
+		Assert.assertEquals(expected.defaultProviderId, e.defaultProviderId);
+		Assert.assertEquals(expected.amount, e.amount, 1e-16);
+		Assert.assertEquals(expected.conversionFactor, e.conversionFactor,
+				1e-16);
+		Assert.assertEquals(expected.amountFormula, e.amountFormula);
+		Assert.assertEquals(expected.uncertaintyType, e.uncertaintyType);
+		Assert.assertEquals(expected.parameter1, e.parameter1, 1e-16);
+		Assert.assertEquals(expected.parameter2, e.parameter2, 1e-16);
+		Assert.assertEquals(expected.parameter3, e.parameter3, 1e-16);
+		Assert.assertEquals(expected.parameter1Formula, e.parameter1Formula);
+		Assert.assertEquals(expected.parameter3Formula, e.parameter3Formula);
+		Assert.assertEquals(expected.costValue, e.costValue, 1e-16);
+		Assert.assertEquals(expected.costFormula, e.costFormula);
+		Assert.assertEquals(expected.currency, e.currency);
+		Assert.assertEquals(expected.dqEntry, e.dqEntry);
+	}
+}
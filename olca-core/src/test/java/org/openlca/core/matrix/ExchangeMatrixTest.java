@@ -0,0 +1,162 @@
+package org.openlca.core.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.math.CSCMatrix;
+import org.openlca.core.math.IMatrix;
+import org.openlca.core.math.SparseMatrixFactory;
+import org.openlca.core.model.UncertaintyType;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+public class ExchangeMatrixTest {
+
+	@Test
+	public void testBuild() {
+		ExchangeMatrix.Builder builder = new ExchangeMatrix.Builder(3, 3);
+		builder.add(2, 1, cell(5));
+		builder.add(0, 0, cell(1));
+		builder.add(1, 2, cell(6));
+		builder.add(0, 1, cell(2));
+		builder.add(2, 1, cell(4)); // replaces the first entry
+		ExchangeMatrix m = builder.build();
+		double[][] expected = { { 1, 2, 0 }, { 0, 0, 6 }, { 0, 4, 0 } };
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				Assert.assertEquals(expected[row][col], m.getValue(row, col),
+						1e-16);
+			}
+		}
+		Assert.assertEquals(4.0 / 9.0, m.getLoadFactor(), 1e-16);
+		IMatrix real = m.createRealMatrix(new SparseMatrixFactory());
+		CSCMatrix csc = m.createCSCMatrix();
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				Assert.assertEquals(expected[row][col], real.get(row, col), 1e-16);
+				Assert.assertEquals(expected[row][col], csc.get(row, col), 1e-16);
+			}
+		}
+	}
+
+	@Test
+	public void testCells() {
+		ExchangeMatrix.Builder builder = new ExchangeMatrix.Builder(2, 2);
+		ExchangeCell formula = cell(3);
+		formula.exchange.amountFormula = "1 + 2";
+		ExchangeCell uncertain = cell(4);
+		uncertain.exchange.uncertaintyType = UncertaintyType.NORMAL;
+		builder.add(1, 1, uncertain);
+		builder.add(0, 0, cell(1));
+		builder.add(1, 0, formula);
+		ExchangeMatrix m = builder.build();
+
+		// only the cells with formulas or uncertainties are visited
+		List<ExchangeCell> cells = new ArrayList<>();
+		List<Integer> columns = new ArrayList<>();
+		m.iterate((row, col, cell) -> {
+			cells.add(cell);
+			columns.add(col);
+		});
+		Assert.assertEquals(2, cells.size());
+		Assert.assertSame(formula, cells.get(0));
+		Assert.assertSame(uncertain, cells.get(1));
+		Assert.assertEquals(0, (int) columns.get(0));
+		Assert.assertEquals(1, (int) columns.get(1));
+
+		// the values of the cells are taken from the exchanges
+		formula.exchange.amount = 7;
+		Assert.assertEquals(7, m.getValue(1, 0), 1e-16);
+		Assert.assertEquals(7, m.createCSCMatrix().get(1, 0), 1e-16);
+	}
+
+	@Test
+	public void testCopy() {
+		ExchangeMatrix m = new ExchangeMatrix(2, 2);
+		ExchangeCell cell = cell(2);
+		m.setEntry(1, 1, cell);
+		m.setEntry(0, 0, cell(1));
+		ExchangeMatrix copy = m.copy();
+		long[] hash = m.contentHash();
+		Assert.assertArrayEquals(hash, copy.contentHash());
+
+		cell.exchange.amount = 3;
+		Assert.assertEquals(3, m.getValue(1, 1), 1e-16);
+		Assert.assertEquals(2, copy.getValue(1, 1), 1e-16);
+		Assert.assertFalse(hash[0] == m.contentHash()[0]
+				&& hash[1] == m.contentHash()[1]);
+
+		// adding an entry to the copy does not change the original matrix
+		copy.setEntry(0, 1, cell(5));
+		Assert.assertEquals(5, copy.getValue(0, 1), 1e-16);
+		Assert.assertEquals(2, copy.getValue(1, 1), 1e-16);
+		Assert.assertEquals(0, m.getValue(0, 1), 1e-16);
+	}
+
+	@Test
+	public void testSetColumn() {
+		ExchangeMatrix.Builder builder = new ExchangeMatrix.Builder(3, 3);
+		ExchangeCell formula = cell(2);
+		formula.exchange.amountFormula = "1 + 1";
+		ExchangeCell uncertain = cell(9);
+		uncertain.exchange.uncertaintyType = UncertaintyType.NORMAL;
+		builder.add(0, 0, cell(1));
+		builder.add(1, 1, formula);
+		builder.add(2, 1, cell(3));
+		builder.add(2, 2, uncertain);
+		ExchangeMatrix m = builder.build();
+		ExchangeMatrix copy = m.copy();
+
+		TIntObjectHashMap<ExchangeCell> column = new TIntObjectHashMap<>();
+		ExchangeCell newFormula = cell(5);
+		newFormula.exchange.amountFormula = "2 + 3";
+		column.put(0, newFormula);
+		column.put(1, cell(6));
+		column.put(2, cell(7));
+		m.setColumn(1, column);
+
+		double[][] expected = { { 1, 5, 0 }, { 0, 6, 0 }, { 0, 7, 9 } };
+		CSCMatrix csc = m.createCSCMatrix();
+		IMatrix real = copy.createCSCMatrix();
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				Assert.assertEquals(expected[row][col], m.getValue(row, col),
+						1e-16);
+				Assert.assertEquals(expected[row][col], csc.get(row, col),
+						1e-16);
+			}
+		}
+		Assert.assertEquals(2, copy.getValue(1, 1), 1e-16);
+
+		// the cells of the new column and the following columns are visited
+		List<ExchangeCell> cells = new ArrayList<>();
+		m.iterate((row, col, cell) -> cells.add(cell));
+		Assert.assertEquals(2, cells.size());
+		Assert.assertSame(newFormula, cells.get(0));
+		Assert.assertSame(uncertain, cells.get(1));
+
+		// apply the new column to a matrix of the old values
+		m.applyColumn(real, 1);
+		for (int row = 0; row < 3; row++) {
+			for (int col = 0; col < 3; col++) {
+				Assert.assertEquals(expected[row][col], real.get(row, col),
+						1e-16);
+			}
+		}
+
+		// remove the entries of a column
+		m.setColumn(1, new TIntObjectHashMap<>());
+		Assert.assertEquals(0, m.getValue(1, 1), 1e-16);
+		Assert.assertEquals(9, m.getValue(2, 2), 1e-16);
+		Assert.assertEquals(2, m.createCSCMatrix().getNumberOfEntries());
+	}
+
+	private ExchangeCell cell(double amount) {
+		CalcExchange e = new CalcExchange();
+		e.amount = amount;
+		e.conversionFactor = 1;
+		return new ExchangeCell(e);
+	}
+}
@@ -0,0 +1,176 @@
+package org.openlca.core.matrix;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openlca.core.model.ParameterScope;
+import org.openlca.expressions.FormulaInterpreter;
+import org.openlca.expressions.Scope;
+
+public class ParameterGraphTest {
+
+	private ParameterTable table;
+	private Inventory inventory;
+	private CalcExchange e1;
+	private CalcExchange e2;
+	private CalcExchange e3;
+
+	@Before
+	public void setUp() {
+		table = new ParameterTable();
+		table.put(param(0, "a", null, 2));
+		table.put(param(0, "b", "A * 3", 0));
+		table.put(param(1, "a", null, 10));
+		table.put(param(1, "c", "b + a", 0));
+		table.put(param(2, "x", "y", 0));
+		table.put(param(2, "y", "x + 1", 0));
+		e1 = exchange(1, "c * 2");
+		e2 = exchange(3, "b / pi");
+		e3 = exchange(3, "42");
+		inventory = new Inventory();
+		inventory.technologyMatrix = new ExchangeMatrix(2, 2);
+		inventory.technologyMatrix.setEntry(0, 0, new ExchangeCell(e1));
+		inventory.technologyMatrix.setEntry(1, 0, new ExchangeCell(e2));
+		inventory.technologyMatrix.setEntry(1, 1, new ExchangeCell(e3));
+	}
+
+	@Test
+	public void testEvaluation() throws Exception {
+		ParameterGraph graph = ParameterGraph.build(table, inventory, null);
+		Assert.assertEquals(3, graph.update());
+		FormulaInterpreter interpreter = table.createInterpreter();
+		Scope scope = interpreter.getScope(1);
+		Assert.assertEquals(16, graph.getValue(1, "c"), 1e-16);
+		Assert.assertEquals(scope.eval("c * 2"), e1.amount, 1e-16);
+		Assert.assertEquals(interpreter.eval("b / pi"), e2.amount, 1e-16);
+		Assert.assertEquals(42, e3.amount, 1e-16);
+	}
+
+	@Test
+	public void testIncrementalUpdate() {
+		ParameterGraph graph = ParameterGraph.build(table, inventory, null);
+		graph.update();
+		Assert.assertEquals(0, graph.update());
+
+		// only the formulas that depend on the global parameter a
+		Assert.assertTrue(graph.setValue(0, "a", 3));
+		Assert.assertEquals(2, graph.update());
+		Assert.assertEquals(9, graph.getValue(0, "b"), 1e-16);
+		Assert.assertEquals(38, e1.amount, 1e-16);
+		Assert.assertEquals(9 / Math.PI, e2.amount, 1e-16);
+
+		// the local parameter a shadows the global parameter a
+		Assert.assertTrue(graph.setValue(1, "a", 11));
+		Assert.assertEquals(1, graph.update());
+		Assert.assertEquals(40, e1.amount, 1e-16);
+
+		// no changes when the value is the same
+		graph.setValue(1, "a", 11);
+		Assert.assertEquals(0, graph.update());
+		Assert.assertFalse(graph.setValue(3, "a", 1));
+	}
+
+	@Test
+	public void testReset() {
+		ParameterGraph graph = ParameterGraph.build(table, inventory, null);
+		graph.update();
+		graph.setValue(0, "b", 1);
+		Assert.assertEquals(2, graph.update());
+		Assert.assertEquals(22, e1.amount, 1e-16);
+
+		// b is calculated from its formula again
+		graph.reset();
+		Assert.assertEquals(2, graph.update());
+		Assert.assertEquals(6, graph.getValue(0, "b"), 1e-16);
+		Assert.assertEquals(32, e1.amount, 1e-16);
+		Assert.assertEquals(6 / Math.PI, e2.amount, 1e-16);
+	}
+
+	@Test
+	public void testResetToSameValue() {
+		// the stored value of b is equal to the result of its formula
+		table.put(param(0, "b", "A * 3", 6));
+		ParameterGraph graph = ParameterGraph.build(table, inventory, null);
+		graph.update();
+		Assert.assertEquals(32, e1.amount, 1e-16);
+		graph.setValue(0, "b", 1);
+		graph.update();
+		Assert.assertEquals(22, e1.amount, 1e-16);
+		graph.reset();
+		Assert.assertEquals(2, graph.update());
+		Assert.assertEquals(6, graph.getValue(0, "b"), 1e-16);
+		Assert.assertEquals(32, e1.amount, 1e-16);
+		Assert.assertEquals(6 / Math.PI, e2.amount, 1e-16);
+	}
+
+	@Test
+	public void testCycle() {
+		ParameterGraph graph = ParameterGraph.build(table, inventory, null);
+		graph.update();
+		Assert.assertNull(graph.getValue(2, "x"));
+		Assert.assertNull(graph.getValue(2, "y"));
+	}
+
+	@Test
+	public void testLazyBranches() {
+		// the unknown variable and the cyclic parameter x are in branches
+		// that are not evaluated
+		CalcExchange lazy1 = exchange(1, "if(a > 1; c * 2; unknown)");
+		CalcExchange lazy2 = exchange(2, "if(1 < 2; 5; x)");
+		ParameterGraph graph = ParameterGraph.build(table,
+				inventory(lazy1, lazy2), null);
+		graph.update();
+		Assert.assertEquals(32, lazy1.amount, 1e-16);
+		Assert.assertEquals(5, lazy2.amount, 1e-16);
+
+		// interpreted formulas are updated when their parameters change
+		graph.setValue(1, "a", 11);
+		graph.update();
+		Assert.assertEquals(34, lazy1.amount, 1e-16);
+	}
+
+	@Test
+	public void testBooleanParameter() {
+		table.put(param(1, "flag", "false", 0));
+		CalcExchange e = exchange(1, "if(flag; 1; c)");
+		CalcExchange t = exchange(3, "if(true; b; 0)");
+		ParameterGraph graph = ParameterGraph.build(table, inventory(e, t),
+				null);
+		graph.update();
+		Assert.assertEquals(0, graph.getValue(1, "flag"), 1e-16);
+		Assert.assertEquals(16, e.amount, 1e-16);
+		Assert.assertEquals(6, t.amount, 1e-16);
+		graph.setValue(1, "flag", 1);
+		graph.update();
+		Assert.assertEquals(1, e.amount, 1e-16);
+	}
+
+	private CalcParameter param(long owner, String name, String formula,
+			double value) {
+		CalcParameter p = new CalcParameter();
+		p.setOwner(owner);
+		p.setScope(owner == 0 ? ParameterScope.GLOBAL : ParameterScope.PROCESS);
+		p.setName(name);
+		p.setFormula(formula);
+		p.setInputParameter(formula == null);
+		p.setValue(value);
+		return p;
+	}
+
+	private Inventory inventory(CalcExchange... exchanges) {
+		Inventory inventory = new Inventory();
+		inventory.technologyMatrix = new ExchangeMatrix(exchanges.length, 1);
+		for (int i = 0; i < exchanges.length; i++)
+			inventory.technologyMatrix.setEntry(i, 0,
+					new ExchangeCell(exchanges[i]));
+		return inventory;
+	}
+
+	private CalcExchange exchange(long processId, String formula) {
+		CalcExchange e = new CalcExchange();
+		e.processId = processId;
+		e.amountFormula = formula;
+		e.conversionFactor = 1;
+		return e;
+	}
+}
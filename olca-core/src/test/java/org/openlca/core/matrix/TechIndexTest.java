@@ -0,0 +1,77 @@
+package org.openlca.core.matrix;
+
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TechIndexTest {
+
+	@Test
+	public void testLongPairIndex() {
+		LongPairIndex idx = new LongPairIndex();
+		int i = 0;
+		for (long first = 1; first <= 100; first++) {
+			for (long second = 1; second <= 100; second++) {
+				Assert.assertEquals(-1, idx.putIfAbsent(first, second, i));
+				i++;
+			}
+		}
+		Assert.assertEquals(10000, idx.size());
+		Assert.assertEquals(42, idx.putIfAbsent(1, 43, 0));
+		i = 0;
+		for (long first = 1; first <= 100; first++) {
+			for (long second = 1; second <= 100; second++) {
+				Assert.assertEquals(i, idx.get(first, second));
+				i++;
+			}
+		}
+		Assert.assertEquals(-1, idx.get(101, 1));
+		Assert.assertEquals(-1, idx.get(0, 0));
+	}
+
+	@Test
+	public void testProviders() {
+		TechIndex index = new TechIndex(LongPair.of(1, 1));
+		index.put(LongPair.of(1, 2));
+		index.put(LongPair.of(2, 1));
+		index.put(LongPair.of(1, 2));
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals(0, index.getIndex(1, 1));
+		Assert.assertEquals(1, index.getIndex(LongPair.of(1, 2)));
+		Assert.assertEquals(2, index.getIndex(2, 1));
+		Assert.assertEquals(-1, index.getIndex(2, 2));
+		Assert.assertTrue(index.contains(2, 1));
+		Assert.assertEquals(LongPair.of(2, 1), index.getProviderAt(2));
+		Assert.assertEquals(2, index.getProviders(1).size());
+		Assert.assertEquals(2, index.getProcessIds().size());
+	}
+
+	@Test
+	public void testLinks() {
+		TechIndex index = new TechIndex(LongPair.of(1, 1));
+		index.putLink(LongPair.of(1, 10), LongPair.of(2, 2));
+		index.putLink(LongPair.of(1, 11), LongPair.of(3, 3));
+		index.putLink(LongPair.of(1, 10), LongPair.of(3, 3));
+		Assert.assertEquals(3, index.size());
+		Assert.assertTrue(index.isLinked(1, 10));
+		Assert.assertFalse(index.isLinked(1, 12));
+		Assert.assertEquals(LongPair.of(2, 2), index.getLinkedProvider(1, 10));
+		Assert.assertEquals(LongPair.of(3, 3),
+				index.getLinkedProvider(LongPair.of(1, 11)));
+		Assert.assertNull(index.getLinkedProvider(1, 12));
+		Assert.assertEquals(2, index.getLinkedIndex(1, 11));
+		Assert.assertEquals(-1, index.getLinkedIndex(2, 10));
+		Assert.assertEquals(2, index.getLinkedExchanges().size());
+		Set<LongPair> exchanges = index.getLinkedExchanges();
+		Assert.assertTrue(exchanges.contains(LongPair.of(1, 10)));
+		Assert.assertFalse(exchanges.contains(LongPair.of(1, 12)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testLinkedExchangesReadOnly() {
+		TechIndex index = new TechIndex(LongPair.of(1, 1));
+		index.putLink(LongPair.of(1, 10), LongPair.of(2, 2));
+		index.getLinkedExchanges().add(LongPair.of(1, 11));
+	}
+}
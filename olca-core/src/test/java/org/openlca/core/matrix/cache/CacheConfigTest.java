@@ -0,0 +1,63 @@
+package org.openlca.core.matrix.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+public class CacheConfigTest {
+
+	@Test
+	public void testMaxWeight() throws Exception {
+		CacheConfig config = new CacheConfig();
+		config.maxWeight = 100;
+		LoadingCache<Long, List<Long>> cache = config.build(new Loader(),
+				List::size);
+		for (long key = 1; key <= 50; key++)
+			Assert.assertEquals(key % 10, cache.get(key).size());
+		int weight = 0;
+		for (List<Long> list : cache.asMap().values())
+			weight += Math.max(1, list.size());
+		Assert.assertTrue(weight <= 100);
+		Assert.assertTrue(cache.size() < 50);
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		CacheConfig config = new CacheConfig();
+		config.recordStats = true;
+		LoadingCache<Long, List<Long>> cache = config.build(new Loader(),
+				List::size);
+		cache.get(1L);
+		cache.get(1L);
+		cache.get(2L);
+		Assert.assertEquals(1, cache.stats().hitCount());
+		Assert.assertEquals(2, cache.stats().missCount());
+		Assert.assertEquals(2, cache.stats().loadSuccessCount());
+	}
+
+	@Test
+	public void testNoStats() throws Exception {
+		LoadingCache<Long, List<Long>> cache = new CacheConfig()
+				.build(new Loader(), List::size);
+		cache.get(1L);
+		cache.get(1L);
+		Assert.assertEquals(0, cache.stats().requestCount());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	/** Returns a list with key % 10 elements for a key. */
+	private class Loader extends CacheLoader<Long, List<Long>> {
+		@Override
+		public List<Long> load(Long key) throws Exception {
+			List<Long> list = new ArrayList<>();
+			for (long i = 0; i < key % 10; i++)
+				list.add(i);
+			return list;
+		}
+	}
+}
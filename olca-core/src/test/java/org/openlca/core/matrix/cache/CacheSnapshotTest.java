@@ -0,0 +1,91 @@
+package org.openlca.core.matrix.cache;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openlca.core.TestProcess;
+import org.openlca.core.Tests;
+import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.ProcessDao;
+import org.openlca.core.matrix.CalcExchange;
+import org.openlca.core.model.Exchange;
+import org.openlca.core.model.Process;
+import org.openlca.core.model.Uncertainty;
+
+public class CacheSnapshotTest {
+
+	private IDatabase database = Tests.getDb();
+
+	@Test
+	public void testWriteRead() throws Exception {
+		Process process = TestProcess
+				.forOutput("snapshot-product", 1, "kg")
+				.elemOut("snapshot-emission", 2, "kg")
+				.get();
+		Exchange emission = process.getExchanges().get(1);
+		emission.setAmountFormula("1 + 1");
+		emission.setUncertainty(Uncertainty.normal(2, 0.5));
+		emission.setDqEntry("(1;2;3;4;5)");
+		ProcessDao dao = new ProcessDao(database);
+		process = dao.update(process);
+
+		File file = File.createTempFile("matrix_cache", ".bin");
+		CacheSnapshot.write(database, file);
+		CacheSnapshot snapshot = CacheSnapshot.read(database, file);
+		Assert.assertNotNull(snapshot);
+
+		List<CalcExchange> expected = ExchangeCache.create(database,
+				ConversionTable.create(database),
+				FlowTypeTable.create(database)).get(process.getId()).toList();
+		List<CalcExchange> exchanges = snapshot.getExchanges(process.getId())
+				.toList();
+		Assert.assertEquals(expected.size(), exchanges.size());
+		for (CalcExchange e : expected) {
+			CalcExchange s = exchanges.stream()
+					.filter(x -> x.exchangeId == e.exchangeId)
+					.findFirst().get();
+			Assert.assertEquals(e.flowId, s.flowId);
+			Assert.assertEquals(e.flowType, s.flowType);
+			Assert.assertEquals(e.input, s.input);
+			Assert.assertEquals(e.amount, s.amount, 1e-16);
+			Assert.assertEquals(e.conversionFactor, s.conversionFactor, 1e-16);
+			Assert.assertEquals(e.amountFormula, s.amountFormula);
+			Assert.assertEquals(e.uncertaintyType, s.uncertaintyType);
+			Assert.assertEquals(e.parameter1, s.parameter1, 1e-16);
+			Assert.assertEquals(e.parameter2, s.parameter2, 1e-16);
+			Assert.assertEquals(e.dqEntry, s.dqEntry);
+		}
+		Assert.assertEquals(process.getProcessType(),
+				snapshot.processes.getType(process.getId()));
+
+		// evicted processes are loaded from the database again
+		snapshot.evict(process.getId());
+		Assert.assertNull(snapshot.getExchanges(process.getId()));
+		dao.delete(process);
+		file.delete();
+	}
+
+	@Test
+	public void testOutdated() throws Exception {
+		File file = File.createTempFile("matrix_cache", ".bin");
+		CacheSnapshot.write(database, file);
+		Assert.assertNotNull(CacheSnapshot.read(database, file));
+
+		// a change without a matrix cache makes the snapshot outdated
+		Process process = TestProcess
+				.forOutput("outdated-product", 1, "kg")
+				.get();
+		process.setLastChange(System.currentTimeMillis());
+		ProcessDao dao = new ProcessDao(database);
+		process = dao.update(process);
+		Assert.assertNull(CacheSnapshot.read(database, file));
+
+		CacheSnapshot.write(database, file);
+		Assert.assertNotNull(CacheSnapshot.read(database, file));
+		dao.delete(process);
+		Assert.assertNull(CacheSnapshot.read(database, file));
+		file.delete();
+	}
+}
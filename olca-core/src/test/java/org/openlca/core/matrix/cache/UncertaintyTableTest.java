@@ -12,6 +12,7 @@ import org.openlca.core.database.ImpactCategoryDao;
 import org.openlca.core.database.ProcessDao;
 import org.openlca.core.matrix.CalcExchange;
 import org.openlca.core.matrix.CalcImpactFactor;
+import org.openlca.core.matrix.ExchangeBlock;
 import org.openlca.core.model.Exchange;
 import org.openlca.core.model.ImpactCategory;
 import org.openlca.core.model.ImpactFactor;
@@ -37,7 +38,7 @@ public class UncertaintyTableTest {
 		dao.insert(process);
 		Set<Long> set = new HashSet<>();
 		set.add(process.getId());
-		List<CalcExchange> exchanges = cache.getExchangeCache().get(
+		ExchangeBlock exchanges = cache.getExchangeCache().get(
 				process.getId());
 		checkExchange(exchanges.get(0));
 		dao.delete(process);
@@ -0,0 +1,93 @@
+package org.openlca.core.results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openlca.core.matrix.FlowIndex;
+
+public class OnlineStatisticsTest {
+
+	@Test
+	public void testEmpty() {
+		OnlineStatistics stats = new OnlineStatistics();
+		assertEquals(0, stats.getCount());
+		assertEquals(0, stats.getMean(), 1e-16);
+		assertEquals(0, stats.getMinimum(), 1e-16);
+		assertEquals(0, stats.getMaximum(), 1e-16);
+		assertEquals(0, stats.getStandardDeviation(), 1e-16);
+		assertEquals(0, stats.getMedian(), 1e-16);
+	}
+
+	@Test
+	public void testCompareWithStatistics() {
+		Random random = new Random(42);
+		int n = 10_000;
+		double[] values = new double[n];
+		OnlineStatistics online = new OnlineStatistics();
+		for (int i = 0; i < n; i++) {
+			values[i] = Math.exp(random.nextGaussian());
+			online.add(values[i]);
+		}
+		SimulationStatistics stats = new SimulationStatistics(values, 100);
+		assertEquals(stats.getMean(), online.getMean(), 1e-10);
+		assertEquals(stats.getStandardDeviation(),
+				online.getStandardDeviation(), 1e-10);
+		assertEquals(stats.getMinimum(), online.getMinimum(), 1e-16);
+		assertEquals(stats.getMaximum(), online.getMaximum(), 1e-16);
+
+		// the estimated percentiles should be within a rank error of 2%
+		Arrays.sort(values);
+		for (int p : new int[] { 5, 25, 50, 75, 95 }) {
+			double estimate = online.getPercentileValue(p);
+			assertTrue(estimate >= values[(p - 2) * n / 100]);
+			assertTrue(estimate <= values[(p + 2) * n / 100]);
+		}
+	}
+
+	@Test
+	public void testMerge() {
+		Random random = new Random(7);
+		OnlineStatistics all = new OnlineStatistics();
+		OnlineStatistics first = new OnlineStatistics();
+		OnlineStatistics second = new OnlineStatistics();
+		for (int i = 0; i < 5000; i++) {
+			double v = random.nextGaussian() * 3 + 10;
+			all.add(v);
+			if (i < 1000)
+				first.add(v);
+			else
+				second.add(v);
+		}
+		first.merge(second);
+		assertEquals(all.getCount(), first.getCount());
+		assertEquals(all.getMean(), first.getMean(), 1e-10);
+		assertEquals(all.getStandardDeviation(),
+				first.getStandardDeviation(), 1e-10);
+		assertEquals(all.getMedian(), first.getMedian(), 0.2);
+	}
+
+	@Test
+	public void testConvergence() {
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putOutputFlow(1);
+		SimulationAccumulator acc = new SimulationAccumulator();
+		acc.flowIndex = flowIndex;
+		ConvergenceCheck check = new ConvergenceCheck();
+		check.addFlow(1);
+		check.setTolerance(0.01);
+		Random random = new Random(1);
+		int runs = 0;
+		while (!check.isReached(acc) && runs < 100_000) {
+			acc.appendFlowResults(new double[] { 10 + random.nextGaussian() });
+			runs++;
+		}
+		// 1.96 * 1 / sqrt(n) / 10 <= 0.01 => n >= ~384
+		assertEquals(400, runs);
+		assertFalse(new ConvergenceCheck().isReached(new SimulationAccumulator()));
+	}
+}
@@ -0,0 +1,68 @@
+package org.openlca.core.results;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.openlca.core.matrix.FlowIndex;
+
+public class SimulationResultTest {
+
+	@Test
+	public void testAppend() {
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putInputFlow(1);
+		flowIndex.putOutputFlow(2);
+		SimulationResult result = new SimulationResult();
+		result.flowIndex = flowIndex;
+		// more runs than the initial capacity
+		for (int run = 0; run < 100; run++)
+			result.appendFlowResults(new double[] { run, 2 * run });
+		assertEquals(100, result.getNumberOfRuns());
+		double[] values = result.getFlowValues(2);
+		assertEquals(100, values.length);
+		for (int run = 0; run < 100; run++) {
+			assertEquals(2 * run, values[run], 1e-16);
+			assertEquals(run, result.getFlowResult(1, run), 1e-16);
+		}
+		double[] sum = { 0 };
+		result.forEachFlowResult(1, v -> sum[0] += v);
+		assertEquals(4950, sum[0], 1e-16);
+		assertArrayEquals(new double[0], result.getFlowValues(3), 1e-16);
+	}
+
+	@Test
+	public void testEnsureCapacity() {
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putOutputFlow(1);
+		SimulationResult result = new SimulationResult();
+		result.flowIndex = flowIndex;
+		result.appendFlowResults(new double[] { 42 });
+		result.ensureCapacity(1000);
+		result.appendFlowResults(new double[] { 43 });
+		assertArrayEquals(new double[] { 42, 43 }, result.getFlowValues(1),
+				1e-16);
+	}
+
+	@Test
+	@SuppressWarnings({ "deprecation", "unchecked" })
+	public void testDeprecatedLists() {
+		FlowIndex flowIndex = new FlowIndex();
+		flowIndex.putInputFlow(1);
+		flowIndex.putOutputFlow(2);
+		SimulationResult result = new SimulationResult();
+		result.flowIndex = flowIndex;
+		result.setFlowResults(new List[] { Arrays.asList(1.0, 2.0),
+				Arrays.asList(3.0, 4.0) });
+		assertEquals(2, result.getNumberOfRuns());
+		assertArrayEquals(new double[] { 3, 4 }, result.getFlowValues(2),
+				1e-16);
+		result.appendFlowResults(new double[] { 5, 6 });
+		assertEquals(Arrays.asList(1.0, 2.0, 5.0), result.getFlowResults(1));
+		assertEquals(Arrays.asList(3.0, 4.0, 6.0),
+				result.getFlowResults()[1]);
+	}
+}
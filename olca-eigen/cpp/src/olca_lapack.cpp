@@ -101,6 +101,19 @@ extern "C" {
         return info;
     }
 
+    JNIEXPORT jint JNICALL Java_org_openlca_eigen_Lapack_dSolveLuTransposed(
+            JNIEnv *env, jclass jclazz, jint rows, jint bCols, jdoubleArray lu,
+            jintArray pivots, jdoubleArray b) {
+        jdouble *luPtr = env->GetDoubleArrayElements(lu, NULL);
+        jint *pivotsPtr = env->GetIntArrayElements(pivots, NULL);
+        jdouble *bPtr = env->GetDoubleArrayElements(b, NULL);
+        jint info = dSolveLuTransposed(rows, bCols, luPtr, pivotsPtr, bPtr);
+        env->ReleaseDoubleArrayElements(lu, luPtr, JNI_ABORT);
+        env->ReleaseIntArrayElements(pivots, pivotsPtr, JNI_ABORT);
+        env->ReleaseDoubleArrayElements(b, bPtr, 0);
+        return info;
+    }
+
     JNIEXPORT jint JNICALL Java_org_openlca_eigen_Lapack_dEquilibrate(
             JNIEnv *env, jclass jclazz, jint rows, jint cols, jdoubleArray a,
             jdoubleArray r, jdoubleArray c) {
@@ -224,6 +224,25 @@ extern "C" {
         return info;
     }
 
+    /**
+     * Solves A' * X = B where A is already factorized.
+     * 
+     * @param rows[in] the number of rows in matrix A
+     * @param bCols[in] the number of columns of the right side
+     * @param lu[in] the LU factorization of matrix A (size = rows * rows)
+     * @param pivots[in] the pivot indices (see method lu)
+     * @param b[io] on entry the right hand side of the equation, on exit the
+     *        solution of the equation (size = rows * bCols)
+     * @return the LAPACK return code (0=success)
+     */
+    inline jint dSolveLuTransposed(jint rows, jint bCols, jdouble *lu,
+            jint *pivots, jdouble *b) {
+        jchar trans = 'T';
+        jint info;
+        dgetrs_(&trans, &rows, &bCols, lu, &rows, pivots, b, &rows, &info);
+        return info;
+    }
+
     inline jint dEquilibrate(jint rows, jint cols, jdouble *a, jdouble *r,
             jdouble *c) {
         jdouble rowCond;
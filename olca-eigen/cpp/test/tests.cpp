@@ -84,6 +84,17 @@ TEST_CASE("Solve A * X = B (separate LU fact.)", "[solveLu]") {
     checkEqualArrays(4, b, expected);
 }
 
+TEST_CASE("Solve A' * X = B (separate LU fact.)", "[solveLuTransposed]") {
+    jdouble a[4] = {1, -4, 0, 2};
+    jint pivots[2];
+    dLu(2, a, pivots);
+    jdouble b[4] = {1, 0, 0, 1};
+    jint info = dSolveLuTransposed(2, 2, a, pivots, b);
+    REQUIRE(info == 0);
+    jdouble expected[4] = {1, 0, 2, 0.5};
+    checkEqualArrays(4, b, expected);
+}
+
 TEST_CASE("Solve A * X = B (separate LU fact.) (single precision)", "[solveLuSingle]") {
     jfloat a[4] = {1, -4, 0, 2};
     jint pivots[2];
@@ -72,6 +72,25 @@ public class CompressedRowMatrix implements IMatrix {
 		return rowValues;
 	}
 
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
+	@Override
+	public void iterate(EntryIterator it) {
+		for (int row = 0; row < rows; row++) {
+			int idxStart = rowPointers[row];
+			int idxEnd = row == (rows - 1) ? columnIndices.length
+					: rowPointers[row + 1];
+			for (int idx = idxStart; idx < idxEnd; idx++) {
+				double val = values[idx];
+				if (val != 0)
+					it.next(row, columnIndices[idx], val);
+			}
+		}
+	}
+
 	@Override
 	public int rows() {
 		return rows;
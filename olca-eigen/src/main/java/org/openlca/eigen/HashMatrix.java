@@ -109,10 +109,16 @@ public class HashMatrix implements IMatrix {
 		return copy;
 	}
 
+	@Override
+	public boolean isSparse() {
+		return true;
+	}
+
 	/**
 	 * Iterates over the non-zero values in this matrix.
 	 */
-	public void iterate(MatrixIterator it) {
+	@Override
+	public void iterate(EntryIterator it) {
 		for (int row : data.keys()) {
 			TIntDoubleHashMap rowMap = data.get(row);
 			if (rowMap == null)
@@ -126,10 +132,10 @@ public class HashMatrix implements IMatrix {
 		}
 	}
 
-	public interface MatrixIterator {
-
-		void next(int row, int col, double val);
-
+	/**
+	 * Kept for compatibility; the same as {@link IMatrix.EntryIterator}.
+	 */
+	public interface MatrixIterator extends EntryIterator {
 	}
 
 	public CompressedRowMatrix compress() {
@@ -137,6 +137,26 @@ public class Lapack {
 	public static native int sSolveLu(int rows, int bCols, float[] lu,
 			int[] pivots, float[] b);
 
+	/**
+	 * Solves A' * X = B where A is already factorized (with {@link #dLu}). The
+	 * LU factorization and pivots are not modified.
+	 * 
+	 * @param rows
+	 *            [in] the number of rows in matrix A
+	 * @param bCols
+	 *            [in] the number of columns of the right side
+	 * @param lu
+	 *            [in] the LU factorization of matrix A (size = rows * rows)
+	 * @param pivots
+	 *            [in] the pivot indices (see method lu)
+	 * @param b
+	 *            [io] on entry the right hand side of the equation, on exit the
+	 *            solution of the equation (size = rows * bCols)
+	 * @return the LAPACK return code (0=success)
+	 */
+	public static native int dSolveLuTransposed(int rows, int bCols,
+			double[] lu, int[] pivots, double[] b);
+
 	public static native int dEquilibrate(int rows, int cols, double[] a,
 			double[] r, double[] c);
 
@@ -13,7 +13,7 @@ import org.slf4j.LoggerFactory;
  */
 public class NativeLibrary {
 
-	private static final String VERSION = "0.3";
+	private static final String VERSION = "0.4";
 	private static final String LIB_NAME = "olca-eigen";
 	private static boolean loaded = false;
 	private static Logger log = LoggerFactory.getLogger(NativeLibrary.class);
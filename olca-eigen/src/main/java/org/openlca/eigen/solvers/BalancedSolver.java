@@ -1,5 +1,6 @@
 package org.openlca.eigen.solvers;
 
+import org.openlca.core.math.IFactorization;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.math.IMatrixSolver;
@@ -51,18 +52,20 @@ public class BalancedSolver implements IMatrixSolver {
 		return denseSolver.invert(a);
 	}
 
+	/**
+	 * The matrix is factorized as dense matrix, like it is done for the
+	 * inverse.
+	 */
 	@Override
-	public IMatrix multiply(IMatrix a, IMatrix b) {
-		return denseSolver.multiply(a, b);
+	public IFactorization factorize(IMatrix a) {
+		return denseSolver.factorize(a);
 	}
 
 	@Override
-	public void scaleColumns(IMatrix m, double[] v) {
-		for (int row = 0; row < m.rows(); row++) {
-			for (int col = 0; col < m.columns(); col++) {
-				m.set(row, col, v[col] * m.get(row, col));
-			}
-		}
+	public IMatrix multiply(IMatrix a, IMatrix b) {
+		if (a.isSparse() || b.isSparse())
+			return IMatrixSolver.super.multiply(a, b);
+		return denseSolver.multiply(a, b);
 	}
 
 	@Override
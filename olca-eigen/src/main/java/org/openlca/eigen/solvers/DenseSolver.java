@@ -1,5 +1,6 @@
 package org.openlca.eigen.solvers;
 
+import org.openlca.core.math.IFactorization;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.math.IMatrixSolver;
@@ -24,6 +25,43 @@ public class DenseSolver implements IMatrixSolver {
 		return b;
 	}
 
+	/**
+	 * Creates the LU factorization of the given matrix with LAPACK (dgetrf).
+	 * Systems with the matrix and its transpose are then solved with the
+	 * factorization (dgetrs).
+	 */
+	@Override
+	public IFactorization factorize(IMatrix a) {
+		DenseMatrix A = MatrixConverter.asDenseMatrix(a);
+		int n = A.rows();
+		double[] lu = A.copy().getData();
+		int[] pivots = new int[n];
+		int info = Lapack.dLu(n, lu, pivots);
+		if (info > 0)
+			throw new IllegalArgumentException("the matrix is singular");
+		return new IFactorization() {
+
+			@Override
+			public int size() {
+				return n;
+			}
+
+			@Override
+			public double[] solve(double[] b) {
+				double[] x = b.clone();
+				Lapack.dSolveLu(n, 1, lu, pivots, x);
+				return x;
+			}
+
+			@Override
+			public double[] solveTransposed(double[] b) {
+				double[] x = b.clone();
+				Lapack.dSolveLuTransposed(n, 1, lu, pivots, x);
+				return x;
+			}
+		};
+	}
+
 	@Override
 	public double[] multiply(IMatrix m, double[] x) {
 		DenseMatrix a = MatrixConverter.asDenseMatrix(m);
@@ -41,6 +41,17 @@ public class LapackTest {
 		Assert.assertArrayEquals(new float[] { 1, 2, 0, 0.5f }, b, 1e-16f);
 	}
 
+	@Test
+	public void testSolveLuTransposed() {
+		double[] a = { 1, -4, 0, 2 };
+		int[] pivots = new int[2];
+		Lapack.dLu(2, a, pivots);
+		double[] b = { 1, 0, 0, 1 };
+		int info = Lapack.dSolveLuTransposed(2, 2, a, pivots, b);
+		Assert.assertTrue(info == 0);
+		Assert.assertArrayEquals(new double[] { 1, 0, 2, 0.5 }, b, 1e-16);
+	}
+
 	@Test
 	public void testSolveIterRef() {
 		double[] a = { 1, -4, 0, 2 };
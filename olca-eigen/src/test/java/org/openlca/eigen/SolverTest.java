@@ -5,6 +5,7 @@ import org.junit.experimental.theories.DataPoint;
 import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
 import org.junit.runner.RunWith;
+import org.openlca.core.math.IFactorization;
 import org.openlca.core.math.IMatrix;
 import org.openlca.core.math.IMatrixFactory;
 import org.openlca.core.math.IMatrixSolver;
@@ -100,4 +101,17 @@ public class SolverTest {
 				1e-14);
 	}
 
+	@Theory
+	public void testFactorization(IMatrixSolver solver) {
+		log.info("Test factorization with {}", solver.getClass());
+		IMatrixFactory<?> factory = solver.getMatrixFactory();
+		IMatrix a = MatrixUtils.create(new double[][] { { 1, 2 }, { 0, 4 } },
+				factory);
+		IFactorization f = solver.factorize(a);
+		Assert.assertArrayEquals(new double[] { 1, 2 },
+				f.solve(new double[] { 5, 8 }), 1e-14);
+		Assert.assertArrayEquals(new double[] { 1, 2 },
+				f.solveTransposed(new double[] { 1, 10 }), 1e-14);
+	}
+
 }
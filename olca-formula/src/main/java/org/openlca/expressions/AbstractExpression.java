@@ -75,4 +75,25 @@ public abstract class AbstractExpression implements Expression {
 		}
 	}
 
+	/** Compiles the arguments of this expression in their order. */
+	protected CompiledNode[] compileArguments(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode[] nodes = new CompiledNode[arguments.size()];
+		for (int i = 0; i < nodes.length; i++)
+			nodes[i] = compiler.compile(arguments.get(i));
+		return nodes;
+	}
+
+	/**
+	 * Compiles the arguments as conditions, see
+	 * {@link ExpressionCompiler#compileCondition(Expression)}.
+	 */
+	protected CompiledNode[] compileConditions(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode[] nodes = new CompiledNode[arguments.size()];
+		for (int i = 0; i < nodes.length; i++)
+			nodes[i] = compiler.compileCondition(arguments.get(i));
+		return nodes;
+	}
+
 }
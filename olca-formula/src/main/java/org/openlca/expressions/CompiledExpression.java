@@ -0,0 +1,162 @@
+package org.openlca.expressions;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An expression that is parsed and compiled once and can be then evaluated
+ * many times without parsing it again. The variables of the expression are
+ * resolved to slots: the value of the variable <code>getVariables()[i]</code>
+ * is passed in <code>slots[i]</code> when the expression is evaluated. A
+ * compiled expression is immutable and can be shared between threads.
+ */
+public final class CompiledExpression {
+
+	/** The maximum number of expressions that are cached in {@link #of}. */
+	private static final int MAX_CACHE_SIZE = 50_000;
+
+	private static final ConcurrentHashMap<String, CompiledExpression> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * The error messages of expressions that could not be compiled so that
+	 * {@link #of} does not try to compile them again.
+	 */
+	private static final ConcurrentHashMap<String, String> failures = new ConcurrentHashMap<>();
+
+	private final String expression;
+	private final CompiledNode root;
+	final String[] variables;
+	private final boolean deterministic;
+
+	private CompiledExpression(String expression, CompiledNode root,
+			ExpressionCompiler compiler) {
+		this.expression = expression;
+		this.root = root;
+		this.variables = compiler.getVariables();
+		this.deterministic = compiler.isDeterministic();
+	}
+
+	/**
+	 * Parses and compiles the given expression.
+	 * 
+	 * @throws InterpreterException
+	 *             if the expression is not valid, does not evaluate to a
+	 *             number, or contains functions that cannot be compiled.
+	 */
+	public static CompiledExpression compile(String expression)
+			throws InterpreterException {
+		if (expression == null)
+			throw new InterpreterException("The expression is null");
+		try {
+			FormulaParser parser = new FormulaParser(
+					new StringReader(expression.toLowerCase()));
+			parser.parse();
+			Expression e = parser.getExpression();
+			e.check();
+			if (e.getResultType() != null
+					&& e.getResultType() != Double.class)
+				throw new InterpreterException("The given expression "
+						+ expression + " does not evaluate to a number.");
+			ExpressionCompiler compiler = new ExpressionCompiler();
+			CompiledNode root = compiler.compile(e);
+			return new CompiledExpression(expression, root, compiler);
+		} catch (InterpreterException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InterpreterException("Compilation of expression "
+					+ expression + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the compiled version of the given expression from a shared
+	 * cache or compiles it if it is not yet cached. Expressions that cannot be
+	 * compiled are also cached so that they fail fast with the same error on
+	 * the next call.
+	 */
+	public static CompiledExpression of(String expression)
+			throws InterpreterException {
+		if (expression == null)
+			throw new InterpreterException("The expression is null");
+		CompiledExpression compiled = cache.get(expression);
+		if (compiled != null)
+			return compiled;
+		String failure = failures.get(expression);
+		if (failure != null)
+			throw new InterpreterException(failure);
+		try {
+			compiled = compile(expression);
+		} catch (InterpreterException e) {
+			if (failures.size() >= MAX_CACHE_SIZE)
+				failures.clear();
+			failures.put(expression, e.getMessage());
+			throw e;
+		}
+		if (cache.size() >= MAX_CACHE_SIZE)
+			cache.clear();
+		cache.put(expression, compiled);
+		return compiled;
+	}
+
+	/** Returns the expression from which this expression was compiled. */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * Returns the names of the variables of the expression in the order of
+	 * their slots. The names are in lower case.
+	 */
+	public List<String> getVariables() {
+		return Collections.unmodifiableList(Arrays.asList(variables));
+	}
+
+	/** Returns the slot of the given variable or -1 if it is not used. */
+	public int getSlot(String variable) {
+		if (variable == null)
+			return -1;
+		String name = variable.toLowerCase().trim();
+		for (int i = 0; i < variables.length; i++) {
+			if (variables[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns false if the expression can give different results for the same
+	 * variable values, e.g. when it contains random numbers.
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	/**
+	 * Evaluates the expression with the given variable values.
+	 * 
+	 * @param slots
+	 *            the values of the variables in the order of
+	 *            {@link #getVariables()}; can be null if the expression has
+	 *            no variables
+	 */
+	public double evaluate(double[] slots) throws InterpreterException {
+		if (variables.length > 0
+				&& (slots == null || slots.length < variables.length))
+			throw new InterpreterException("The expression " + expression
+					+ " requires " + variables.length + " variable values");
+		try {
+			return root.eval(slots);
+		} catch (ExpressionException e) {
+			throw new InterpreterException("Evaluation of expression "
+					+ expression + " failed: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return expression;
+	}
+}
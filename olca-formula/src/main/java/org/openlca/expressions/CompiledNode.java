@@ -0,0 +1,24 @@
+package org.openlca.expressions;
+
+/**
+ * A node of a compiled expression. A node is evaluated with the values of the
+ * variable slots of the expression. Boolean values are encoded as numbers:
+ * {@link #TRUE} and {@link #FALSE}.
+ */
+@FunctionalInterface
+public interface CompiledNode {
+
+	double TRUE = 1;
+	double FALSE = 0;
+
+	double eval(double[] slots) throws ExpressionException;
+
+	static double of(boolean b) {
+		return b ? TRUE : FALSE;
+	}
+
+	static boolean isTrue(double value) {
+		return value != FALSE;
+	}
+
+}
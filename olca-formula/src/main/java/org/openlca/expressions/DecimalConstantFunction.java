@@ -57,4 +57,10 @@ class DecimalConstantFunction implements Expression {
 	public String getName() {
 		return "Constant";
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler) {
+		double v = value;
+		return slots -> v;
+	}
 }
@@ -19,4 +19,15 @@ public interface Expression {
 	public void setPosition(int line, int column);
 
 	public String getName();
+
+	/**
+	 * Compiles this expression into a node that is evaluated with the values
+	 * of the variable slots. Expressions that do not support this throw an
+	 * exception so that they are evaluated with the interpreter instead.
+	 */
+	public default CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		throw new ExpressionException(getName() + " cannot be compiled",
+				getLine(), getColumn());
+	}
 }
@@ -0,0 +1,69 @@
+package org.openlca.expressions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compiles the syntax tree of an expression into a tree of
+ * {@link CompiledNode}s. Each variable of the expression is assigned to a slot
+ * in the order in which the variables occur in the expression.
+ */
+public final class ExpressionCompiler {
+
+	private final HashMap<String, Integer> slots = new HashMap<>();
+	private final List<String> variables = new ArrayList<>();
+	private boolean deterministic = true;
+
+	ExpressionCompiler() {
+	}
+
+	public CompiledNode compile(Expression expression)
+			throws ExpressionException {
+		return expression.compile(this);
+	}
+
+	/**
+	 * Compiles the given expression as a condition or operand of a logical
+	 * operation. The interpreter only accepts boolean values here. Thus, an
+	 * expression that is not a comparison or logical expression (e.g. a
+	 * variable or number) is not compiled but evaluated with the interpreter
+	 * which then gives the same error as before.
+	 */
+	public CompiledNode compileCondition(Expression expression)
+			throws ExpressionException {
+		if (expression.getResultType() != Boolean.class)
+			throw new ExpressionException(expression.getName()
+					+ " is not a boolean expression", expression.getLine(),
+					expression.getColumn());
+		return expression.compile(this);
+	}
+
+	/** Returns the slot of the given variable. */
+	public int slotOf(String variable) {
+		Integer slot = slots.get(variable);
+		if (slot != null)
+			return slot;
+		int next = variables.size();
+		slots.put(variable, next);
+		variables.add(variable);
+		return next;
+	}
+
+	/**
+	 * Marks the compiled expression as non-deterministic, i.e. it can give
+	 * different results for the same variable values (e.g. when it contains
+	 * random numbers).
+	 */
+	public void markNonDeterministic() {
+		deterministic = false;
+	}
+
+	boolean isDeterministic() {
+		return deterministic;
+	}
+
+	String[] getVariables() {
+		return variables.toArray(new String[variables.size()]);
+	}
+}
@@ -35,4 +35,17 @@ class OpAnd extends AbstractExpression {
 	public String getName() {
 		return "And function";
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode[] args = compileConditions(compiler);
+		return slots -> {
+			for (CompiledNode arg : args) {
+				if (!CompiledNode.isTrue(arg.eval(slots)))
+					return CompiledNode.FALSE;
+			}
+			return CompiledNode.TRUE;
+		};
+	}
 }
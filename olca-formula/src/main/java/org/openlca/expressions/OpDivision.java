@@ -19,4 +19,17 @@ class OpDivision extends AbstractNumericOperator {
 	public String getName() {
 		return "/";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> {
+			double denom = b.eval(slots);
+			if (denom == 0)
+				throw new ExpressionException("Cannot divide by 0");
+			return a.eval(slots) / denom;
+		};
+	}
+}
@@ -16,4 +16,13 @@ class OpEqual extends AbstractComparisonExpression {
 	public String getName() {
 		return "==";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> CompiledNode.of(Double.doubleToLongBits(
+				a.eval(slots)) == Double.doubleToLongBits(b.eval(slots)));
+	}
+}
@@ -23,4 +23,12 @@ public class OpExponentiation extends AbstractExpression {
 	public void check() throws ExpressionException {
 		checkArguments(new Class[] { Double.class, Double.class });
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> Math.pow(a.eval(slots), b.eval(slots));
+	}
 }
@@ -17,4 +17,13 @@ class OpIntegerDivision extends AbstractNumericOperator {
 	public String getName() {
 		return "div";
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> (double) (Math.round(a.eval(slots))
+				/ Math.round(b.eval(slots)));
+	}
 }
@@ -17,4 +17,13 @@ class OpLessThanOrEqual extends AbstractComparisonExpression {
 	public String getName() {
 		return "<=";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> CompiledNode.of(
+				Double.compare(a.eval(slots), b.eval(slots)) <= 0);
+	}
+}
@@ -17,4 +17,11 @@ class OpModuloDivision extends AbstractNumericOperator {
 		return "mod";
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> a.eval(slots) % b.eval(slots);
+	}
 }
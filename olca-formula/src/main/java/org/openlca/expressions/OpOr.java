@@ -34,4 +34,17 @@ class OpOr extends AbstractExpression {
 	public String getName() {
 		return "||";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode[] args = compileConditions(compiler);
+		return slots -> {
+			for (CompiledNode arg : args) {
+				if (CompiledNode.isTrue(arg.eval(slots)))
+					return CompiledNode.TRUE;
+			}
+			return CompiledNode.FALSE;
+		};
+	}
+}
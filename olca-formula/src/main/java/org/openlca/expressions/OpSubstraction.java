@@ -16,4 +16,12 @@ class OpSubstraction extends AbstractNumericOperator {
 	public String getName() {
 		return "-";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		CompiledNode b = compiler.compile(arguments.get(1));
+		return slots -> a.eval(slots) - b.eval(slots);
+	}
+}
@@ -29,4 +29,11 @@ class OpUnaryMinus extends AbstractExpression {
 	public String getName() {
 		return "-";
 	}
-}
\ No newline at end of file
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compile(arguments.get(0));
+		return slots -> -a.eval(slots);
+	}
+}
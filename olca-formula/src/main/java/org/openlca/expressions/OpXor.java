@@ -28,4 +28,12 @@ class OpXor extends AbstractExpression {
 		}
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode a = compiler.compileCondition(arguments.get(0));
+		CompiledNode b = compiler.compileCondition(arguments.get(1));
+		return slots -> CompiledNode.of(CompiledNode.isTrue(a.eval(slots))
+				!= CompiledNode.isTrue(b.eval(slots)));
+	}
 }
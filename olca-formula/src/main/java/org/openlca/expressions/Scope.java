@@ -46,14 +46,25 @@ public final class Scope {
 	}
 
 	/**
-	 * Evaluates the given expression in this scope.
+	 * Evaluates the given expression in this scope. The expression and the
+	 * expressions of the variables are compiled once and then evaluated with
+	 * the values of their variables (see {@link CompiledExpression}).
 	 */
 	public double eval(String expression) throws InterpreterException {
-		// reset the evaluation calls and values for variables
-		for (String var : evaluationCalls.keySet())
-			evaluationCalls.put(var, 0);
-		for (Variable variable : variables.values())
-			variable.value = null;
+		reset();
+		try {
+			return evalCompiled(expression);
+		} catch (Exception e) {
+			// the compiled evaluation resolves all variables of an expression
+			// before it is evaluated while the interpreter only evaluates the
+			// variables that are needed (e.g. in the branches of an
+			// if-function); also, expressions with functions that cannot be
+			// compiled or with boolean variables are not supported. Thus, we
+			// fall back to the interpreter which also gives the same errors
+			// as before.
+		}
+		for (Scope scope = this; scope != null; scope = scope.parent)
+			scope.reset();
 		try {
 			return tryEval(expression);
 		} catch (Throwable e) {
@@ -62,6 +73,41 @@ public final class Scope {
 		}
 	}
 
+	/** Resets the evaluation calls and values of the variables. */
+	private void reset() {
+		for (String var : evaluationCalls.keySet())
+			evaluationCalls.put(var, 0);
+		for (Variable variable : variables.values())
+			variable.value = null;
+	}
+
+	private double evalCompiled(String expression) throws Exception {
+		CompiledExpression e = CompiledExpression.of(expression);
+		String[] names = e.variables;
+		double[] slots = new double[names.length];
+		for (int i = 0; i < names.length; i++) {
+			Object value = resolveCompiled(names[i]);
+			if (!(value instanceof Double))
+				throw new InterpreterException("Variable " + names[i]
+						+ " is unknown or not a number");
+			slots[i] = (Double) value;
+		}
+		return e.evaluate(slots);
+	}
+
+	private Object resolveCompiled(String name) throws Exception {
+		Variable var = variables.get(name);
+		if (var == null)
+			return parent == null
+					? Constants.get(name)
+					: parent.resolveCompiled(name);
+		if (var.isEvaluated())
+			return var.value;
+		startEvaluation(var);
+		var.value = evalCompiled(var.expression);
+		return var.value;
+	}
+
 	private double tryEval(String expression) throws Exception {
 		Reader reader = new StringReader(expression.toLowerCase());
 		FormulaParser parser = new FormulaParser(reader);
@@ -94,12 +140,7 @@ public final class Scope {
 	}
 
 	private Object eval(Variable var) throws InterpreterException {
-		Integer call = evaluationCalls.get(var.name);
-		if (call != null && call > 0)
-			throw new InterpreterException(
-					"Second evaluation call on variable "
-							+ var.name + ". Cyclic dependencies?");
-		evaluationCalls.put(var.name, 1);
+		startEvaluation(var);
 		try {
 			var.value = tryEval(var.expression);
 			return var.value;
@@ -109,6 +150,15 @@ public final class Scope {
 		}
 	}
 
+	private void startEvaluation(Variable var) throws InterpreterException {
+		Integer call = evaluationCalls.get(var.name);
+		if (call != null && call > 0)
+			throw new InterpreterException(
+					"Second evaluation call on variable "
+							+ var.name + ". Cyclic dependencies?");
+		evaluationCalls.put(var.name, 1);
+	}
+
 	private class Variable {
 
 		private String name;
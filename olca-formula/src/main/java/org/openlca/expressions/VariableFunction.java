@@ -69,4 +69,10 @@ public class VariableFunction implements Expression {
 	public String getName() {
 		return "Variable";
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler) {
+		int slot = compiler.slotOf(variableName);
+		return slots -> slots[slot];
+	}
 }
@@ -3,7 +3,9 @@ package org.openlca.expressions.functions;
 import java.util.Iterator;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
 import org.openlca.expressions.Expression;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -36,4 +38,16 @@ public class And extends AbstractExpression {
 		return Boolean.class;
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode[] args = compileConditions(compiler);
+		return slots -> {
+			for (CompiledNode arg : args) {
+				if (!CompiledNode.isTrue(arg.eval(slots)))
+					return CompiledNode.FALSE;
+			}
+			return CompiledNode.TRUE;
+		};
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -24,4 +26,10 @@ abstract class Function1 extends AbstractExpression {
 		checkArguments(new Class<?>[] { Double.class });
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode arg = compiler.compile(arguments.get(0));
+		return slots -> eval(arg.eval(slots));
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -25,4 +27,11 @@ abstract class Function2 extends AbstractExpression {
 		checkArguments(new Class<?>[] { Double.class, Double.class });
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode arg1 = compiler.compile(arguments.get(0));
+		CompiledNode arg2 = compiler.compile(arguments.get(1));
+		return slots -> eval(arg1.eval(slots), arg2.eval(slots));
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -35,4 +37,19 @@ abstract class FunctionN extends AbstractExpression {
 		checkArgumentsOfSameType(Double.class);
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		if (arguments == null || arguments.size() == 0) {
+			double value = getDefault();
+			return slots -> value;
+		}
+		CompiledNode[] args = compileArguments(compiler);
+		return slots -> {
+			double[] values = new double[args.length];
+			for (int i = 0; i < values.length; i++)
+				values[i] = args[i].eval(slots);
+			return eval(values);
+		};
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -30,4 +32,15 @@ public class If extends AbstractExpression {
 	public String getName() {
 		return "if";
 	}
+
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		CompiledNode condition = compiler.compileCondition(arguments.get(0));
+		CompiledNode then = compiler.compile(arguments.get(1));
+		CompiledNode otherwise = compiler.compile(arguments.get(2));
+		return slots -> CompiledNode.isTrue(condition.eval(slots))
+				? then.eval(slots)
+				: otherwise.eval(slots);
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -34,4 +36,12 @@ class Not extends AbstractExpression {
 		return "not";
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler)
+			throws ExpressionException {
+		if (arguments == null || arguments.size() == 0)
+			return slots -> CompiledNode.FALSE;
+		CompiledNode arg = compiler.compileCondition(arguments.get(0));
+		return slots -> CompiledNode.of(!CompiledNode.isTrue(arg.eval(slots)));
+	}
 }
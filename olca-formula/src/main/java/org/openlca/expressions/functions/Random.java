@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -8,6 +10,14 @@ class Random extends AbstractExpression {
 
 	@Override
 	public Object evaluate(Scope context) throws ExpressionException {
+		return next();
+	}
+
+	/**
+	 * The random source of the interpreted and compiled function so that both
+	 * give the same random numbers.
+	 */
+	private static double next() {
 		return Math.random();
 	}
 
@@ -26,4 +36,9 @@ class Random extends AbstractExpression {
 		return "rand";
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler) {
+		compiler.markNonDeterministic();
+		return slots -> next();
+	}
 }
@@ -1,6 +1,8 @@
 package org.openlca.expressions.functions;
 
 import org.openlca.expressions.AbstractExpression;
+import org.openlca.expressions.CompiledNode;
+import org.openlca.expressions.ExpressionCompiler;
 import org.openlca.expressions.ExpressionException;
 import org.openlca.expressions.Scope;
 
@@ -21,4 +23,8 @@ class True extends AbstractExpression {
 		return "true()";
 	}
 
+	@Override
+	public CompiledNode compile(ExpressionCompiler compiler) {
+		return slots -> CompiledNode.TRUE;
+	}
 }
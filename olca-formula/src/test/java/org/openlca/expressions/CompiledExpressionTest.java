@@ -0,0 +1,122 @@
+package org.openlca.expressions;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+
+	@Test
+	public void testSlots() throws Exception {
+		CompiledExpression e = CompiledExpression.compile("2 * A + b / a");
+		Assert.assertEquals(2, e.getVariables().size());
+		Assert.assertEquals("a", e.getVariables().get(0));
+		Assert.assertEquals("b", e.getVariables().get(1));
+		Assert.assertEquals(1, e.getSlot("B"));
+		Assert.assertEquals(-1, e.getSlot("c"));
+		Assert.assertEquals(7.0, e.evaluate(new double[] { 2, 6 }), 1e-16);
+		Assert.assertEquals(4.5, e.evaluate(new double[] { 1, 2.5 }), 1e-16);
+	}
+
+	@Test
+	public void testFunctions() throws Exception {
+		check("if(a > 1; sqrt(b); min(a; b; 3))", 2, 16);
+		check("if(and(a > 1; b < 2); 1; 2)", 2, 1);
+		check("if(or(a < 1; not(b < 2)); 1; 2)", 2, 3);
+		check("if(a == b || a != 2; 1; 0)", 2, 3);
+		check("if(a <= b xor a >= b; a div b; a mod b)", 7, 2);
+		check("-a ^ 2 + sum(a; b) - avg() + pi() * e()", 3, 4);
+		check("round(a / b) + ipower(a; b) + abs(-a)", 5, 2);
+	}
+
+	private void check(String expression, double a, double b)
+			throws Exception {
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.bind("a", Double.toString(a));
+		interpreter.bind("b", Double.toString(b));
+		CompiledExpression e = CompiledExpression.compile(expression);
+		double[] slots = new double[e.getVariables().size()];
+		for (int i = 0; i < slots.length; i++)
+			slots[i] = e.getVariables().get(i).equals("a") ? a : b;
+		Assert.assertEquals(interpreter.eval(expression), e.evaluate(slots),
+				1e-16);
+	}
+
+	@Test(expected = InterpreterException.class)
+	public void testDivisionByZero() throws Exception {
+		CompiledExpression e = CompiledExpression.compile("1 / a");
+		e.evaluate(new double[] { 0 });
+	}
+
+	@Test(expected = InterpreterException.class)
+	public void testNotNumeric() throws Exception {
+		CompiledExpression.compile("1 < 2");
+	}
+
+	@Test
+	public void testNumericConditions() {
+		// numbers are not valid conditions in the interpreter; such formulas
+		// must not be compiled and have to fail as before
+		String[] formulas = { "if(b; 1; 2)", "if(b && c; 1; 2)",
+				"if(b || c; 1; 2)", "if(not(x); 1; 2)", "if(b xor c; 1; 2)",
+				"if(and(b; c); 1; 2)", "if(or(b; c); 1; 2)",
+				"if(b > c; 1; 2) + if(c; 1; 0)" };
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.bind("b", "1");
+		interpreter.bind("c", "0");
+		interpreter.bind("x", "2");
+		for (String formula : formulas) {
+			try {
+				CompiledExpression.compile(formula);
+				Assert.fail(formula + " should not be compiled");
+			} catch (InterpreterException e) {
+				// expected
+			}
+			try {
+				interpreter.eval(formula);
+				Assert.fail(formula + " should fail");
+			} catch (InterpreterException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testDeterministic() throws Exception {
+		Assert.assertTrue(CompiledExpression.compile("a + 1").isDeterministic());
+		Assert.assertFalse(
+				CompiledExpression.compile("a + rand()").isDeterministic());
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		CompiledExpression e = CompiledExpression.of("a * 42");
+		Assert.assertSame(e, CompiledExpression.of("a * 42"));
+	}
+
+	@Test
+	public void testFailureCached() {
+		String message = null;
+		for (int i = 0; i < 2; i++) {
+			try {
+				CompiledExpression.of("1 < 2");
+				Assert.fail("the expression should not compile");
+			} catch (InterpreterException e) {
+				if (message == null)
+					message = e.getMessage();
+				else
+					Assert.assertEquals(message, e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testLazyVariables() throws Exception {
+		// the undefined variable c is not needed to evaluate the expression
+		FormulaInterpreter interpreter = new FormulaInterpreter();
+		interpreter.bind("a", "2");
+		interpreter.bind("b", "if(a > 1; a; c)");
+		Assert.assertEquals(4.0, interpreter.eval("2 * b"), 1e-16);
+		Assert.assertEquals(1.0, interpreter.eval("if(true; 1; 0)"), 1e-16);
+	}
+
+}
@@ -63,8 +63,7 @@ public class RegionalizedCalculator {
 
 			// direct LCI results
 			LcaCalculator baseCalc = new LcaCalculator(solver, m);
-			IMatrix inverse = solver.invert(m.technologyMatrix);
-			r.scalingFactors = baseCalc.getScalingVector(inverse, r.productIndex);
+			r.scalingFactors = baseCalc.getScalingVector();
 			r.singleFlowResults = m.interventionMatrix.copy();
 			solver.scaleColumns(r.singleFlowResults, r.scalingFactors);
 			r.totalRequirements = baseCalc.getTotalRequirements(
@@ -91,13 +90,14 @@ public class RegionalizedCalculator {
 			r.singleImpactResults = assessedEnvi.copy();
 			solver.scaleColumns(r.singleImpactResults, r.scalingFactors);
 
-			// upstream & total results
+			// upstream & total results; calculated with the factorization of
+			// the technology matrix, without its inverse
 			double[] demands = baseCalc.getRealDemands(r.totalRequirements,
 					r.productIndex);
-			r.upstreamFlowResults = solver.multiply(m.interventionMatrix, inverse);
-			solver.scaleColumns(r.upstreamFlowResults, demands);
-			r.upstreamImpactResults = solver.multiply(assessedEnvi, inverse);
-			solver.scaleColumns(r.upstreamImpactResults, demands);
+			r.upstreamFlowResults = baseCalc.getUpstreamResults(
+					m.interventionMatrix, demands);
+			r.upstreamImpactResults = baseCalc.getUpstreamResults(
+					assessedEnvi, demands);
 			int refIdx = r.productIndex.getIndex(r.productIndex.getRefFlow());
 			r.totalFlowResults = r.upstreamFlowResults.getColumn(refIdx);
 			r.totalImpactResults = r.upstreamImpactResults.getColumn(refIdx);
@@ -117,8 +117,8 @@ public class RegionalizedCalculator {
 
 				// upstream LCC
 				IMatrix costMatrix = costVector.asMatrix(solver.getMatrixFactory());
-				IMatrix upstreamCosts = solver.multiply(costMatrix, inverse);
-				solver.scaleColumns(upstreamCosts, demands);
+				IMatrix upstreamCosts = baseCalc.getUpstreamResults(costMatrix,
+						demands);
 				r.totalCostResult = upstreamCosts.get(0, refIdx);
 				r.upstreamCostResults = upstreamCosts;
 			}
@@ -8,8 +8,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.geotools.data.DataStore;
-import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.opengis.feature.simple.SimpleFeature;
 import org.openlca.geo.kml.FeatureType;
 import org.openlca.geo.kml.KmlFeature;
@@ -23,11 +21,15 @@ class FeatureCalculator {
 
 	private Logger log = LoggerFactory.getLogger(getClass());
 
-	private DataStore dataStore;
+	private ShapeIndex index;
 	private Map<String, Double> defaults;
 
 	public FeatureCalculator(DataStore dataStore, Map<String, Double> defaults) {
-		this.dataStore = dataStore;
+		this(ShapeIndex.build(dataStore), defaults);
+	}
+
+	FeatureCalculator(ShapeIndex index, Map<String, Double> defaults) {
+		this.index = index;
 		this.defaults = defaults;
 	}
 
@@ -45,12 +47,12 @@ class FeatureCalculator {
 
 	private Map<String, Double> calculate(List<String> parameters,
 			Map<String, Double> shares) {
-		try (SimpleFeatureIterator iterator = getIterator()) {
+		try {
 			Map<SimpleFeature, Double> _shares = new HashMap<>();
-			while (iterator.hasNext()) {
-				SimpleFeature shape = iterator.next();
-				if (shares.containsKey(shape.getID()))
-					_shares.put(shape, shares.get(shape.getID()));
+			for (Entry<String, Double> share : shares.entrySet()) {
+				SimpleFeature shape = index.get(share.getKey());
+				if (shape != null)
+					_shares.put(shape, share.getValue());
 			}
 			return fetchValues(_shares, parameters);
 		} catch (Exception e) {
@@ -85,13 +87,6 @@ class FeatureCalculator {
 		return Val.isNaN(val) ? null : val;
 	}
 
-	private SimpleFeatureIterator getIterator() throws Exception {
-		String typeName = dataStore.getTypeNames()[0];
-		SimpleFeatureCollection collection = dataStore.getFeatureSource(
-				typeName).getFeatures();
-		return collection.features();
-	}
-
 	/**
 	 * Set of values and shares of a parameter. A value of null means 'not
 	 * available'.
@@ -5,8 +5,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.geotools.data.DataStore;
-import org.geotools.data.simple.SimpleFeatureCollection;
-import org.geotools.data.simple.SimpleFeatureIterator;
 import org.opengis.feature.simple.SimpleFeature;
 import org.openlca.geo.kml.KmlFeature;
 import org.slf4j.Logger;
@@ -17,6 +15,8 @@ import com.vividsolutions.jts.geom.MultiPoint;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.geom.TopologyException;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
 import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
 
 /**
@@ -25,15 +25,26 @@ import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
  * of the intersected shapes and the respective shares of the shapes to the
  * total value (e.g. total intersected area). Note that the shares are related
  * to the intersection total and not to the total of the feature.
+ * 
+ * Only the shapes of the spatial index which bounding boxes intersect with the
+ * feature are tested, and the feature geometry is prepared for these tests. A
+ * calculator can be used from multiple threads.
  */
 class IntersectionsCalculator {
 
+	/** The distance in which a point shape matches a point feature. */
+	private static final double POINT_TOLERANCE = 1e-6;
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 
-	private final DataStore dataStore;
+	private final ShapeIndex index;
 
 	IntersectionsCalculator(DataStore dataStore) {
-		this.dataStore = dataStore;
+		this(ShapeIndex.build(dataStore));
+	}
+
+	IntersectionsCalculator(ShapeIndex index) {
+		this.index = index;
 	}
 
 	Map<String, Double> calculate(KmlFeature feature) {
@@ -73,11 +84,12 @@ class IntersectionsCalculator {
 	}
 
 	private String findPointShape(Geometry feature) {
-		try (SimpleFeatureIterator iterator = getIterator()) {
-			while (iterator.hasNext()) {
-				SimpleFeature shape = iterator.next();
+		try {
+			for (SimpleFeature shape : index.getCandidates(feature,
+					POINT_TOLERANCE)) {
 				Geometry geo = (Geometry) shape.getDefaultGeometry();
-				if (geo instanceof Point && geo.equalsExact(feature, 1e-6))
+				if (geo instanceof Point
+						&& geo.equalsExact(feature, POINT_TOLERANCE))
 					return shape.getID();
 				else if (geo.contains(feature))
 					return shape.getID();
@@ -93,18 +105,14 @@ class IntersectionsCalculator {
 		double featureTotal = fetch.fetchTotal(featureGeo);
 		if (featureTotal == 0)
 			return Collections.emptyMap();
-		try (SimpleFeatureIterator iterator = getIterator()) {
+		try {
+			PreparedGeometry prepared = PreparedGeometryFactory
+					.prepare(featureGeo);
 			double total = 0;
 			Map<String, Double> shares = new HashMap<>();
-			while (iterator.hasNext()) {
-				SimpleFeature shape = iterator.next();
+			for (SimpleFeature shape : index.getCandidates(featureGeo)) {
 				Geometry shapeGeo = (Geometry) shape.getDefaultGeometry();
-				if (shapeGeo == null) {
-					log.warn("No default geometry found in shape "
-							+ shape.getID() + " - Skipping");
-					continue;
-				}
-				if (fetch.skip(featureGeo, shapeGeo))
+				if (fetch.skip(prepared, shapeGeo))
 					continue;
 				double value = fetch.fetchSingle(featureGeo, shapeGeo);
 				shares.put(shape.getID(), value);
@@ -132,20 +140,13 @@ class IntersectionsCalculator {
 		return shares;
 	}
 
-	private SimpleFeatureIterator getIterator() throws Exception {
-		String typeName = dataStore.getTypeNames()[0];
-		SimpleFeatureCollection collection = dataStore.getFeatureSource(
-				typeName).getFeatures();
-		return collection.features();
-	}
-
 	private interface ValueFetch {
 
 		double fetchTotal(Geometry feature);
 
 		double fetchSingle(Geometry feature, Geometry shape);
 
-		boolean skip(Geometry feature, Geometry shape);
+		boolean skip(PreparedGeometry feature, Geometry shape);
 	}
 
 	private class LineStringValueFetch implements ValueFetch {
@@ -161,7 +162,7 @@ class IntersectionsCalculator {
 		}
 
 		@Override
-		public boolean skip(Geometry feature, Geometry shape) {
+		public boolean skip(PreparedGeometry feature, Geometry shape) {
 			return !feature.crosses(shape);
 		}
 
@@ -189,7 +190,7 @@ class IntersectionsCalculator {
 		}
 
 		@Override
-		public boolean skip(Geometry feature, Geometry shape) {
+		public boolean skip(PreparedGeometry feature, Geometry shape) {
 			return !feature.intersects(shape);
 		}
 	}
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.geotools.data.DataStore;
 import org.openlca.core.model.Parameter;
@@ -22,6 +23,7 @@ public class ParameterCalculator implements Closeable {
 
 	private Map<String, List<String>> parameters;
 	private Map<String, DataStore> stores;
+	private Map<String, ShapeIndex> indices = new HashMap<>();
 	private Map<String, Double> defaults;
 	private ParameterCache cache;
 
@@ -42,17 +44,24 @@ public class ParameterCalculator implements Closeable {
 		}
 	}
 
+	/**
+	 * Calculates the parameter values of the given locations. The locations
+	 * are calculated in parallel as the shape indices are read-only and the
+	 * cached shares are stored in a separate file for each location.
+	 */
 	public ParameterSet calculate(List<LocationKml> kmlData) {
 		ParameterSet set = new ParameterSet(defaults);
 		if (parameters.isEmpty())
 			return set;
-		for (LocationKml data : kmlData) {
-			KmlFeature feature = data.kmlFeature;
-			if (feature == null || feature.type == FeatureType.EMPTY)
-				continue;
-			Map<String, Double> parameters = calculate(data.locationId, feature);
-			set.put(data.locationId, parameters);
-		}
+		List<LocationKml> locations = kmlData.stream()
+				.filter(data -> data.kmlFeature != null
+						&& data.kmlFeature.type != FeatureType.EMPTY)
+				.collect(Collectors.toList());
+		List<Map<String, Double>> results = locations.parallelStream()
+				.map(data -> calculate(data.locationId, data.kmlFeature))
+				.collect(Collectors.toList());
+		for (int i = 0; i < locations.size(); i++)
+			set.put(locations.get(i).locationId, results.get(i));
 		return set;
 	}
 
@@ -61,8 +70,8 @@ public class ParameterCalculator implements Closeable {
 		for (String shapeFile : parameters.keySet()) {
 			Map<String, Double> shares = getShares(locationId, feature, shapeFile);
 			log.debug("Calculating parameters for location {}", locationId);
-			DataStore store = stores.get(shapeFile);
-			FeatureCalculator calculator = new FeatureCalculator(store, defaults);
+			FeatureCalculator calculator = new FeatureCalculator(
+					getIndex(shapeFile), defaults);
 			List<String> params = parameters.get(shapeFile);
 			Map<String, Double> result = calculator.calculate(feature, params, shares);
 			if (result != null) {
@@ -81,8 +90,8 @@ public class ParameterCalculator implements Closeable {
 			String shapeFile) {
 		Map<String, Double> shares = cache.load(locationId, shapeFile);
 		if (shares == null) {
-			DataStore store = stores.get(shapeFile);
-			IntersectionsCalculator calculator = new IntersectionsCalculator(store);
+			IntersectionsCalculator calculator = new IntersectionsCalculator(
+					getIndex(shapeFile));
 			log.debug("Calculating shares for location " + locationId);
 			shares = calculator.calculate(feature);
 			cache.save(locationId, shapeFile, shares);
@@ -97,6 +106,19 @@ public class ParameterCalculator implements Closeable {
 		return r;
 	}
 
+	/**
+	 * Returns the spatial index of the given shapefile. The index is built
+	 * when it is requested the first time and then shared for all locations.
+	 */
+	private synchronized ShapeIndex getIndex(String shapeFile) {
+		ShapeIndex index = indices.get(shapeFile);
+		if (index == null) {
+			index = ShapeIndex.build(stores.get(shapeFile));
+			indices.put(shapeFile, index);
+		}
+		return index;
+	}
+
 	private void fillZeros(Map<String, Double> results) {
 		for (String param : defaults.keySet()) {
 			Double r = results.get(param);
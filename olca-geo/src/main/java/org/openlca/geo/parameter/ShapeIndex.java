@@ -0,0 +1,99 @@
+package org.openlca.geo.parameter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.opengis.feature.simple.SimpleFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * An in-memory spatial index of the shapes of a shapefile. The shapes are
+ * read once from the data store and their bounding boxes are stored in an
+ * STR-tree so that the shapes that may intersect with a geometry can be found
+ * without testing every shape of the file. The index is immutable after its
+ * creation and can be used from multiple threads.
+ */
+class ShapeIndex {
+
+	private final Map<String, SimpleFeature> shapes = new HashMap<>();
+	private final STRtree tree = new STRtree();
+
+	private ShapeIndex() {
+	}
+
+	/** Reads the shapes from the given data store and builds the index. */
+	static ShapeIndex build(DataStore dataStore) {
+		Logger log = LoggerFactory.getLogger(ShapeIndex.class);
+		ShapeIndex index = new ShapeIndex();
+		try (SimpleFeatureIterator it = getIterator(dataStore)) {
+			while (it.hasNext()) {
+				SimpleFeature shape = it.next();
+				index.shapes.put(shape.getID(), shape);
+				Geometry geo = (Geometry) shape.getDefaultGeometry();
+				if (geo == null) {
+					log.warn("No default geometry found in shape "
+							+ shape.getID() + " - Skipping");
+					continue;
+				}
+				index.tree.insert(geo.getEnvelopeInternal(), shape);
+			}
+		} catch (Exception e) {
+			log.error("failed to read shapes from data store", e);
+		}
+		// the tree is built before it is used so that queries are read-only
+		index.tree.build();
+		log.trace("indexed {} shapes", index.shapes.size());
+		return index;
+	}
+
+	private static SimpleFeatureIterator getIterator(DataStore dataStore)
+			throws Exception {
+		String typeName = dataStore.getTypeNames()[0];
+		SimpleFeatureCollection collection = dataStore.getFeatureSource(
+				typeName).getFeatures();
+		return collection.features();
+	}
+
+	/**
+	 * Returns the shapes which bounding boxes intersect with the bounding box
+	 * of the given geometry.
+	 */
+	List<SimpleFeature> getCandidates(Geometry geometry) {
+		return getCandidates(geometry, 0);
+	}
+
+	/**
+	 * Returns the shapes which bounding boxes intersect with the bounding box
+	 * of the given geometry expanded by the given distance.
+	 */
+	@SuppressWarnings("unchecked")
+	List<SimpleFeature> getCandidates(Geometry geometry, double distance) {
+		if (geometry == null || shapes.isEmpty())
+			return Collections.emptyList();
+		Envelope envelope = geometry.getEnvelopeInternal();
+		if (distance > 0) {
+			envelope = new Envelope(envelope);
+			envelope.expandBy(distance);
+		}
+		return tree.query(envelope);
+	}
+
+	/** Returns the shape with the given ID or null if there is no such shape. */
+	SimpleFeature get(String id) {
+		return shapes.get(id);
+	}
+
+	int size() {
+		return shapes.size();
+	}
+}
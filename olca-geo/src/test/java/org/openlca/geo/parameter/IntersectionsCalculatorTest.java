@@ -0,0 +1,73 @@
+package org.openlca.geo.parameter;
+
+import java.util.Map;
+
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.GeometryBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openlca.geo.Tests;
+import org.openlca.geo.kml.KmlFeature;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+public class IntersectionsCalculatorTest {
+
+	private ShapeIndex index;
+	private IntersectionsCalculator calculator;
+
+	@Before
+	public void setUp() throws Exception {
+		SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+		typeBuilder.setName("shapes");
+		typeBuilder.add("the_geom", Geometry.class);
+		SimpleFeatureType type = typeBuilder.buildFeatureType();
+		MemoryDataStore store = new MemoryDataStore();
+		store.createSchema(type);
+		GeometryBuilder geometries = new GeometryBuilder();
+		SimpleFeatureBuilder builder = new SimpleFeatureBuilder(type);
+		builder.add(geometries.point(10, 20));
+		store.addFeature(builder.buildFeature("point"));
+		builder.add(Tests.createPolygon(0, 0, 0, 5, 5, 5, 5, 0, 0, 0));
+		store.addFeature(builder.buildFeature("polygon"));
+		index = ShapeIndex.build(store);
+		calculator = new IntersectionsCalculator(index);
+	}
+
+	@Test
+	public void testIndex() {
+		Assert.assertEquals(2, index.size());
+		Geometry point = new GeometryBuilder().point(10.0000005, 20);
+		Assert.assertTrue(index.getCandidates(point).isEmpty());
+		Assert.assertEquals(1, index.getCandidates(point, 1e-6).size());
+	}
+
+	@Test
+	public void testPointInPolygon() throws Exception {
+		Map<String, Double> shares = calculator.calculate(point(2.5, 2.5));
+		Assert.assertEquals(1, shares.size());
+		Assert.assertEquals(1, shares.get("polygon"), 1e-16);
+	}
+
+	@Test
+	public void testPointWithTolerance() throws Exception {
+		// the point shape is found although the coordinates differ slightly
+		Map<String, Double> shares = calculator.calculate(point(10.0000005,
+				20));
+		Assert.assertEquals(1, shares.size());
+		Assert.assertEquals(1, shares.get("point"), 1e-16);
+		Assert.assertTrue(calculator.calculate(point(10.1, 20)).isEmpty());
+	}
+
+	private KmlFeature point(double x, double y) throws Exception {
+		String kml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+				+ "<kml xmlns=\"http://earth.google.com/kml/2.1\">"
+				+ "<Folder><Placemark><Point><coordinates>" + x + "," + y
+				+ "</coordinates></Point></Placemark></Folder></kml>";
+		return KmlFeature.parse(kml);
+	}
+}
@@ -0,0 +1,178 @@
+package org.openlca.io.ecospold2.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+import spold2.DataSet;
+import spold2.EcoSpold2;
+
+/**
+ * Reads the data sets of SPOLD files and ZIP files that contain such files.
+ * The data sets are parsed and passed to a mapping function on a pool of
+ * worker threads. The results are handed over to a consumer in the calling
+ * thread in the order of the files (and zip entries). Only a limited number of
+ * data sets are read ahead so that the workers cannot run away from the
+ * consumer. With a single thread, the data sets are parsed and mapped in the
+ * calling thread one after another.
+ */
+class DataSetReader {
+
+	private final Logger log = LoggerFactory.getLogger(getClass());
+	private final File[] files;
+	private final int threads;
+	private final int capacity;
+	private BooleanSupplier canceled = () -> false;
+
+	DataSetReader(File[] files, int threads) {
+		this.files = files;
+		this.threads = Math.max(1, threads);
+		this.capacity = 4 * this.threads;
+	}
+
+	/**
+	 * Set a function that is checked before a data set is read or passed to
+	 * the consumer. When it returns true, the reading stops.
+	 */
+	void setCanceled(BooleanSupplier canceled) {
+		this.canceled = canceled;
+	}
+
+	/**
+	 * Reads the data sets, maps them with the given function on the worker
+	 * threads, and passes the results that are not null to the given consumer
+	 * in the calling thread. The function must be thread safe.
+	 */
+	<T> void read(Function<DataSet, T> fn, Consumer<T> consumer) {
+		if (files == null)
+			return;
+		ExecutorService pool = threads > 1
+				? Executors.newFixedThreadPool(threads)
+				: null;
+		ArrayDeque<Future<T>> queue = new ArrayDeque<>();
+		try {
+			for (File file : files) {
+				if (canceled.getAsBoolean())
+					break;
+				if (isSpoldFile(file.getName()))
+					submit(pool, queue, file.getName(),
+							() -> EcoSpold2.read(file), fn, consumer);
+				else if (isZip(file))
+					readZip(file, pool, queue, fn, consumer);
+				else
+					log.trace("ignore file {}", file);
+			}
+			while (!queue.isEmpty() && !canceled.getAsBoolean())
+				consume(queue.poll(), consumer);
+		} catch (InterruptedException e) {
+			log.error("reading data sets was interrupted", e);
+			Thread.currentThread().interrupt();
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
+	}
+
+	private <T> void readZip(File file, ExecutorService pool,
+			ArrayDeque<Future<T>> queue, Function<DataSet, T> fn,
+			Consumer<T> consumer) throws InterruptedException {
+		log.trace("open zip file {}", file);
+		try (ZipFile zip = new ZipFile(file)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				if (canceled.getAsBoolean())
+					return;
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory() || !isSpoldFile(entry.getName()))
+					continue;
+				// the entry is read here so that the zip file can be closed
+				// while the data set is still parsed
+				byte[] data;
+				try (InputStream stream = zip.getInputStream(entry)) {
+					data = ByteStreams.toByteArray(stream);
+				}
+				submit(pool, queue, entry.getName(), () -> EcoSpold2.read(
+						new ByteArrayInputStream(data)), fn, consumer);
+			}
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Exception e) {
+			log.error("failed to read zip file " + file, e);
+		}
+	}
+
+	/**
+	 * Submits a task for parsing and mapping the data set. If the queue of
+	 * pending tasks is full, the results of the first tasks are consumed
+	 * before. Without a pool, the task is executed and consumed directly.
+	 */
+	private <T> void submit(ExecutorService pool, ArrayDeque<Future<T>> queue,
+			String name, ParseFn parser, Function<DataSet, T> fn,
+			Consumer<T> consumer) throws InterruptedException {
+		Callable<T> task = () -> {
+			DataSet dataSet;
+			try {
+				dataSet = parser.parse();
+			} catch (Exception e) {
+				log.error("failed to read data set " + name, e);
+				return null;
+			}
+			return dataSet == null ? null : fn.apply(dataSet);
+		};
+		if (pool == null) {
+			FutureTask<T> future = new FutureTask<>(task);
+			future.run();
+			consume(future, consumer);
+			return;
+		}
+		while (queue.size() >= capacity)
+			consume(queue.poll(), consumer);
+		queue.add(pool.submit(task));
+	}
+
+	private <T> void consume(Future<T> future, Consumer<T> consumer)
+			throws InterruptedException {
+		try {
+			T result = future.get();
+			if (result != null && !canceled.getAsBoolean())
+				consumer.accept(result);
+		} catch (ExecutionException e) {
+			log.error("failed to process data set", e.getCause());
+		}
+	}
+
+	private boolean isSpoldFile(String name) {
+		if (name == null)
+			return false;
+		return name.toLowerCase().endsWith(".spold");
+	}
+
+	private boolean isZip(File file) {
+		if (file == null)
+			return false;
+		return file.getName().toLowerCase().endsWith(".zip");
+	}
+
+	@FunctionalInterface
+	private interface ParseFn {
+		DataSet parse() throws Exception;
+	}
+}
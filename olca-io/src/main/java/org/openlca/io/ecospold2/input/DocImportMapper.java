@@ -32,6 +32,9 @@ import spold2.Time;
  */
 class DocImportMapper {
 
+	/** Synchronizes the creation of actors and sources. */
+	private static final Object lock = new Object();
+
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private IDatabase database;
 
@@ -106,15 +109,8 @@ class DocImportMapper {
 		DataEntry dataEntry = adminInfo.dataEntry;
 		if (dataEntry == null || dataEntry.personId == null)
 			return;
-		ActorDao dao = new ActorDao(database);
-		Actor actor = dao.getForRefId(dataEntry.personId);
-		if (actor == null) {
-			actor = new Actor();
-			actor.setRefId(dataEntry.personId);
-			actor.setEmail(dataEntry.personEmail);
-			actor.setName(dataEntry.personName);
-			actor = dao.insert(actor);
-		}
+		Actor actor = actor(dataEntry.personId, dataEntry.personEmail,
+				dataEntry.personName);
 		doc.setDataDocumentor(actor);
 	}
 
@@ -122,25 +118,44 @@ class DocImportMapper {
 		DataGenerator dataGenerator = adminInfo.dataGenerator;
 		if (dataGenerator == null || dataGenerator.personId == null)
 			return;
-		ActorDao dao = new ActorDao(database);
-		Actor actor = dao.getForRefId(dataGenerator.personId);
-		if (actor == null) {
+		Actor actor = actor(dataGenerator.personId,
+				dataGenerator.personEmail, dataGenerator.personName);
+		doc.setDataGenerator(actor);
+	}
+
+	/**
+	 * Returns the actor with the given ID from the database or creates it.
+	 * Processes can be mapped in parallel; thus, this is synchronized to avoid
+	 * duplicate actors.
+	 */
+	private Actor actor(String refId, String email, String name) {
+		synchronized (lock) {
+			ActorDao dao = new ActorDao(database);
+			Actor actor = dao.getForRefId(refId);
+			if (actor != null)
+				return actor;
 			actor = new Actor();
-			actor.setRefId(dataGenerator.personId);
-			actor.setEmail(dataGenerator.personEmail);
-			actor.setName(dataGenerator.personName);
-			actor = dao.insert(actor);
+			actor.setRefId(refId);
+			actor.setEmail(email);
+			actor.setName(name);
+			return dao.insert(actor);
 		}
-		doc.setDataGenerator(actor);
 	}
 
 	private void mapPublicationSource(AdminInfo adminInfo) {
 		DataGenerator gen = adminInfo.dataGenerator;
 		if (gen == null || gen.publishedSourceId == null)
 			return;
-		SourceDao dao = new SourceDao(database);
-		Source source = dao.getForRefId(gen.publishedSourceId);
-		if (source == null) {
+		doc.setPublication(source(gen));
+	}
+
+	/** Same as {@link #actor} for the publication source. */
+	private Source source(DataGenerator gen) {
+		synchronized (lock) {
+			SourceDao dao = new SourceDao(database);
+			Source source = dao.getForRefId(gen.publishedSourceId);
+			if (source != null)
+				return source;
 			source = new Source();
 			source.setRefId(gen.publishedSourceId);
 			StringBuilder title = new StringBuilder();
@@ -155,9 +170,8 @@ class DocImportMapper {
 			}
 			source.setTextReference(title.toString());
 			source.setName(shortTitle.toString());
-			source = dao.insert(source);
+			return dao.insert(source);
 		}
-		doc.setPublication(source);
 	}
 
 	private void mapFileAttributes(AdminInfo adminInfo) {
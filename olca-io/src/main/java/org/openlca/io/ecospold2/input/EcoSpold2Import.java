@@ -22,7 +22,7 @@ public class EcoSpold2Import implements FileImport {
 	private Logger log = LoggerFactory.getLogger(getClass());
 	private IDatabase database;
 	private EventBus eventBus;
-	private boolean canceled = false;
+	private volatile boolean canceled = false;
 	private File[] files;
 	private ImportConfig config;
 
@@ -71,11 +71,11 @@ public class EcoSpold2Import implements FileImport {
 		RefDataImport refDataImport = new RefDataImport(database, config);
 		if (eventBus != null)
 			eventBus.post(new ImportEvent("reference data"));
-		try (DataSetIterator iterator = new DataSetIterator(files)) {
-			while (!canceled && iterator.hasNext()) {
-				DataSet dataSet = iterator.next();
-				refDataImport.importDataSet(dataSet);
-			}
+		try {
+			// the reference data are created in the order of the data sets,
+			// thus, only the parsing is done in parallel here
+			DataSetReader reader = reader(files);
+			reader.read(dataSet -> dataSet, refDataImport::importDataSet);
 		} catch (Exception e) {
 			log.error("reference data import failed", e);
 		}
@@ -85,22 +85,47 @@ public class EcoSpold2Import implements FileImport {
 	private void importProcesses(File[] files, RefDataIndex index) {
 		log.trace("import processes");
 		ProcessImport processImport = new ProcessImport(database, index, config);
-		try (DataSetIterator iterator = new DataSetIterator(files)) {
-			while (!canceled && iterator.hasNext()) {
-				DataSet dataSet = iterator.next();
-				fireEvent(dataSet);
-				processImport.importDataSet(dataSet);
-			}
+		try {
+			DataSetReader reader = reader(files);
+			reader.read(dataSet -> new Mapping(dataSet,
+					processImport.map(dataSet)), mapping -> {
+						// events are posted for every data set in the writer
+						// thread so that they arrive in the order of the data
+						// sets
+						fireEvent(mapping.name);
+						processImport.write(mapping.process);
+					});
 		} catch (Exception e) {
 			log.error("process import failed", e);
+		} finally {
+			processImport.flush();
 		}
 	}
 
-	private void fireEvent(DataSet dataSet) {
-		if (eventBus == null
-				|| dataSet.description == null
-				|| dataSet.description.activity == null)
+	private DataSetReader reader(File[] files) {
+		DataSetReader reader = new DataSetReader(files, config.threads);
+		reader.setCanceled(() -> canceled);
+		return reader;
+	}
+
+	private void fireEvent(String dataSet) {
+		if (eventBus == null || dataSet == null)
 			return;
-		eventBus.post(new ImportEvent(dataSet.description.activity.name));
+		eventBus.post(new ImportEvent(dataSet));
+	}
+
+	/** The name of a data set and the mapped process (which can be null). */
+	private static class Mapping {
+
+		final String name;
+		final MappedProcess process;
+
+		Mapping(DataSet dataSet, MappedProcess process) {
+			this.name = dataSet.description == null
+					|| dataSet.description.activity == null
+							? null
+							: dataSet.description.activity.name;
+			this.process = process;
+		}
 	}
 }
@@ -9,6 +9,7 @@ public class ImportConfig {
 	boolean withParameters = true;
 	boolean withParameterFormulas = true;
 	boolean checkFormulas = false;
+	int threads = 1;
 
 	/**
 	 * Creates a default configuration for the import which has no restrictions
@@ -49,11 +50,24 @@ public class ImportConfig {
 		this.checkFormulas = checkFormulas;
 	}
 
+	/**
+	 * The number of threads that are used to read the data sets and to map
+	 * them to processes (the processes are written in a single thread). The
+	 * default is 1 which reads and maps the data sets one after another in
+	 * the thread of the import. With more threads, the shared reference data
+	 * (flows, units, etc.) are accessed from the mapping threads
+	 * concurrently; thus, they should be fully loaded then.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
 	@Override
 	public String toString() {
 		return "ImportConfig [skipNullExchanges=" + skipNullExchanges
 				+ ", withParameters=" + withParameters
 				+ ", withParameterFormulas=" + withParameterFormulas
-				+ ", checkFormulas=" + checkFormulas + "]";
+				+ ", checkFormulas=" + checkFormulas
+				+ ", threads=" + threads + "]";
 	}
 }
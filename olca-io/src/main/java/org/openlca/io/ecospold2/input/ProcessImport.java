@@ -2,13 +2,15 @@ package org.openlca.io.ecospold2.input;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
-import org.openlca.core.database.BaseDao;
 import org.openlca.core.database.IDatabase;
+import org.openlca.core.database.NativeSql;
 import org.openlca.core.database.ParameterDao;
 import org.openlca.core.database.ProcessDao;
+import org.openlca.core.database.ProcessWriter;
 import org.openlca.core.model.Category;
 import org.openlca.core.model.DQSystem;
 import org.openlca.core.model.Exchange;
@@ -38,8 +40,17 @@ import spold2.PedigreeMatrix;
 import spold2.RichText;
 import spold2.Spold2;
 
+/**
+ * Maps the activity data sets to processes and writes them to the database in
+ * batches. The mapping ({@link #map(DataSet)}) can be called from multiple
+ * threads in parallel but the writing ({@link #write(MappedProcess)} and
+ * {@link #flush()}) must be done from a single thread.
+ */
 class ProcessImport {
 
+	/** The number of processes that are written together. */
+	private static final int BATCH_SIZE = 500;
+
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	private final IDatabase db;
 	private final RefDataIndex index;
@@ -47,10 +58,18 @@ class ProcessImport {
 	private final PriceMapper prices;
 	private final ImportConfig config;
 	private final DQSystem dqSystem;
+	private final ProcessWriter writer;
+
+	/** The processes that are not yet written to the database. */
+	private final List<Process> batch = new ArrayList<>();
+	private final Set<String> batchIds = new HashSet<>();
 
 	/** Exchanges that wait for a default provider: provider-id -> exchanges. */
 	private final HashMap<String, List<Exchange>> linkQueue = new HashMap<>();
 
+	/** The names of the global parameters in the database. */
+	private Set<String> globalParameters;
+
 	public ProcessImport(IDatabase db, RefDataIndex index, ImportConfig config) {
 		this.db = db;
 		this.index = index;
@@ -58,24 +77,30 @@ class ProcessImport {
 		dao = new ProcessDao(db);
 		prices = new PriceMapper(db);
 		dqSystem = DQSystems.ecoinvent(db);
+		writer = new ProcessWriter(db);
 	}
 
-	public void importDataSet(DataSet dataSet) {
+	/**
+	 * Maps the given data set to a new process. Returns null if the data set
+	 * is not valid or if the process is already in the database.
+	 */
+	MappedProcess map(DataSet dataSet) {
 		try {
 			if (dataSet == null) {
 				log.warn("not an EcoSpold data set");
-				return;
+				return null;
 			}
-			checkImport(dataSet);
+			return checkImport(dataSet);
 		} catch (Exception e) {
 			log.error("Failed to import EcoSpold 2 process", e);
+			return null;
 		}
 	}
 
-	private void checkImport(DataSet dataSet) {
+	private MappedProcess checkImport(DataSet dataSet) {
 		if (!valid(dataSet)) {
 			log.warn("invalid data set -> not imported");
-			return;
+			return null;
 		}
 		Activity activity = Spold2.getActivity(dataSet);
 		try {
@@ -84,12 +109,13 @@ class ProcessImport {
 			if (contains) {
 				log.trace("process {} is already in the database",
 						activity.id);
-				return;
+				return null;
 			}
 			log.trace("import process {}", activity.name);
-			runImport(dataSet, refId);
+			return runImport(dataSet, refId);
 		} catch (Exception e) {
 			log.error("Failed to import process", e);
+			return null;
 		}
 	}
 
@@ -111,45 +137,91 @@ class ProcessImport {
 		return refFlow != null;
 	}
 
-	private void runImport(DataSet dataSet, String refId) {
+	private MappedProcess runImport(DataSet dataSet, String refId) {
 		Activity activity = Spold2.getActivity(dataSet);
 		Process process = new Process();
 		process.setRefId(refId);
+		MappedProcess mapped = new MappedProcess(process);
 		setMetaData(activity, process);
 		setCategory(dataSet, process);
 		if (config.withParameters)
-			handleParameters(dataSet, process);
-		createProductExchanges(dataSet, process);
+			handleParameters(dataSet, mapped);
+		createProductExchanges(dataSet, mapped);
 		if (process.getQuantitativeReference() == null)
 			log.warn("could not set a quantitative reference for process {}",
 					refId);
 		createElementaryExchanges(dataSet, process);
 		process.exchangeDqSystem = dqSystem;
 		new DocImportMapper(db).map(dataSet, process);
-		db.createDao(Process.class).insert(process);
-		index.putProcessId(refId, process.getId());
-		flushLinkQueue(process);
+		return mapped;
+	}
+
+	/**
+	 * Adds the given process to the current batch; the batch is written when
+	 * it is full.
+	 */
+	void write(MappedProcess mapped) {
+		if (mapped == null)
+			return;
+		Process process = mapped.process;
+		String refId = process.getRefId();
+		if (batchIds.contains(refId) || index.getProcessId(refId) != null) {
+			log.trace("process {} was already imported", refId);
+			return;
+		}
+		insertGlobals(mapped.globals);
+		for (int i = 0; i < mapped.links.size(); i++)
+			addActivityLink(mapped.links.get(i), mapped.providers.get(i));
+		batch.add(process);
+		batchIds.add(refId);
+		if (batch.size() >= BATCH_SIZE)
+			flush();
+	}
+
+	/**
+	 * Writes the processes of the current batch to the database. This has to
+	 * be called when all data sets were passed to this import.
+	 */
+	void flush() {
+		if (batch.isEmpty())
+			return;
+		try {
+			writer.insert(batch);
+		} catch (Exception e) {
+			// the other processes of the batch are written
+			log.error("Failed to insert processes", e);
+		}
+		for (Process process : batch) {
+			if (process.getId() != 0L)
+				index.putProcessId(process.getRefId(), process.getId());
+		}
+		flushLinkQueue(batch);
+		batch.clear();
+		batchIds.clear();
 	}
 
-	private void handleParameters(DataSet dataSet, Process process) {
+	private void handleParameters(DataSet dataSet, MappedProcess mapped) {
 		List<Parameter> list = Parameters.fetch(dataSet, config);
-		List<Parameter> newGlobals = new ArrayList<>();
 		for (Parameter p : list) {
 			if (p.getScope() == ParameterScope.PROCESS)
-				process.getParameters().add(p);
+				mapped.process.getParameters().add(p);
 			else if (p.getScope() == ParameterScope.GLOBAL)
-				newGlobals.add(p);
+				mapped.globals.add(p);
 		}
+	}
+
+	private void insertGlobals(List<Parameter> globals) {
+		if (globals.isEmpty())
+			return;
 		ParameterDao dao = new ParameterDao(db);
-		Map<String, Boolean> map = new HashMap<>();
-		for (Parameter p : dao.getGlobalParameters())
-			map.put(p.getName(), Boolean.TRUE);
-		for (Parameter newGlobal : newGlobals) {
-			Boolean exists = map.get(newGlobal.getName());
-			if (exists == null) {
-				dao.insert(newGlobal);
-				map.put(newGlobal.getName(), Boolean.TRUE);
-			}
+		if (globalParameters == null) {
+			globalParameters = new HashSet<>();
+			for (Parameter p : dao.getGlobalParameters())
+				globalParameters.add(p.getName());
+		}
+		for (Parameter global : globals) {
+			if (globalParameters.add(global.getName()))
+				dao.insert(global);
 		}
 	}
 
@@ -166,16 +238,32 @@ class ProcessImport {
 		p.setDescription(d);
 	}
 
-	private void flushLinkQueue(Process process) {
-		List<Exchange> exchanges = linkQueue.remove(process.getRefId());
-		if (exchanges == null || process.getId() == 0)
-			return;
-		try {
-			BaseDao<Exchange> dao = db.createDao(Exchange.class);
-			for (Exchange exchange : exchanges) {
+	/**
+	 * Sets the IDs of the given (written) processes as default providers of
+	 * the exchanges that wait for them.
+	 */
+	private void flushLinkQueue(List<Process> processes) {
+		List<Exchange> exchanges = new ArrayList<>();
+		for (Process process : processes) {
+			List<Exchange> queue = linkQueue.remove(process.getRefId());
+			if (queue == null || process.getId() == 0)
+				continue;
+			for (Exchange exchange : queue) {
 				exchange.setDefaultProviderId(process.getId());
-				dao.update(exchange);
+				exchanges.add(exchange);
 			}
+		}
+		if (exchanges.isEmpty())
+			return;
+		db.getEntityFactory().getCache().evictAll();
+		String stmt = "update tbl_exchanges set f_default_provider = ? where id = ?";
+		try {
+			NativeSql.on(db).batchInsert(stmt, exchanges.size(), (i, s) -> {
+				Exchange exchange = exchanges.get(i);
+				s.setLong(1, exchange.getDefaultProviderId());
+				s.setLong(2, exchange.getId());
+				return true;
+			});
 		} catch (Exception e) {
 			log.error("failed to update default provider", e);
 		}
@@ -195,7 +283,8 @@ class ProcessImport {
 		}
 	}
 
-	private void createProductExchanges(DataSet ds, Process process) {
+	private void createProductExchanges(DataSet ds, MappedProcess mapped) {
+		Process process = mapped.process;
 		for (IntermediateExchange ie : Spold2.getProducts(ds)) {
 			boolean isRefFlow = ie.outputGroup != null
 					&& ie.outputGroup == 0;
@@ -212,8 +301,10 @@ class ProcessImport {
 				continue;
 			if (isAvoidedProduct(refId, e))
 				e.setAvoidedProduct(true);
-			if (ie.activityLinkId != null)
-				addActivityLink(ie, e);
+			if (ie.activityLinkId != null) {
+				mapped.links.add(e);
+				mapped.providers.add(KeyGen.get(ie.activityLinkId, ie.flowId));
+			}
 			if (isRefFlow)
 				process.setQuantitativeReference(e);
 			prices.map(ie, e);
@@ -298,10 +389,7 @@ class ProcessImport {
 			exchange.setAmountFormula(factor + " * (" + formula + ")");
 	}
 
-	private void addActivityLink(IntermediateExchange e, Exchange exchange) {
-		String providerId = e.activityLinkId;
-		String flowId = e.flowId;
-		String refId = KeyGen.get(providerId, flowId);
+	private void addActivityLink(Exchange exchange, String refId) {
 		Long processId = index.getProcessId(refId);
 		if (processId != null) {
 			exchange.setDefaultProviderId(processId);
@@ -325,4 +413,22 @@ class ProcessImport {
 		process.setCategory(category);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A mapped process with the global parameters and the links to default
+	 * providers that are handled when the process is written.
+	 */
+	static class MappedProcess {
+
+		final Process process;
+		final List<Parameter> globals = new ArrayList<>();
+
+		/** The exchanges with default providers and the provider IDs. */
+		final List<Exchange> links = new ArrayList<>();
+		final List<String> providers = new ArrayList<>();
+
+		MappedProcess(Process process) {
+			this.process = process;
+		}
+	}
+
+}
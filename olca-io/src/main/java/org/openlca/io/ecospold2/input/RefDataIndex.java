@@ -1,7 +1,7 @@
 package org.openlca.io.ecospold2.input;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openlca.core.model.Category;
 import org.openlca.core.model.Flow;
@@ -10,67 +10,70 @@ import org.openlca.core.model.Location;
 import org.openlca.core.model.Unit;
 
 /**
- * An index with cached reference data for an EcoSpold 02 import.
+ * An index with cached reference data for an EcoSpold 02 import. The index is
+ * thread safe as the processes are mapped in parallel. Null keys are
+ * accepted but never have a value and putting a null value removes the
+ * respective key.
  */
 class RefDataIndex {
 
-	private Map<String, Long> processIds = new HashMap<>();
-	private Map<String, Category> processCategories = new HashMap<>();
-	private Map<String, Category> compartments = new HashMap<>();
-	private Map<String, Location> locations = new HashMap<>();
-	private Map<String, Unit> units = new HashMap<>();
-	private Map<String, FlowProperty> flowProperties = new HashMap<>();
-	private Map<String, Flow> flows = new HashMap<>();
-	private Map<String, Boolean> negativeFlow = new HashMap<>();
-	private Map<String, Boolean> mappedFlow = new HashMap<>();
-	private Map<String, Double> flowFactor = new HashMap<>();
+	private Map<String, Long> processIds = new ConcurrentHashMap<>();
+	private Map<String, Category> processCategories = new ConcurrentHashMap<>();
+	private Map<String, Category> compartments = new ConcurrentHashMap<>();
+	private Map<String, Location> locations = new ConcurrentHashMap<>();
+	private Map<String, Unit> units = new ConcurrentHashMap<>();
+	private Map<String, FlowProperty> flowProperties = new ConcurrentHashMap<>();
+	private Map<String, Flow> flows = new ConcurrentHashMap<>();
+	private Map<String, Boolean> negativeFlow = new ConcurrentHashMap<>();
+	private Map<String, Boolean> mappedFlow = new ConcurrentHashMap<>();
+	private Map<String, Double> flowFactor = new ConcurrentHashMap<>();
 
 	public Category getProcessCategory(String key) {
-		return processCategories.get(key);
+		return get(processCategories, key);
 	}
 
 	public void putProcessCategory(String key, Category category) {
-		processCategories.put(key, category);
+		put(processCategories, key, category);
 	}
 
 	public Location getLocation(String key) {
-		return locations.get(key);
+		return get(locations, key);
 	}
 
 	public void putLocation(String key, Location location) {
-		locations.put(key, location);
+		put(locations, key, location);
 	}
 
 	public Unit getUnit(String key) {
-		return units.get(key);
+		return get(units, key);
 	}
 
 	public void putUnit(String key, Unit unit) {
-		units.put(key, unit);
+		put(units, key, unit);
 	}
 
 	public FlowProperty getFlowProperty(String key) {
-		return flowProperties.get(key);
+		return get(flowProperties, key);
 	}
 
 	public void putFlowProperty(String key, FlowProperty property) {
-		flowProperties.put(key, property);
+		put(flowProperties, key, property);
 	}
 
 	public Category getCompartment(String key) {
-		return compartments.get(key);
+		return get(compartments, key);
 	}
 
 	public void putCompartment(String key, Category category) {
-		compartments.put(key, category);
+		put(compartments, key, category);
 	}
 
 	public Flow getFlow(String key) {
-		return flows.get(key);
+		return get(flows, key);
 	}
 
 	public void putFlow(String key, Flow flow) {
-		flows.put(key, flow);
+		put(flows, key, flow);
 	}
 
 	/**
@@ -81,20 +84,20 @@ class RefDataIndex {
 	 * product flow of the linked activity).
 	 */
 	public void putNegativeFlow(String key, boolean val) {
-		negativeFlow.put(key, val);
+		put(negativeFlow, key, val);
 	}
 
 	public boolean isNegativeFlow(String key) {
-		Boolean val = negativeFlow.get(key);
+		Boolean val = get(negativeFlow, key);
 		return val == null ? false : val;
 	}
 
 	public void putProcessId(String key, long id) {
-		processIds.put(key, id);
+		put(processIds, key, id);
 	}
 
 	public Long getProcessId(String key) {
-		return processIds.get(key);
+		return get(processIds, key);
 	}
 
 	/**
@@ -102,8 +105,8 @@ class RefDataIndex {
 	 * given conversion factor.
 	 */
 	public void putMappedFlow(String key, double factor) {
-		mappedFlow.put(key, Boolean.TRUE);
-		flowFactor.put(key, factor);
+		put(mappedFlow, key, Boolean.TRUE);
+		put(flowFactor, key, factor);
 	}
 
 	/**
@@ -111,7 +114,7 @@ class RefDataIndex {
 	 * reference flow.
 	 */
 	public boolean isMappedFlow(String key) {
-		Boolean b = mappedFlow.get(key);
+		Boolean b = get(mappedFlow, key);
 		if (b == null)
 			return false;
 		return b;
@@ -122,10 +125,23 @@ class RefDataIndex {
 	 * if the flow with the given key is a mapped flow.
 	 */
 	public double getMappedFlowFactor(String key) {
-		Double factor = flowFactor.get(key);
+		Double factor = get(flowFactor, key);
 		if (factor == null)
 			return 1;
 		return factor;
 	}
 
+	private <T> T get(Map<String, T> map, String key) {
+		return key == null ? null : map.get(key);
+	}
+
+	private <T> void put(Map<String, T> map, String key, T value) {
+		if (key == null)
+			return;
+		if (value == null)
+			map.remove(key);
+		else
+			map.put(key, value);
+	}
+
 }
@@ -73,7 +73,7 @@ public class SimulationResultExport {
 		List<ImpactCategoryDescriptor> impacts = Sort.impacts(result.getImpactDescriptors());
 		for (ImpactCategoryDescriptor impact : impacts) {
 			writer.impactRow(sheet, row, 1, impact);
-			List<Double> values = result.getImpactResults(impact);
+			double[] values = result.getImpactValues(impact);
 			writeValues(sheet, row, IMPACT_HEADER.length + 1, values);
 			row++;
 		}
@@ -116,7 +116,7 @@ public class SimulationResultExport {
 			if (idx.isInput(flow.getId()) != forInputs)
 				continue;
 			writer.flowRow(sheet, row, 1, flow);
-			List<Double> values = result.getFlowResults(flow);
+			double[] values = result.getFlowValues(flow);
 			writeValues(sheet, row, FLOW_HEADER.length + 1, values);
 			row++;
 		}
@@ -152,7 +152,7 @@ public class SimulationResultExport {
 	}
 
 	private void writeValues(Sheet sheet, int row, int startCol,
-			List<Double> values) {
+			double[] values) {
 		if (values == null)
 			return;
 		int col = startCol;
@@ -164,8 +164,8 @@ public class SimulationResultExport {
 		Excel.cell(sheet, row, col++, stat.getMedian());
 		Excel.cell(sheet, row, col++, stat.getPercentileValue(5));
 		Excel.cell(sheet, row, col++, stat.getPercentileValue(95));
-		for (int i = 0; i < values.size(); i++)
-			Excel.cell(sheet, row, col++, values.get(i).doubleValue());
+		for (int i = 0; i < values.length; i++)
+			Excel.cell(sheet, row, col++, values[i]);
 	}
 
 }
@@ -0,0 +1,85 @@
+package org.openlca.io.ecospold2.input;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class DataSetReaderTest {
+
+	private static final String ACTIVITY_ID = "08a78e38-fdbe-4ea8-869f-7735b41ecf85";
+	private static final int COUNT = 20;
+	private File zipFile;
+
+	@Before
+	public void setUp() throws Exception {
+		String xml = new String(ByteStreams.toByteArray(DataSetReaderTest.class
+				.getResourceAsStream("sample_ecospold2.xml")),
+				StandardCharsets.UTF_8);
+		File tempDir = new File(System.getProperty("java.io.tmpdir"));
+		zipFile = new File(tempDir, UUID.randomUUID().toString() + ".zip");
+		try (ZipOutputStream zip = new ZipOutputStream(
+				new FileOutputStream(zipFile))) {
+			for (int i = 0; i < COUNT; i++) {
+				zip.putNextEntry(new ZipEntry("data_set_" + i + ".spold"));
+				String copy = xml.replace(ACTIVITY_ID, "activity-" + i);
+				zip.write(copy.getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+			}
+			zip.putNextEntry(new ZipEntry("readme.txt"));
+			zip.write("not a data set".getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		zipFile.delete();
+	}
+
+	@Test
+	public void testReadInOrder() {
+		DataSetReader reader = new DataSetReader(new File[] { zipFile }, 4);
+		List<String> ids = new ArrayList<>();
+		reader.read(dataSet -> dataSet.description.activity.id, ids::add);
+		Assert.assertEquals(COUNT, ids.size());
+		for (int i = 0; i < COUNT; i++)
+			Assert.assertEquals("activity-" + i, ids.get(i));
+	}
+
+	@Test
+	public void testReadSequential() {
+		DataSetReader reader = new DataSetReader(new File[] { zipFile }, 1);
+		List<String> ids = new ArrayList<>();
+		Thread caller = Thread.currentThread();
+		reader.read(dataSet -> {
+			// with a single thread, the data sets are mapped in the caller
+			Assert.assertSame(caller, Thread.currentThread());
+			return dataSet.description.activity.id;
+		}, ids::add);
+		Assert.assertEquals(COUNT, ids.size());
+		for (int i = 0; i < COUNT; i++)
+			Assert.assertEquals("activity-" + i, ids.get(i));
+	}
+
+	@Test
+	public void testCancel() {
+		DataSetReader reader = new DataSetReader(new File[] { zipFile }, 4);
+		List<String> ids = new ArrayList<>();
+		reader.setCanceled(() -> ids.size() >= 5);
+		reader.read(dataSet -> dataSet.description.activity.id, ids::add);
+		Assert.assertEquals(5, ids.size());
+	}
+
+}
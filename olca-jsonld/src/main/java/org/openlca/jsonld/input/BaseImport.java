@@ -35,15 +35,34 @@ abstract class BaseImport<T extends RootEntity> {
 			JsonObject json = conf.store.get(modelType, refId);
 			if (!doImport(model, json))
 				return model;
-			conf.visited(modelType, refId);
-			importBinFiles();
-			return map(json, model);
+			if (!conf.visit(modelType, refId))
+				return awaitImport();
+			try {
+				importBinFiles();
+				return map(json, model);
+			} finally {
+				conf.imported(modelType, refId);
+			}
 		} catch (Exception e) {
 			log.error("failed to import " + modelType.name() + " " + refId, e);
 			return null;
 		}
 	}
 
+	/**
+	 * The entity is imported by another thread (or higher up in the call stack
+	 * of this thread). We take it when it is already in the database (e.g.
+	 * processes are inserted before their default providers are imported to
+	 * avoid cycles) or wait until the other import is finished.
+	 */
+	private T awaitImport() throws InterruptedException {
+		T model = get(refId);
+		if (model != null)
+			return model;
+		conf.awaitImport(modelType, refId);
+		return get(refId);
+	}
+
 	private boolean doImport(T model, JsonObject json) {
 		if (model == null)
 			return true;
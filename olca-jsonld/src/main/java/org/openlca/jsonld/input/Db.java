@@ -1,7 +1,7 @@
 package org.openlca.jsonld.input;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.openlca.core.database.ActorDao;
 import org.openlca.core.database.CategoryDao;
@@ -41,23 +41,23 @@ import org.openlca.core.model.descriptors.BaseDescriptor;
 
 class Db {
 
-	private Map<String, Long> categoryIds = new HashMap<>();
-	private Map<String, Long> unitGroupIds = new HashMap<>();
-	private Map<String, Long> unitIds = new HashMap<>();
-	private Map<String, Long> flowPropertyIds = new HashMap<>();
-	private Map<String, Long> flowIds = new HashMap<>();
-	private Map<String, Long> locationIds = new HashMap<>();
-	private Map<String, Long> dqSystemIds = new HashMap<>();
-	private Map<String, Long> methodIds = new HashMap<>();
-	private Map<String, Long> actorIds = new HashMap<>();
-	private Map<String, Long> sourceIds = new HashMap<>();
-	private Map<String, Long> parameterIds = new HashMap<>();
-	private Map<String, Long> processIds = new HashMap<>();
-	private Map<String, Long> indicatorIds = new HashMap<>();
-	private Map<String, Long> currencyIds = new HashMap<>();
-	private Map<String, Long> systemIds = new HashMap<>();
-	private Map<String, Long> projectIds = new HashMap<>();
-	public Map<String, String> categoryRefIdMapping = new HashMap<String, String>();
+	private Map<String, Long> categoryIds = new ConcurrentHashMap<>();
+	private Map<String, Long> unitGroupIds = new ConcurrentHashMap<>();
+	private Map<String, Long> unitIds = new ConcurrentHashMap<>();
+	private Map<String, Long> flowPropertyIds = new ConcurrentHashMap<>();
+	private Map<String, Long> flowIds = new ConcurrentHashMap<>();
+	private Map<String, Long> locationIds = new ConcurrentHashMap<>();
+	private Map<String, Long> dqSystemIds = new ConcurrentHashMap<>();
+	private Map<String, Long> methodIds = new ConcurrentHashMap<>();
+	private Map<String, Long> actorIds = new ConcurrentHashMap<>();
+	private Map<String, Long> sourceIds = new ConcurrentHashMap<>();
+	private Map<String, Long> parameterIds = new ConcurrentHashMap<>();
+	private Map<String, Long> processIds = new ConcurrentHashMap<>();
+	private Map<String, Long> indicatorIds = new ConcurrentHashMap<>();
+	private Map<String, Long> currencyIds = new ConcurrentHashMap<>();
+	private Map<String, Long> systemIds = new ConcurrentHashMap<>();
+	private Map<String, Long> projectIds = new ConcurrentHashMap<>();
+	public Map<String, String> categoryRefIdMapping = new ConcurrentHashMap<>();
 	
 	private IDatabase db;
 
@@ -100,9 +100,7 @@ class Db {
 		Category cat = dao.update(category);
 		for (Category child : cat.getChildCategories()) {
 			String refId = child.getRefId();
-			if (categoryIds.containsKey(refId))
-				continue;
-			categoryIds.put(refId, child.getId());
+			categoryIds.putIfAbsent(refId, child.getId());
 		}
 		return cat;
 	}
@@ -1,9 +1,8 @@
 package org.openlca.jsonld.input;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 
 import org.openlca.core.model.ModelType;
 import org.openlca.jsonld.EntityStore;
@@ -16,7 +15,14 @@ class ImportConfig {
 	final EntityStore store;
 	final UpdateMode updateMode;
 	final Logger log = LoggerFactory.getLogger(getClass());
-	private final Map<ModelType, Set<String>> visited = new HashMap<>();
+
+	/**
+	 * The started imports: type/refId -> import. The entities of a stage can be
+	 * imported in parallel and an entity can be referenced from entities that
+	 * are imported in different threads. Thus, we need to make sure that it is
+	 * imported only once.
+	 */
+	private final Map<String, Visit> visited = new ConcurrentHashMap<>();
 
 	private ImportConfig(Db db, EntityStore store, UpdateMode updateMode) {
 		this.db = db;
@@ -28,18 +34,44 @@ class ImportConfig {
 		return new ImportConfig(db, store, updateMode);
 	}
 
-	void visited(ModelType type, String refId) {
-		Set<String> set = visited.get(type);
-		if (set == null)
-			visited.put(type, set = new HashSet<>());
-		set.add(refId);
+	/**
+	 * Marks the given entity as visited. Returns true if the calling thread is
+	 * the first one that visits the entity and is responsible for the import;
+	 * the import must then be finished with {@link #imported}.
+	 */
+	boolean visit(ModelType type, String refId) {
+		return visited.putIfAbsent(key(type, refId), new Visit()) == null;
+	}
+
+	/** Marks the import of the given entity as finished. */
+	void imported(ModelType type, String refId) {
+		Visit visit = visited.get(key(type, refId));
+		if (visit != null)
+			visit.done.countDown();
+	}
+
+	/**
+	 * Waits until the import of the given entity that was started by another
+	 * thread is finished.
+	 */
+	void awaitImport(ModelType type, String refId) throws InterruptedException {
+		Visit visit = visited.get(key(type, refId));
+		if (visit == null || visit.thread == Thread.currentThread())
+			return;
+		visit.done.await();
 	}
 
 	boolean hasVisited(ModelType type, String refId) {
-		Set<String> set = visited.get(type);
-		if (set == null)
-			return false;
-		return set.contains(refId);
+		return visited.containsKey(key(type, refId));
+	}
+
+	private String key(ModelType type, String refId) {
+		return type.name() + "/" + refId;
+	}
+
+	private static class Visit {
+		final Thread thread = Thread.currentThread();
+		final CountDownLatch done = new CountDownLatch(1);
 	}
 
 }
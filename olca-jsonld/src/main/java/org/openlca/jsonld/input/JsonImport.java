@@ -1,18 +1,31 @@
 package org.openlca.jsonld.input;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
 import org.openlca.core.database.IDatabase;
 import org.openlca.core.model.ModelType;
 import org.openlca.jsonld.EntityStore;
 import org.openlca.jsonld.Schema;
 import org.openlca.jsonld.Schema.UnsupportedSchemaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.gson.JsonObject;
 
 public class JsonImport implements Runnable {
 
+	private final Logger log = LoggerFactory.getLogger(getClass());
+
 	private IDatabase database;
 	private EntityStore store;
 	private UpdateMode updateMode = UpdateMode.NEVER;
+	private int threads = 1;
 
 	public JsonImport(EntityStore store, IDatabase db) {
 		this.store = store;
@@ -23,40 +36,50 @@ public class JsonImport implements Runnable {
 		this.updateMode = updateMode;
 	}
 
+	/**
+	 * Sets the number of threads that are used for the import. The model types
+	 * are imported in stages in the order of their dependencies; within a
+	 * stage, the entities are read, parsed, and written to the database on the
+	 * given number of threads. The default is 1 which imports the entities
+	 * strictly one after another. For more threads, the entity store needs to
+	 * support concurrent reads.
+	 */
+	public void setThreads(int threads) {
+		this.threads = Math.max(1, threads);
+	}
+
 	@Override
 	public void run() {
 		checkSchemaSupported();
 		ImportConfig conf = ImportConfig.create(new Db(database), store, updateMode);
-		for (String catId : store.getRefIds(ModelType.CATEGORY))
-			CategoryImport.run(catId, conf);
-		for (String sysId : store.getRefIds(ModelType.DQ_SYSTEM))
-			DQSystemImport.run(sysId, conf);
-		for (String locId : store.getRefIds(ModelType.LOCATION))
-			LocationImport.run(locId, conf);
-		for (String actorId : store.getRefIds(ModelType.ACTOR))
-			ActorImport.run(actorId, conf);
-		for (String sourceId : store.getRefIds(ModelType.SOURCE))
-			SourceImport.run(sourceId, conf);
-		for (String paramId : store.getRefIds(ModelType.PARAMETER))
-			ParameterImport.run(paramId, conf);
-		for (String groupId : store.getRefIds(ModelType.UNIT_GROUP))
-			UnitGroupImport.run(groupId, conf);
-		for (String propId : store.getRefIds(ModelType.FLOW_PROPERTY))
-			FlowPropertyImport.run(propId, conf);
-		for (String currId : store.getRefIds(ModelType.CURRENCY))
-			CurrencyImport.run(currId, conf);
-		for (String flowId : store.getRefIds(ModelType.FLOW))
-			FlowImport.run(flowId, conf);
-		for (String methodId : store.getRefIds(ModelType.IMPACT_METHOD))
-			ImpactMethodImport.run(methodId, conf);
-		for (String indicatorId : store.getRefIds(ModelType.SOCIAL_INDICATOR))
-			SocialIndicatorImport.run(indicatorId, conf);
-		for (String processId : store.getRefIds(ModelType.PROCESS))
-			ProcessImport.run(processId, conf);
-		for (String systemId : store.getRefIds(ModelType.PRODUCT_SYSTEM))
-			ProductSystemImport.run(systemId, conf);
-		for (String projectId : store.getRefIds(ModelType.PROJECT))
-			ProjectImport.run(projectId, conf);
+		ExecutorService pool = threads > 1
+				? Executors.newFixedThreadPool(threads)
+				: null;
+		try {
+			// stages marked as sequential contain references between entities
+			// of the same type that are updated after the insert (parent
+			// categories, default flow properties of unit groups, reference
+			// currencies)
+			Stage s = new Stage(conf, pool);
+			s.sequential(ModelType.CATEGORY, CategoryImport::run);
+			s.parallel(ModelType.DQ_SYSTEM, DQSystemImport::run);
+			s.parallel(ModelType.LOCATION, LocationImport::run);
+			s.parallel(ModelType.ACTOR, ActorImport::run);
+			s.parallel(ModelType.SOURCE, SourceImport::run);
+			s.parallel(ModelType.PARAMETER, ParameterImport::run);
+			s.sequential(ModelType.UNIT_GROUP, UnitGroupImport::run);
+			s.sequential(ModelType.FLOW_PROPERTY, FlowPropertyImport::run);
+			s.sequential(ModelType.CURRENCY, CurrencyImport::run);
+			s.parallel(ModelType.FLOW, FlowImport::run);
+			s.parallel(ModelType.IMPACT_METHOD, ImpactMethodImport::run);
+			s.parallel(ModelType.SOCIAL_INDICATOR, SocialIndicatorImport::run);
+			s.parallel(ModelType.PROCESS, ProcessImport::run);
+			s.parallel(ModelType.PRODUCT_SYSTEM, ProductSystemImport::run);
+			s.parallel(ModelType.PROJECT, ProjectImport::run);
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
 	}
 
 	private void checkSchemaSupported() {
@@ -66,4 +89,41 @@ public class JsonImport implements Runnable {
 			throw new UnsupportedSchemaException(schema);
 	}
 
+	private class Stage {
+
+		private final ImportConfig conf;
+		private final ExecutorService pool;
+
+		Stage(ImportConfig conf, ExecutorService pool) {
+			this.conf = conf;
+			this.pool = pool;
+		}
+
+		void sequential(ModelType type, BiConsumer<String, ImportConfig> fn) {
+			for (String refId : store.getRefIds(type))
+				fn.accept(refId, conf);
+		}
+
+		void parallel(ModelType type, BiConsumer<String, ImportConfig> fn) {
+			if (pool == null) {
+				sequential(type, fn);
+				return;
+			}
+			List<Future<?>> futures = new ArrayList<>();
+			for (String refId : store.getRefIds(type))
+				futures.add(pool.submit(() -> fn.accept(refId, conf)));
+			// wait until the stage is finished before the next stage starts
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("JSON import interrupted", e);
+				} catch (ExecutionException e) {
+					log.error("failed to import " + type, e);
+				}
+			}
+		}
+	}
+
 }
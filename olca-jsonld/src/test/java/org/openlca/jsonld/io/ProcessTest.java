@@ -67,6 +67,22 @@ public class ProcessTest extends AbstractZipTest {
 		delete(processes[1], Tests.getDb());
 	}
 
+	@Test
+	public void testCyclicProviderParallel() throws Exception {
+		IDatabase db = Tests.getDb();
+		ProcessDao dao = new ProcessDao(db);
+		Process[] processes = createCyclicModel(db);
+		doExport(processes[0]);
+		dao.delete(processes[0]);
+		dao.delete(processes[1]);
+		doImport(4);
+		assertTestCyclicProvider(processes, dao);
+		Assert.assertEquals(1, dao.getDescriptors().stream().filter(
+				d -> d.getRefId().equals(processes[0].getRefId())).count());
+		delete(processes[0], Tests.getDb());
+		delete(processes[1], Tests.getDb());
+	}
+
 	private void assertTestCyclicProvider(Process[] processes, ProcessDao dao) {
 		List<Process> clones = new ArrayList<>();
 		for (int i = 0; i < processes.length; i++) {
@@ -172,9 +188,14 @@ public class ProcessTest extends AbstractZipTest {
 	}
 
 	private void doImport() {
+		doImport(1);
+	}
+
+	private void doImport(int threads) {
 		with(zip -> {
 			JsonImport jImport = new JsonImport(zip, Tests.getDb());
 			jImport.setUpdateMode(UpdateMode.ALWAYS);
+			jImport.setThreads(threads);
 			jImport.run();
 		});
 	}